@@ -0,0 +1,74 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.cryptacular.bean.BCryptHashBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BCryptHashBean} hashing and comparison at several cost factors. The payload is a password, so the
+ * cost factor rather than the input size is the parameter of interest.
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BCryptBenchmark
+{
+
+  /** Password to hash. */
+  private static final String PASSWORD = "password";
+
+  /** Encoded bcrypt salt. */
+  private static final String SALT = "DCq7YPn5Rq63x1Lad4cll.";
+
+  /** BCrypt cost factor. */
+  @Param({"4", "10", "12"})
+  private int cost;
+
+  /** Bean under test. */
+  private BCryptHashBean bean;
+
+  /** Full bcrypt hash string of {@link #PASSWORD}. */
+  private String hash;
+
+
+  /** Creates the bean and reference hash for the current cost. */
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    bean = new BCryptHashBean(cost);
+    hash = "$2b$" + (cost < 10 ? "0" : "") + cost + '$' + SALT + bean.hash(SALT, PASSWORD);
+  }
+
+
+  /** @return  Encoded bcrypt hash. */
+  @Benchmark
+  public String hash()
+  {
+    return bean.hash(SALT, PASSWORD);
+  }
+
+
+  /** @return  True if the password matches the reference hash. */
+  @Benchmark
+  public boolean compare()
+  {
+    return bean.compare(hash, PASSWORD);
+  }
+}
@@ -0,0 +1,65 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.io.File;
+import java.security.KeyStore;
+import java.util.Random;
+import javax.crypto.SecretKey;
+import org.cryptacular.bean.KeyStoreBasedKeyFactoryBean;
+import org.cryptacular.bean.KeyStoreFactoryBean;
+import org.cryptacular.io.FileResource;
+
+/**
+ * Shared fixtures for benchmarks. Paths are relative to the project base directory, which is the working directory
+ * of benchmarks launched through the <code>benchmark</code> Maven profile.
+ *
+ * @author  Middleware Services
+ */
+public final class BenchmarkUtil
+{
+
+  /** Keystore containing the symmetric key used by cipher benchmarks. */
+  public static final String KEYSTORE_PATH = "src/test/resources/keystores/cipher-bean.jceks";
+
+  /** Type of {@link #KEYSTORE_PATH}. */
+  public static final String KEYSTORE_TYPE = "JCEKS";
+
+  /** Keystore password, key alias and key password. */
+  public static final String KEYSTORE_SECRET = "vtcrypt";
+
+  /** Fixed seed so that every fork sees the same payload. */
+  private static final long SEED = 0x5eedL;
+
+  /** Private constructor of utility class. */
+  private BenchmarkUtil() {}
+
+
+  /**
+   * Creates a payload of pseudorandom bytes.
+   *
+   * @param  size  Payload size in bytes.
+   *
+   * @return  Payload bytes.
+   */
+  public static byte[] payload(final int size)
+  {
+    final byte[] data = new byte[size];
+    new Random(SEED).nextBytes(data);
+    return data;
+  }
+
+
+  /** @return  Keystore containing the benchmark key. */
+  public static KeyStore keyStore()
+  {
+    return new KeyStoreFactoryBean(new FileResource(new File(KEYSTORE_PATH)), KEYSTORE_TYPE, KEYSTORE_SECRET)
+      .newInstance();
+  }
+
+
+  /** @return  Secret key read from the benchmark keystore. */
+  public static SecretKey secretKey()
+  {
+    return new KeyStoreBasedKeyFactoryBean<SecretKey>(keyStore(), KEYSTORE_SECRET, KEYSTORE_SECRET).newInstance();
+  }
+}
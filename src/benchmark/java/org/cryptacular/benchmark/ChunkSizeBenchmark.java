@@ -0,0 +1,110 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.cryptacular.bean.AEADBlockCipherBean;
+import org.cryptacular.bean.KeyStoreKeyProvider;
+import org.cryptacular.bean.KeyedCipherPool;
+import org.cryptacular.generator.sp80038a.RBGNonce;
+import org.cryptacular.spec.AEADBlockCipherSpec;
+import org.cryptacular.util.StreamUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the effect of the chunk size of stream operations on {@link StreamUtil#pipeAll} and {@link
+ * AEADBlockCipherBean} stream encryption and decryption.
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkSizeBenchmark
+{
+
+  /** Stream payload size in bytes. */
+  private static final int PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+  /** Chunk size in bytes. */
+  @Param({"1024", "4096", "16384", "65536", "262144", "1048576"})
+  private int chunkSize;
+
+  /** Plaintext. */
+  private byte[] plaintext;
+
+  /** AES/GCM cipher bean using {@link #chunkSize}. */
+  private AEADBlockCipherBean bean;
+
+  /** Plaintext encrypted by {@link #bean}. */
+  private byte[] ciphertext;
+
+
+  /** Creates the bean and ciphertext for the current chunk size. */
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    plaintext = BenchmarkUtil.payload(PAYLOAD_SIZE);
+    bean = new AEADBlockCipherBean(
+      AEADBlockCipherSpec.parse("AES/GCM"),
+      new KeyStoreKeyProvider(BenchmarkUtil.keyStore(), BenchmarkUtil.KEYSTORE_SECRET),
+      BenchmarkUtil.KEYSTORE_SECRET,
+      new RBGNonce(12),
+      0,
+      new KeyedCipherPool<>(),
+      chunkSize);
+    ciphertext = encryptStream().toByteArray();
+  }
+
+
+  /** @return  SHA-256 hash of the payload digested through {@link StreamUtil#pipeAll}. */
+  @Benchmark
+  public byte[] pipeAllDigest()
+  {
+    final SHA256Digest digest = new SHA256Digest();
+    StreamUtil.pipeAll(
+      new ByteArrayInputStream(plaintext),
+      new ByteArrayOutputStream(0),
+      (in, inOff, len, out) -> digest.update(in, inOff, len),
+      chunkSize);
+    final byte[] hash = new byte[digest.getDigestSize()];
+    digest.doFinal(hash, 0);
+    return hash;
+  }
+
+
+  /** @return  Ciphertext stream produced by {@link AEADBlockCipherBean}. */
+  @Benchmark
+  public ByteArrayOutputStream encryptStream()
+  {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(PAYLOAD_SIZE + 64);
+    bean.encrypt(new ByteArrayInputStream(plaintext), out);
+    return out;
+  }
+
+
+  /** @return  Plaintext stream recovered by {@link AEADBlockCipherBean}. */
+  @Benchmark
+  public ByteArrayOutputStream decryptStream()
+  {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(PAYLOAD_SIZE);
+    bean.decrypt(new ByteArrayInputStream(ciphertext), out);
+    return out;
+  }
+}
@@ -0,0 +1,207 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.CBCBlockCipher;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.cryptacular.bean.AEADBlockCipherBean;
+import org.cryptacular.bean.BufferedBlockCipherBean;
+import org.cryptacular.generator.sp80038a.RBGNonce;
+import org.cryptacular.spec.AEADBlockCipherSpec;
+import org.cryptacular.spec.BufferedBlockCipherSpec;
+import org.cryptacular.util.CipherUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CipherUtil}, {@link BufferedBlockCipherBean} and {@link AEADBlockCipherBean} encryption and
+ * decryption over a range of payload sizes.
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherBenchmark
+{
+
+  /** Plaintext size in bytes. */
+  @Param({"64", "1024", "16384", "1048576", "67108864"})
+  private int size;
+
+  /** Encryption key. */
+  private SecretKey key;
+
+  /** Plaintext. */
+  private byte[] plaintext;
+
+  /** Plaintext encrypted with {@link CipherUtil} using AES/GCM. */
+  private byte[] gcmCiphertext;
+
+  /** Plaintext encrypted with {@link CipherUtil} using AES/CBC. */
+  private byte[] cbcCiphertext;
+
+  /** Buffered block cipher bean. */
+  private BufferedBlockCipherBean bufferedBean;
+
+  /** Plaintext encrypted by {@link #bufferedBean}. */
+  private byte[] bufferedBeanCiphertext;
+
+  /** AEAD block cipher bean. */
+  private AEADBlockCipherBean aeadBean;
+
+  /** Plaintext encrypted by {@link #aeadBean}. */
+  private byte[] aeadBeanCiphertext;
+
+
+  /** Creates keys, beans and ciphertexts for the current payload size. */
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    key = BenchmarkUtil.secretKey();
+    plaintext = BenchmarkUtil.payload(size);
+    gcmCiphertext = cipherUtilEncryptGcm();
+    cbcCiphertext = cipherUtilEncryptCbc();
+    bufferedBean = new BufferedBlockCipherBean(
+      BufferedBlockCipherSpec.parse("AES/CBC/PKCS5"),
+      BenchmarkUtil.keyStore(),
+      BenchmarkUtil.KEYSTORE_SECRET,
+      BenchmarkUtil.KEYSTORE_SECRET,
+      new RBGNonce(16));
+    bufferedBeanCiphertext = bufferedBean.encrypt(plaintext);
+    aeadBean = new AEADBlockCipherBean(
+      AEADBlockCipherSpec.parse("AES/GCM"),
+      BenchmarkUtil.keyStore(),
+      BenchmarkUtil.KEYSTORE_SECRET,
+      BenchmarkUtil.KEYSTORE_SECRET,
+      new RBGNonce(12));
+    aeadBeanCiphertext = aeadBean.encrypt(plaintext);
+  }
+
+
+  /** @return  AES/GCM ciphertext produced by {@link CipherUtil}. */
+  @Benchmark
+  public byte[] cipherUtilEncryptGcm()
+  {
+    return CipherUtil.encrypt(GCMBlockCipher.newInstance(AESEngine.newInstance()), key, new RBGNonce(12), plaintext);
+  }
+
+
+  /** @return  Plaintext recovered from AES/GCM ciphertext by {@link CipherUtil}. */
+  @Benchmark
+  public byte[] cipherUtilDecryptGcm()
+  {
+    return CipherUtil.decrypt(GCMBlockCipher.newInstance(AESEngine.newInstance()), key, gcmCiphertext);
+  }
+
+
+  /** @return  AES/GCM ciphertext stream produced by {@link CipherUtil}. */
+  @Benchmark
+  public ByteArrayOutputStream cipherUtilEncryptGcmStream()
+  {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(gcmCiphertext.length);
+    CipherUtil.encrypt(
+      GCMBlockCipher.newInstance(AESEngine.newInstance()),
+      key,
+      new RBGNonce(12),
+      new ByteArrayInputStream(plaintext),
+      out);
+    return out;
+  }
+
+
+  /** @return  Plaintext stream recovered from AES/GCM ciphertext by {@link CipherUtil}. */
+  @Benchmark
+  public ByteArrayOutputStream cipherUtilDecryptGcmStream()
+  {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(plaintext.length);
+    CipherUtil.decrypt(
+      GCMBlockCipher.newInstance(AESEngine.newInstance()), key, new ByteArrayInputStream(gcmCiphertext), out);
+    return out;
+  }
+
+
+  /** @return  AES/CBC ciphertext produced by {@link CipherUtil}. */
+  @Benchmark
+  public byte[] cipherUtilEncryptCbc()
+  {
+    return CipherUtil.encrypt(CBCBlockCipher.newInstance(AESEngine.newInstance()), key, new RBGNonce(16), plaintext);
+  }
+
+
+  /** @return  Plaintext recovered from AES/CBC ciphertext by {@link CipherUtil}. */
+  @Benchmark
+  public byte[] cipherUtilDecryptCbc()
+  {
+    return CipherUtil.decrypt(CBCBlockCipher.newInstance(AESEngine.newInstance()), key, cbcCiphertext);
+  }
+
+
+  /** @return  Ciphertext produced by {@link BufferedBlockCipherBean}. */
+  @Benchmark
+  public byte[] bufferedBeanEncrypt()
+  {
+    return bufferedBean.encrypt(plaintext);
+  }
+
+
+  /** @return  Plaintext recovered by {@link BufferedBlockCipherBean}. */
+  @Benchmark
+  public byte[] bufferedBeanDecrypt()
+  {
+    return bufferedBean.decrypt(bufferedBeanCiphertext);
+  }
+
+
+  /** @return  Ciphertext produced by {@link AEADBlockCipherBean}. */
+  @Benchmark
+  public byte[] aeadBeanEncrypt()
+  {
+    return aeadBean.encrypt(plaintext);
+  }
+
+
+  /** @return  Plaintext recovered by {@link AEADBlockCipherBean}. */
+  @Benchmark
+  public byte[] aeadBeanDecrypt()
+  {
+    return aeadBean.decrypt(aeadBeanCiphertext);
+  }
+
+
+  /** @return  Ciphertext stream produced by {@link AEADBlockCipherBean}. */
+  @Benchmark
+  public ByteArrayOutputStream aeadBeanEncryptStream()
+  {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(aeadBeanCiphertext.length);
+    aeadBean.encrypt(new ByteArrayInputStream(plaintext), out);
+    return out;
+  }
+
+
+  /** @return  Plaintext stream recovered by {@link AEADBlockCipherBean}. */
+  @Benchmark
+  public ByteArrayOutputStream aeadBeanDecryptStream()
+  {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(plaintext.length);
+    aeadBean.decrypt(new ByteArrayInputStream(aeadBeanCiphertext), out);
+    return out;
+  }
+}
@@ -0,0 +1,108 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.cryptacular.util.CodecUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the base-64, base-32 and hex encoders and decoders through {@link CodecUtil} over a range of payload
+ * sizes.
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark
+{
+
+  /** Raw payload size in bytes. */
+  @Param({"64", "1024", "16384", "1048576", "67108864"})
+  private int size;
+
+  /** Raw bytes. */
+  private byte[] raw;
+
+  /** Base-64 encoding of {@link #raw}. */
+  private String base64;
+
+  /** Base-32 encoding of {@link #raw}. */
+  private String base32;
+
+  /** Hex encoding of {@link #raw}. */
+  private String hex;
+
+
+  /** Creates raw and encoded payloads for the current size. */
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    raw = BenchmarkUtil.payload(size);
+    base64 = CodecUtil.b64(raw);
+    base32 = CodecUtil.b32(raw);
+    hex = CodecUtil.hex(raw);
+  }
+
+
+  /** @return  Base-64 encoded payload. */
+  @Benchmark
+  public String base64Encode()
+  {
+    return CodecUtil.b64(raw);
+  }
+
+
+  /** @return  Base-64 decoded payload. */
+  @Benchmark
+  public byte[] base64Decode()
+  {
+    return CodecUtil.b64(base64);
+  }
+
+
+  /** @return  Base-32 encoded payload. */
+  @Benchmark
+  public String base32Encode()
+  {
+    return CodecUtil.b32(raw);
+  }
+
+
+  /** @return  Base-32 decoded payload. */
+  @Benchmark
+  public byte[] base32Decode()
+  {
+    return CodecUtil.b32(base32);
+  }
+
+
+  /** @return  Hex encoded payload. */
+  @Benchmark
+  public String hexEncode()
+  {
+    return CodecUtil.hex(raw);
+  }
+
+
+  /** @return  Hex decoded payload. */
+  @Benchmark
+  public byte[] hexDecode()
+  {
+    return CodecUtil.hex(hex);
+  }
+}
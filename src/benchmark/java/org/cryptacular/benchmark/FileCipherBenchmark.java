@@ -0,0 +1,164 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.cryptacular.SegmentedAEADCipher;
+import org.cryptacular.generator.sp80038a.RBGNonce;
+import org.cryptacular.spec.AEADBlockCipherSpec;
+import org.cryptacular.util.CipherUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares file-to-file AES/GCM encryption and decryption through the single-pass stream path of {@link CipherUtil}
+ * with the memory mapped, parallel segmented path.
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileCipherBenchmark
+{
+
+  /** Cipher specification. */
+  private static final AEADBlockCipherSpec SPEC = new AEADBlockCipherSpec("AES", "GCM");
+
+  /** Plaintext file size in bytes. */
+  @Param({"1048576", "67108864", "268435456"})
+  private int size;
+
+  /** Encryption key. */
+  private SecretKey key;
+
+  /** Plaintext file. */
+  private Path plaintext;
+
+  /** Single-pass ciphertext file. */
+  private Path streamCiphertext;
+
+  /** Segmented ciphertext file. */
+  private Path segmentedCiphertext;
+
+  /** Benchmark output file. */
+  private Path output;
+
+
+  /**
+   * Creates the plaintext and ciphertext files for the current size.
+   *
+   * @throws  IOException  on file errors.
+   */
+  @Setup(Level.Trial)
+  public void setup()
+    throws IOException
+  {
+    key = BenchmarkUtil.secretKey();
+    plaintext = Files.write(Files.createTempFile("bench", ".txt"), BenchmarkUtil.payload(size));
+    streamCiphertext = Files.createTempFile("bench", ".enc");
+    segmentedCiphertext = Files.createTempFile("bench", ".enc");
+    output = Files.createTempFile("bench", ".out");
+    streamEncrypt(plaintext, streamCiphertext);
+    CipherUtil.encrypt(
+      SPEC, key, new RBGNonce(12), SegmentedAEADCipher.DEFAULT_SEGMENT_SIZE, plaintext, segmentedCiphertext);
+  }
+
+
+  /**
+   * Deletes all files.
+   *
+   * @throws  IOException  on file errors.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(plaintext);
+    Files.deleteIfExists(streamCiphertext);
+    Files.deleteIfExists(segmentedCiphertext);
+    Files.deleteIfExists(output);
+  }
+
+
+  /**
+   * Encrypts the plaintext file through the stream path.
+   *
+   * @throws  IOException  on file errors.
+   */
+  @Benchmark
+  public void streamEncrypt()
+    throws IOException
+  {
+    streamEncrypt(plaintext, output);
+  }
+
+
+  /**
+   * Decrypts the single-pass ciphertext file through the stream path.
+   *
+   * @throws  IOException  on file errors.
+   */
+  @Benchmark
+  public void streamDecrypt()
+    throws IOException
+  {
+    try (InputStream in = Files.newInputStream(streamCiphertext); OutputStream out = Files.newOutputStream(output)) {
+      CipherUtil.decrypt(GCMBlockCipher.newInstance(AESEngine.newInstance()), key, in, out);
+    }
+  }
+
+
+  /** Encrypts the plaintext file into segmented ciphertext through the memory mapped path. */
+  @Benchmark
+  public void segmentedEncrypt()
+  {
+    CipherUtil.encrypt(SPEC, key, new RBGNonce(12), SegmentedAEADCipher.DEFAULT_SEGMENT_SIZE, plaintext, output);
+  }
+
+
+  /** Decrypts the segmented ciphertext file through the memory mapped path. */
+  @Benchmark
+  public void segmentedDecrypt()
+  {
+    CipherUtil.decrypt(SPEC, key, segmentedCiphertext, output);
+  }
+
+
+  /**
+   * Encrypts a file through the single-pass stream path.
+   *
+   * @param  source  Plaintext file.
+   * @param  target  Ciphertext file.
+   *
+   * @throws  IOException  on file errors.
+   */
+  private void streamEncrypt(final Path source, final Path target)
+    throws IOException
+  {
+    try (InputStream in = Files.newInputStream(source); OutputStream out = Files.newOutputStream(target)) {
+      CipherUtil.encrypt(GCMBlockCipher.newInstance(AESEngine.newInstance()), key, new RBGNonce(12), in, out);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.cryptacular.io.FileResource;
+import org.cryptacular.util.HashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares SHA-256 hashing of a file through the channel path of {@link HashUtil} with hashing the buffered stream of
+ * a {@link FileResource}.
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileHashBenchmark
+{
+
+  /** File size in bytes. */
+  @Param({"16384", "1048576", "67108864", "268435456"})
+  private int size;
+
+  /** File to hash. */
+  private Path file;
+
+  /** Resource over {@link #file}. */
+  private FileResource resource;
+
+
+  /**
+   * Creates the file for the current size.
+   *
+   * @throws  IOException  on file errors.
+   */
+  @Setup(Level.Trial)
+  public void setup()
+    throws IOException
+  {
+    file = Files.write(Files.createTempFile("bench", ".bin"), BenchmarkUtil.payload(size));
+    resource = new FileResource(file.toFile());
+  }
+
+
+  /**
+   * Deletes the file.
+   *
+   * @throws  IOException  on file errors.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(file);
+  }
+
+
+  /** @return  Hash computed through the channel path. */
+  @Benchmark
+  public byte[] channel()
+  {
+    return HashUtil.hash(new SHA256Digest(), resource);
+  }
+
+
+  /**
+   * @return  Hash computed from the buffered resource stream.
+   *
+   * @throws  IOException  on file errors.
+   */
+  @Benchmark
+  public byte[] stream()
+    throws IOException
+  {
+    try (InputStream in = resource.getInputStream()) {
+      return HashUtil.hash(new SHA256Digest(), in);
+    }
+  }
+}
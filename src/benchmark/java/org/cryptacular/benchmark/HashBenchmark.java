@@ -0,0 +1,84 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.cryptacular.util.HashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link HashUtil#hash(org.bouncycastle.crypto.Digest, Object...)} over a range of payload sizes for both
+ * byte array and stream input.
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark
+{
+
+  /** Payload size in bytes. */
+  @Param({"64", "1024", "16384", "1048576", "67108864"})
+  private int size;
+
+  /** Data to hash. */
+  private byte[] payload;
+
+
+  /** Creates the payload for the current size. */
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    payload = BenchmarkUtil.payload(size);
+  }
+
+
+  /** @return  SHA-1 hash of byte array input. */
+  @Benchmark
+  public byte[] sha1()
+  {
+    return HashUtil.hash(new SHA1Digest(), payload);
+  }
+
+
+  /** @return  SHA-256 hash of byte array input. */
+  @Benchmark
+  public byte[] sha256()
+  {
+    return HashUtil.hash(new SHA256Digest(), payload);
+  }
+
+
+  /** @return  SHA-512 hash of byte array input. */
+  @Benchmark
+  public byte[] sha512()
+  {
+    return HashUtil.hash(new SHA512Digest(), payload);
+  }
+
+
+  /** @return  SHA-256 hash of stream input. */
+  @Benchmark
+  public byte[] sha256Stream()
+  {
+    return HashUtil.hash(new SHA256Digest(), new ByteArrayInputStream(payload));
+  }
+}
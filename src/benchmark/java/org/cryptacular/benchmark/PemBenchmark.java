@@ -0,0 +1,96 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+import org.cryptacular.util.ByteUtil;
+import org.cryptacular.util.CertUtil;
+import org.cryptacular.util.CodecUtil;
+import org.cryptacular.util.PemUtil;
+import org.cryptacular.util.StreamUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PemUtil#decode(byte[])} over synthetic PEM blocks of a range of sizes and {@link
+ * CertUtil#readCertificate(java.io.InputStream)} over PEM and DER encoded certificates held in memory.
+ *
+ * @author  Middleware Services
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PemBenchmark
+{
+
+  /** PEM encoded certificate. */
+  private static final String PEM_CERT_PATH = "src/test/resources/certs/ed.middleware.vt.edu.crt";
+
+  /** DER encoded certificate. */
+  private static final String DER_CERT_PATH = "src/test/resources/certs/ed.middleware.vt.edu.der";
+
+  /** Size of the DER payload wrapped in a synthetic PEM block. */
+  @Param({"64", "1024", "16384", "1048576", "67108864"})
+  private int size;
+
+  /** Synthetic PEM block. */
+  private byte[] pem;
+
+  /** PEM encoded certificate bytes. */
+  private byte[] pemCert;
+
+  /** DER encoded certificate bytes. */
+  private byte[] derCert;
+
+
+  /** Reads certificates and builds the PEM block for the current size. */
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    final StringBuilder sb = new StringBuilder(size * 4 / 3 + 128);
+    sb.append("-----BEGIN CERTIFICATE-----\n");
+    sb.append(CodecUtil.b64(BenchmarkUtil.payload(size), 64));
+    sb.append("-----END CERTIFICATE-----\n");
+    pem = ByteUtil.toBytes(sb);
+    pemCert = StreamUtil.readAll(PEM_CERT_PATH);
+    derCert = StreamUtil.readAll(DER_CERT_PATH);
+  }
+
+
+  /** @return  DER bytes decoded from the synthetic PEM block. */
+  @Benchmark
+  public byte[] pemDecode()
+  {
+    return PemUtil.decode(pem);
+  }
+
+
+  /** @return  Certificate read from PEM encoding. */
+  @Benchmark
+  public X509Certificate readPemCertificate()
+  {
+    return CertUtil.readCertificate(new ByteArrayInputStream(pemCert));
+  }
+
+
+  /** @return  Certificate read from DER encoding. */
+  @Benchmark
+  public X509Certificate readDerCertificate()
+  {
+    return CertUtil.readCertificate(new ByteArrayInputStream(derCert));
+  }
+}
@@ -20,21 +20,23 @@ import org.cryptacular.util.ByteUtil;
  * <p>Data format:</p>
  *
  * <pre>
-     +---------+---------+---+----------+-------+------+
-     | Version | KeyName | 0 | NonceLen | Nonce | HMAC |
-     +---------+---------+---+----------+-------+------+
-     |                                                 |
-     +--- 4 ---+--- x ---+ 1 +--- 1 ----+-- y --+- 32 -+
+     +---------+---------+---+----------+-------+-------------+------+
+     | Version | KeyName | 0 | NonceLen | Nonce | SegmentSize | HMAC |
+     +---------+---------+---+----------+-------+-------------+------+
+     |                                                               |
+     +--- 4 ---+--- x ---+ 1 +--- 1 ----+-- y --+---- 0|4 ---+- 32 -+
  * </pre>
  *
  * <p>Where fields are defined as follows:</p>
  *
  * <ul>
- *   <li>Version - Header version format as a negative number (4-byte integer). Current version is -2.</li>
+ *   <li>Version - Header version format as a negative number (4-byte integer). Version -2 is the single-pass
+ *   format; version -3 is the segmented format described in {@link SegmentedAEADCipher}.</li>
  *   <li>KeyName - Symbolic key name encoded as UTF-8 bytes (variable length)</li>
  *   <li>0 - Null byte signifying the end of the symbolic key name</li>
  *   <li>NonceLen - Nonce length in bytes (1-byte unsigned integer)</li>
  *   <li>Nonce - Nonce bytes (variable length)</li>
+ *   <li>SegmentSize - Plaintext bytes per ciphertext segment (4-byte integer). Present only in version -3.</li>
  *   <li>HMAC - HMAC-256 over preceding fields (32 bytes)</li>
  * </ul>
  *
@@ -49,6 +51,9 @@ public class CiphertextHeader
   /** Header version format. */
   private static final int VERSION = -2;
 
+  /** Header version format for segmented ciphertext. */
+  private static final int SEGMENTED_VERSION = -3;
+
   /** Size of HMAC algorithm output in bytes. */
   private static final int HMAC_SIZE = 32;
 
@@ -58,18 +63,30 @@ public class CiphertextHeader
   /** Maximum key name length in bytes. */
   private static final int MAX_KEYNAME_LEN = 500;
 
+  /** Header MAC state reused by each thread. */
+  private static final ThreadLocal<HeaderMac> HMAC = ThreadLocal.withInitial(HeaderMac::new);
+
   /** Header nonce field value. */
   private final byte[] nonce;
 
   /** Header key name field value. */
   private final String keyName;
 
+  /** UTF-8 encoded key name. */
+  private final byte[] keyNameBytes;
+
+  /** Header segment size field value; 0 for single-pass ciphertext. */
+  private final int segmentSize;
+
   /** Header length in bytes. */
   private final int length;
 
   /** Function to resolve a key from a symbolic key name. */
   private final Function<String, SecretKey> keyLookup;
 
+  /** Encoded header, cached by {@link #encode()} and by decoding once the HMAC has been verified. */
+  private volatile byte[] encoded;
+
 
   /**
    * Creates a new instance with a nonce and named key.
@@ -91,17 +108,43 @@ public class CiphertextHeader
    * @param  keyLookup  Key lookup function.
    */
   public CiphertextHeader(final byte[] nonce, final String keyName, final Function<String, SecretKey> keyLookup)
+  {
+    this(nonce, keyName, 0, keyLookup);
+  }
+
+
+  /**
+   * Creates a new instance with a nonce, named key, segment size and key lookup.
+   *
+   * @param  nonce  Nonce bytes.
+   * @param  keyName  Key name.
+   * @param  segmentSize  Plaintext bytes per segment of segmented ciphertext, or 0 for single-pass ciphertext.
+   * @param  keyLookup  Key lookup function.
+   */
+  public CiphertextHeader(
+    final byte[] nonce,
+    final String keyName,
+    final int segmentSize,
+    final Function<String, SecretKey> keyLookup)
   {
     CryptUtil.assertNotNullArg(nonce, "Nonce cannot be null");
     if (nonce.length > MAX_NONCE_LEN) {
       throw new IllegalArgumentException("Nonce exceeds size limit in bytes (" + MAX_NONCE_LEN + ")");
     }
     CryptUtil.assertNotNullArgOr(keyName, String::isEmpty, "Key name can not be null or empty");
-    if (ByteUtil.toBytes(keyName).length > MAX_KEYNAME_LEN) {
+    this.keyNameBytes = ByteUtil.toBytes(keyName);
+    if (keyNameBytes.length > MAX_KEYNAME_LEN) {
       throw new IllegalArgumentException("Key name exceeds size limit in bytes (" + MAX_KEYNAME_LEN + ")");
     }
+    if (segmentSize != 0 &&
+        (segmentSize < SegmentedAEADCipher.MIN_SEGMENT_SIZE || segmentSize > SegmentedAEADCipher.MAX_SEGMENT_SIZE)) {
+      throw new IllegalArgumentException(
+        "Segment size must be 0 or in the range [" + SegmentedAEADCipher.MIN_SEGMENT_SIZE + ", " +
+        SegmentedAEADCipher.MAX_SEGMENT_SIZE + "]");
+    }
     this.nonce = nonce;
     this.keyName = keyName;
+    this.segmentSize = segmentSize;
     this.keyLookup = keyLookup;
     this.length = computeLength();
   }
@@ -141,17 +184,45 @@ public class CiphertextHeader
 
 
   /**
-   * Encodes the header into bytes.
+   * Gets the number of plaintext bytes in each segment of segmented ciphertext.
    *
-   * @return  Byte representation of header.
+   * @return  Segment size in bytes, or 0 if the ciphertext following this header is not segmented.
+   */
+  public int getSegmentSize()
+  {
+    return this.segmentSize;
+  }
+
+
+  /**
+   * Determines whether the ciphertext following this header is in the segmented format.
+   *
+   * @return  True for segmented ciphertext, false otherwise.
+   */
+  public boolean isSegmented()
+  {
+    return this.segmentSize > 0;
+  }
+
+
+  /**
+   * Encodes the header into bytes. The encoding is computed once, using the key resolved by the key lookup function,
+   * and cached; headers created by decoding reuse the verified header bytes without a key lookup.
+   *
+   * @return  Byte representation of header. The array is shared and must not be modified.
    */
   public byte[] encode()
   {
-    final SecretKey key = keyLookup != null ? keyLookup.apply(keyName) : null;
-    if (key == null) {
-      throw new IllegalStateException("Could not resolve secret key to generate header HMAC");
+    byte[] bytes = encoded;
+    if (bytes == null) {
+      final SecretKey key = keyLookup != null ? keyLookup.apply(keyName) : null;
+      if (key == null) {
+        throw new IllegalStateException("Could not resolve secret key to generate header HMAC");
+      }
+      bytes = encode(key);
+      encoded = bytes;
     }
-    return encode(key);
+    return bytes;
   }
 
 
@@ -165,15 +236,57 @@ public class CiphertextHeader
   public byte[] encode(final SecretKey hmacKey)
   {
     CryptUtil.assertNotNullArg(hmacKey, "Secret key cannot be null");
-    final ByteBuffer bb = ByteBuffer.allocate(length);
-    bb.order(ByteOrder.BIG_ENDIAN);
-    bb.putInt(VERSION);
-    bb.put(ByteUtil.toBytes(keyName));
-    bb.put((byte) 0);
-    bb.put(ByteUtil.toUnsignedByte(nonce.length));
-    bb.put(nonce);
-    bb.put(hmac(bb.array(), 0, bb.limit() - HMAC_SIZE));
-    return bb.array();
+    final byte[] bytes = new byte[length];
+    putFields(ByteBuffer.wrap(bytes));
+    hmac(bytes, 0, length - HMAC_SIZE, bytes, length - HMAC_SIZE);
+    return bytes;
+  }
+
+
+  /**
+   * Encodes the header directly into the given buffer starting at its current position. The buffer position is
+   * advanced by {@link #getLength()} bytes.
+   *
+   * @param  output  Buffer that receives the encoded header.
+   *
+   * @throws  IllegalArgumentException  if the buffer has fewer than {@link #getLength()} bytes remaining.
+   */
+  public void encode(final ByteBuffer output)
+  {
+    CryptUtil.assertNotNullArg(output, "Output buffer cannot be null");
+    checkRemaining(output);
+    output.put(encode());
+  }
+
+
+  /**
+   * Encodes the header directly into the given buffer starting at its current position. The buffer position is
+   * advanced by {@link #getLength()} bytes. Multi-byte fields are written in big-endian order regardless of the byte
+   * order of the buffer.
+   *
+   * @param  hmacKey  Key used to generate header HMAC.
+   * @param  output  Buffer that receives the encoded header.
+   *
+   * @throws  IllegalArgumentException  if the buffer has fewer than {@link #getLength()} bytes remaining.
+   */
+  public void encode(final SecretKey hmacKey, final ByteBuffer output)
+  {
+    CryptUtil.assertNotNullArg(hmacKey, "Secret key cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output buffer cannot be null");
+    checkRemaining(output);
+    final int start = output.position();
+    putFields(output);
+    if (output.hasArray()) {
+      final int offset = output.arrayOffset() + start;
+      hmac(output.array(), offset, length - HMAC_SIZE, output.array(), offset + length - HMAC_SIZE);
+      output.position(start + length);
+    } else {
+      final HeaderMac hmac = HMAC.get();
+      for (int i = start; i < output.position(); i++) {
+        hmac.inner.update(output.get(i));
+      }
+      output.put(hmac.doFinal(), 0, HMAC_SIZE);
+    }
   }
 
 
@@ -182,7 +295,7 @@ public class CiphertextHeader
    */
   protected int computeLength()
   {
-    return 4 + ByteUtil.toBytes(keyName).length + 2 + nonce.length + HMAC_SIZE;
+    return 4 + keyNameBytes.length + 2 + nonce.length + (isSegmented() ? 4 : 0) + HMAC_SIZE;
   }
 
 
@@ -211,6 +324,29 @@ public class CiphertextHeader
   }
 
 
+  /**
+   * Creates a header from a buffer positioned at the start of ciphertext header data. On success the buffer position
+   * is advanced past the header.
+   *
+   * @param  data  Buffer containing encrypted data with prepended header data.
+   * @param  keyLookup  Function used to look up the secret key from the symbolic key name in the header.
+   *
+   * @return  Decoded header.
+   *
+   * @throws  EncodingException  when ciphertext header cannot be decoded.
+   */
+  public static CiphertextHeader decode(final ByteBuffer data, final Function<String, SecretKey> keyLookup)
+      throws EncodingException
+  {
+    CryptUtil.assertNotNullArg(data, "Data cannot be null");
+    CryptUtil.assertNotNullArg(keyLookup, "Key lookup cannot be null");
+    final ByteBuffer bb = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+    final CiphertextHeader header = decodeInternal(bb, keyLookup, ByteBuffer::getInt, ByteBuffer::get, ByteBuffer::get);
+    data.position(bb.position());
+    return header;
+  }
+
+
   /**
    * Creates a header from encrypted data containing a cleartext header prepended to the start.
    *
@@ -257,9 +393,10 @@ public class CiphertextHeader
     final String keyName;
     final byte[] nonce;
     final byte[] hmac;
+    int segmentSize = 0;
     try {
       final int version = readIntFn.apply(source);
-      if (version != VERSION) {
+      if (version != VERSION && version != SEGMENTED_VERSION) {
         throw new EncodingException("Unsupported ciphertext header version");
       }
       final ByteArrayOutputStream out = new ByteArrayOutputStream(100);
@@ -280,36 +417,94 @@ public class CiphertextHeader
       final int nonceLen = ByteUtil.toInt(readByteFn.apply(source));
       nonce = new byte[nonceLen];
       readBytesConsumer.accept(source, nonce);
+      if (version == SEGMENTED_VERSION) {
+        segmentSize = readIntFn.apply(source);
+      }
       hmac = new byte[HMAC_SIZE];
       readBytesConsumer.accept(source, hmac);
     } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
       throw new EncodingException("Bad ciphertext header");
     }
-    final CiphertextHeader header = new CiphertextHeader(nonce, keyName, keyLookup);
+    final CiphertextHeader header;
+    try {
+      header = new CiphertextHeader(nonce, keyName, segmentSize, keyLookup);
+    } catch (IllegalArgumentException e) {
+      throw new EncodingException("Bad ciphertext header: " + e.getMessage());
+    }
     final byte[] encoded = header.encode(key);
     if (!arraysEqual(hmac, 0, encoded, encoded.length - HMAC_SIZE, HMAC_SIZE)) {
       throw new EncodingException("Ciphertext header HMAC verification failed");
     }
+    header.encoded = encoded;
     return header;
   }
 
 
+  /**
+   * Writes all fields preceding the HMAC at the current position of the buffer.
+   *
+   * @param  output  Output buffer.
+   */
+  private void putFields(final ByteBuffer output)
+  {
+    putInt(output, isSegmented() ? SEGMENTED_VERSION : VERSION);
+    output.put(keyNameBytes);
+    output.put((byte) 0);
+    output.put(ByteUtil.toUnsignedByte(nonce.length));
+    output.put(nonce);
+    if (isSegmented()) {
+      putInt(output, segmentSize);
+    }
+  }
+
+
+  /**
+   * Ensures the buffer can hold the encoded header.
+   *
+   * @param  output  Output buffer.
+   */
+  private void checkRemaining(final ByteBuffer output)
+  {
+    if (output.remaining() < length) {
+      throw new IllegalArgumentException("Output buffer too small for header of " + length + " bytes");
+    }
+  }
+
+
   /**
    * Generates an HMAC-256 over the given input byte array.
    *
    * @param  input  Input bytes.
    * @param  offset  Starting position in input byte array.
    * @param  length  Number of bytes in input to consume.
+   * @param  output  Array that receives the HMAC.
+   * @param  outOff  Position in output array where the HMAC is written.
+   */
+  private static void hmac(
+    final byte[] input,
+    final int offset,
+    final int length,
+    final byte[] output,
+    final int outOff)
+  {
+    final HeaderMac hmac = HMAC.get();
+    hmac.inner.update(input, offset, length);
+    System.arraycopy(hmac.doFinal(), 0, output, outOff, HMAC_SIZE);
+  }
+
+
+  /**
+   * Writes a 4-byte big-endian integer at the current position of the buffer.
    *
-   * @return  HMAC as byte array.
+   * @param  output  Output buffer.
+   * @param  value  Integer value.
    */
-  private static byte[] hmac(final byte[] input, final int offset, final int length)
+  private static void putInt(final ByteBuffer output, final int value)
   {
-    final HMac hmac = new HMac(new SHA256Digest());
-    final byte[] output = new byte[HMAC_SIZE];
-    hmac.update(input, offset, length);
-    hmac.doFinal(output, 0);
-    return output;
+    output.put((byte) (value >>> 24));
+    output.put((byte) (value >>> 16));
+    output.put((byte) (value >>> 8));
+    output.put((byte) value);
   }
 
 
@@ -373,4 +568,48 @@ public class CiphertextHeader
     }
     return true;
   }
+
+
+  /**
+   * Computes the header HMAC field without per-call allocation. The field has always been produced by a new {@link
+   * HMac} that is not initialized with a key, whose output is SHA-256 over 64 zero bytes followed by the SHA-256 of
+   * the input. Reusing an uninitialized {@link HMac} would change the result, so the outer digest is restored from a
+   * precomputed state instead.
+   */
+  private static final class HeaderMac
+  {
+
+    /** Outer digest state after absorbing the 64-byte zero block. */
+    private static final SHA256Digest OUTER_STATE = new SHA256Digest();
+
+    static
+    {
+      final byte[] block = new byte[OUTER_STATE.getByteLength()];
+      OUTER_STATE.update(block, 0, block.length);
+    }
+
+    /** Digest over the header fields. */
+    private final SHA256Digest inner = new SHA256Digest();
+
+    /** Digest over the zero block and inner hash. */
+    private final SHA256Digest outer = new SHA256Digest();
+
+    /** Inner hash followed by final output. */
+    private final byte[] buffer = new byte[HMAC_SIZE];
+
+
+    /**
+     * Completes the computation over the input passed to {@link #inner} and resets for the next computation.
+     *
+     * @return  Internal buffer holding the HMAC field value, which is valid until the next call.
+     */
+    byte[] doFinal()
+    {
+      inner.doFinal(buffer, 0);
+      outer.reset(OUTER_STATE);
+      outer.update(buffer, 0, buffer.length);
+      outer.doFinal(buffer, 0);
+      return buffer;
+    }
+  }
 }
@@ -0,0 +1,818 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.crypto.SecretKey;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.modes.AEADBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.HKDFParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.cryptacular.spec.Spec;
+
+/**
+ * Encrypts and decrypts streams in a segmented AEAD format. Plaintext is split into fixed-size segments that are
+ * individually encrypted and authenticated, which allows segments to be processed in parallel and allows decryption
+ * to release only authenticated plaintext while holding a bounded number of segments in memory.
+ *
+ * <p>Data format following a version -3 {@link CiphertextHeader}:</p>
+ *
+ * <pre>
+     +-----------+-----------+-----+-----------+
+     | Segment 0 | Segment 1 | ... | Segment n |
+     +-----------+-----------+-----+-----------+
+ * </pre>
+ *
+ * <p>Every segment is the AEAD ciphertext of exactly {@link CiphertextHeader#getSegmentSize()} plaintext bytes
+ * followed by a 16-byte tag, except the final segment, which holds between 0 and segment size plaintext bytes.
+ * Segments are encrypted with a per-message key and a per-segment nonce:</p>
+ *
+ * <ul>
+ *   <li>Key - HKDF-SHA256 over the secret key with the header nonce as salt and the encoded header as info. The
+ *   derived key has the same length as the secret key.</li>
+ *   <li>Nonce - 7 zero bytes, the segment index as a 4-byte big-endian integer, and a 1-byte flag that is 1 for the
+ *   final segment and 0 otherwise.</li>
+ * </ul>
+ *
+ * <p>Binding the key to the header authenticates the header with every segment, and the final segment flag detects
+ * truncation at a segment boundary. Since each segment is encrypted in one pass, modes that cannot stream, e.g. CCM,
+ * are supported.</p>
+ *
+ * <p>Since every segment except the last has a fixed size, the position of any segment in both plaintext and
+ * ciphertext is known in advance. Files are therefore processed by memory mapping the input and writing each segment
+ * at its final position in the output, with all workers processing segments independently.</p>
+ *
+ * <p>Instances of this class are thread safe.</p>
+ *
+ * @author  Middleware Services
+ */
+public class SegmentedAEADCipher
+{
+
+  /** Default segment size in bytes. */
+  public static final int DEFAULT_SEGMENT_SIZE = 65536;
+
+  /** Minimum segment size in bytes. */
+  public static final int MIN_SEGMENT_SIZE = 16;
+
+  /** Maximum segment size in bytes. */
+  public static final int MAX_SEGMENT_SIZE = 1 << 24;
+
+  /** Size of the authentication tag appended to each segment in bytes. */
+  public static final int TAG_SIZE = 16;
+
+  /** Segment nonce size in bytes. */
+  private static final int NONCE_SIZE = 12;
+
+  /** Largest segment index that can be encoded in a segment nonce. */
+  private static final long MAX_SEGMENT_INDEX = 0xFFFFFFFFL;
+
+  /** Maximum number of bytes of an input file mapped into memory at once. */
+  private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+  /** Options used to open output files. */
+  private static final StandardOpenOption[] OUTPUT_OPTIONS = {
+    StandardOpenOption.CREATE,
+    StandardOpenOption.TRUNCATE_EXISTING,
+    StandardOpenOption.WRITE,
+  };
+
+  /** AEAD cipher specification. */
+  private final Spec<AEADBlockCipher> cipherSpec;
+
+  /** Pool that processes segments in parallel. */
+  private final ForkJoinPool pool;
+
+  /** Number of segments read into memory and processed together. */
+  private final int batchSize;
+
+
+  /**
+   * Creates a new instance that processes segments on the common fork/join pool.
+   *
+   * @param  cipherSpec  AEAD cipher specification.
+   */
+  public SegmentedAEADCipher(final Spec<AEADBlockCipher> cipherSpec)
+  {
+    this(cipherSpec, ForkJoinPool.commonPool());
+  }
+
+
+  /**
+   * Creates a new instance that processes segments on the given pool.
+   *
+   * @param  cipherSpec  AEAD cipher specification.
+   * @param  pool  Pool that processes segments in parallel.
+   */
+  public SegmentedAEADCipher(final Spec<AEADBlockCipher> cipherSpec, final ForkJoinPool pool)
+  {
+    this.cipherSpec = CryptUtil.assertNotNullArg(cipherSpec, "Cipher spec cannot be null");
+    this.pool = CryptUtil.assertNotNullArg(pool, "Pool cannot be null");
+    this.batchSize = pool.getParallelism() * 2;
+  }
+
+
+  /** @return  AEAD cipher specification. */
+  public Spec<AEADBlockCipher> getCipherSpec()
+  {
+    return cipherSpec;
+  }
+
+
+  /**
+   * Encodes the header onto the output stream followed by the segmented ciphertext of the input stream.
+   *
+   * @param  header  Segmented ciphertext header.
+   * @param  key  Encryption key.
+   * @param  input  Input stream containing plaintext data.
+   * @param  output  Output stream that receives the header and ciphertext.
+   *
+   * @throws  CryptoException  on encryption errors.
+   * @throws  StreamException  on IO errors.
+   */
+  public void encrypt(
+    final CiphertextHeader header,
+    final SecretKey key,
+    final InputStream input,
+    final OutputStream output)
+    throws CryptoException, StreamException
+  {
+    checkArgs(header, key, input, output);
+    final byte[] headerBytes = header.encode(key);
+    write(output, headerBytes, headerBytes.length);
+    final int segmentSize = header.getSegmentSize();
+    process(true, deriveKey(key, header, headerBytes), segmentSize, segmentSize + TAG_SIZE, input, output);
+  }
+
+
+  /**
+   * Decrypts segmented ciphertext from the input stream onto the output stream. Plaintext is written only after the
+   * segment that contains it has been authenticated.
+   *
+   * @param  header  Segmented ciphertext header that has been decoded from the input stream.
+   * @param  key  Decryption key.
+   * @param  input  Input stream positioned at the first segment, i.e. immediately after the header.
+   * @param  output  Output stream that receives plaintext.
+   *
+   * @throws  CryptoException  on decryption errors, including authentication failure and truncated ciphertext.
+   * @throws  StreamException  on IO errors.
+   */
+  public void decrypt(
+    final CiphertextHeader header,
+    final SecretKey key,
+    final InputStream input,
+    final OutputStream output)
+    throws CryptoException, StreamException
+  {
+    checkArgs(header, key, input, output);
+    final int segmentSize = header.getSegmentSize();
+    process(false, deriveKey(key, header, header.encode(key)), segmentSize + TAG_SIZE, segmentSize, input, output);
+  }
+
+
+  /**
+   * Encrypts a file into a new file consisting of the encoded header followed by segmented ciphertext. The input file
+   * is memory mapped and segments are encrypted in parallel and written directly to their position in the output file.
+   * The output file is created or truncated, and it is deleted if encryption fails.
+   *
+   * @param  header  Segmented ciphertext header.
+   * @param  key  Encryption key.
+   * @param  input  Path to plaintext file.
+   * @param  output  Path to file that receives the header and ciphertext.
+   *
+   * @throws  CryptoException  on encryption errors.
+   * @throws  StreamException  on IO errors.
+   */
+  public void encrypt(final CiphertextHeader header, final SecretKey key, final Path input, final Path output)
+    throws CryptoException, StreamException
+  {
+    checkArgs(header, key, input, output);
+    checkPaths(input, output);
+    final byte[] headerBytes = header.encode(key);
+    final int segmentSize = header.getSegmentSize();
+    try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+         FileChannel out = FileChannel.open(output, OUTPUT_OPTIONS)) {
+      write(out, ByteBuffer.wrap(headerBytes), 0);
+      final long length = in.size();
+      final long segments = length == 0 ? 1 : (length + segmentSize - 1) / segmentSize;
+      final FileJob job = new FileJob(true, deriveKey(key, header, headerBytes), segmentSize, segmentSize + TAG_SIZE);
+      process(job, in, 0, length, segments, out, headerBytes.length);
+    } catch (IOException e) {
+      delete(output);
+      throw new StreamException(e);
+    } catch (RuntimeException e) {
+      delete(output);
+      throw e;
+    }
+  }
+
+
+  /**
+   * Decrypts a file containing an encoded header followed by segmented ciphertext into a new file. The input file is
+   * memory mapped and segments are decrypted in parallel and written directly to their position in the output file.
+   * The output file is created or truncated, and it is deleted if decryption fails, so that no unauthenticated or
+   * partial plaintext remains.
+   *
+   * @param  header  Segmented ciphertext header that has been decoded from the start of the input file.
+   * @param  key  Decryption key.
+   * @param  input  Path to file containing the header and ciphertext.
+   * @param  output  Path to file that receives plaintext.
+   *
+   * @throws  CryptoException  on decryption errors, including authentication failure and truncated ciphertext.
+   * @throws  StreamException  on IO errors.
+   */
+  public void decrypt(final CiphertextHeader header, final SecretKey key, final Path input, final Path output)
+    throws CryptoException, StreamException
+  {
+    checkArgs(header, key, input, output);
+    checkPaths(input, output);
+    final int segmentSize = header.getSegmentSize();
+    final int inSegmentSize = segmentSize + TAG_SIZE;
+    try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+         FileChannel out = FileChannel.open(output, OUTPUT_OPTIONS)) {
+      final long start = header.getLength();
+      final long length = in.size() - start;
+      final long segments = (length + inSegmentSize - 1) / inSegmentSize;
+      if (length <= 0 || length - (segments - 1) * inSegmentSize < TAG_SIZE) {
+        throw new CryptoException("Truncated ciphertext segment");
+      }
+      final FileJob job = new FileJob(
+        false, deriveKey(key, header, header.encode(key)), inSegmentSize, segmentSize);
+      process(job, in, start, length, segments, out, 0);
+    } catch (IOException e) {
+      delete(output);
+      throw new StreamException(e);
+    } catch (RuntimeException e) {
+      delete(output);
+      throw e;
+    }
+  }
+
+
+  /**
+   * Computes the number of ciphertext bytes that follow the header for a plaintext of the given length.
+   *
+   * @param  segmentSize  Plaintext bytes per segment.
+   * @param  plaintextLength  Plaintext length in bytes.
+   *
+   * @return  Length of all segments in bytes.
+   */
+  public static long ciphertextLength(final int segmentSize, final long plaintextLength)
+  {
+    final long segments = plaintextLength == 0 ? 1 : (plaintextLength + segmentSize - 1) / segmentSize;
+    return plaintextLength + segments * TAG_SIZE;
+  }
+
+
+  /**
+   * Derives the per-message segment key.
+   *
+   * @param  key  Secret key.
+   * @param  header  Ciphertext header.
+   * @param  headerBytes  Encoded header.
+   *
+   * @return  Segment key bytes.
+   */
+  private static byte[] deriveKey(final SecretKey key, final CiphertextHeader header, final byte[] headerBytes)
+  {
+    final byte[] ikm = key.getEncoded();
+    final byte[] segmentKey = new byte[ikm.length];
+    final HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
+    hkdf.init(new HKDFParameters(ikm, header.getNonce(), headerBytes));
+    hkdf.generateBytes(segmentKey, 0, segmentKey.length);
+    return segmentKey;
+  }
+
+
+  /**
+   * Reads batches of segments from the input stream, processes them in parallel, and writes the results in order.
+   *
+   * @param  mode  True for encryption; false for decryption.
+   * @param  segmentKey  Per-message segment key.
+   * @param  inSegmentSize  Size of a full input segment.
+   * @param  outSegmentSize  Size of a full output segment.
+   * @param  input  Input stream.
+   * @param  output  Output stream.
+   */
+  private void process(
+    final boolean mode,
+    final byte[] segmentKey,
+    final int inSegmentSize,
+    final int outSegmentSize,
+    final InputStream input,
+    final OutputStream output)
+  {
+    final Batch batch = new Batch(mode, segmentKey, batchSize);
+    int lookahead = -1;
+    boolean last = false;
+    while (!last) {
+      int count = 0;
+      while (count < batchSize && !last) {
+        if (batch.in[count] == null) {
+          batch.in[count] = new byte[inSegmentSize];
+          batch.out[count] = new byte[outSegmentSize];
+        }
+        int n = 0;
+        if (lookahead >= 0) {
+          batch.in[count][n++] = (byte) lookahead;
+        }
+        n += readFully(input, batch.in[count], n, inSegmentSize - n);
+        batch.inLengths[count++] = n;
+        if (n < inSegmentSize) {
+          last = true;
+        } else {
+          lookahead = read(input);
+          last = lookahead < 0;
+        }
+      }
+      if (!mode && batch.inLengths[count - 1] < TAG_SIZE) {
+        throw new CryptoException("Truncated ciphertext segment");
+      }
+      if (batch.baseIndex + count - 1 > MAX_SEGMENT_INDEX) {
+        throw new CryptoException("Maximum number of segments exceeded");
+      }
+      batch.lastPos = last ? count - 1 : -1;
+      batch.grain = Math.max(1, (count + pool.getParallelism() - 1) / pool.getParallelism());
+      final SegmentTask task = new SegmentTask(batch, 0, count);
+      if (count <= batch.grain) {
+        task.compute();
+      } else {
+        pool.invoke(task);
+      }
+      for (int i = 0; i < count; i++) {
+        write(output, batch.out[i], batch.outLengths[i]);
+      }
+      batch.baseIndex += count;
+    }
+  }
+
+
+  /**
+   * Maps windows of the input file into memory and processes the segments of each window in parallel, writing every
+   * segment at its position in the output file.
+   *
+   * @param  job  Parameters common to all segments of the file.
+   * @param  in  Input file channel.
+   * @param  inStart  Position of the first segment in the input file.
+   * @param  inLength  Length of all segments in the input file.
+   * @param  segments  Number of segments.
+   * @param  out  Output file channel.
+   * @param  outStart  Position of the first segment in the output file.
+   *
+   * @throws  IOException  on errors mapping the input file.
+   */
+  private void process(
+    final FileJob job,
+    final FileChannel in,
+    final long inStart,
+    final long inLength,
+    final long segments,
+    final FileChannel out,
+    final long outStart)
+    throws IOException
+  {
+    if (segments - 1 > MAX_SEGMENT_INDEX) {
+      throw new CryptoException("Maximum number of segments exceeded");
+    }
+    job.out = out;
+    job.outStart = outStart;
+    job.lastIndex = segments - 1;
+    final int windowSegments = Math.max(1, MAX_WINDOW_SIZE / job.inSegmentSize);
+    for (long first = 0; first < segments; first += windowSegments) {
+      final int count = (int) Math.min(windowSegments, segments - first);
+      final long offset = first * job.inSegmentSize;
+      final long size = Math.min((long) count * job.inSegmentSize, inLength - offset);
+      job.window = size == 0 ? ByteBuffer.allocate(0) : in.map(FileChannel.MapMode.READ_ONLY, inStart + offset, size);
+      job.baseIndex = first;
+      job.grain = Math.max(1, (count + pool.getParallelism() - 1) / pool.getParallelism());
+      final FileSegmentTask task = new FileSegmentTask(job, 0, count);
+      if (count <= job.grain) {
+        task.compute();
+      } else {
+        pool.invoke(task);
+      }
+    }
+  }
+
+
+  /**
+   * Validates arguments common to encryption and decryption.
+   *
+   * @param  header  Ciphertext header.
+   * @param  key  Secret key.
+   * @param  input  Input stream or file.
+   * @param  output  Output stream or file.
+   */
+  private static void checkArgs(
+    final CiphertextHeader header,
+    final SecretKey key,
+    final Object input,
+    final Object output)
+  {
+    CryptUtil.assertNotNullArg(header, "Header cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    if (!header.isSegmented()) {
+      throw new IllegalArgumentException("Header does not describe segmented ciphertext");
+    }
+  }
+
+
+  /**
+   * Ensures the output file is not the input file, which would be truncated before it is read.
+   *
+   * @param  input  Input file.
+   * @param  output  Output file.
+   */
+  private static void checkPaths(final Path input, final Path output)
+  {
+    try {
+      if (Files.exists(output) && Files.isSameFile(input, output)) {
+        throw new IllegalArgumentException("Input and output cannot be the same file");
+      }
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+  }
+
+
+  /**
+   * Reads from the input stream until the requested number of bytes have been read or the end of the stream is
+   * reached.
+   *
+   * @param  input  Input stream.
+   * @param  buffer  Buffer that receives data.
+   * @param  offset  Offset into buffer.
+   * @param  length  Number of bytes requested.
+   *
+   * @return  Number of bytes read, which is less than the requested length only at the end of the stream.
+   */
+  private static int readFully(final InputStream input, final byte[] buffer, final int offset, final int length)
+  {
+    int total = 0;
+    int n;
+    try {
+      while (total < length && (n = input.read(buffer, offset + total, length - total)) >= 0) {
+        total += n;
+      }
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+    return total;
+  }
+
+
+  /**
+   * Reads a single byte from the input stream.
+   *
+   * @param  input  Input stream.
+   *
+   * @return  Byte read as an unsigned value, or -1 at the end of the stream.
+   */
+  private static int read(final InputStream input)
+  {
+    try {
+      return input.read();
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+  }
+
+
+  /**
+   * Writes to the output stream.
+   *
+   * @param  output  Output stream.
+   * @param  data  Data to write.
+   * @param  length  Number of bytes to write from the start of the data.
+   */
+  private static void write(final OutputStream output, final byte[] data, final int length)
+  {
+    try {
+      output.write(data, 0, length);
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+  }
+
+
+  /**
+   * Writes the entire buffer to the channel at the given position.
+   *
+   * @param  channel  File channel.
+   * @param  buffer  Data to write.
+   * @param  position  File position at which to write.
+   */
+  private static void write(final FileChannel channel, final ByteBuffer buffer, final long position)
+  {
+    try {
+      long pos = position;
+      while (buffer.hasRemaining()) {
+        pos += channel.write(buffer, pos);
+      }
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+  }
+
+
+  /**
+   * Deletes a partially written output file.
+   *
+   * @param  path  Output file.
+   */
+  private static void delete(final Path path)
+  {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // Preserve the original failure
+      return;
+    }
+  }
+
+
+  /** Segments of a message that are held in memory and processed together. */
+  private static final class Batch
+  {
+
+    /** True for encryption; false for decryption. */
+    private final boolean mode;
+
+    /** Per-message segment key. */
+    private final byte[] segmentKey;
+
+    /** Input segments. */
+    private final byte[][] in;
+
+    /** Input segment lengths. */
+    private final int[] inLengths;
+
+    /** Output segments. */
+    private final byte[][] out;
+
+    /** Output segment lengths. */
+    private final int[] outLengths;
+
+    /** Index of the first segment of the batch in the message. */
+    private long baseIndex;
+
+    /** Position of the final segment of the message in the batch, or -1 if the batch does not contain it. */
+    private int lastPos;
+
+    /** Maximum number of segments processed by a single worker. */
+    private int grain;
+
+
+    /**
+     * Creates a new batch.
+     *
+     * @param  mode  True for encryption; false for decryption.
+     * @param  segmentKey  Per-message segment key.
+     * @param  size  Maximum number of segments in the batch.
+     */
+    Batch(final boolean mode, final byte[] segmentKey, final int size)
+    {
+      this.mode = mode;
+      this.segmentKey = segmentKey;
+      this.in = new byte[size][];
+      this.inLengths = new int[size];
+      this.out = new byte[size][];
+      this.outLengths = new int[size];
+    }
+  }
+
+
+  /** Parameters for processing the segments of a file and the window of the input file currently mapped. */
+  private static final class FileJob
+  {
+
+    /** True for encryption; false for decryption. */
+    private final boolean mode;
+
+    /** Per-message segment key. */
+    private final byte[] segmentKey;
+
+    /** Size of a full input segment. */
+    private final int inSegmentSize;
+
+    /** Size of a full output segment. */
+    private final int outSegmentSize;
+
+    /** Output file channel. */
+    private FileChannel out;
+
+    /** Position of the first segment in the output file. */
+    private long outStart;
+
+    /** Index of the final segment of the message. */
+    private long lastIndex;
+
+    /** Mapped window of the input file, which starts at a segment boundary. */
+    private ByteBuffer window;
+
+    /** Index of the first segment of the window in the message. */
+    private long baseIndex;
+
+    /** Maximum number of segments processed by a single worker. */
+    private int grain;
+
+
+    /**
+     * Creates a new job.
+     *
+     * @param  mode  True for encryption; false for decryption.
+     * @param  segmentKey  Per-message segment key.
+     * @param  inSegmentSize  Size of a full input segment.
+     * @param  outSegmentSize  Size of a full output segment.
+     */
+    FileJob(final boolean mode, final byte[] segmentKey, final int inSegmentSize, final int outSegmentSize)
+    {
+      this.mode = mode;
+      this.segmentKey = segmentKey;
+      this.inSegmentSize = inSegmentSize;
+      this.outSegmentSize = outSegmentSize;
+    }
+  }
+
+
+  /** Encrypts or decrypts individual segments with a single cipher instance. */
+  private static final class SegmentProcessor
+  {
+
+    /** AEAD cipher. */
+    private final AEADBlockCipher cipher;
+
+    /** True for encryption; false for decryption. */
+    private final boolean mode;
+
+    /** Per-message segment key. */
+    private final KeyParameter keyParam;
+
+    /** Segment nonce. */
+    private final byte[] nonce = new byte[NONCE_SIZE];
+
+
+    /**
+     * Creates a new processor.
+     *
+     * @param  cipher  AEAD cipher.
+     * @param  mode  True for encryption; false for decryption.
+     * @param  segmentKey  Per-message segment key.
+     */
+    SegmentProcessor(final AEADBlockCipher cipher, final boolean mode, final byte[] segmentKey)
+    {
+      this.cipher = cipher;
+      this.mode = mode;
+      this.keyParam = new KeyParameter(segmentKey);
+    }
+
+
+    /**
+     * Encrypts or decrypts a segment.
+     *
+     * @param  index  Segment index in the message.
+     * @param  last  True if the segment is the final segment of the message.
+     * @param  in  Input segment.
+     * @param  inLength  Input segment length.
+     * @param  out  Buffer that receives the output segment.
+     *
+     * @return  Output segment length.
+     */
+    int process(final long index, final boolean last, final byte[] in, final int inLength, final byte[] out)
+    {
+      nonce[7] = (byte) (index >>> 24);
+      nonce[8] = (byte) (index >>> 16);
+      nonce[9] = (byte) (index >>> 8);
+      nonce[10] = (byte) index;
+      nonce[11] = (byte) (last ? 1 : 0);
+      try {
+        cipher.init(mode, new AEADParameters(keyParam, TAG_SIZE * 8, nonce));
+        final int n = cipher.processBytes(in, 0, inLength, out, 0);
+        return n + cipher.doFinal(out, n);
+      } catch (InvalidCipherTextException e) {
+        throw new CryptoException("Segment " + index + " failed authentication", e);
+      } catch (RuntimeException e) {
+        throw new CryptoException("Error processing segment " + index, e);
+      }
+    }
+  }
+
+
+  /** Encrypts or decrypts a range of segments in a batch, splitting the range across workers. */
+  private final class SegmentTask extends RecursiveAction
+  {
+
+    /** Serialization version. */
+    private static final long serialVersionUID = 1L;
+
+    /** Batch containing the segments. */
+    private final transient Batch batch;
+
+    /** First batch position in range, inclusive. */
+    private final int lo;
+
+    /** Last batch position in range, exclusive. */
+    private final int hi;
+
+
+    /**
+     * Creates a new task.
+     *
+     * @param  batch  Batch containing the segments.
+     * @param  lo  First batch position in range, inclusive.
+     * @param  hi  Last batch position in range, exclusive.
+     */
+    SegmentTask(final Batch batch, final int lo, final int hi)
+    {
+      this.batch = batch;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+
+    @Override
+    protected void compute()
+    {
+      if (hi - lo > batch.grain) {
+        final int mid = (lo + hi) >>> 1;
+        invokeAll(new SegmentTask(batch, lo, mid), new SegmentTask(batch, mid, hi));
+        return;
+      }
+      final SegmentProcessor processor = new SegmentProcessor(cipherSpec.newInstance(), batch.mode, batch.segmentKey);
+      for (int i = lo; i < hi; i++) {
+        batch.outLengths[i] = processor.process(
+          batch.baseIndex + i, i == batch.lastPos, batch.in[i], batch.inLengths[i], batch.out[i]);
+      }
+    }
+  }
+
+
+  /** Encrypts or decrypts a range of segments in a mapped file window, splitting the range across workers. */
+  private final class FileSegmentTask extends RecursiveAction
+  {
+
+    /** Serialization version. */
+    private static final long serialVersionUID = 1L;
+
+    /** Job containing the window. */
+    private final transient FileJob job;
+
+    /** First segment position in the window, inclusive. */
+    private final int lo;
+
+    /** Last segment position in the window, exclusive. */
+    private final int hi;
+
+
+    /**
+     * Creates a new task.
+     *
+     * @param  job  Job containing the window.
+     * @param  lo  First segment position in the window, inclusive.
+     * @param  hi  Last segment position in the window, exclusive.
+     */
+    FileSegmentTask(final FileJob job, final int lo, final int hi)
+    {
+      this.job = job;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+
+    @Override
+    protected void compute()
+    {
+      if (hi - lo > job.grain) {
+        final int mid = (lo + hi) >>> 1;
+        invokeAll(new FileSegmentTask(job, lo, mid), new FileSegmentTask(job, mid, hi));
+        return;
+      }
+      final SegmentProcessor processor = new SegmentProcessor(cipherSpec.newInstance(), job.mode, job.segmentKey);
+      final ByteBuffer window = job.window.duplicate();
+      final byte[] in = new byte[job.inSegmentSize];
+      final byte[] out = new byte[job.outSegmentSize];
+      for (int i = lo; i < hi; i++) {
+        final long index = job.baseIndex + i;
+        final int offset = i * job.inSegmentSize;
+        final int length = Math.min(job.inSegmentSize, window.limit() - offset);
+        window.position(offset);
+        window.get(in, 0, length);
+        final int n = processor.process(index, index == job.lastIndex, in, length, out);
+        write(job.out, ByteBuffer.wrap(out, 0, n), job.outStart + index * job.outSegmentSize);
+      }
+    }
+  }
+}
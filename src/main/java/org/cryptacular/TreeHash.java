@@ -0,0 +1,525 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.bouncycastle.crypto.Digest;
+import org.cryptacular.io.BufferPool;
+import org.cryptacular.io.FileResource;
+import org.cryptacular.io.Resource;
+import org.cryptacular.spec.DigestSpec;
+import org.cryptacular.spec.Spec;
+import org.cryptacular.util.StreamUtil;
+
+/**
+ * Computes a tree (Merkle) hash over data split into fixed-size leaves, which allows the leaves to be hashed in
+ * parallel. Files are memory mapped and their leaves hashed on a fork/join pool, so hashing large files is not limited
+ * to a single core.
+ *
+ * <p>The hash is computed with a digest <em>H</em> as follows, where <em>||</em> denotes concatenation:</p>
+ *
+ * <ul>
+ *   <li>The data is split into leaves of exactly {@link #getLeafSize()} bytes, except the final leaf, which holds
+ *   between 1 and leaf size bytes. Empty data consists of a single empty leaf.</li>
+ *   <li>Leaf - <em>H(0x00 || leaf data)</em></li>
+ *   <li>Node - <em>H(0x01 || left || right)</em> over adjacent pairs of the level below. A final node without a
+ *   sibling is promoted to the next level unchanged. Levels are combined until a single node remains.</li>
+ *   <li>Root - <em>H(0x02 || parameters || length || node)</em>, where parameters is the UTF-8 encoding of {@link
+ *   #getParameters()} and length is the data length in bytes as an 8-byte big-endian integer.</li>
+ * </ul>
+ *
+ * <p>The parameter string, e.g. <code>TreeHash/1/SHA-256/1048576</code>, names the format version, digest algorithm
+ * and leaf size. It is self-describing: verifiers obtain an equivalent instance from {@link #parse(String)}. Since the
+ * parameters are bound into the root, hashes computed with different parameters never collide.</p>
+ *
+ * <p>Instances of this class are thread safe.</p>
+ *
+ * @author  Middleware Services
+ */
+public class TreeHash
+{
+
+  /** Default leaf size in bytes. */
+  public static final int DEFAULT_LEAF_SIZE = 1 << 20;
+
+  /** Minimum leaf size in bytes. */
+  public static final int MIN_LEAF_SIZE = 1024;
+
+  /** Maximum leaf size in bytes. */
+  public static final int MAX_LEAF_SIZE = 1 << 30;
+
+  /** Name of the format in the parameter string. */
+  private static final String FORMAT = "TreeHash";
+
+  /** Format version in the parameter string. */
+  private static final int VERSION = 1;
+
+  /** Domain separation prefix of leaf hashes. */
+  private static final byte LEAF_PREFIX = 0;
+
+  /** Domain separation prefix of node hashes. */
+  private static final byte NODE_PREFIX = 1;
+
+  /** Domain separation prefix of the root hash. */
+  private static final byte ROOT_PREFIX = 2;
+
+  /** Maximum number of bytes of a file mapped into memory at once. */
+  private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+  /** Maximum number of bytes of a stream read into memory and hashed together. */
+  private static final int MAX_BATCH_SIZE = 1 << 26;
+
+  /** Number of bytes below which leaves are hashed by a single worker. */
+  private static final int MIN_TASK_SIZE = 1 << 20;
+
+  /** Digest specification. */
+  private final Spec<Digest> digestSpec;
+
+  /** Leaf size in bytes. */
+  private final int leafSize;
+
+  /** Pool that hashes leaves in parallel. */
+  private final ForkJoinPool pool;
+
+  /** Size of digest output in bytes. */
+  private final int digestSize;
+
+  /** Parameter string. */
+  private final String parameters;
+
+  /** UTF-8 encoding of the parameter string. */
+  private final byte[] parameterBytes;
+
+
+  /**
+   * Creates a new instance with {@link #DEFAULT_LEAF_SIZE} that hashes leaves on the common fork/join pool.
+   *
+   * @param  digestSpec  Digest specification.
+   */
+  public TreeHash(final Spec<Digest> digestSpec)
+  {
+    this(digestSpec, DEFAULT_LEAF_SIZE);
+  }
+
+
+  /**
+   * Creates a new instance that hashes leaves on the common fork/join pool.
+   *
+   * @param  digestSpec  Digest specification.
+   * @param  leafSize  Leaf size in bytes.
+   */
+  public TreeHash(final Spec<Digest> digestSpec, final int leafSize)
+  {
+    this(digestSpec, leafSize, ForkJoinPool.commonPool());
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  digestSpec  Digest specification.
+   * @param  leafSize  Leaf size in bytes.
+   * @param  pool  Pool that hashes leaves in parallel.
+   */
+  public TreeHash(final Spec<Digest> digestSpec, final int leafSize, final ForkJoinPool pool)
+  {
+    this.digestSpec = CryptUtil.assertNotNullArg(digestSpec, "Digest spec cannot be null");
+    this.pool = CryptUtil.assertNotNullArg(pool, "Pool cannot be null");
+    if (leafSize < MIN_LEAF_SIZE || leafSize > MAX_LEAF_SIZE) {
+      throw new IllegalArgumentException("Invalid leaf size " + leafSize);
+    }
+    this.leafSize = leafSize;
+    final Digest digest = digestSpec.newInstance();
+    this.digestSize = digest.getDigestSize();
+    this.parameters = FORMAT + '/' + VERSION + '/' + digest.getAlgorithmName() + '/' + leafSize;
+    this.parameterBytes = parameters.getBytes(StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Creates an instance from a parameter string produced by {@link #getParameters()}, which hashes leaves on the common
+   * fork/join pool.
+   *
+   * @param  parameters  Parameter string, e.g. <code>TreeHash/1/SHA-256/1048576</code>.
+   *
+   * @return  Tree hash instance that reproduces hashes computed with the given parameters.
+   *
+   * @throws  IllegalArgumentException  if the parameter string is invalid or names an unsupported format version.
+   */
+  public static TreeHash parse(final String parameters)
+  {
+    final String[] parts = CryptUtil.assertNotNullArg(parameters, "Parameters cannot be null").split("/");
+    if (parts.length != 4 || !FORMAT.equals(parts[0])) {
+      throw new IllegalArgumentException("Invalid tree hash parameters " + parameters);
+    }
+    if (!String.valueOf(VERSION).equals(parts[1])) {
+      throw new IllegalArgumentException("Unsupported tree hash version " + parts[1]);
+    }
+    final DigestSpec digestSpec;
+    if (parts[2].startsWith("SHA3-")) {
+      digestSpec = new DigestSpec("SHA3", parseInt(parts[2].substring(5), parameters));
+    } else {
+      digestSpec = new DigestSpec(parts[2]);
+    }
+    final TreeHash treeHash = new TreeHash(digestSpec, parseInt(parts[3], parameters));
+    if (!treeHash.getParameters().equals(parameters)) {
+      throw new IllegalArgumentException("Invalid tree hash parameters " + parameters);
+    }
+    return treeHash;
+  }
+
+
+  /** @return  Digest specification. */
+  public Spec<Digest> getDigestSpec()
+  {
+    return digestSpec;
+  }
+
+
+  /** @return  Leaf size in bytes. */
+  public int getLeafSize()
+  {
+    return leafSize;
+  }
+
+
+  /** @return  Self-describing parameter string, which is bound into every hash and accepted by {@link #parse}. */
+  public String getParameters()
+  {
+    return parameters;
+  }
+
+
+  /**
+   * Computes the tree hash of the given data.
+   *
+   * @param  data  Data to hash.
+   *
+   * @return  Tree hash.
+   */
+  public byte[] hash(final byte[] data)
+  {
+    CryptUtil.assertNotNullArg(data, "Data cannot be null");
+    final int leaves = leafCount(data.length);
+    final byte[] nodes = new byte[leaves * digestSize];
+    hashLeaves(ByteBuffer.wrap(data), nodes, 0, leaves);
+    return root(nodes, leaves, data.length);
+  }
+
+
+  /**
+   * Computes the tree hash of the data in the given stream. Leaves are read in batches that are hashed in parallel.
+   * The caller is responsible for closing the stream.
+   *
+   * @param  input  Input stream containing data to hash.
+   *
+   * @return  Tree hash.
+   *
+   * @throws  StreamException  on stream IO errors.
+   */
+  public byte[] hash(final InputStream input) throws StreamException
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    final int batchLeaves = Math.max(1, Math.min(pool.getParallelism() * 2, MAX_BATCH_SIZE / leafSize));
+    final byte[] batch = new byte[batchLeaves * leafSize];
+    byte[] nodes = new byte[batchLeaves * digestSize];
+    int leaves = 0;
+    long length = 0;
+    int n;
+    do {
+      n = readFully(input, batch);
+      if (n > 0 || leaves == 0) {
+        final int count = Math.max(1, (n + leafSize - 1) / leafSize);
+        if ((long) (leaves + count) * digestSize > Integer.MAX_VALUE - 8) {
+          throw new IllegalArgumentException("Too many leaves for leaf size " + leafSize);
+        }
+        if ((leaves + count) * digestSize > nodes.length) {
+          nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, (leaves + count) * digestSize));
+        }
+        hashLeaves(ByteBuffer.wrap(batch, 0, n), nodes, leaves, count);
+        leaves += count;
+        length += n;
+      }
+    } while (n == batch.length);
+    return root(nodes, leaves, length);
+  }
+
+
+  /**
+   * Computes the tree hash of the given file. The file is memory mapped and its leaves are hashed in parallel.
+   *
+   * @param  file  Path to file to hash.
+   *
+   * @return  Tree hash.
+   *
+   * @throws  StreamException  on IO errors.
+   */
+  public byte[] hash(final Path file) throws StreamException
+  {
+    CryptUtil.assertNotNullArg(file, "File cannot be null");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long length = channel.size();
+      final int leaves = leafCount(length);
+      final byte[] nodes = new byte[leaves * digestSize];
+      final int windowLeaves = Math.max(1, MAX_WINDOW_SIZE / leafSize);
+      for (int first = 0; first < leaves; first += windowLeaves) {
+        final int count = Math.min(windowLeaves, leaves - first);
+        final long offset = (long) first * leafSize;
+        final long size = Math.min((long) count * leafSize, length - offset);
+        final ByteBuffer window = size == 0
+          ? ByteBuffer.allocate(0) : channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        hashLeaves(window, nodes, first, count);
+      }
+      return root(nodes, leaves, length);
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+  }
+
+
+  /**
+   * Computes the tree hash of the given resource. {@link FileResource} is hashed with {@link #hash(Path)}; other
+   * resources are hashed with {@link #hash(InputStream)}.
+   *
+   * @param  resource  Resource to hash.
+   *
+   * @return  Tree hash.
+   *
+   * @throws  StreamException  on IO errors.
+   */
+  public byte[] hash(final Resource resource) throws StreamException
+  {
+    CryptUtil.assertNotNullArg(resource, "Resource cannot be null");
+    if (resource instanceof FileResource) {
+      return hash(((FileResource) resource).getFile().toPath());
+    }
+    try (InputStream input = resource.getInputStream()) {
+      return hash(input);
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return parameters;
+  }
+
+
+  /**
+   * Computes the number of leaves of data of the given length.
+   *
+   * @param  length  Data length in bytes.
+   *
+   * @return  Number of leaves.
+   */
+  private int leafCount(final long length)
+  {
+    final long leaves = length == 0 ? 1 : (length + leafSize - 1) / leafSize;
+    if (leaves * digestSize > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many leaves for leaf size " + leafSize);
+    }
+    return (int) leaves;
+  }
+
+
+  /**
+   * Hashes consecutive leaves, in parallel if they span more than {@link #MIN_TASK_SIZE} bytes.
+   *
+   * @param  data  Buffer positioned at the start of the first leaf, whose remaining bytes hold all leaves.
+   * @param  nodes  Receives leaf hashes.
+   * @param  first  Index of the first leaf in nodes.
+   * @param  count  Number of leaves.
+   */
+  private void hashLeaves(final ByteBuffer data, final byte[] nodes, final int first, final int count)
+  {
+    final int grain = Math.max(1, Math.max(
+      MIN_TASK_SIZE / leafSize, (count + pool.getParallelism() - 1) / pool.getParallelism()));
+    final LeafTask task = new LeafTask(data, nodes, first, 0, count, grain);
+    if (count <= grain) {
+      task.compute();
+    } else {
+      pool.invoke(task);
+    }
+  }
+
+
+  /**
+   * Combines leaf hashes into the root hash. The node array is overwritten.
+   *
+   * @param  nodes  Leaf hashes.
+   * @param  leaves  Number of leaves.
+   * @param  length  Data length in bytes.
+   *
+   * @return  Root hash.
+   */
+  private byte[] root(final byte[] nodes, final int leaves, final long length)
+  {
+    final Digest digest = digestSpec.newInstance();
+    int count = leaves;
+    while (count > 1) {
+      int next = 0;
+      for (int i = 0; i + 1 < count; i += 2) {
+        digest.update(NODE_PREFIX);
+        digest.update(nodes, i * digestSize, 2 * digestSize);
+        digest.doFinal(nodes, next++ * digestSize);
+      }
+      if (count % 2 == 1) {
+        System.arraycopy(nodes, (count - 1) * digestSize, nodes, next++ * digestSize, digestSize);
+      }
+      count = next;
+    }
+    digest.update(ROOT_PREFIX);
+    digest.update(parameterBytes, 0, parameterBytes.length);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      digest.update((byte) (length >>> shift));
+    }
+    digest.update(nodes, 0, digestSize);
+    final byte[] root = new byte[digestSize];
+    digest.doFinal(root, 0);
+    return root;
+  }
+
+
+  /**
+   * Reads from the stream until the buffer is full or the end of the stream is reached.
+   *
+   * @param  input  Input stream.
+   * @param  buffer  Buffer to fill.
+   *
+   * @return  Number of bytes read.
+   */
+  private static int readFully(final InputStream input, final byte[] buffer)
+  {
+    int total = 0;
+    try {
+      int n = 0;
+      while (total < buffer.length && n >= 0) {
+        n = input.read(buffer, total, buffer.length - total);
+        if (n > 0) {
+          total += n;
+        }
+      }
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+    return total;
+  }
+
+
+  /**
+   * Parses a decimal integer of a parameter string.
+   *
+   * @param  value  Integer value.
+   * @param  parameters  Parameter string.
+   *
+   * @return  Parsed integer.
+   */
+  private static int parseInt(final String value, final String parameters)
+  {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid tree hash parameters " + parameters, e);
+    }
+  }
+
+
+  /** Hashes a range of leaves, splitting it among workers. */
+  private final class LeafTask extends RecursiveAction
+  {
+
+    /** Serialization version. */
+    private static final long serialVersionUID = 1L;
+
+    /** Buffer positioned at the start of leaf 0 of the task group. */
+    private final transient ByteBuffer data;
+
+    /** Receives leaf hashes. */
+    private final byte[] nodes;
+
+    /** Index in nodes of leaf 0 of the task group. */
+    private final int base;
+
+    /** Index of the first leaf of this task, relative to base. */
+    private final int from;
+
+    /** Index of the last leaf of this task, exclusive, relative to base. */
+    private final int to;
+
+    /** Maximum number of leaves hashed by a single worker. */
+    private final int grain;
+
+
+    /**
+     * Creates a new task.
+     *
+     * @param  data  Buffer positioned at the start of leaf 0 of the task group.
+     * @param  nodes  Receives leaf hashes.
+     * @param  base  Index in nodes of leaf 0 of the task group.
+     * @param  from  Index of the first leaf of this task.
+     * @param  to  Index of the last leaf of this task, exclusive.
+     * @param  grain  Maximum number of leaves hashed by a single worker.
+     */
+    LeafTask(
+      final ByteBuffer data,
+      final byte[] nodes,
+      final int base,
+      final int from,
+      final int to,
+      final int grain)
+    {
+      this.data = data;
+      this.nodes = nodes;
+      this.base = base;
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+    }
+
+
+    @Override
+    protected void compute()
+    {
+      if (to - from > grain) {
+        final int mid = (from + to) >>> 1;
+        invokeAll(new LeafTask(data, nodes, base, from, mid, grain), new LeafTask(data, nodes, base, mid, to, grain));
+        return;
+      }
+      final Digest digest = digestSpec.newInstance();
+      final byte[] buffer = data.hasArray() ? null : BufferPool.acquire(StreamUtil.BUFFER_SIZE);
+      try {
+        for (int i = from; i < to; i++) {
+          final int start = data.position() + i * leafSize;
+          // Long arithmetic, since the last leaf may end past the largest int for data near 2 GiB
+          final int end = (int) Math.min((long) start + leafSize, data.limit());
+          digest.update(LEAF_PREFIX);
+          if (buffer == null) {
+            digest.update(data.array(), data.arrayOffset() + start, end - start);
+          } else {
+            final ByteBuffer leaf = data.duplicate();
+            leaf.limit(end).position(start);
+            while (leaf.hasRemaining()) {
+              final int n = Math.min(leaf.remaining(), StreamUtil.BUFFER_SIZE);
+              leaf.get(buffer, 0, n);
+              digest.update(buffer, 0, n);
+            }
+          }
+          digest.doFinal(nodes, (base + i) * digestSize);
+        }
+      } finally {
+        BufferPool.release(buffer, StreamUtil.BUFFER_SIZE);
+      }
+    }
+  }
+}
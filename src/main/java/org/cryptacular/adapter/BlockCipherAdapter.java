@@ -1,7 +1,11 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.adapter;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.cryptacular.CryptoException;
+import org.cryptacular.io.BufferPool;
+import org.cryptacular.util.StreamUtil;
 
 /**
  * Adapter for all block cipher types.
@@ -32,4 +36,122 @@ public interface BlockCipherAdapter extends CipherAdapter
    * @throws  CryptoException  on underlying cipher finalization errors.
    */
   int doFinal(byte[] out, int outOff) throws CryptoException;
+
+
+  /**
+   * Processes all remaining bytes of the input buffer and writes the output of the cipher at the current position of
+   * the output buffer. Heap buffers are processed in place through their backing arrays; data in direct or read-only
+   * buffers is staged through pooled arrays of {@link StreamUtil#BUFFER_SIZE} bytes, so no allocation proportional to
+   * the input takes place.
+   *
+   * @param  in  Input buffer, whose position is advanced to its limit.
+   * @param  out  Output buffer, whose position is advanced by the number of bytes written. It must have at least
+   *              {@link #getOutputSize(int)} bytes remaining for the input length.
+   *
+   * @return  Number of bytes written to output buffer.
+   *
+   * @throws  CryptoException  on underlying cipher data handling errors.
+   */
+  default int processBytes(final ByteBuffer in, final ByteBuffer out) throws CryptoException
+  {
+    if (in.hasArray() && out.hasArray()) {
+      final int n = processBytes(
+        in.array(), in.arrayOffset() + in.position(), in.remaining(), out.array(), out.arrayOffset() + out.position());
+      in.position(in.limit());
+      out.position(out.position() + n);
+      return n;
+    }
+    final int inSize = Math.min(in.remaining(), StreamUtil.BUFFER_SIZE);
+    final int outSize = getOutputSize(StreamUtil.BUFFER_SIZE);
+    final byte[] inBuf = in.hasArray() ? null : BufferPool.acquire(inSize);
+    final byte[] outBuf = BufferPool.acquire(outSize);
+    int total = 0;
+    try {
+      while (in.hasRemaining()) {
+        final int len = Math.min(in.remaining(), StreamUtil.BUFFER_SIZE);
+        final int n;
+        if (inBuf == null) {
+          n = processBytes(in.array(), in.arrayOffset() + in.position(), len, outBuf, 0);
+          in.position(in.position() + len);
+        } else {
+          in.get(inBuf, 0, len);
+          n = processBytes(inBuf, 0, len, outBuf, 0);
+        }
+        out.put(outBuf, 0, n);
+        total += n;
+      }
+    } finally {
+      BufferPool.release(outBuf, outSize);
+      BufferPool.release(inBuf, inSize);
+    }
+    return total;
+  }
+
+
+  /**
+   * Finish the encryption/decryption operation (e.g. apply padding) and writes the final output of the cipher at the
+   * current position of the output buffer.
+   *
+   * @param  out  Output buffer, whose position is advanced by the number of bytes written.
+   *
+   * @return  Number of bytes written to output buffer.
+   *
+   * @throws  CryptoException  on underlying cipher finalization errors.
+   */
+  default int doFinal(final ByteBuffer out) throws CryptoException
+  {
+    if (out.hasArray()) {
+      final int n = doFinal(out.array(), out.arrayOffset() + out.position());
+      out.position(out.position() + n);
+      return n;
+    }
+    final int outSize = getOutputSize(0);
+    final byte[] outBuf = BufferPool.acquire(outSize);
+    try {
+      final int n = doFinal(outBuf, 0);
+      out.put(outBuf, 0, n);
+      return n;
+    } finally {
+      BufferPool.release(outBuf, outSize);
+    }
+  }
+
+
+  /**
+   * Processes all remaining bytes of the input buffer and finishes the operation, as {@link #processBytes(ByteBuffer,
+   * ByteBuffer)} followed by {@link #doFinal(ByteBuffer)}. If either step fails, e.g. because the authentication tag
+   * of AEAD ciphertext does not verify, the bytes the cipher may have written to the output buffer are zeroed and the
+   * positions of both buffers are restored, so no unauthenticated plaintext is left in the output buffer.
+   *
+   * @param  in  Input buffer, whose position is advanced to its limit on success.
+   * @param  out  Output buffer, whose position is advanced by the number of bytes written on success. It must have at
+   *              least {@link #getOutputSize(int)} bytes remaining for the input length.
+   *
+   * @return  Number of bytes written to output buffer.
+   *
+   * @throws  CryptoException  on underlying cipher data handling or finalization errors.
+   */
+  default int processAll(final ByteBuffer in, final ByteBuffer out) throws CryptoException
+  {
+    final int inStart = in.position();
+    final int outStart = out.position();
+    final int outEnd = outStart + Math.min(out.remaining(), getOutputSize(in.remaining()));
+    try {
+      final int n = processBytes(in, out);
+      return n + doFinal(out);
+    } catch (RuntimeException e) {
+      // Ciphers may write output beyond the buffer position before they fail
+      final int end = Math.max(outEnd, out.position());
+      if (out.hasArray()) {
+        Arrays.fill(out.array(), out.arrayOffset() + outStart, out.arrayOffset() + end, (byte) 0);
+      } else {
+        for (int i = outStart; i < end; i++) {
+          out.put(i, (byte) 0);
+        }
+      }
+      out.position(outStart);
+      in.position(inStart);
+      throw e;
+    }
+  }
 }
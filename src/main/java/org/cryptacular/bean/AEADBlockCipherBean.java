@@ -1,8 +1,11 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.bean;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
 import javax.crypto.SecretKey;
 import org.bouncycastle.crypto.modes.AEADBlockCipher;
@@ -10,13 +13,24 @@ import org.bouncycastle.crypto.params.AEADParameters;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.cryptacular.CiphertextHeader;
 import org.cryptacular.CryptUtil;
+import org.cryptacular.CryptoException;
+import org.cryptacular.SegmentedAEADCipher;
 import org.cryptacular.adapter.AEADBlockCipherAdapter;
+import org.cryptacular.adapter.BlockCipherAdapter;
 import org.cryptacular.generator.Nonce;
+import org.cryptacular.io.DecryptingInputStream;
+import org.cryptacular.io.EncryptingOutputStream;
 import org.cryptacular.spec.Spec;
+import org.cryptacular.util.CipherUtil;
+import org.cryptacular.util.StreamUtil;
 
 /**
  * Cipher bean that performs encryption with a block cipher in AEAD mode (e.g. GCM, CCM).
  *
+ * <p>When configured with a segment size, stream encryption produces the segmented format described in {@link
+ * SegmentedAEADCipher}, where segments are encrypted in parallel. Decryption supports both segmented and single-pass
+ * ciphertext regardless of configuration.</p>
+ *
  * @author  Middleware Services
  */
 public class AEADBlockCipherBean extends AbstractBlockCipherBean
@@ -28,6 +42,12 @@ public class AEADBlockCipherBean extends AbstractBlockCipherBean
   /** AEAD block cipher specification (algorithm, mode, padding). */
   private final Spec<AEADBlockCipher> blockCipherSpec;
 
+  /** Plaintext bytes per segment of stream ciphertext, or 0 for single-pass stream ciphertext. */
+  private final int segmentSize;
+
+  /** Processes segmented ciphertext. */
+  private final SegmentedAEADCipher segmentedCipher;
+
 
   /**
    * Creates a new AEAD block cipher bean.
@@ -45,8 +65,109 @@ public class AEADBlockCipherBean extends AbstractBlockCipherBean
     final String keyPassword,
     final Nonce nonce)
   {
-    super(keyStore, keyAlias, keyPassword, nonce);
+    this(blockCipherSpec, keyStore, keyAlias, keyPassword, nonce, 0);
+  }
+
+
+  /**
+   * Creates a new AEAD block cipher bean that produces segmented ciphertext for stream encryption.
+   *
+   * @param  blockCipherSpec  Block cipher specification.
+   * @param  keyStore  Key store containing encryption key.
+   * @param  keyAlias  Name of encryption key entry in key store.
+   * @param  keyPassword  Password used to decrypt key entry in keystore.
+   * @param  nonce  Nonce/IV generator.
+   * @param  segmentSize  Plaintext bytes per segment, e.g. {@link SegmentedAEADCipher#DEFAULT_SEGMENT_SIZE}, or 0 to
+   *                      produce single-pass ciphertext.
+   */
+  public AEADBlockCipherBean(
+    final Spec<AEADBlockCipher> blockCipherSpec,
+    final KeyStore keyStore,
+    final String keyAlias,
+    final String keyPassword,
+    final Nonce nonce,
+    final int segmentSize)
+  {
+    this(blockCipherSpec, keyStore, keyAlias, keyPassword, nonce, segmentSize, new KeyedCipherPool<>());
+  }
+
+
+  /**
+   * Creates a new AEAD block cipher bean with the given pool of keyed cipher engines.
+   *
+   * @param  blockCipherSpec  Block cipher specification.
+   * @param  keyStore  Key store containing encryption key.
+   * @param  keyAlias  Name of encryption key entry in key store.
+   * @param  keyPassword  Password used to decrypt key entry in keystore.
+   * @param  nonce  Nonce/IV generator.
+   * @param  segmentSize  Plaintext bytes per segment, e.g. {@link SegmentedAEADCipher#DEFAULT_SEGMENT_SIZE}, or 0 to
+   *                      produce single-pass ciphertext.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   */
+  public AEADBlockCipherBean(
+    final Spec<AEADBlockCipher> blockCipherSpec,
+    final KeyStore keyStore,
+    final String keyAlias,
+    final String keyPassword,
+    final Nonce nonce,
+    final int segmentSize,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool)
+  {
+    super(keyStore, keyAlias, keyPassword, nonce, cipherPool);
+    this.blockCipherSpec = CryptUtil.assertNotNullArg(blockCipherSpec, "Block cipher spec cannot be null");
+    this.segmentSize = checkSegmentSize(segmentSize);
+    this.segmentedCipher = new SegmentedAEADCipher(blockCipherSpec);
+  }
+
+
+  /**
+   * Creates a new AEAD block cipher bean that obtains keys from the given provider.
+   *
+   * @param  blockCipherSpec  Block cipher specification.
+   * @param  keyProvider  Source of symmetric keys, typically a {@link CachingKeyProvider}.
+   * @param  keyAlias  Key name of encryption key.
+   * @param  nonce  Nonce/IV generator.
+   * @param  segmentSize  Plaintext bytes per segment, e.g. {@link SegmentedAEADCipher#DEFAULT_SEGMENT_SIZE}, or 0 to
+   *                      produce single-pass ciphertext.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   */
+  public AEADBlockCipherBean(
+    final Spec<AEADBlockCipher> blockCipherSpec,
+    final KeyProvider keyProvider,
+    final String keyAlias,
+    final Nonce nonce,
+    final int segmentSize,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool)
+  {
+    this(blockCipherSpec, keyProvider, keyAlias, nonce, segmentSize, cipherPool, StreamUtil.BUFFER_SIZE);
+  }
+
+
+  /**
+   * Creates a new AEAD block cipher bean that obtains keys from the given provider.
+   *
+   * @param  blockCipherSpec  Block cipher specification.
+   * @param  keyProvider  Source of symmetric keys, typically a {@link CachingKeyProvider}.
+   * @param  keyAlias  Key name of encryption key.
+   * @param  nonce  Nonce/IV generator.
+   * @param  segmentSize  Plaintext bytes per segment, e.g. {@link SegmentedAEADCipher#DEFAULT_SEGMENT_SIZE}, or 0 to
+   *                      produce single-pass ciphertext.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   * @param  chunkSize  Number of bytes read from the input stream at once by stream operations.
+   */
+  public AEADBlockCipherBean(
+    final Spec<AEADBlockCipher> blockCipherSpec,
+    final KeyProvider keyProvider,
+    final String keyAlias,
+    final Nonce nonce,
+    final int segmentSize,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool,
+    final int chunkSize)
+  {
+    super(keyProvider, keyAlias, nonce, cipherPool, chunkSize);
     this.blockCipherSpec = CryptUtil.assertNotNullArg(blockCipherSpec, "Block cipher spec cannot be null");
+    this.segmentSize = checkSegmentSize(segmentSize);
+    this.segmentedCipher = new SegmentedAEADCipher(blockCipherSpec);
   }
 
 
@@ -57,9 +178,24 @@ public class AEADBlockCipherBean extends AbstractBlockCipherBean
   }
 
 
+  /** @return  Plaintext bytes per segment of stream ciphertext, or 0 for single-pass stream ciphertext. */
+  public int getSegmentSize()
+  {
+    return segmentSize;
+  }
+
+
   @Override
   public void encrypt(final InputStream input, final OutputStream output)
   {
+    if (segmentSize > 0) {
+      CryptUtil.assertNotNullArg(input, "Input cannot be null");
+      CryptUtil.assertNotNullArg(output, "Output cannot be null");
+      final CiphertextHeader header = new CiphertextHeader(
+        getNonce().generate(), resolveKeyAlias(), segmentSize, this::lookupKey);
+      segmentedCipher.encrypt(header, lookupKey(header.getKeyName()), input, output);
+      return;
+    }
     if (blockCipherSpec.toString().endsWith("CCM")) {
       throw new UnsupportedOperationException("CCM mode ciphers do not support chunked encryption.");
     }
@@ -69,25 +205,175 @@ public class AEADBlockCipherBean extends AbstractBlockCipherBean
 
   @Override
   public void decrypt(final InputStream input, final OutputStream output)
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    final CiphertextHeader header = CipherUtil.decodeHeader(input, this::lookupKey);
+    if (header.isSegmented()) {
+      segmentedCipher.decrypt(header, lookupKey(header.getKeyName()), input, output);
+      return;
+    }
+    if (blockCipherSpec.toString().endsWith("CCM")) {
+      throw new UnsupportedOperationException("CCM mode ciphers do not support chunked decryption.");
+    }
+    process(header, false, input, output);
+  }
+
+
+  /**
+   * Creates an output stream that encrypts the data written to it. The stream always produces single-pass ciphertext
+   * regardless of {@link #getSegmentSize()}, which the byte array and stream decryption methods accept.
+   *
+   * @param  output  Output stream that receives the header and ciphertext.
+   *
+   * @return  Encrypting output stream.
+   */
+  @Override
+  public EncryptingOutputStream newEncryptingStream(final OutputStream output)
+  {
+    if (blockCipherSpec.toString().endsWith("CCM")) {
+      throw new UnsupportedOperationException("CCM mode ciphers do not support chunked encryption.");
+    }
+    return super.newEncryptingStream(output);
+  }
+
+
+  /**
+   * Creates an input stream that decrypts single-pass ciphertext as it is read. Segmented ciphertext must be decrypted
+   * with {@link #decrypt(InputStream, OutputStream)}.
+   *
+   * @param  input  Input stream positioned at the start of the ciphertext header.
+   *
+   * @return  Decrypting input stream.
+   */
+  @Override
+  public DecryptingInputStream newDecryptingStream(final InputStream input)
   {
     if (blockCipherSpec.toString().endsWith("CCM")) {
       throw new UnsupportedOperationException("CCM mode ciphers do not support chunked decryption.");
     }
-    super.decrypt(input, output);
+    return super.newDecryptingStream(input);
+  }
+
+
+  @Override
+  protected byte[] process(final CiphertextHeader header, final boolean mode, final byte[] input)
+  {
+    if (header.isSegmented()) {
+      final int length = input.length - header.getLength();
+      final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(length, 0));
+      segmentedCipher.decrypt(
+        header,
+        lookupKey(header.getKeyName()),
+        new ByteArrayInputStream(input, header.getLength(), length),
+        output);
+      return output.toByteArray();
+    }
+    return super.process(header, mode, input);
+  }
+
+
+  @Override
+  protected int process(
+    final CiphertextHeader header,
+    final boolean mode,
+    final ByteBuffer input,
+    final ByteBuffer output)
+  {
+    assertNotSegmented(header);
+    return super.process(header, mode, input, output);
+  }
+
+
+  /**
+   * Computes the output size from the length of the authentication tag, without initializing a cipher engine. Sizes
+   * are probed with headers whose nonce is not unique, so a pooled GCM engine initialized with such a header would
+   * reject the next probe as nonce reuse.
+   *
+   * @param  header  Ciphertext header.
+   * @param  mode  True for encryption; false for decryption.
+   * @param  length  Length of input data, excluding any header.
+   *
+   * @return  Number of bytes produced by the cipher.
+   */
+  @Override
+  protected int getOutputSize(final CiphertextHeader header, final boolean mode, final int length)
+  {
+    assertNotSegmented(header);
+    final int tagSize = MAC_SIZE_BITS / 8;
+    return mode ? length + tagSize : Math.max(length - tagSize, 0);
   }
 
 
   @Override
   protected AEADBlockCipherAdapter newCipher(final CiphertextHeader header, final boolean mode)
   {
-    final AEADBlockCipher cipher = blockCipherSpec.newInstance();
     final SecretKey key = lookupKey(header.getKeyName());
-    final AEADParameters params = new AEADParameters(
-      new KeyParameter(key.getEncoded()),
-      MAC_SIZE_BITS,
-      header.getNonce(),
-      header.encode());
-    cipher.init(mode, params);
-    return new AEADBlockCipherAdapter(cipher);
+    final BlockCipherAdapter pooled = borrowCipher(header, mode);
+    final KeyedAdapter cipher;
+    final KeyParameter keyParam;
+    if (pooled instanceof KeyedAdapter && key.equals(((KeyedAdapter) pooled).key)) {
+      // Reuse the key schedule of the pooled engine
+      cipher = (KeyedAdapter) pooled;
+      keyParam = null;
+    } else {
+      cipher = new KeyedAdapter(blockCipherSpec.newInstance(), key);
+      keyParam = new KeyParameter(key.getEncoded());
+    }
+    cipher.init(mode, new AEADParameters(keyParam, MAC_SIZE_BITS, header.getNonce(), header.encode()));
+    return cipher;
+  }
+
+
+  /**
+   * Validates the segment size of stream ciphertext.
+   *
+   * @param  segmentSize  Plaintext bytes per segment, or 0 for single-pass ciphertext.
+   *
+   * @return  Segment size.
+   */
+  private static int checkSegmentSize(final int segmentSize)
+  {
+    if (segmentSize != 0 &&
+        (segmentSize < SegmentedAEADCipher.MIN_SEGMENT_SIZE || segmentSize > SegmentedAEADCipher.MAX_SEGMENT_SIZE)) {
+      throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+    }
+    return segmentSize;
+  }
+
+
+  /**
+   * Ensures the given header does not describe segmented ciphertext, which is only supported by the byte array and
+   * stream methods.
+   *
+   * @param  header  Ciphertext header.
+   */
+  private static void assertNotSegmented(final CiphertextHeader header)
+  {
+    if (header.isSegmented()) {
+      throw new CryptoException("Segmented ciphertext must be decrypted with byte array or stream methods");
+    }
+  }
+
+
+  /** AEAD cipher adapter that records the key its engine was initialized with. */
+  private static final class KeyedAdapter extends AEADBlockCipherAdapter
+  {
+
+    /** Key used to initialize the engine. */
+    private final SecretKey key;
+
+
+    /**
+     * Creates a new instance.
+     *
+     * @param  delegate  Uninitialized AEAD engine.
+     * @param  key  Key that will be used to initialize the engine.
+     */
+    KeyedAdapter(final AEADBlockCipher delegate, final SecretKey key)
+    {
+      super(delegate);
+      this.key = key;
+    }
   }
 }
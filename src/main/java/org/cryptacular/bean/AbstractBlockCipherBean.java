@@ -4,12 +4,16 @@ package org.cryptacular.bean;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
 import org.cryptacular.CiphertextHeader;
 import org.cryptacular.CryptUtil;
 import org.cryptacular.StreamException;
 import org.cryptacular.adapter.BlockCipherAdapter;
 import org.cryptacular.generator.Nonce;
+import org.cryptacular.io.BufferPool;
+import org.cryptacular.io.DecryptingInputStream;
+import org.cryptacular.io.EncryptingOutputStream;
 import org.cryptacular.util.StreamUtil;
 
 /**
@@ -20,9 +24,15 @@ import org.cryptacular.util.StreamUtil;
 public abstract class AbstractBlockCipherBean extends AbstractCipherBean
 {
 
+  /** Pool of keyed cipher engines, or null to create a new engine for every operation. */
+  private final KeyedCipherPool<BlockCipherAdapter> cipherPool;
+
+  /** Number of bytes read from the input stream at once by stream operations. */
+  private final int chunkSize;
+
 
   /**
-   * Creates a new abstract block cipher bean.
+   * Creates a new abstract block cipher bean with a default {@link KeyedCipherPool}.
    *
    * @param  keyStore  Key store containing encryption key.
    * @param  keyAlias  Name of encryption key entry in key store.
@@ -34,8 +44,118 @@ public abstract class AbstractBlockCipherBean extends AbstractCipherBean
     final String keyAlias,
     final String keyPassword,
     final Nonce nonce)
+  {
+    this(keyStore, keyAlias, keyPassword, nonce, new KeyedCipherPool<>());
+  }
+
+
+  /**
+   * Creates a new abstract block cipher bean.
+   *
+   * @param  keyStore  Key store containing encryption key.
+   * @param  keyAlias  Name of encryption key entry in key store.
+   * @param  keyPassword  Password used to decrypt key entry in keystore.
+   * @param  nonce  Nonce/IV generator.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   */
+  public AbstractBlockCipherBean(
+    final KeyStore keyStore,
+    final String keyAlias,
+    final String keyPassword,
+    final Nonce nonce,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool)
   {
     super(keyStore, keyAlias, keyPassword, nonce);
+    this.cipherPool = cipherPool;
+    this.chunkSize = StreamUtil.BUFFER_SIZE;
+  }
+
+
+  /**
+   * Creates a new abstract block cipher bean that obtains keys from the given provider.
+   *
+   * @param  keyProvider  Source of symmetric keys, typically a {@link CachingKeyProvider}.
+   * @param  keyAlias  Key name of encryption key.
+   * @param  nonce  Nonce/IV generator.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   */
+  public AbstractBlockCipherBean(
+    final KeyProvider keyProvider,
+    final String keyAlias,
+    final Nonce nonce,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool)
+  {
+    this(keyProvider, keyAlias, nonce, cipherPool, StreamUtil.BUFFER_SIZE);
+  }
+
+
+  /**
+   * Creates a new abstract block cipher bean that obtains keys from the given provider.
+   *
+   * @param  keyProvider  Source of symmetric keys, typically a {@link CachingKeyProvider}.
+   * @param  keyAlias  Key name of encryption key.
+   * @param  nonce  Nonce/IV generator.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   * @param  chunkSize  Number of bytes read from the input stream at once by stream operations.
+   */
+  public AbstractBlockCipherBean(
+    final KeyProvider keyProvider,
+    final String keyAlias,
+    final Nonce nonce,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool,
+    final int chunkSize)
+  {
+    super(keyProvider, keyAlias, nonce);
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be greater than 0");
+    }
+    this.cipherPool = cipherPool;
+    this.chunkSize = chunkSize;
+  }
+
+
+  /** @return  Pool of keyed cipher engines, or null if pooling is disabled. */
+  public KeyedCipherPool<BlockCipherAdapter> getCipherPool()
+  {
+    return cipherPool;
+  }
+
+
+  /** @return  Number of bytes read from the input stream at once by stream operations. */
+  public int getChunkSize()
+  {
+    return chunkSize;
+  }
+
+
+  /**
+   * Creates an output stream that encrypts the data written to it. The underlying stream receives the same ciphertext
+   * as {@link #encrypt(InputStream, OutputStream)} produces, and the returned stream must be closed to finalize it.
+   *
+   * @param  output  Output stream that receives the header and ciphertext.
+   *
+   * @return  Encrypting output stream.
+   */
+  public EncryptingOutputStream newEncryptingStream(final OutputStream output)
+  {
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    final CiphertextHeader header = header();
+    return new EncryptingOutputStream(output, header, newCipher(header, true), chunkSize);
+  }
+
+
+  /**
+   * Creates an input stream that decrypts ciphertext produced by this bean as it is read. The header is decoded on the
+   * first read.
+   *
+   * @param  input  Input stream positioned at the start of the ciphertext header.
+   *
+   * @return  Decrypting input stream.
+   */
+  public DecryptingInputStream newDecryptingStream(final InputStream input)
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    return new DecryptingInputStream(input, this::lookupKey, header -> newCipher(header, false), chunkSize);
   }
 
 
@@ -67,6 +187,7 @@ public abstract class AbstractBlockCipherBean extends AbstractCipherBean
     }
     outOff += cipher.processBytes(input, inOff, length, output, outOff);
     outOff += cipher.doFinal(output, outOff);
+    releaseCipher(header, mode, cipher);
     if (outOff < output.length) {
       final byte[] copy = new byte[outOff];
       System.arraycopy(output, 0, copy, 0, outOff);
@@ -84,27 +205,86 @@ public abstract class AbstractBlockCipherBean extends AbstractCipherBean
     final OutputStream output)
   {
     final BlockCipherAdapter cipher = newCipher(header, mode);
-    final int outSize = cipher.getOutputSize(StreamUtil.CHUNK_SIZE);
-    final byte[] outBuf = new byte[Math.max(outSize, StreamUtil.CHUNK_SIZE)];
-    StreamUtil.pipeAll(
-      input,
-      output,
-      (in, inOff, len, out) -> {
-        final int n = cipher.processBytes(in, inOff, len, outBuf, 0);
-        out.write(outBuf, 0, n);
-      });
-
-    final int n = cipher.doFinal(outBuf, 0);
+    final int outSize = cipher.getOutputSize(chunkSize);
+    final int outBufSize = Math.max(outSize, chunkSize);
+    final byte[] outBuf = BufferPool.acquire(outBufSize);
     try {
+      StreamUtil.pipeAll(
+        input,
+        output,
+        (in, inOff, len, out) -> {
+          final int n = cipher.processBytes(in, inOff, len, outBuf, 0);
+          out.write(outBuf, 0, n);
+        },
+        chunkSize);
+
+      final int n = cipher.doFinal(outBuf, 0);
       output.write(outBuf, 0, n);
     } catch (IOException e) {
       throw new StreamException(e);
+    } finally {
+      BufferPool.release(outBuf, outBufSize);
+    }
+    releaseCipher(header, mode, cipher);
+  }
+
+
+  @Override
+  protected int process(
+    final CiphertextHeader header,
+    final boolean mode,
+    final ByteBuffer input,
+    final ByteBuffer output)
+  {
+    CryptUtil.assertNotNullArg(header, "Header cannot be null");
+    final BlockCipherAdapter cipher = newCipher(header, mode);
+    final int length = mode ? input.remaining() : input.remaining() - header.getLength();
+    final int outSize = (mode ? header.getLength() : 0) + cipher.getOutputSize(length);
+    if (output.remaining() < outSize) {
+      throw new IllegalArgumentException(
+        "Output buffer has " + output.remaining() + " bytes remaining but " + outSize + " are required");
+    }
+    final int inStart = input.position();
+    final int start = output.position();
+    if (mode) {
+      header.encode(output);
+    } else {
+      input.position(inStart + header.getLength());
+    }
+    try {
+      // Failed decryption leaves no unauthenticated plaintext in the output
+      cipher.processAll(input, output);
+    } catch (RuntimeException e) {
+      input.position(inStart);
+      output.position(start);
+      throw e;
     }
+    releaseCipher(header, mode, cipher);
+    return output.position() - start;
+  }
+
+
+  /**
+   * Gets the size of the cipher output from a cipher initialized with the given header. The cipher is not returned to
+   * the pool, since sizes are probed with headers that carry a placeholder nonce; subclasses should compute the size
+   * without initializing an engine where possible.
+   *
+   * @param  header  Ciphertext header.
+   * @param  mode  True for encryption; false for decryption.
+   * @param  length  Length of input data, excluding any header.
+   *
+   * @return  Maximum number of bytes produced by the cipher.
+   */
+  @Override
+  protected int getOutputSize(final CiphertextHeader header, final boolean mode, final int length)
+  {
+    return newCipher(header, mode).getOutputSize(length);
   }
 
 
   /**
-   * Creates a new cipher adapter instance suitable for the block cipher used by this class.
+   * Creates a new cipher adapter instance suitable for the block cipher used by this class. Implementations should
+   * initialize an engine taken from {@link #borrowCipher(CiphertextHeader, boolean)} when one is available.
    *
    * @param  header  Ciphertext header.
    * @param  mode  True for encryption; false for decryption.
@@ -112,4 +292,34 @@ public abstract class AbstractBlockCipherBean extends AbstractCipherBean
    * @return  Block cipher adapter that wraps an initialized block cipher that is ready for use in the given mode.
    */
   protected abstract BlockCipherAdapter newCipher(CiphertextHeader header, boolean mode);
+
+
+  /**
+   * Takes an idle engine that was keyed for the key named in the header from the pool.
+   *
+   * @param  header  Ciphertext header.
+   * @param  mode  True for encryption; false for decryption.
+   *
+   * @return  Reset cipher adapter that needs to be initialized with a new nonce/IV, or null if none is available.
+   */
+  protected BlockCipherAdapter borrowCipher(final CiphertextHeader header, final boolean mode)
+  {
+    return cipherPool != null ? cipherPool.borrow(header.getKeyName(), mode) : null;
+  }
+
+
+  /**
+   * Returns a cipher adapter created by {@link #newCipher(CiphertextHeader, boolean)} to the pool after it has been
+   * used successfully. Engines that failed are not returned.
+   *
+   * @param  header  Ciphertext header.
+   * @param  mode  True for encryption; false for decryption.
+   * @param  cipher  Cipher adapter.
+   */
+  protected void releaseCipher(final CiphertextHeader header, final boolean mode, final BlockCipherAdapter cipher)
+  {
+    if (cipherPool != null) {
+      cipherPool.release(header.getKeyName(), mode, cipher);
+    }
+  }
 }
@@ -4,8 +4,12 @@ package org.cryptacular.bean;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.security.Key;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import javax.crypto.SecretKey;
 import org.cryptacular.CiphertextHeader;
 import org.cryptacular.CryptUtil;
@@ -24,14 +28,14 @@ import org.cryptacular.util.CipherUtil;
 public abstract class AbstractCipherBean implements CipherBean
 {
 
-  /** Keystore containing symmetric key(s). */
+  /** Keystore containing symmetric key(s), or null if keys are provided by a custom {@link KeyProvider}. */
   private final KeyStore keyStore;
 
-  /** Keystore entry for alias of current key. */
-  private final String keyAlias;
+  /** Source of symmetric keys. */
+  private final KeyProvider keyProvider;
 
-  /** Password on private key entry. */
-  private final String keyPassword;
+  /** Key name of current key, which may be resolved to a versioned alias by the {@link #keyProvider}. */
+  private final String keyAlias;
 
   /** Nonce generator. */
   private final Nonce nonce;
@@ -43,6 +47,10 @@ public abstract class AbstractCipherBean implements CipherBean
    * example, key rollover where some existing ciphertexts have headers specifying a different key. In general all keys
    * used for outstanding ciphertexts should be contained in the keystore.
    *
+   * <p>Keys are read from the keystore on every operation, so changes to the keystore take effect immediately. Use
+   * {@link #AbstractCipherBean(KeyProvider, String, Nonce)} with a {@link CachingKeyProvider} to avoid reading the
+   * keystore on every operation.</p>
+   *
    * @param  keyStore  Key store containing encryption key.
    * @param  keyAlias  Name of encryption key entry in key store.
    * @param  keyPassword  Password used to decrypt key entry in keystore.
@@ -51,19 +59,43 @@ public abstract class AbstractCipherBean implements CipherBean
   public AbstractCipherBean(final KeyStore keyStore, final String keyAlias, final String keyPassword, final Nonce nonce)
   {
     this.keyStore = CryptUtil.assertNotNullArg(keyStore, "Keystore cannot be null");
+    this.keyProvider = new KeyStoreKeyProvider(keyStore, keyPassword);
+    this.keyAlias = keyAlias;
+    this.nonce = nonce;
+  }
+
+
+  /**
+   * Creates a new abstract cipher bean that obtains keys from the given provider. The provider resolves the given key
+   * name to the alias of the current encryption key, and it must provide the keys of all outstanding ciphertexts.
+   *
+   * @param  keyProvider  Source of symmetric keys, typically a {@link CachingKeyProvider}.
+   * @param  keyAlias  Key name of encryption key.
+   * @param  nonce  Nonce/IV generator.
+   */
+  public AbstractCipherBean(final KeyProvider keyProvider, final String keyAlias, final Nonce nonce)
+  {
+    this.keyStore = null;
+    this.keyProvider = CryptUtil.assertNotNullArg(keyProvider, "Key provider cannot be null");
     this.keyAlias = keyAlias;
-    this.keyPassword = keyPassword;
     this.nonce = nonce;
   }
 
 
-  /** @return  Keystore that contains the {@link SecretKey}. */
+  /** @return  Keystore that contains the {@link SecretKey}, or null if keys are provided by a custom provider. */
   public KeyStore getKeyStore()
   {
     return keyStore;
   }
 
 
+  /** @return  Source of symmetric keys. */
+  public KeyProvider getKeyProvider()
+  {
+    return keyProvider;
+  }
+
+
   /** @return  Alias that specifies the {@link KeyStore} entry containing the {@link SecretKey}. */
   public String getKeyAlias()
   {
@@ -100,6 +132,24 @@ public abstract class AbstractCipherBean implements CipherBean
   }
 
 
+  @Override
+  public int encrypt(final ByteBuffer input, final ByteBuffer output) throws CryptoException
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    return process(header(), true, input, output);
+  }
+
+
+  @Override
+  public int getEncryptOutputSize(final int length)
+  {
+    final CiphertextHeader header = new CiphertextHeader(
+      new byte[nonce.getLength()], resolveKeyAlias(), this::lookupKey);
+    return header.getLength() + getOutputSize(header, true, length);
+  }
+
+
   @Override
   public byte[] decrypt(final byte[] input) throws CryptoException, EncodingException
   {
@@ -115,25 +165,75 @@ public abstract class AbstractCipherBean implements CipherBean
   }
 
 
+  @Override
+  public int decrypt(final ByteBuffer input, final ByteBuffer output) throws CryptoException, EncodingException
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    return process(CiphertextHeader.decode(input.duplicate(), this::lookupKey), false, input, output);
+  }
+
+
+  @Override
+  public int getDecryptOutputSize(final ByteBuffer input) throws CryptoException, EncodingException
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    final CiphertextHeader header = CiphertextHeader.decode(input.duplicate(), this::lookupKey);
+    return getOutputSize(header, false, input.remaining() - header.getLength());
+  }
+
+
+  @Override
+  public CipherBatch encryptAll(final List<byte[]> inputs) throws CryptoException
+  {
+    final Batch batch = new Batch(true, inputs);
+    batch.process(0, batch.size());
+    return batch.result();
+  }
+
+
+  @Override
+  public CompletableFuture<CipherBatch> encryptAllAsync(final List<byte[]> inputs, final Executor executor)
+  {
+    return processAllAsync(new Batch(true, inputs), executor);
+  }
+
+
+  @Override
+  public CipherBatch decryptAll(final List<byte[]> inputs) throws CryptoException
+  {
+    final Batch batch = new Batch(false, inputs);
+    batch.process(0, batch.size());
+    return batch.result();
+  }
+
+
+  @Override
+  public CompletableFuture<CipherBatch> decryptAllAsync(final List<byte[]> inputs, final Executor executor)
+  {
+    return processAllAsync(new Batch(false, inputs), executor);
+  }
+
+
   /**
-   * Looks up secret key entry in the {@link #keyStore}.
+   * Looks up a secret key from the {@link #keyProvider}.
    *
-   * @param  alias  Name of secret key entry.
+   * @param  alias  Key alias.
    *
    * @return  Secret key.
    */
   protected SecretKey lookupKey(final String alias)
   {
-    final Key key;
-    try {
-      key = keyStore.getKey(alias, keyPassword.toCharArray());
-    } catch (Exception e) {
-      throw new CryptoException("Error accessing keystore entry " + alias, e);
-    }
-    if (key instanceof SecretKey) {
-      return (SecretKey) key;
-    }
-    throw new CryptoException(alias + " is not a secret key");
+    return keyProvider.getKey(alias);
+  }
+
+
+  /**
+   * @return  Alias of the current encryption key, which may be a versioned alias of {@link #getKeyAlias()}.
+   */
+  protected String resolveKeyAlias()
+  {
+    return keyProvider.resolveAlias(keyAlias);
   }
 
 
@@ -160,11 +260,190 @@ public abstract class AbstractCipherBean implements CipherBean
   protected abstract void process(CiphertextHeader header, boolean mode, InputStream input, OutputStream output);
 
 
+  /**
+   * Processes the given data under the action of the cipher. The default implementation copies the input into an
+   * array and processes it with {@link #process(CiphertextHeader, boolean, byte[])}; subclasses should override it to
+   * process buffers without copying.
+   *
+   * @param  header  Ciphertext header.
+   * @param  mode  True for encryption; false for decryption.
+   * @param  input  Buffer containing input data. Under decryption it is positioned at the start of the header.
+   * @param  output  Buffer that receives output of cipher. Under encryption the encoded header is written first.
+   *
+   * @return  Number of bytes written to the output buffer.
+   */
+  protected int process(
+    final CiphertextHeader header,
+    final boolean mode,
+    final ByteBuffer input,
+    final ByteBuffer output)
+  {
+    final byte[] data = new byte[input.remaining()];
+    input.duplicate().get(data);
+    final byte[] result = process(header, mode, data);
+    if (output.remaining() < result.length) {
+      throw new IllegalArgumentException(
+        "Output buffer has " + output.remaining() + " bytes remaining but " + result.length + " are required");
+    }
+    input.position(input.limit());
+    output.put(result);
+    return result.length;
+  }
+
+
+  /**
+   * Gets the size of the cipher output, excluding any header, for input of the given length. The default
+   * implementation encrypts a zero-filled input of the given length with {@link #process(CiphertextHeader, boolean,
+   * byte[])} under encryption and returns the input length under decryption, since plaintext is never longer than
+   * ciphertext; subclasses should override it to compute the size directly.
+   *
+   * @param  header  Ciphertext header.
+   * @param  mode  True for encryption; false for decryption.
+   * @param  length  Length of input data, excluding any header.
+   *
+   * @return  Maximum number of bytes produced by the cipher.
+   */
+  protected int getOutputSize(final CiphertextHeader header, final boolean mode, final int length)
+  {
+    if (mode) {
+      return process(header, true, new byte[length]).length - header.getLength();
+    }
+    return length;
+  }
+
+
   /**
    * @return  New ciphertext header for a pending encryption or decryption operation performed by this instance.
    */
-  private CiphertextHeader header()
+  protected CiphertextHeader header()
+  {
+    return new CiphertextHeader(nonce.generate(), resolveKeyAlias(), this::lookupKey);
+  }
+
+
+  /**
+   * Splits a batch into one partition per available processor and processes the partitions concurrently.
+   *
+   * @param  batch  Batch to process.
+   * @param  executor  Executes partition tasks.
+   *
+   * @return  Future that completes with the batch output.
+   */
+  private static CompletableFuture<CipherBatch> processAllAsync(final Batch batch, final Executor executor)
+  {
+    CryptUtil.assertNotNullArg(executor, "Executor cannot be null");
+    final int size = batch.size();
+    final int partitions = Math.min(size, Runtime.getRuntime().availableProcessors());
+    final CompletableFuture<?>[] tasks = new CompletableFuture<?>[partitions];
+    for (int i = 0; i < partitions; i++) {
+      final int from = (int) ((long) size * i / partitions);
+      final int to = (int) ((long) size * (i + 1) / partitions);
+      tasks[i] = CompletableFuture.runAsync(() -> batch.process(from, to), executor);
+    }
+    return CompletableFuture.allOf(tasks).thenApply(v -> batch.result());
+  }
+
+
+  /**
+   * Batch of records processed into a single output arena. The arena is sized from an upper bound of the output of each
+   * record, which also fixes the region of the arena a contiguous range of records is written to, so that ranges can be
+   * processed concurrently. Within a range, outputs are written back to back.
+   */
+  private final class Batch
   {
-    return new CiphertextHeader(nonce.generate(), keyAlias, this::lookupKey);
+
+    /** True for encryption; false for decryption. */
+    private final boolean mode;
+
+    /** Input records. */
+    private final byte[][] inputs;
+
+    /** Key lookup function shared by all headers of the batch. */
+    private final Function<String, SecretKey> keyLookup = AbstractCipherBean.this::lookupKey;
+
+    /** Encryption key alias resolved once for the batch, or null for decryption. */
+    private final String alias;
+
+    /** Start of the arena region reserved for each record, followed by the arena length. */
+    private final int[] bounds;
+
+    /** Holds the outputs of all records. */
+    private final byte[] arena;
+
+    /** Offset of each record output in the arena. */
+    private final int[] offsets;
+
+    /** Length of each record output. */
+    private final int[] lengths;
+
+
+    /**
+     * Creates a new batch and allocates its arena.
+     *
+     * @param  mode  True for encryption; false for decryption.
+     * @param  inputs  Input records.
+     */
+    Batch(final boolean mode, final List<byte[]> inputs)
+    {
+      this.mode = mode;
+      this.inputs = CryptUtil.assertNotNullArg(inputs, "Inputs cannot be null").toArray(new byte[0][]);
+      final int overhead;
+      if (mode) {
+        alias = resolveKeyAlias();
+        final CiphertextHeader probe = new CiphertextHeader(new byte[nonce.getLength()], alias, keyLookup);
+        overhead = probe.getLength() + getOutputSize(probe, true, 0);
+      } else {
+        alias = null;
+        // Plaintext is never longer than ciphertext
+        overhead = 0;
+      }
+      bounds = new int[this.inputs.length + 1];
+      long total = 0;
+      for (int i = 0; i < this.inputs.length; i++) {
+        CryptUtil.assertNotNullArg(this.inputs[i], "Input cannot be null");
+        bounds[i] = (int) total;
+        total += this.inputs[i].length + overhead;
+        if (total > Integer.MAX_VALUE - 8) {
+          throw new IllegalArgumentException("Batch output exceeds maximum array size");
+        }
+      }
+      bounds[this.inputs.length] = (int) total;
+      arena = new byte[(int) total];
+      offsets = new int[this.inputs.length];
+      lengths = new int[this.inputs.length];
+    }
+
+
+    /** @return  Number of records. */
+    int size()
+    {
+      return inputs.length;
+    }
+
+
+    /**
+     * Processes a contiguous range of records into the region of the arena reserved for it.
+     *
+     * @param  from  Index of first record, inclusive.
+     * @param  to  Index of last record, exclusive.
+     */
+    void process(final int from, final int to)
+    {
+      final ByteBuffer output = ByteBuffer.wrap(arena, bounds[from], bounds[to] - bounds[from]);
+      for (int i = from; i < to; i++) {
+        final CiphertextHeader header = mode
+          ? new CiphertextHeader(nonce.generate(), alias, keyLookup)
+          : CiphertextHeader.decode(inputs[i], keyLookup);
+        offsets[i] = output.position();
+        lengths[i] = AbstractCipherBean.this.process(header, mode, ByteBuffer.wrap(inputs[i]), output);
+      }
+    }
+
+
+    /** @return  Batch output. */
+    CipherBatch result()
+    {
+      return new CipherBatch(arena, offsets, lengths);
+    }
   }
 }
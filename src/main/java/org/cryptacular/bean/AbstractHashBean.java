@@ -7,7 +7,7 @@ import org.cryptacular.spec.Spec;
 import org.cryptacular.util.HashUtil;
 
 /**
- * Abstract base class for all hash beans.
+ * Abstract base class for all hash beans. Each thread reuses a single digest instance per bean.
  *
  * @author  Middleware Services
  */
@@ -20,6 +20,9 @@ public abstract class AbstractHashBean
   /** Number of hash rounds. */
   private final int iterations;
 
+  /** Per-thread digest instances, which are reset before each use. */
+  private final ThreadLocal<Digest> digests;
+
 
   /**
    * Creates a new abstract hash bean.
@@ -45,6 +48,7 @@ public abstract class AbstractHashBean
     }
     this.digestSpec = CryptUtil.assertNotNullArg(digestSpec, "Digest spec cannot be null");
     this.iterations = iterations;
+    this.digests = ThreadLocal.withInitial(digestSpec::newInstance);
   }
 
 
@@ -71,7 +75,7 @@ public abstract class AbstractHashBean
    */
   protected byte[] hashInternal(final Object... data)
   {
-    return HashUtil.hash(digestSpec.newInstance(), iterations, data);
+    return HashUtil.hash(digest(), iterations, data);
   }
 
 
@@ -87,6 +91,20 @@ public abstract class AbstractHashBean
    */
   protected boolean compareInternal(final byte[] hash, final Object... data)
   {
-    return HashUtil.compareHash(digestSpec.newInstance(), hash, iterations, data);
+    return HashUtil.compareHash(digest(), hash, iterations, data);
+  }
+
+
+  /**
+   * Gets the digest of the calling thread, creating it from the digest specification on first use. The digest is
+   * reset since a previous operation may have failed part way through.
+   *
+   * @return  Reset digest instance.
+   */
+  private Digest digest()
+  {
+    final Digest digest = digests.get();
+    digest.reset();
+    return digest;
   }
 }
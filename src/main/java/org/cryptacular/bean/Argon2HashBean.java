@@ -0,0 +1,245 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.bouncycastle.util.Arrays;
+import org.cryptacular.CryptoException;
+
+/**
+ * {@link HashBean} implementation that uses the memory-hard <em>Argon2id</em> function of RFC 9106 for password
+ * hashing. Hashes are produced as PHC strings of the following form:
+ * <br>
+ * <code>
+ *   $argon2id$v=19$m=memory,t=iterations,p=parallelism$salt$hash
+ * </code>
+ * <p>
+ * Comparison accepts PHC strings of all Argon2 variants and versions, taking the parameters from the known hash. Use
+ * {@link #calibrate(Duration, int, int)} to choose parameters that meet a latency target on the current host.
+ * </p>
+ * <p>
+ * <strong>NOTE:</strong> the Bouncy Castle Argon2 implementation fills lanes sequentially, so the parallelism
+ * parameter does not reduce latency; it is encoded for interoperability with implementations that use threads.
+ * </p>
+ *
+ * @author  Middleware Services
+ */
+public class Argon2HashBean implements HashBean<CharSequence>
+{
+
+  /** PHC identifier of hashes produced by this bean. */
+  public static final String ID = "argon2id";
+
+  /** Default memory size in KiB. Value is {@value}. */
+  public static final int DEFAULT_MEMORY = 19456;
+
+  /** Default number of iterations. Value is {@value}. */
+  public static final int DEFAULT_ITERATIONS = 2;
+
+  /** Default degree of parallelism. Value is {@value}. */
+  public static final int DEFAULT_PARALLELISM = 1;
+
+  /** Length of generated salts in bytes. */
+  private static final int SALT_LENGTH = 16;
+
+  /** Length of hash output in bytes. */
+  private static final int HASH_LENGTH = 32;
+
+  /** Memory size in KiB. */
+  private final int memory;
+
+  /** Number of iterations. */
+  private final int iterations;
+
+  /** Degree of parallelism, i.e. number of lanes. */
+  private final int parallelism;
+
+
+  /** Creates a new instance with default parameters. */
+  public Argon2HashBean()
+  {
+    this(DEFAULT_MEMORY, DEFAULT_ITERATIONS, DEFAULT_PARALLELISM);
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  memory  Memory size in KiB, at least 8 times the parallelism.
+   * @param  iterations  Number of iterations.
+   * @param  parallelism  Degree of parallelism in the range [1, 2^24 - 1].
+   */
+  public Argon2HashBean(final int memory, final int iterations, final int parallelism)
+  {
+    if (parallelism < 1 || parallelism > 0xFFFFFF) {
+      throw new IllegalArgumentException("Parallelism must be in the range [1, 2^24 - 1]");
+    }
+    if (memory < 8 * parallelism) {
+      throw new IllegalArgumentException("Memory must be at least 8 times the parallelism");
+    }
+    if (iterations < 1) {
+      throw new IllegalArgumentException("Iterations must be positive");
+    }
+    this.memory = memory;
+    this.iterations = iterations;
+    this.parallelism = parallelism;
+  }
+
+
+  /**
+   * Creates a bean whose hash latency on this host is close to but does not exceed the given target. Parameters are
+   * chosen as recommended by RFC 9106: the given memory and parallelism are fixed and iterations are increased to meet
+   * the target; if a single iteration already exceeds the target, memory is halved instead. Each candidate is timed by
+   * the median of several runs, so calibration takes several multiples of the target.
+   *
+   * @param  target  Target median hash latency.
+   * @param  maxMemory  Maximum memory size in KiB.
+   * @param  parallelism  Degree of parallelism.
+   *
+   * @return  Calibrated hash bean.
+   */
+  public static Argon2HashBean calibrate(final Duration target, final int maxMemory, final int parallelism)
+  {
+    PasswordHashSupport.checkTarget(target);
+    Argon2HashBean bean = new Argon2HashBean(maxMemory, 1, parallelism);
+    Duration latency = bean.measure();
+    while (latency.compareTo(target) > 0 && bean.memory / 2 >= 8 * parallelism) {
+      bean = new Argon2HashBean(bean.memory / 2, 1, parallelism);
+      latency = bean.measure();
+    }
+    if (latency.compareTo(target) < 0) {
+      int count = (int) Math.min(Integer.MAX_VALUE, target.toNanos() / Math.max(1, latency.toNanos()));
+      Argon2HashBean candidate = new Argon2HashBean(bean.memory, Math.max(1, count), parallelism);
+      while (count > 1 && candidate.measure().compareTo(target) > 0) {
+        candidate = new Argon2HashBean(bean.memory, --count, parallelism);
+      }
+      bean = candidate;
+    }
+    return bean;
+  }
+
+
+  /** @return  Memory size in KiB. */
+  public int getMemory()
+  {
+    return memory;
+  }
+
+
+  /** @return  Number of iterations. */
+  public int getIterations()
+  {
+    return iterations;
+  }
+
+
+  /** @return  Degree of parallelism. */
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+
+  /**
+   * Computes an Argon2id hash of a password.
+   *
+   * @param  data  Either a password, for which a random 16-byte salt is generated, or a 2-element array containing a
+   *               salt of type <code>byte[]</code> and a password. The password may be a {@link CharSequence},
+   *               <code>char[]</code>, or <code>byte[]</code>; character data is encoded in UTF-8.
+   *
+   * @return  PHC string of the form <code>$argon2id$v=19$m=memory,t=iterations,p=parallelism$salt$hash</code>.
+   *
+   * @throws  CryptoException  on Argon2 computation errors.
+   */
+  @Override
+  public String hash(final Object... data) throws CryptoException
+  {
+    final byte[] salt = PasswordHashSupport.salt(data, SALT_LENGTH);
+    final byte[] password = PasswordHashSupport.password(data[data.length - 1]);
+    final Map<String, String> params = new LinkedHashMap<>();
+    params.put("m", String.valueOf(memory));
+    params.put("t", String.valueOf(iterations));
+    params.put("p", String.valueOf(parallelism));
+    final Argon2Parameters.Builder builder = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+      .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+      .withMemoryAsKB(memory)
+      .withIterations(iterations)
+      .withParallelism(parallelism)
+      .withSalt(salt);
+    return new PHCString(
+      ID, Argon2Parameters.ARGON2_VERSION_13, params, salt, generate(builder, password, HASH_LENGTH)).encode();
+  }
+
+
+  /**
+   * Compares an Argon2 PHC string with the hash of the given password computed with the parameters of the PHC string.
+   *
+   * @param  hash  Argon2 PHC string, e.g. <code>$argon2id$v=19$m=19456,t=2,p=1$salt$hash</code>.
+   * @param  data  A 1-element array containing the password.
+   *
+   * @return  True if the computed hash equals the known hash, false otherwise.
+   *
+   * @throws  CryptoException  on Argon2 computation errors.
+   */
+  @Override
+  public boolean compare(final CharSequence hash, final Object... data) throws CryptoException
+  {
+    final byte[] password = PasswordHashSupport.comparePassword(data);
+    final PHCString phc = PHCString.parse(hash);
+    final int type;
+    if ("argon2id".equals(phc.getId())) {
+      type = Argon2Parameters.ARGON2_id;
+    } else if ("argon2i".equals(phc.getId())) {
+      type = Argon2Parameters.ARGON2_i;
+    } else if ("argon2d".equals(phc.getId())) {
+      type = Argon2Parameters.ARGON2_d;
+    } else {
+      throw new IllegalArgumentException("Expected Argon2 hash but got " + phc.getId());
+    }
+    if (phc.getHash() == null) {
+      throw new IllegalArgumentException("Argon2 hash has no hash output");
+    }
+    final Argon2Parameters.Builder builder = new Argon2Parameters.Builder(type)
+      .withVersion(phc.getVersion() < 0 ? Argon2Parameters.ARGON2_VERSION_10 : phc.getVersion())
+      .withMemoryAsKB(phc.getIntParam("m"))
+      .withIterations(phc.getIntParam("t"))
+      .withParallelism(phc.getIntParam("p"))
+      .withSalt(phc.getSalt());
+    final byte[] computed = generate(builder, password, phc.getHash().length);
+    return Arrays.constantTimeAreEqual(computed, phc.getHash());
+  }
+
+
+  /**
+   * Computes an Argon2 hash.
+   *
+   * @param  builder  Argon2 parameters including salt.
+   * @param  password  Password bytes.
+   * @param  length  Hash output length in bytes.
+   *
+   * @return  Hash output.
+   */
+  private static byte[] generate(final Argon2Parameters.Builder builder, final byte[] password, final int length)
+  {
+    final Argon2BytesGenerator generator = new Argon2BytesGenerator();
+    final byte[] output = new byte[length];
+    try {
+      generator.init(builder.build());
+      generator.generateBytes(password, output);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      throw new CryptoException("Argon2 computation error", e);
+    }
+    return output;
+  }
+
+
+  /** @return  Median latency of a hash operation with the parameters of this bean. */
+  private Duration measure()
+  {
+    final byte[] salt = new byte[SALT_LENGTH];
+    return PasswordHashSupport.median(() -> hash(salt, "calibration"));
+  }
+}
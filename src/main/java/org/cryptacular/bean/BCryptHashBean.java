@@ -1,18 +1,12 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.bean;
 
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.regex.Pattern;
+import java.time.Duration;
 import org.bouncycastle.crypto.generators.BCrypt;
+import org.bouncycastle.util.Arrays;
 import org.cryptacular.CryptoException;
 import org.cryptacular.StreamException;
-import org.cryptacular.codec.Base64Decoder;
-import org.cryptacular.codec.Base64Encoder;
-import org.cryptacular.codec.Decoder;
-import org.cryptacular.codec.Encoder;
-import org.cryptacular.util.ByteUtil;
 
 /**
  * {@link HashBean} implementation that uses the <em>bcrypt</em> algorithm for hashing. Hash strings of the following
@@ -31,6 +25,10 @@ import org.cryptacular.util.ByteUtil;
  * </p>
  * <br>
  * <code>./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789</code>
+ * <p>
+ * Use {@link #calibrate(Duration)} to choose a cost that meets a latency target on the current host, and {@link
+ * #verify(CharSequence, Object...)} to learn whether a stored hash should be upgraded to the current cost.
+ * </p>
  *
  * @author  Middleware Services
  */
@@ -39,6 +37,27 @@ public class BCryptHashBean implements HashBean<CharSequence>
   /** Custom base-64 alphabet. */
   private static final String ALPHABET = "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
 
+  /** Maps 6-bit values to characters of {@link #ALPHABET}. */
+  private static final char[] ENCODE_TABLE = ALPHABET.toCharArray();
+
+  /** Maps ASCII characters to 6-bit values of {@link #ALPHABET}, or -1 for characters outside the alphabet. */
+  private static final byte[] DECODE_TABLE = new byte[128];
+
+  /** Number of salt bytes. */
+  private static final int SALT_LENGTH = 16;
+
+  /** Number of hash bytes. */
+  private static final int HASH_LENGTH = 23;
+
+  /** Number of characters of encoded salt and hash. */
+  private static final int SALT_HASH_CHARS = 53;
+
+  /** Cost at which calibration starts measuring. */
+  private static final int CALIBRATION_START_COST = 8;
+
+  /** Password hashed during calibration. */
+  private static final byte[] CALIBRATION_PASSWORD = "calibration\0".getBytes(StandardCharsets.UTF_8);
+
   /** Default cost. Value is 12. */
   private static final int DEFAULT_COST = 12;
 
@@ -51,6 +70,13 @@ public class BCryptHashBean implements HashBean<CharSequence>
   /** BCrypt version used when computing hashes. Default value is {@value}. */
   private final String version;
 
+  static {
+    Arrays.fill(DECODE_TABLE, (byte) -1);
+    for (int i = 0; i < ENCODE_TABLE.length; i++) {
+      DECODE_TABLE[ENCODE_TABLE[i]] = (byte) i;
+    }
+  }
+
 
   /** Creates a new instance. */
   public BCryptHashBean()
@@ -89,6 +115,48 @@ public class BCryptHashBean implements HashBean<CharSequence>
   }
 
 
+  /**
+   * Creates a bean with the highest cost whose median hash latency on this host does not exceed the given target, or
+   * the minimum cost of 4 if even that exceeds the target. Since each cost increment doubles the work, latency is
+   * measured at a moderate cost, extrapolated, and the extrapolated cost is then verified by measurement.
+   *
+   * @param  target  Target median hash latency.
+   *
+   * @return  Calibrated hash bean using the default version.
+   */
+  public static BCryptHashBean calibrate(final Duration target)
+  {
+    PasswordHashSupport.checkTarget(target);
+    int cost = CALIBRATION_START_COST;
+    Duration latency = measure(cost);
+    while (cost > 4 && latency.compareTo(target) > 0) {
+      latency = measure(--cost);
+    }
+    while (cost < 31 && latency.multipliedBy(2).compareTo(target) <= 0) {
+      cost++;
+      latency = latency.multipliedBy(2);
+    }
+    while (cost > CALIBRATION_START_COST && measure(cost).compareTo(target) > 0) {
+      cost--;
+    }
+    return new BCryptHashBean(cost);
+  }
+
+
+  /** @return  BCrypt cost factor used when computing hashes. */
+  public int getCostFactor()
+  {
+    return costFactor;
+  }
+
+
+  /** @return  BCrypt version used when computing hashes. */
+  public String getVersion()
+  {
+    return version;
+  }
+
+
   /**
    * Compute a bcrypt hash of the form <code>$2n$cost$xxxxxxxxxxxxxxxxxxxxxxxxyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyy</code>
    * given a salt and a password.
@@ -105,7 +173,7 @@ public class BCryptHashBean implements HashBean<CharSequence>
     if (data == null || data.length != 2) {
       throw new IllegalArgumentException("Data must contain 2 elements.");
     }
-    return encode(BCrypt.generate(password(version, data[1]), salt(data[0]), costFactor), 23);
+    return encode(BCrypt.generate(password(version, data[1]), salt(data[0]), costFactor), HASH_LENGTH);
   }
 
 
@@ -122,23 +190,55 @@ public class BCryptHashBean implements HashBean<CharSequence>
    */
   @Override
   public boolean compare(final CharSequence hash, final Object... data) throws CryptoException, StreamException
+  {
+    return matches(new BCryptParameters(hash), data);
+  }
+
+
+  /**
+   * Compares a bcrypt hash with the computed hash from the given password like {@link #compare(CharSequence,
+   * Object...)}, and additionally reports whether the cost of the stored hash is below the cost of this bean. Callers
+   * should then replace the stored hash with a new hash of the password, which upgrades hashes transparently on
+   * login.
+   *
+   * @param  hash  Stored bcrypt hash of the form <code>$2n$cost$xxxxxxxxxxxxxxxxxxxxxxxxyyyyyyyyyyyyyyyyyyyyyyyyyyyyyyy
+   *               </code>.
+   * @param  data  A 1-element array containing password.
+   *
+   * @return  Comparison result.
+   *
+   * @throws CryptoException on bcrypt algorithm errors.
+   */
+  public CompareResult verify(final CharSequence hash, final Object... data) throws CryptoException
+  {
+    final BCryptParameters params = new BCryptParameters(hash);
+    if (!matches(params, data)) {
+      return CompareResult.MISMATCH;
+    }
+    return params.getCost() < costFactor ? CompareResult.MATCH_REHASH : CompareResult.MATCH;
+  }
+
+
+  /**
+   * Compares the hash of a parsed bcrypt hash with the computed hash from the given password.
+   *
+   * @param  params  Parsed stored hash.
+   * @param  data  A 1-element array containing password.
+   *
+   * @return  True if the computed hash matches the stored hash, false otherwise.
+   */
+  private boolean matches(final BCryptParameters params, final Object... data)
   {
     if (data.length != 1) {
       throw new IllegalArgumentException("Expected exactly one element in data array but got " + data.length);
     }
-    final BCryptParameters params = new BCryptParameters(hash);
     final byte[] computed = BCrypt.generate(password(params.getVersion(), data[0]), params.getSalt(), params.getCost());
-    for (int i = 0; i < 23; i++) {
-      if (params.getHash()[i] != computed[i]) {
-        return false;
-      }
-    }
-    return true;
+    return Arrays.constantTimeAreEqual(HASH_LENGTH, computed, 0, params.getHash(), 0);
   }
 
 
   /**
-   * Encodes an input byte array into a string using the configured encoder.
+   * Encodes bytes in the bcrypt base-64 alphabet without padding.
    *
    * @param  bytes  Input bytes to encode.
    * @param  length  Number of bytes of input to encode.
@@ -147,35 +247,108 @@ public class BCryptHashBean implements HashBean<CharSequence>
    */
   private static String encode(final byte[] bytes, final int length)
   {
-    final Encoder encoder = new Base64Encoder.Builder().setAlphabet(ALPHABET).setPadding(false).build();
-    // Only want 184 bits (23 bytes) of the output
-    final ByteBuffer input = ByteBuffer.wrap(bytes, 0, length);
-    final CharBuffer output = CharBuffer.allocate(encoder.outputSize(length));
-    encoder.encode(input, output);
-    encoder.finalize(output);
-    return output.flip().toString();
+    final char[] output = new char[encodedLength(length)];
+    encode(bytes, length, output, 0);
+    return new String(output);
   }
 
 
   /**
-   * Decodes an input string into a byte array using the configured decoder.
+   * Encodes bytes in the bcrypt base-64 alphabet without padding into a character array.
    *
-   * @param  input  Input string to decode.
+   * @param  bytes  Input bytes to encode.
+   * @param  length  Number of bytes of input to encode.
+   * @param  output  Receives the encoded characters.
+   * @param  offset  Offset in the output array.
+   *
+   * @return  Offset in the output array after the encoded characters.
+   */
+  private static int encode(final byte[] bytes, final int length, final char[] output, final int offset)
+  {
+    int pos = offset;
+    int i = 0;
+    for (; i + 3 <= length; i += 3) {
+      final int v = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | bytes[i + 2] & 0xFF;
+      output[pos++] = ENCODE_TABLE[v >>> 18];
+      output[pos++] = ENCODE_TABLE[v >>> 12 & 0x3F];
+      output[pos++] = ENCODE_TABLE[v >>> 6 & 0x3F];
+      output[pos++] = ENCODE_TABLE[v & 0x3F];
+    }
+    if (i < length) {
+      final int v = (bytes[i] & 0xFF) << 16 | (i + 1 < length ? (bytes[i + 1] & 0xFF) << 8 : 0);
+      output[pos++] = ENCODE_TABLE[v >>> 18];
+      output[pos++] = ENCODE_TABLE[v >>> 12 & 0x3F];
+      if (i + 1 < length) {
+        output[pos++] = ENCODE_TABLE[v >>> 6 & 0x3F];
+      }
+    }
+    return pos;
+  }
+
+
+  /**
+   * Decodes characters in the bcrypt base-64 alphabet without padding.
+   *
+   * @param  input  Input characters.
+   * @param  start  Index of the first character to decode.
+   * @param  end  Index after the last character to decode.
    * @param  length  Desired output size in bytes.
    *
-   * @return  Input decoded as a byte array.
+   * @return  Decoded bytes.
    */
-  private static byte[] decode(final String input, final int length)
+  private static byte[] decode(final CharSequence input, final int start, final int end, final int length)
   {
-    final Decoder decoder = new Base64Decoder.Builder().setAlphabet(ALPHABET).setPadding(false).build();
-    final ByteBuffer output = ByteBuffer.allocate(decoder.outputSize(input.length()));
-    decoder.decode(CharBuffer.wrap(input), output);
-    decoder.finalize(output);
-    output.flip();
-    if (output.limit() != length) {
-      throw new IllegalArgumentException("Input is not of the expected size: " + output.limit() + "!=" + length);
+    if (end - start != encodedLength(length)) {
+      throw new IllegalArgumentException(
+        "Input is not of the expected size: " + (end - start) + "!=" + encodedLength(length));
     }
-    return ByteUtil.toArray(output);
+    final byte[] output = new byte[length];
+    int bits = 0;
+    int acc = 0;
+    int pos = 0;
+    for (int i = start; i < end; i++) {
+      final char c = input.charAt(i);
+      final int v = c < DECODE_TABLE.length ? DECODE_TABLE[c] : -1;
+      if (v < 0) {
+        throw new IllegalArgumentException("Invalid bcrypt base-64 character: " + c);
+      }
+      acc = (acc << 6 | v) & 0xFFFF;
+      bits += 6;
+      if (bits >= 8) {
+        bits -= 8;
+        if (pos < length) {
+          output[pos++] = (byte) (acc >>> bits);
+        }
+      }
+    }
+    return output;
+  }
+
+
+  /**
+   * Gets the number of characters of encoded bytes.
+   *
+   * @param  length  Number of bytes.
+   *
+   * @return  Number of characters without padding.
+   */
+  private static int encodedLength(final int length)
+  {
+    return (length * 8 + 5) / 6;
+  }
+
+
+  /**
+   * Measures the median latency of bcrypt at the given cost.
+   *
+   * @param  cost  BCrypt cost.
+   *
+   * @return  Median latency.
+   */
+  private static Duration measure(final int cost)
+  {
+    final byte[] salt = new byte[SALT_LENGTH];
+    return PasswordHashSupport.median(() -> BCrypt.generate(CALIBRATION_PASSWORD, salt, cost));
   }
 
 
@@ -191,7 +364,8 @@ public class BCryptHashBean implements HashBean<CharSequence>
     if (data instanceof byte[]) {
       return (byte[]) data;
     } else if (data instanceof String) {
-      return decode((String) data, 16);
+      final String salt = (String) data;
+      return decode(salt, 0, salt.length(), SALT_LENGTH);
     }
     throw new IllegalArgumentException("Expected byte array or base-64 string.");
   }
@@ -263,18 +437,19 @@ public class BCryptHashBean implements HashBean<CharSequence>
      */
     protected BCryptParameters(final CharSequence bCryptString)
     {
-      if (!(bCryptString.charAt(0) == '$' && bCryptString.charAt(1) == '2')) {
+      if (bCryptString.length() < 2 || !(bCryptString.charAt(0) == '$' && bCryptString.charAt(1) == '2')) {
         throw new IllegalArgumentException("Expected bcrypt hash of the form $2n$cost$salthash");
       }
-      final Pattern pattern = Pattern.compile("\\$");
-      final String[] parts = pattern.split(bCryptString);
-      if (parts.length != 4) {
+      final int versionEnd = indexOf(bCryptString, 1);
+      final int costEnd = versionEnd < 0 ? -1 : indexOf(bCryptString, versionEnd + 1);
+      if (costEnd < 0 || indexOf(bCryptString, costEnd + 1) >= 0 ||
+          bCryptString.length() - costEnd - 1 != SALT_HASH_CHARS) {
         throw new IllegalArgumentException("Invalid bcrypt hash");
       }
-      version = parts[1];
-      cost = Integer.parseInt(parts[2]);
-      salt = decode(parts[3].substring(0, 22), 16);
-      hash = decode(parts[3].substring(22), 23);
+      version = bCryptString.subSequence(1, versionEnd).toString();
+      cost = parseCost(bCryptString, versionEnd + 1, costEnd);
+      salt = decode(bCryptString, costEnd + 1, costEnd + 23, SALT_LENGTH);
+      hash = decode(bCryptString, costEnd + 23, bCryptString.length(), HASH_LENGTH);
     }
 
 
@@ -313,7 +488,9 @@ public class BCryptHashBean implements HashBean<CharSequence>
      */
     public String encode()
     {
-      return '$' + version + '$' + cost + '$' + BCryptHashBean.encode(salt, 16) + BCryptHashBean.encode(hash, 23);
+      final char[] output = prefix(SALT_HASH_CHARS);
+      BCryptHashBean.encode(hash, HASH_LENGTH, output, output.length - encodedLength(HASH_LENGTH));
+      return new String(output);
     }
 
 
@@ -326,7 +503,78 @@ public class BCryptHashBean implements HashBean<CharSequence>
      */
     public String encode(final String hash)
     {
-      return '$' + version + '$' + cost + '$' + BCryptHashBean.encode(salt, 16) + hash;
+      final char[] output = prefix(encodedLength(SALT_LENGTH) + hash.length());
+      hash.getChars(0, hash.length(), output, output.length - hash.length());
+      return new String(output);
+    }
+
+
+    /**
+     * Creates a character array holding <code>$2n$cost$xxxxxxxxxxxxxxxxxxxxxx</code> followed by room for the hash.
+     *
+     * @param  saltHashLength  Number of characters of encoded salt and hash.
+     *
+     * @return  Character array with the version, cost, and encoded salt filled in.
+     */
+    private char[] prefix(final int saltHashLength)
+    {
+      final String costString = Integer.toString(cost);
+      final char[] output = new char[3 + version.length() + costString.length() + saltHashLength];
+      int pos = 0;
+      output[pos++] = '$';
+      version.getChars(0, version.length(), output, pos);
+      pos += version.length();
+      output[pos++] = '$';
+      costString.getChars(0, costString.length(), output, pos);
+      pos += costString.length();
+      output[pos++] = '$';
+      BCryptHashBean.encode(salt, SALT_LENGTH, output, pos);
+      return output;
+    }
+
+
+    /**
+     * Parses the one or two decimal digits of the cost.
+     *
+     * @param  s  Character sequence holding the cost.
+     * @param  start  Index of the first digit.
+     * @param  end  Index after the last digit.
+     *
+     * @return  Cost value.
+     */
+    private static int parseCost(final CharSequence s, final int start, final int end)
+    {
+      if (end - start < 1 || end - start > 2) {
+        throw new IllegalArgumentException("Invalid bcrypt cost");
+      }
+      int value = 0;
+      for (int i = start; i < end; i++) {
+        final int digit = Character.digit(s.charAt(i), 10);
+        if (digit < 0) {
+          throw new IllegalArgumentException("Invalid bcrypt cost");
+        }
+        value = value * 10 + digit;
+      }
+      return value;
+    }
+
+
+    /**
+     * Finds the next <code>$</code> separator.
+     *
+     * @param  s  Character sequence to search.
+     * @param  from  Index to start searching from.
+     *
+     * @return  Index of the separator or -1 if there is none.
+     */
+    private static int indexOf(final CharSequence s, final int from)
+    {
+      for (int i = from; i < s.length(); i++) {
+        if (s.charAt(i) == '$') {
+          return i;
+        }
+      }
+      return -1;
     }
   }
 }
@@ -2,15 +2,17 @@
 package org.cryptacular.bean;
 
 import java.security.KeyStore;
+import javax.crypto.SecretKey;
 import org.bouncycastle.crypto.BufferedBlockCipher;
-import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.cryptacular.CiphertextHeader;
 import org.cryptacular.CryptUtil;
+import org.cryptacular.adapter.BlockCipherAdapter;
 import org.cryptacular.adapter.BufferedBlockCipherAdapter;
 import org.cryptacular.generator.Nonce;
 import org.cryptacular.spec.Spec;
+import org.cryptacular.util.StreamUtil;
 
 /**
  * Cipher bean that performs symmetric encryption/decryption using a standard block cipher in a standard mode (e.g. CBC,
@@ -41,7 +43,72 @@ public class BufferedBlockCipherBean extends AbstractBlockCipherBean
     final String keyPassword,
     final Nonce nonce)
   {
-    super(keyStore, keyAlias, keyPassword, nonce);
+    this(blockCipherSpec, keyStore, keyAlias, keyPassword, nonce, new KeyedCipherPool<>());
+  }
+
+
+  /**
+   * Creates a buffered block cipher bean with the given pool of keyed cipher engines.
+   *
+   * @param  blockCipherSpec  Block cipher specification.
+   * @param  keyStore  Key store containing encryption key.
+   * @param  keyAlias  Name of encryption key entry in key store.
+   * @param  keyPassword  Password used to decrypt key entry in keystore.
+   * @param  nonce  Nonce/IV generator.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   */
+  public BufferedBlockCipherBean(
+    final Spec<BufferedBlockCipher> blockCipherSpec,
+    final KeyStore keyStore,
+    final String keyAlias,
+    final String keyPassword,
+    final Nonce nonce,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool)
+  {
+    super(keyStore, keyAlias, keyPassword, nonce, cipherPool);
+    this.blockCipherSpec = CryptUtil.assertNotNullArg(blockCipherSpec, "Block cipher spec cannot be null");
+  }
+
+
+  /**
+   * Creates a buffered block cipher bean that obtains keys from the given provider.
+   *
+   * @param  blockCipherSpec  Block cipher specification.
+   * @param  keyProvider  Source of symmetric keys, typically a {@link CachingKeyProvider}.
+   * @param  keyAlias  Key name of encryption key.
+   * @param  nonce  Nonce/IV generator.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   */
+  public BufferedBlockCipherBean(
+    final Spec<BufferedBlockCipher> blockCipherSpec,
+    final KeyProvider keyProvider,
+    final String keyAlias,
+    final Nonce nonce,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool)
+  {
+    this(blockCipherSpec, keyProvider, keyAlias, nonce, cipherPool, StreamUtil.BUFFER_SIZE);
+  }
+
+
+  /**
+   * Creates a buffered block cipher bean that obtains keys from the given provider.
+   *
+   * @param  blockCipherSpec  Block cipher specification.
+   * @param  keyProvider  Source of symmetric keys, typically a {@link CachingKeyProvider}.
+   * @param  keyAlias  Key name of encryption key.
+   * @param  nonce  Nonce/IV generator.
+   * @param  cipherPool  Pool of keyed cipher engines reused across operations, or null to disable pooling.
+   * @param  chunkSize  Number of bytes read from the input stream at once by stream operations.
+   */
+  public BufferedBlockCipherBean(
+    final Spec<BufferedBlockCipher> blockCipherSpec,
+    final KeyProvider keyProvider,
+    final String keyAlias,
+    final Nonce nonce,
+    final KeyedCipherPool<BlockCipherAdapter> cipherPool,
+    final int chunkSize)
+  {
+    super(keyProvider, keyAlias, nonce, cipherPool, chunkSize);
     this.blockCipherSpec = CryptUtil.assertNotNullArg(blockCipherSpec, "Block cipher spec cannot be null");
   }
 
@@ -56,13 +123,84 @@ public class BufferedBlockCipherBean extends AbstractBlockCipherBean
   @Override
   protected BufferedBlockCipherAdapter newCipher(final CiphertextHeader header, final boolean mode)
   {
-    final BufferedBlockCipher cipher = blockCipherSpec.newInstance();
-    CipherParameters params = new KeyParameter(lookupKey(header.getKeyName()).getEncoded());
-    final String algName = cipher.getUnderlyingCipher().getAlgorithmName();
-    if (algName.endsWith("CBC") || algName.endsWith("OFB") || algName.endsWith("CFB")) {
-      params = new ParametersWithIV(params, header.getNonce());
+    return newCipher(header, mode, borrowCipher(header, mode));
+  }
+
+
+  /**
+   * Computes the output size with a new engine that is not taken from or returned to the pool, since sizes are probed
+   * with headers that carry a placeholder nonce.
+   *
+   * @param  header  Ciphertext header.
+   * @param  mode  True for encryption; false for decryption.
+   * @param  length  Length of input data, excluding any header.
+   *
+   * @return  Maximum number of bytes produced by the cipher.
+   */
+  @Override
+  protected int getOutputSize(final CiphertextHeader header, final boolean mode, final int length)
+  {
+    return newCipher(header, mode, null).getOutputSize(length);
+  }
+
+
+  /**
+   * Initializes the given pooled engine if it was keyed with the key named in the header, otherwise a new engine.
+   *
+   * @param  header  Ciphertext header.
+   * @param  mode  True for encryption; false for decryption.
+   * @param  pooled  Engine taken from the pool, or null.
+   *
+   * @return  Initialized cipher adapter.
+   */
+  private BufferedBlockCipherAdapter newCipher(
+    final CiphertextHeader header,
+    final boolean mode,
+    final BlockCipherAdapter pooled)
+  {
+    final SecretKey key = lookupKey(header.getKeyName());
+    final KeyedAdapter cipher;
+    final KeyParameter keyParam;
+    if (pooled instanceof KeyedAdapter && key.equals(((KeyedAdapter) pooled).key)) {
+      // Reuse the key schedule of the pooled engine
+      cipher = (KeyedAdapter) pooled;
+      keyParam = null;
+    } else {
+      cipher = new KeyedAdapter(blockCipherSpec.newInstance(), key);
+      keyParam = new KeyParameter(key.getEncoded());
+    }
+    if (cipher.usesIV) {
+      cipher.init(mode, new ParametersWithIV(keyParam, header.getNonce()));
+    } else if (keyParam != null) {
+      cipher.init(mode, keyParam);
+    }
+    return cipher;
+  }
+
+
+  /** Buffered block cipher adapter that records the key its engine was initialized with. */
+  private static final class KeyedAdapter extends BufferedBlockCipherAdapter
+  {
+
+    /** Key used to initialize the engine. */
+    private final SecretKey key;
+
+    /** True if the cipher mode requires an IV, false otherwise. */
+    private final boolean usesIV;
+
+
+    /**
+     * Creates a new instance.
+     *
+     * @param  delegate  Uninitialized buffered block cipher.
+     * @param  key  Key that will be used to initialize the engine.
+     */
+    KeyedAdapter(final BufferedBlockCipher delegate, final SecretKey key)
+    {
+      super(delegate);
+      this.key = key;
+      final String algName = delegate.getUnderlyingCipher().getAlgorithmName();
+      this.usesIV = algName.endsWith("CBC") || algName.endsWith("OFB") || algName.endsWith("CFB");
     }
-    cipher.init(mode, params);
-    return new BufferedBlockCipherAdapter(cipher);
   }
 }
@@ -0,0 +1,154 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import org.cryptacular.CryptUtil;
+
+/**
+ * Key provider that caches the keys and current aliases resolved by another provider. Cached values expire after a
+ * fixed time to live, after which they are resolved again, so that a new key version added for rollover is picked up
+ * without restarting. Cached values can also be invalidated explicitly, e.g. immediately after a key rotation.
+ *
+ * <p>Since the same key instance is returned until it expires, cipher beans resolve each key once per time to live
+ * rather than once or more per operation. Failed lookups are not cached.</p>
+ *
+ * @author  Middleware Services
+ */
+public class CachingKeyProvider implements KeyProvider
+{
+
+  /** Default time to live of cached values in milliseconds. */
+  public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+
+  /** Provider that resolves uncached values. */
+  private final KeyProvider delegate;
+
+  /** Time to live of cached values in nanoseconds. */
+  private final long ttlNanos;
+
+  /** Cached keys by alias. */
+  private final ConcurrentHashMap<String, Cached<SecretKey>> keys = new ConcurrentHashMap<>();
+
+  /** Cached current aliases by key name. */
+  private final ConcurrentHashMap<String, Cached<String>> aliases = new ConcurrentHashMap<>();
+
+
+  /**
+   * Creates a new instance with {@link #DEFAULT_TTL}.
+   *
+   * @param  delegate  Provider that resolves uncached values.
+   */
+  public CachingKeyProvider(final KeyProvider delegate)
+  {
+    this(delegate, DEFAULT_TTL);
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  delegate  Provider that resolves uncached values.
+   * @param  ttl  Time to live of cached values in milliseconds.
+   */
+  public CachingKeyProvider(final KeyProvider delegate, final long ttl)
+  {
+    this.delegate = CryptUtil.assertNotNullArg(delegate, "Delegate cannot be null");
+    if (ttl < 1) {
+      throw new IllegalArgumentException("Time to live must be positive");
+    }
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+  }
+
+
+  /** @return  Provider that resolves uncached values. */
+  public KeyProvider getDelegate()
+  {
+    return delegate;
+  }
+
+
+  /** @return  Time to live of cached values in milliseconds. */
+  public long getTtl()
+  {
+    return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+  }
+
+
+  @Override
+  public String resolveAlias(final String keyName)
+  {
+    final long now = System.nanoTime();
+    final Cached<String> cached = aliases.get(keyName);
+    if (cached != null && now - cached.created < ttlNanos) {
+      return cached.value;
+    }
+    final String alias = delegate.resolveAlias(keyName);
+    aliases.put(keyName, new Cached<>(alias, now));
+    return alias;
+  }
+
+
+  @Override
+  public SecretKey getKey(final String alias)
+  {
+    final long now = System.nanoTime();
+    final Cached<SecretKey> cached = keys.get(alias);
+    if (cached != null && now - cached.created < ttlNanos) {
+      return cached.value;
+    }
+    final SecretKey key = delegate.getKey(alias);
+    keys.put(alias, new Cached<>(key, now));
+    return key;
+  }
+
+
+  /**
+   * Discards the cached key for the given alias and the cached current alias for the given key name.
+   *
+   * @param  alias  Key alias or key name.
+   */
+  public void invalidate(final String alias)
+  {
+    keys.remove(alias);
+    aliases.remove(alias);
+  }
+
+
+  /** Discards all cached values. */
+  public void invalidateAll()
+  {
+    keys.clear();
+    aliases.clear();
+  }
+
+
+  /**
+   * Cached value with the time it was resolved.
+   *
+   * @param  <T>  Type of cached value.
+   */
+  private static final class Cached<T>
+  {
+
+    /** Cached value. */
+    private final T value;
+
+    /** Value of {@link System#nanoTime()} when the value was resolved. */
+    private final long created;
+
+
+    /**
+     * Creates a new instance.
+     *
+     * @param  value  Cached value.
+     * @param  created  Time the value was resolved.
+     */
+    Cached(final T value, final long created)
+    {
+      this.value = value;
+      this.created = created;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Output of a batch cipher operation. The outputs of all records are held in a single contiguous byte array, the
+ * arena, and located by an offset index, which avoids allocating an array per record. The batch is an unmodifiable
+ * list whose elements are copies of the record outputs; use {@link #slice(int)} or {@link #getArena()} with {@link
+ * #getOffset(int)} and {@link #getLength(int)} to access outputs without copying.
+ *
+ * @author  Middleware Services
+ */
+public class CipherBatch extends AbstractList<byte[]> implements RandomAccess
+{
+
+  /** Holds the outputs of all records. */
+  private final byte[] arena;
+
+  /** Offset of each record output in the arena. */
+  private final int[] offsets;
+
+  /** Length of each record output. */
+  private final int[] lengths;
+
+
+  /**
+   * Creates a new batch.
+   *
+   * @param  arena  Holds the outputs of all records.
+   * @param  offsets  Offset of each record output in the arena.
+   * @param  lengths  Length of each record output.
+   */
+  public CipherBatch(final byte[] arena, final int[] offsets, final int[] lengths)
+  {
+    if (offsets.length != lengths.length) {
+      throw new IllegalArgumentException("Offsets and lengths must have the same size");
+    }
+    this.arena = arena;
+    this.offsets = offsets;
+    this.lengths = lengths;
+  }
+
+
+  /**
+   * Creates a new batch by copying the given record outputs into a single arena.
+   *
+   * @param  outputs  Record outputs.
+   *
+   * @return  Batch that holds a copy of the outputs.
+   */
+  public static CipherBatch of(final List<byte[]> outputs)
+  {
+    final int[] offsets = new int[outputs.size()];
+    final int[] lengths = new int[outputs.size()];
+    long total = 0;
+    for (int i = 0; i < lengths.length; i++) {
+      offsets[i] = (int) total;
+      lengths[i] = outputs.get(i).length;
+      total += lengths[i];
+      if (total > Integer.MAX_VALUE - 8) {
+        throw new IllegalArgumentException("Batch output exceeds maximum array size");
+      }
+    }
+    final byte[] arena = new byte[(int) total];
+    for (int i = 0; i < lengths.length; i++) {
+      System.arraycopy(outputs.get(i), 0, arena, offsets[i], lengths[i]);
+    }
+    return new CipherBatch(arena, offsets, lengths);
+  }
+
+
+  /**
+   * @return  Array that holds the outputs of all records. Regions between record outputs are unused. The array is
+   *          shared, not copied.
+   */
+  public byte[] getArena()
+  {
+    return arena;
+  }
+
+
+  /**
+   * @param  index  Record index.
+   *
+   * @return  Offset of the record output in the arena.
+   */
+  public int getOffset(final int index)
+  {
+    return offsets[index];
+  }
+
+
+  /**
+   * @param  index  Record index.
+   *
+   * @return  Length of the record output.
+   */
+  public int getLength(final int index)
+  {
+    return lengths[index];
+  }
+
+
+  /**
+   * Gets a read-only view of a record output without copying it.
+   *
+   * @param  index  Record index.
+   *
+   * @return  Read-only buffer over the record output, positioned at its start.
+   */
+  public ByteBuffer slice(final int index)
+  {
+    return ByteBuffer.wrap(arena, offsets[index], lengths[index]).slice().asReadOnlyBuffer();
+  }
+
+
+  /**
+   * Gets a copy of a record output.
+   *
+   * @param  index  Record index.
+   *
+   * @return  New array holding the record output.
+   */
+  @Override
+  public byte[] get(final int index)
+  {
+    final byte[] output = new byte[lengths[index]];
+    System.arraycopy(arena, offsets[index], output, 0, output.length);
+    return output;
+  }
+
+
+  @Override
+  public int size()
+  {
+    return offsets.length;
+  }
+}
@@ -3,12 +3,21 @@ package org.cryptacular.bean;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.cryptacular.CryptUtil;
 import org.cryptacular.CryptoException;
 import org.cryptacular.StreamException;
 
 /**
  * Bean that performs encryption/decryption using a symmetric cipher.
  *
+ * <p>The buffer, batch, and asynchronous operations have default implementations in terms of the byte array
+ * operations, so that implementations need only provide the byte array and stream operations.</p>
+ *
  * @author  Middleware Services
  */
 public interface CipherBean
@@ -40,6 +49,54 @@ public interface CipherBean
   void encrypt(InputStream input, OutputStream output) throws CryptoException, StreamException;
 
 
+  /**
+   * Encrypts the remaining bytes of the input buffer into the output buffer using a symmetric cipher. Output,
+   * including any ciphertext header, is written directly at the current position of the output buffer; both heap and
+   * direct buffers are supported.
+   *
+   * @param  input  Buffer containing plaintext data to encrypt. On success its position is advanced to its limit.
+   * @param  output  Buffer that receives ciphertext. It must have at least {@link #getEncryptOutputSize(int)} bytes
+   *                 remaining; on success its position is advanced by the number of bytes written.
+   *
+   * @return  Number of bytes written to the output buffer.
+   *
+   * @throws  CryptoException  on underlying cipher data handling errors.
+   * @throws  IllegalArgumentException  if the output buffer is too small, in which case neither buffer is modified.
+   */
+  default int encrypt(final ByteBuffer input, final ByteBuffer output) throws CryptoException
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    final byte[] data = new byte[input.remaining()];
+    input.duplicate().get(data);
+    final byte[] result = encrypt(data);
+    if (output.remaining() < result.length) {
+      throw new IllegalArgumentException(
+        "Output buffer has " + output.remaining() + " bytes remaining but " + result.length + " are required");
+    }
+    input.position(input.limit());
+    output.put(result);
+    return result.length;
+  }
+
+
+  /**
+   * Gets the number of bytes produced by {@link #encrypt(ByteBuffer, ByteBuffer)} for a plaintext of the given length.
+   * The default implementation measures the output of {@link #encrypt(byte[])} for a zero-filled plaintext of the
+   * given length; implementations should override it to compute the size directly.
+   *
+   * @param  length  Plaintext length in bytes.
+   *
+   * @return  Ciphertext length in bytes.
+   *
+   * @throws  CryptoException  on underlying cipher data handling errors.
+   */
+  default int getEncryptOutputSize(final int length) throws CryptoException
+  {
+    return encrypt(new byte[length]).length;
+  }
+
+
   /**
    * Decrypts the input data using a block cipher.
    *
@@ -64,4 +121,129 @@ public interface CipherBean
    * @throws  StreamException  on stream IO errors.
    */
   void decrypt(InputStream input, OutputStream output) throws CryptoException, StreamException;
+
+
+  /**
+   * Decrypts the remaining bytes of the input buffer into the output buffer using a symmetric cipher. Plaintext is
+   * written directly at the current position of the output buffer; both heap and direct buffers are supported.
+   *
+   * @param  input  Buffer containing ciphertext data to decrypt. On success its position is advanced to its limit.
+   * @param  output  Buffer that receives plaintext. It must have at least {@link #getDecryptOutputSize(ByteBuffer)}
+   *                 bytes remaining; on success its position is advanced by the number of bytes written.
+   *
+   * @return  Number of bytes written to the output buffer.
+   *
+   * @throws  CryptoException  on underlying cipher data handling errors.
+   * @throws  IllegalArgumentException  if the output buffer is too small, in which case neither buffer is modified.
+   */
+  default int decrypt(final ByteBuffer input, final ByteBuffer output) throws CryptoException
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    final byte[] data = new byte[input.remaining()];
+    input.duplicate().get(data);
+    final byte[] result = decrypt(data);
+    if (output.remaining() < result.length) {
+      throw new IllegalArgumentException(
+        "Output buffer has " + output.remaining() + " bytes remaining but " + result.length + " are required");
+    }
+    input.position(input.limit());
+    output.put(result);
+    return result.length;
+  }
+
+
+  /**
+   * Gets the maximum number of bytes produced by {@link #decrypt(ByteBuffer, ByteBuffer)} for the given ciphertext.
+   * The ciphertext header is read to determine the size, but the buffer position is not changed. The default
+   * implementation returns the ciphertext length, which bounds the plaintext length.
+   *
+   * @param  input  Buffer containing ciphertext data.
+   *
+   * @return  Maximum plaintext length in bytes.
+   *
+   * @throws  CryptoException  on underlying cipher data handling errors.
+   */
+  default int getDecryptOutputSize(final ByteBuffer input) throws CryptoException
+  {
+    return CryptUtil.assertNotNullArg(input, "Input cannot be null").remaining();
+  }
+
+
+  /**
+   * Encrypts a batch of records, each of which produces the same output as {@link #encrypt(byte[])}. The outputs are
+   * written to a single contiguous array.
+   *
+   * @param  inputs  Plaintext records to encrypt.
+   *
+   * @return  Ciphertext of each record in the order of the inputs.
+   *
+   * @throws  CryptoException  on underlying cipher data handling errors.
+   */
+  default CipherBatch encryptAll(final List<byte[]> inputs) throws CryptoException
+  {
+    CryptUtil.assertNotNullArg(inputs, "Inputs cannot be null");
+    final List<byte[]> outputs = new ArrayList<>(inputs.size());
+    for (byte[] input : inputs) {
+      outputs.add(encrypt(CryptUtil.assertNotNullArg(input, "Input cannot be null")));
+    }
+    return CipherBatch.of(outputs);
+  }
+
+
+  /**
+   * Encrypts a batch of records like {@link #encryptAll(List)}, with the records split into partitions that are
+   * encrypted concurrently by tasks submitted to the given executor. The default implementation processes the whole
+   * batch in a single task.
+   *
+   * @param  inputs  Plaintext records to encrypt.
+   * @param  executor  Executes encryption tasks, e.g. a fork/join pool or a virtual thread executor.
+   *
+   * @return  Future that completes with the ciphertext of each record in the order of the inputs, or exceptionally on
+   *          cipher errors.
+   */
+  default CompletableFuture<CipherBatch> encryptAllAsync(final List<byte[]> inputs, final Executor executor)
+  {
+    CryptUtil.assertNotNullArg(executor, "Executor cannot be null");
+    return CompletableFuture.supplyAsync(() -> encryptAll(inputs), executor);
+  }
+
+
+  /**
+   * Decrypts a batch of records, each of which produces the same output as {@link #decrypt(byte[])}. The outputs are
+   * written to a single contiguous array. Segmented ciphertext is not supported.
+   *
+   * @param  inputs  Ciphertext records, each with a prepended header, to decrypt.
+   *
+   * @return  Plaintext of each record in the order of the inputs.
+   *
+   * @throws  CryptoException  on underlying cipher data handling errors.
+   */
+  default CipherBatch decryptAll(final List<byte[]> inputs) throws CryptoException
+  {
+    CryptUtil.assertNotNullArg(inputs, "Inputs cannot be null");
+    final List<byte[]> outputs = new ArrayList<>(inputs.size());
+    for (byte[] input : inputs) {
+      outputs.add(decrypt(CryptUtil.assertNotNullArg(input, "Input cannot be null")));
+    }
+    return CipherBatch.of(outputs);
+  }
+
+
+  /**
+   * Decrypts a batch of records like {@link #decryptAll(List)}, with the records split into partitions that are
+   * decrypted concurrently by tasks submitted to the given executor. The default implementation processes the whole
+   * batch in a single task.
+   *
+   * @param  inputs  Ciphertext records, each with a prepended header, to decrypt.
+   * @param  executor  Executes decryption tasks, e.g. a fork/join pool or a virtual thread executor.
+   *
+   * @return  Future that completes with the plaintext of each record in the order of the inputs, or exceptionally on
+   *          cipher or header decoding errors.
+   */
+  default CompletableFuture<CipherBatch> decryptAllAsync(final List<byte[]> inputs, final Executor executor)
+  {
+    CryptUtil.assertNotNullArg(executor, "Executor cannot be null");
+    return CompletableFuture.supplyAsync(() -> decryptAll(inputs), executor);
+  }
 }
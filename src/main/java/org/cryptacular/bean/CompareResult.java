@@ -0,0 +1,34 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+/**
+ * Outcome of comparing a stored password hash with a password, which tells callers whether the stored hash should be
+ * replaced on a successful login.
+ *
+ * @author  Middleware Services
+ */
+public enum CompareResult
+{
+  /** Password does not match the stored hash. */
+  MISMATCH,
+
+  /** Password matches the stored hash, whose parameters meet the current policy. */
+  MATCH,
+
+  /** Password matches the stored hash, which should be replaced by a hash with the current parameters. */
+  MATCH_REHASH;
+
+
+  /** @return  True for {@link #MATCH} and {@link #MATCH_REHASH}, false otherwise. */
+  public boolean isMatch()
+  {
+    return this != MISMATCH;
+  }
+
+
+  /** @return  True for {@link #MATCH_REHASH}, false otherwise. */
+  public boolean isRehashNeeded()
+  {
+    return this == MATCH_REHASH;
+  }
+}
@@ -8,8 +8,8 @@ import org.cryptacular.CryptoException;
 import org.cryptacular.EncodingException;
 import org.cryptacular.StreamException;
 import org.cryptacular.codec.Codec;
+import org.cryptacular.spec.CodecSpec;
 import org.cryptacular.spec.Spec;
-import org.cryptacular.util.CodecUtil;
 
 /**
  * Computes a hash in an encoded format, e.g. hex, base64.
@@ -22,6 +22,9 @@ public class EncodingHashBean extends AbstractHashBean implements HashBean<CharS
   /** Determines kind of encoding. */
   private final Spec<Codec> codecSpec;
 
+  /** Codec resolved from {@link #codecSpec}, whose one-shot operations are thread safe. */
+  private final Codec codec;
+
   /** Whether data provided to this bean includes a salt. */
   private final boolean salted;
 
@@ -67,6 +70,7 @@ public class EncodingHashBean extends AbstractHashBean implements HashBean<CharS
   {
     super(digestSpec, iterations);
     this.codecSpec = CryptUtil.assertNotNullArg(codecSpec, "Codec spec cannot be null");
+    this.codec = codecSpec instanceof CodecSpec ? ((CodecSpec) codecSpec).getSharedInstance() : codecSpec.newInstance();
     this.salted = salted;
   }
 
@@ -111,9 +115,9 @@ public class EncodingHashBean extends AbstractHashBean implements HashBean<CharS
       }
 
       final byte[] hashSalt = (byte[]) data[data.length - 1];
-      return CodecUtil.encode(codecSpec.newInstance().getEncoder(), Arrays.concatenate(hashInternal(data), hashSalt));
+      return codec.encode(Arrays.concatenate(hashInternal(data), hashSalt));
     }
-    return CodecUtil.encode(codecSpec.newInstance().getEncoder(), hashInternal(data));
+    return codec.encode(hashInternal(data));
   }
 
 
@@ -135,6 +139,6 @@ public class EncodingHashBean extends AbstractHashBean implements HashBean<CharS
   public boolean compare(final CharSequence hash, final Object... data)
       throws CryptoException, EncodingException, StreamException
   {
-    return compareInternal(CodecUtil.decode(codecSpec.newInstance().getDecoder(), hash), data);
+    return compareInternal(codec.decode(hash), data);
   }
 }
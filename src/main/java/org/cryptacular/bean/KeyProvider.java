@@ -0,0 +1,42 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import javax.crypto.SecretKey;
+import org.cryptacular.CryptoException;
+
+/**
+ * Provides the symmetric keys used by cipher beans. Keys are identified by the symbolic alias stored in the {@link
+ * org.cryptacular.CiphertextHeader} of every ciphertext.
+ *
+ * <p>Implementations may support key rollover through versioned aliases, where a single key name refers to the most
+ * recent of several key versions. Ciphertexts record the versioned alias, so that older versions remain available for
+ * decryption while new data is encrypted under the current version.</p>
+ *
+ * @author  Middleware Services
+ */
+public interface KeyProvider
+{
+
+  /**
+   * Resolves the alias of the key that should be used to encrypt new data under the given key name.
+   *
+   * @param  keyName  Key name, e.g. the key alias configured on a cipher bean.
+   *
+   * @return  Alias of the current key version, which is the key name itself if the key is not versioned.
+   *
+   * @throws  CryptoException  on errors accessing the key source.
+   */
+  String resolveAlias(String keyName) throws CryptoException;
+
+
+  /**
+   * Gets the secret key with the given alias.
+   *
+   * @param  alias  Key alias.
+   *
+   * @return  Secret key.
+   *
+   * @throws  CryptoException  if the key cannot be accessed or the alias does not refer to a secret key.
+   */
+  SecretKey getKey(String alias) throws CryptoException;
+}
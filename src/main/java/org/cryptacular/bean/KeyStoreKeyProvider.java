@@ -0,0 +1,145 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.util.Enumeration;
+import javax.crypto.SecretKey;
+import org.cryptacular.CryptUtil;
+import org.cryptacular.CryptoException;
+
+/**
+ * Key provider that reads secret keys from a {@link KeyStore}. Every call reads the keystore, which for password
+ * protected formats such as JCEKS and PKCS12 involves decrypting the key entry; wrap instances in a {@link
+ * CachingKeyProvider} to avoid that cost on every cipher operation.
+ *
+ * <p>When created with a version separator, key entries named <code>keyName + separator + version</code>, where
+ * version is a non-negative integer, are treated as versions of the key name and {@link #resolveAlias(String)} selects
+ * the highest version. For example, with separator <code>.</code> the entries <code>app.1</code> and <code>app.2</code>
+ * are versions of <code>app</code> and new data is encrypted under <code>app.2</code>.</p>
+ *
+ * @author  Middleware Services
+ */
+public class KeyStoreKeyProvider implements KeyProvider
+{
+
+  /** Keystore containing secret keys. */
+  private final KeyStore keyStore;
+
+  /** Password on secret key entries. */
+  private final String keyPassword;
+
+  /** Separator between key name and version in versioned aliases, or null if keys are not versioned. */
+  private final String versionSeparator;
+
+
+  /**
+   * Creates a new instance for keys that are not versioned.
+   *
+   * @param  keyStore  Keystore containing secret keys.
+   * @param  keyPassword  Password used to decrypt key entries in keystore.
+   */
+  public KeyStoreKeyProvider(final KeyStore keyStore, final String keyPassword)
+  {
+    this(keyStore, keyPassword, null);
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  keyStore  Keystore containing secret keys.
+   * @param  keyPassword  Password used to decrypt key entries in keystore.
+   * @param  versionSeparator  Separator between key name and version in versioned aliases, or null if keys are not
+   *                           versioned.
+   */
+  public KeyStoreKeyProvider(final KeyStore keyStore, final String keyPassword, final String versionSeparator)
+  {
+    this.keyStore = CryptUtil.assertNotNullArg(keyStore, "Keystore cannot be null");
+    this.keyPassword = keyPassword;
+    if (versionSeparator != null && versionSeparator.isEmpty()) {
+      throw new IllegalArgumentException("Version separator cannot be empty");
+    }
+    this.versionSeparator = versionSeparator;
+  }
+
+
+  /** @return  Keystore containing secret keys. */
+  public KeyStore getKeyStore()
+  {
+    return keyStore;
+  }
+
+
+  /** @return  Separator between key name and version in versioned aliases, or null if keys are not versioned. */
+  public String getVersionSeparator()
+  {
+    return versionSeparator;
+  }
+
+
+  @Override
+  public String resolveAlias(final String keyName)
+  {
+    if (versionSeparator == null) {
+      return keyName;
+    }
+    final String prefix = keyName + versionSeparator;
+    String current = keyName;
+    long currentVersion = -1;
+    try {
+      final Enumeration<String> aliases = keyStore.aliases();
+      while (aliases.hasMoreElements()) {
+        final String alias = aliases.nextElement();
+        if (alias.regionMatches(true, 0, prefix, 0, prefix.length())) {
+          final long version = parseVersion(alias.substring(prefix.length()));
+          if (version > currentVersion) {
+            current = alias;
+            currentVersion = version;
+          }
+        }
+      }
+    } catch (KeyStoreException e) {
+      throw new CryptoException("Error reading keystore aliases", e);
+    }
+    return current;
+  }
+
+
+  @Override
+  public SecretKey getKey(final String alias)
+  {
+    final Key key;
+    try {
+      key = keyStore.getKey(alias, keyPassword.toCharArray());
+    } catch (Exception e) {
+      throw new CryptoException("Error accessing keystore entry " + alias, e);
+    }
+    if (key instanceof SecretKey) {
+      return (SecretKey) key;
+    }
+    throw new CryptoException(alias + " is not a secret key");
+  }
+
+
+  /**
+   * Parses the version suffix of a versioned alias.
+   *
+   * @param  suffix  Alias text following the version separator.
+   *
+   * @return  Version number, or -1 if the suffix is not a non-negative integer.
+   */
+  private static long parseVersion(final String suffix)
+  {
+    if (suffix.isEmpty() || suffix.length() > 18) {
+      return -1;
+    }
+    for (int i = 0; i < suffix.length(); i++) {
+      if (!Character.isDigit(suffix.charAt(i))) {
+        return -1;
+      }
+    }
+    return Long.parseLong(suffix);
+  }
+}
@@ -0,0 +1,288 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.cryptacular.adapter.CipherAdapter;
+
+/**
+ * Bounded, thread-safe pool of keyed cipher engines. Engines are pooled by symbolic key name and cipher mode, so that
+ * a borrowed engine has already run the key schedule (and, for GCM, computed the multiplier tables) and only needs to
+ * be initialized with a new nonce/IV.
+ *
+ * <p>Engines are reset when returned to the pool. The pool holds at most a fixed number of idle engines per key name
+ * and mode; engines returned to a full pool and engines that have been idle longer than the maximum idle time are
+ * evicted. Hit, miss and eviction counts are kept to help size the pool.</p>
+ *
+ * <p>The pool does not track which secret key an engine was initialized with. Callers must ensure a borrowed engine
+ * was keyed with the current key for the key name, e.g. by pooling adapters that record their key.</p>
+ *
+ * @param  <T>  Type of pooled cipher adapter.
+ *
+ * @author  Middleware Services
+ */
+public class KeyedCipherPool<T extends CipherAdapter>
+{
+
+  /** Default maximum number of idle engines per key name and mode. */
+  public static final int DEFAULT_MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+  /** Default maximum time in milliseconds an engine may remain idle before it is evicted. */
+  public static final long DEFAULT_MAX_IDLE_TIME = TimeUnit.MINUTES.toMillis(5);
+
+  /** Maximum number of idle engines per key name and mode. */
+  private final int maxIdle;
+
+  /** Maximum time in nanoseconds an engine may remain idle. */
+  private final long maxIdleNanos;
+
+  /** Idle engines in encryption mode by key name. */
+  private final ConcurrentHashMap<String, Slot<T>> encryptSlots = new ConcurrentHashMap<>();
+
+  /** Idle engines in decryption mode by key name. */
+  private final ConcurrentHashMap<String, Slot<T>> decryptSlots = new ConcurrentHashMap<>();
+
+  /** Number of borrow requests satisfied by an idle engine. */
+  private final LongAdder hits = new LongAdder();
+
+  /** Number of borrow requests with no idle engine available. */
+  private final LongAdder misses = new LongAdder();
+
+  /** Number of engines discarded by the pool. */
+  private final LongAdder evictions = new LongAdder();
+
+
+  /** Creates a new pool with {@link #DEFAULT_MAX_IDLE} and {@link #DEFAULT_MAX_IDLE_TIME}. */
+  public KeyedCipherPool()
+  {
+    this(DEFAULT_MAX_IDLE, DEFAULT_MAX_IDLE_TIME);
+  }
+
+
+  /**
+   * Creates a new pool.
+   *
+   * @param  maxIdle  Maximum number of idle engines per key name and mode.
+   * @param  maxIdleTime  Maximum time in milliseconds an engine may remain idle before it is evicted.
+   */
+  public KeyedCipherPool(final int maxIdle, final long maxIdleTime)
+  {
+    if (maxIdle < 1) {
+      throw new IllegalArgumentException("Maximum idle engines must be positive");
+    }
+    if (maxIdleTime < 1) {
+      throw new IllegalArgumentException("Maximum idle time must be positive");
+    }
+    this.maxIdle = maxIdle;
+    this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleTime);
+  }
+
+
+  /** @return  Maximum number of idle engines per key name and mode. */
+  public int getMaxIdle()
+  {
+    return maxIdle;
+  }
+
+
+  /** @return  Maximum time in milliseconds an engine may remain idle before it is evicted. */
+  public long getMaxIdleTime()
+  {
+    return TimeUnit.NANOSECONDS.toMillis(maxIdleNanos);
+  }
+
+
+  /**
+   * Takes an idle engine from the pool.
+   *
+   * @param  keyName  Symbolic key name the engine was initialized with.
+   * @param  mode  True for encryption; false for decryption.
+   *
+   * @return  Idle engine, which has been reset, or null if none is available.
+   */
+  public T borrow(final String keyName, final boolean mode)
+  {
+    final Slot<T> slot = slots(mode).get(keyName);
+    if (slot != null) {
+      final long now = System.nanoTime();
+      Entry<T> entry;
+      while ((entry = slot.idle.pollFirst()) != null) {
+        slot.size.decrementAndGet();
+        if (now - entry.released <= maxIdleNanos) {
+          hits.increment();
+          return entry.cipher;
+        }
+        evictions.increment();
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+
+  /**
+   * Resets the engine and returns it to the pool. The engine is discarded if the pool already holds the maximum number
+   * of idle engines for the key name and mode.
+   *
+   * @param  keyName  Symbolic key name the engine was initialized with.
+   * @param  mode  True for encryption; false for decryption.
+   * @param  cipher  Engine to return.
+   */
+  public void release(final String keyName, final boolean mode, final T cipher)
+  {
+    cipher.reset();
+    final Slot<T> slot = slots(mode).computeIfAbsent(keyName, k -> new Slot<>());
+    if (slot.size.incrementAndGet() > maxIdle) {
+      slot.size.decrementAndGet();
+      evictions.increment();
+      return;
+    }
+    final long now = System.nanoTime();
+    slot.idle.offerFirst(new Entry<>(cipher, now));
+    // Least recently used engines collect at the tail; expire one per release so idle slots drain over time
+    final Entry<T> last = slot.idle.peekLast();
+    if (last != null && now - last.released > maxIdleNanos && slot.idle.removeLastOccurrence(last)) {
+      slot.size.decrementAndGet();
+      evictions.increment();
+    }
+  }
+
+
+  /**
+   * Discards all idle engines for the given key name, e.g. after the key has been rotated.
+   *
+   * @param  keyName  Symbolic key name.
+   */
+  public void invalidate(final String keyName)
+  {
+    evict(encryptSlots.remove(keyName));
+    evict(decryptSlots.remove(keyName));
+  }
+
+
+  /** Discards all idle engines. */
+  public void clear()
+  {
+    encryptSlots.keySet().forEach(this::invalidate);
+    decryptSlots.keySet().forEach(this::invalidate);
+  }
+
+
+  /** @return  Number of idle engines currently held by the pool. */
+  public int getIdleCount()
+  {
+    int count = 0;
+    for (Slot<T> slot : encryptSlots.values()) {
+      count += slot.size.get();
+    }
+    for (Slot<T> slot : decryptSlots.values()) {
+      count += slot.size.get();
+    }
+    return count;
+  }
+
+
+  /** @return  Number of borrow requests satisfied by an idle engine. */
+  public long getHitCount()
+  {
+    return hits.sum();
+  }
+
+
+  /** @return  Number of borrow requests with no idle engine available. */
+  public long getMissCount()
+  {
+    return misses.sum();
+  }
+
+
+  /** @return  Number of engines discarded because the pool was full, they expired, or they were invalidated. */
+  public long getEvictionCount()
+  {
+    return evictions.sum();
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return "maxIdle=" + maxIdle +
+      ", idle=" + getIdleCount() +
+      ", hits=" + getHitCount() +
+      ", misses=" + getMissCount() +
+      ", evictions=" + getEvictionCount();
+  }
+
+
+  /**
+   * @param  mode  True for encryption; false for decryption.
+   *
+   * @return  Idle engine slots for the given mode.
+   */
+  private ConcurrentHashMap<String, Slot<T>> slots(final boolean mode)
+  {
+    return mode ? encryptSlots : decryptSlots;
+  }
+
+
+  /**
+   * Counts the engines of a removed slot as evicted.
+   *
+   * @param  slot  Removed slot, or null.
+   */
+  private void evict(final Slot<T> slot)
+  {
+    if (slot != null) {
+      evictions.add(slot.size.getAndSet(0));
+      slot.idle.clear();
+    }
+  }
+
+
+  /**
+   * Idle engines for a single key name and mode, most recently used first.
+   *
+   * @param  <T>  Type of pooled cipher adapter.
+   */
+  private static final class Slot<T>
+  {
+
+    /** Idle engines. */
+    private final ConcurrentLinkedDeque<Entry<T>> idle = new ConcurrentLinkedDeque<>();
+
+    /** Number of idle engines, which avoids the linear cost of {@link ConcurrentLinkedDeque#size()}. */
+    private final AtomicInteger size = new AtomicInteger();
+  }
+
+
+  /**
+   * Idle engine with the time it was returned to the pool.
+   *
+   * @param  <T>  Type of pooled cipher adapter.
+   */
+  private static final class Entry<T>
+  {
+
+    /** Idle engine. */
+    private final T cipher;
+
+    /** Value of {@link System#nanoTime()} when the engine was returned. */
+    private final long released;
+
+
+    /**
+     * Creates a new entry.
+     *
+     * @param  cipher  Idle engine.
+     * @param  released  Time the engine was returned.
+     */
+    Entry(final T cipher, final long released)
+    {
+      this.cipher = cipher;
+      this.released = released;
+    }
+  }
+}
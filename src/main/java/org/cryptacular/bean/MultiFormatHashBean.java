@@ -0,0 +1,385 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.cryptacular.CryptUtil;
+import org.cryptacular.CryptoException;
+import org.cryptacular.EncodingException;
+import org.cryptacular.StreamException;
+
+/**
+ * {@link HashBean} that verifies hashes of several formats, e.g. a store that holds a mix of legacy <code>{SSHA}
+ * </code>, unprefixed salted SHA-256, and bcrypt hashes, and produces new hashes in a single preferred format. The
+ * format of a stored hash is detected from its prefix, or from its length for formats without a prefix, through a
+ * table built once at construction, so no format is tried by decoding a hash that does not belong to it.
+ *
+ * <p>{@link #verify(CharSequence, Object...)} additionally computes a hash of the password in the preferred format
+ * when the stored hash is in another format, which allows migrating hashes lazily at login. The preferred bean must
+ * then produce a complete hash from the password alone, e.g. {@link Argon2HashBean} or {@link SCryptHashBean}.</p>
+ *
+ * @author  Middleware Services
+ */
+public class MultiFormatHashBean implements HashBean<CharSequence>
+{
+
+  /** Size of the prefix table, which covers ASCII first characters. */
+  private static final int TABLE_SIZE = 128;
+
+  /** Format of new hashes. */
+  private final Format preferred;
+
+  /** Prefixed formats indexed by the lower case first character of the prefix, longest prefix first. */
+  private final Entry[][] prefixTable = new Entry[TABLE_SIZE][];
+
+  /** Unprefixed formats keyed by hash length. */
+  private final Map<Integer, Entry> lengthTable = new HashMap<>();
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  preferred  Format of new hashes, which is also accepted for verification.
+   * @param  legacy  Additional formats accepted for verification.
+   */
+  public MultiFormatHashBean(final Format preferred, final Format... legacy)
+  {
+    this.preferred = CryptUtil.assertNotNullArg(preferred, "Preferred format cannot be null");
+    CryptUtil.assertNotNullArg(legacy, "Legacy formats cannot be null");
+    final List<Format> formats = new ArrayList<>(legacy.length + 1);
+    formats.add(preferred);
+    formats.addAll(Arrays.asList(legacy));
+
+    final Map<Integer, List<Entry>> buckets = new HashMap<>();
+    for (Format format : formats) {
+      CryptUtil.assertNotNullArg(format, "Format cannot be null");
+      if (format.length > 0) {
+        if (lengthTable.put(format.length, new Entry("", format)) != null) {
+          throw new IllegalArgumentException("Duplicate format for hash length " + format.length);
+        }
+      }
+      for (String prefix : format.prefixes) {
+        final List<Entry> bucket = buckets.computeIfAbsent(index(prefix.charAt(0)), k -> new ArrayList<>());
+        for (Entry entry : bucket) {
+          if (entry.prefix.equalsIgnoreCase(prefix)) {
+            throw new IllegalArgumentException("Duplicate format for prefix " + prefix);
+          }
+        }
+        bucket.add(new Entry(prefix, format));
+      }
+    }
+    for (Map.Entry<Integer, List<Entry>> bucket : buckets.entrySet()) {
+      bucket.getValue().sort(Comparator.comparingInt((Entry e) -> e.prefix.length()).reversed());
+      prefixTable[bucket.getKey()] = bucket.getValue().toArray(new Entry[0]);
+    }
+  }
+
+
+  /** @return  Format of new hashes. */
+  public Format getPreferred()
+  {
+    return preferred;
+  }
+
+
+  /**
+   * Hashes the given data with the preferred format.
+   *
+   * @param  data  Data to hash, as expected by the bean of the preferred format.
+   *
+   * @return  Hash in the preferred format, including its prefix.
+   *
+   * @throws  CryptoException  on hash computation errors.
+   * @throws  EncodingException  on encoding errors.
+   * @throws  StreamException  on stream IO errors.
+   */
+  @Override
+  public String hash(final Object... data) throws CryptoException, EncodingException, StreamException
+  {
+    return preferred.hash(data);
+  }
+
+
+  /**
+   * Compares a stored hash of any configured format with the hash of the given data.
+   *
+   * @param  hash  Stored hash.
+   * @param  data  Data to hash, as expected by the bean of the format of the stored hash.
+   *
+   * @return  True if the hashed data matches the given hash, false otherwise.
+   *
+   * @throws  IllegalArgumentException  if the format of the stored hash is unknown.
+   * @throws  CryptoException  on hash computation errors.
+   * @throws  EncodingException  on encoding errors.
+   * @throws  StreamException  on stream IO errors.
+   */
+  @Override
+  public boolean compare(final CharSequence hash, final Object... data)
+    throws CryptoException, EncodingException, StreamException
+  {
+    CryptUtil.assertNotNullArg(hash, "Hash cannot be null");
+    final Entry entry = lookup(hash);
+    return entry.format.bean.compare(hash.subSequence(entry.strip, hash.length()), data);
+  }
+
+
+  /**
+   * Compares a stored hash of any configured format with the hash of the given password and, if the password matches
+   * a hash in a format other than the preferred one, computes a replacement hash in the preferred format.
+   *
+   * @param  hash  Stored hash.
+   * @param  data  A 1-element array containing the password.
+   *
+   * @return  Verification result, which carries the replacement hash if one is needed.
+   *
+   * @throws  IllegalArgumentException  if the format of the stored hash is unknown.
+   * @throws  CryptoException  on hash computation errors.
+   * @throws  EncodingException  on encoding errors.
+   * @throws  StreamException  on stream IO errors.
+   */
+  public Verification verify(final CharSequence hash, final Object... data)
+    throws CryptoException, EncodingException, StreamException
+  {
+    CryptUtil.assertNotNullArg(hash, "Hash cannot be null");
+    final Entry entry = lookup(hash);
+    final CharSequence stored = hash.subSequence(entry.strip, hash.length());
+    final CompareResult result;
+    if (entry.format != preferred) {
+      result = entry.format.bean.compare(stored, data) ? CompareResult.MATCH_REHASH : CompareResult.MISMATCH;
+    } else {
+      result = preferred.bean.compare(stored, data) ? CompareResult.MATCH : CompareResult.MISMATCH;
+    }
+    return new Verification(result, result.isRehashNeeded() ? preferred.hash(data) : null);
+  }
+
+
+  /**
+   * Finds the format of a stored hash.
+   *
+   * @param  hash  Stored hash.
+   *
+   * @return  Matching table entry.
+   */
+  private Entry lookup(final CharSequence hash)
+  {
+    if (hash.length() > 0 && hash.charAt(0) < TABLE_SIZE) {
+      final Entry[] bucket = prefixTable[index(hash.charAt(0))];
+      if (bucket != null) {
+        for (Entry entry : bucket) {
+          if (entry.matches(hash)) {
+            return entry;
+          }
+        }
+      }
+    }
+    final Entry entry = lengthTable.get(hash.length());
+    if (entry == null) {
+      throw new IllegalArgumentException("Unsupported hash format");
+    }
+    return entry;
+  }
+
+
+  /**
+   * Gets the prefix table index of a character.
+   *
+   * @param  c  First character of a prefix or hash.
+   *
+   * @return  Table index.
+   */
+  private static int index(final char c)
+  {
+    final int index = Character.toLowerCase(c);
+    if (index >= TABLE_SIZE) {
+      throw new IllegalArgumentException("Prefix must start with an ASCII character");
+    }
+    return index;
+  }
+
+
+  /** Prefix table entry. */
+  private static final class Entry
+  {
+    /** Prefix matched case insensitively. */
+    private final String prefix;
+
+    /** Format identified by the prefix. */
+    private final Format format;
+
+    /** Number of leading characters removed before the hash is passed to the bean of the format. */
+    private final int strip;
+
+
+    /**
+     * Creates a new entry.
+     *
+     * @param  prefix  Prefix.
+     * @param  format  Format identified by the prefix.
+     */
+    Entry(final String prefix, final Format format)
+    {
+      this.prefix = prefix;
+      this.format = format;
+      this.strip = format.stripPrefix ? prefix.length() : 0;
+    }
+
+
+    /**
+     * Determines whether a hash starts with the prefix of this entry.
+     *
+     * @param  hash  Stored hash.
+     *
+     * @return  True if the hash starts with the prefix, false otherwise.
+     */
+    boolean matches(final CharSequence hash)
+    {
+      if (hash.length() < prefix.length()) {
+        return false;
+      }
+      for (int i = 0; i < prefix.length(); i++) {
+        if (Character.toLowerCase(hash.charAt(i)) != Character.toLowerCase(prefix.charAt(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+
+  /**
+   * Hash format handled by a {@link HashBean}, identified either by one or more prefixes or by the length of hashes
+   * without a prefix.
+   */
+  public static class Format
+  {
+    /** Bean that computes and compares hashes of this format. */
+    private final HashBean<CharSequence> bean;
+
+    /** Prefixes identifying hashes of this format; the first one is used for new hashes. */
+    private final String[] prefixes;
+
+    /** Whether prefixes are removed before hashes are passed to the bean and added to the bean output. */
+    private final boolean stripPrefix;
+
+    /** Length of unprefixed hashes of this format, or 0 for prefixed formats. */
+    private final int length;
+
+
+    /**
+     * Creates a prefixed format, e.g. <code>new Format(bcrypt, false, "$2a$", "$2b$", "$2y$")</code> for a bean that
+     * handles complete hash strings, or <code>new Format(ssha, true, "{SSHA}")</code> for a bean that handles the
+     * encoded hash after the prefix. Prefixes are matched case insensitively.
+     *
+     * @param  bean  Bean that computes and compares hashes of this format.
+     * @param  stripPrefix  Whether the prefix is removed before a hash is passed to the bean, and the first prefix is
+     *                      added to hashes produced by the bean.
+     * @param  prefixes  One or more prefixes identifying hashes of this format.
+     */
+    public Format(final HashBean<CharSequence> bean, final boolean stripPrefix, final String... prefixes)
+    {
+      this.bean = CryptUtil.assertNotNullArg(bean, "Hash bean cannot be null");
+      CryptUtil.assertNotNullArg(prefixes, "Prefixes cannot be null");
+      if (prefixes.length == 0) {
+        throw new IllegalArgumentException("At least one prefix is required");
+      }
+      for (String prefix : prefixes) {
+        if (prefix == null || prefix.isEmpty()) {
+          throw new IllegalArgumentException("Prefix cannot be null or empty");
+        }
+        index(prefix.charAt(0));
+      }
+      this.prefixes = prefixes.clone();
+      this.stripPrefix = stripPrefix;
+      this.length = 0;
+    }
+
+
+    /**
+     * Creates a format for hashes without a prefix, which are identified by their length, e.g. the Base64 encoding of
+     * a salted SHA-256 hash produced by {@link EncodingHashBean}. Prefixed formats take precedence.
+     *
+     * @param  bean  Bean that computes and compares hashes of this format.
+     * @param  length  Length of hashes of this format in characters.
+     */
+    public Format(final HashBean<CharSequence> bean, final int length)
+    {
+      this.bean = CryptUtil.assertNotNullArg(bean, "Hash bean cannot be null");
+      if (length < 1) {
+        throw new IllegalArgumentException("Hash length must be positive");
+      }
+      this.prefixes = new String[0];
+      this.stripPrefix = false;
+      this.length = length;
+    }
+
+
+    /** @return  Bean that computes and compares hashes of this format. */
+    public HashBean<CharSequence> getBean()
+    {
+      return bean;
+    }
+
+
+    /**
+     * Hashes the given data with the bean of this format.
+     *
+     * @param  data  Data to hash.
+     *
+     * @return  Hash including the prefix of this format.
+     */
+    private String hash(final Object... data)
+    {
+      final CharSequence hash = bean.hash(data);
+      return stripPrefix ? prefixes[0] + hash : hash.toString();
+    }
+  }
+
+
+  /** Outcome of {@link #verify(CharSequence, Object...)}. */
+  public static class Verification
+  {
+    /** Comparison result. */
+    private final CompareResult result;
+
+    /** Replacement hash in the preferred format, or null. */
+    private final String newHash;
+
+
+    /**
+     * Creates a new verification result.
+     *
+     * @param  result  Comparison result.
+     * @param  newHash  Replacement hash in the preferred format, or null if no replacement is needed.
+     */
+    protected Verification(final CompareResult result, final String newHash)
+    {
+      this.result = result;
+      this.newHash = newHash;
+    }
+
+
+    /** @return  Comparison result. */
+    public CompareResult getResult()
+    {
+      return result;
+    }
+
+
+    /** @return  True if the password matches the stored hash, false otherwise. */
+    public boolean isMatch()
+    {
+      return result.isMatch();
+    }
+
+
+    /** @return  Replacement hash in the preferred format that should be stored, or null if none is needed. */
+    public String getNewHash()
+    {
+      return newHash;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+/**
+ * Runtime exception that describes an operation that was refused, rather than failed, because too many operations
+ * are in progress or waiting. Callers may retry later or shed the request.
+ *
+ * @author  Middleware Services
+ */
+public class OverloadException extends RuntimeException
+{
+
+  /**
+   * Creates a new instance with the given error description.
+   *
+   * @param  message  Error message.
+   */
+  public OverloadException(final String message)
+  {
+    super(message);
+  }
+
+
+  /**
+   * Creates a new instance with the given error message and cause.
+   *
+   * @param  message  Error message.
+   * @param  cause  Error cause.
+   */
+  public OverloadException(final String message, final Throwable cause)
+  {
+    super(message, cause);
+  }
+}
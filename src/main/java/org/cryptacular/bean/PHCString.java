@@ -0,0 +1,242 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.cryptacular.CryptUtil;
+import org.cryptacular.codec.Base64Decoder;
+import org.cryptacular.codec.Base64Encoder;
+import org.cryptacular.util.CodecUtil;
+
+/**
+ * Password hash string in the <a href="https://github.com/P-H-C/phc-string-format">PHC string format</a>:
+ * <br>
+ * <code>
+ *   $id[$v=version][$param=value(,param=value)*][$salt[$hash]]
+ * </code>
+ * <p>
+ * Salt and hash are encoded in base-64 without padding.
+ * </p>
+ *
+ * @author  Middleware Services
+ */
+public class PHCString
+{
+
+  /** Valid function identifiers. */
+  private static final Pattern ID_PATTERN = Pattern.compile("[a-z0-9-]{1,32}");
+
+  /** Valid parameter names. */
+  private static final Pattern NAME_PATTERN = Pattern.compile("[a-z0-9-]{1,32}");
+
+  /** Hash function identifier, e.g. argon2id. */
+  private final String id;
+
+  /** Hash function version, or -1 if the string has no version. */
+  private final int version;
+
+  /** Hash function parameters in order of appearance. */
+  private final Map<String, String> params;
+
+  /** Salt, which may be null. */
+  private final byte[] salt;
+
+  /** Hash output, which may be null. */
+  private final byte[] hash;
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  id  Hash function identifier.
+   * @param  version  Hash function version or -1 for none.
+   * @param  params  Hash function parameters, which are encoded in iteration order.
+   * @param  salt  Salt or null for none.
+   * @param  hash  Hash output or null for none. A hash requires a salt.
+   */
+  public PHCString(
+    final String id,
+    final int version,
+    final Map<String, String> params,
+    final byte[] salt,
+    final byte[] hash)
+  {
+    if (id == null || !ID_PATTERN.matcher(id).matches()) {
+      throw new IllegalArgumentException("Invalid hash function identifier: " + id);
+    }
+    CryptUtil.assertNotNullArg(params, "Parameters cannot be null");
+    for (String name : params.keySet()) {
+      if (!NAME_PATTERN.matcher(name).matches()) {
+        throw new IllegalArgumentException("Invalid parameter name: " + name);
+      }
+    }
+    if (hash != null && salt == null) {
+      throw new IllegalArgumentException("Hash requires a salt");
+    }
+    this.id = id;
+    this.version = version;
+    this.params = Collections.unmodifiableMap(new LinkedHashMap<>(params));
+    this.salt = salt;
+    this.hash = hash;
+  }
+
+
+  /**
+   * Parses a PHC string.
+   *
+   * @param  phcString  String in PHC format.
+   *
+   * @return  Parsed PHC string.
+   */
+  public static PHCString parse(final CharSequence phcString)
+  {
+    CryptUtil.assertNotNullArg(phcString, "PHC string cannot be null");
+    final String[] parts = phcString.toString().split("\\$", -1);
+    if (parts.length < 2 || !parts[0].isEmpty()) {
+      throw new IllegalArgumentException("Expected PHC string of the form $id[$v=version][$params][$salt[$hash]]");
+    }
+    int i = 2;
+    int version = -1;
+    if (i < parts.length && parts[i].startsWith("v=")) {
+      version = parseInt("v", parts[i++].substring(2));
+    }
+    final Map<String, String> params = new LinkedHashMap<>();
+    if (i < parts.length && parts[i].contains("=")) {
+      for (String param : parts[i++].split(",", -1)) {
+        final int eq = param.indexOf('=');
+        if (eq < 0) {
+          throw new IllegalArgumentException("Invalid parameter: " + param);
+        }
+        params.put(param.substring(0, eq), param.substring(eq + 1));
+      }
+    }
+    final byte[] salt = i < parts.length ? decode(parts[i++]) : null;
+    final byte[] hash = i < parts.length ? decode(parts[i++]) : null;
+    if (i < parts.length) {
+      throw new IllegalArgumentException("Unexpected data after hash in PHC string");
+    }
+    return new PHCString(parts[1], version, params, salt, hash);
+  }
+
+
+  /** @return  Hash function identifier, e.g. argon2id. */
+  public String getId()
+  {
+    return id;
+  }
+
+
+  /** @return  Hash function version, or -1 if the string has no version. */
+  public int getVersion()
+  {
+    return version;
+  }
+
+
+  /** @return  Unmodifiable map of hash function parameters in order of appearance. */
+  public Map<String, String> getParams()
+  {
+    return params;
+  }
+
+
+  /**
+   * Gets a required integer parameter.
+   *
+   * @param  name  Parameter name.
+   *
+   * @return  Parameter value.
+   */
+  public int getIntParam(final String name)
+  {
+    final String value = params.get(name);
+    if (value == null) {
+      throw new IllegalArgumentException("Missing parameter " + name + " in " + id + " hash");
+    }
+    return parseInt(name, value);
+  }
+
+
+  /** @return  Salt, or null if the string has no salt. */
+  public byte[] getSalt()
+  {
+    return salt;
+  }
+
+
+  /** @return  Hash output, or null if the string has no hash. */
+  public byte[] getHash()
+  {
+    return hash;
+  }
+
+
+  /**
+   * Produces the PHC string.
+   *
+   * @return  String in PHC format.
+   */
+  public String encode()
+  {
+    final StringBuilder sb = new StringBuilder().append('$').append(id);
+    if (version >= 0) {
+      sb.append("$v=").append(version);
+    }
+    if (!params.isEmpty()) {
+      sb.append('$');
+      for (Map.Entry<String, String> param : params.entrySet()) {
+        if (sb.charAt(sb.length() - 1) != '$') {
+          sb.append(',');
+        }
+        sb.append(param.getKey()).append('=').append(param.getValue());
+      }
+    }
+    if (salt != null) {
+      sb.append('$').append(CodecUtil.encode(new Base64Encoder.Builder().setPadding(false).build(), salt));
+    }
+    if (hash != null) {
+      sb.append('$').append(CodecUtil.encode(new Base64Encoder.Builder().setPadding(false).build(), hash));
+    }
+    return sb.toString();
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return encode();
+  }
+
+
+  /**
+   * Parses a decimal parameter value.
+   *
+   * @param  name  Parameter name.
+   * @param  value  Parameter value.
+   *
+   * @return  Integer value.
+   */
+  private static int parseInt(final String name, final String value)
+  {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value of parameter " + name + ": " + value, e);
+    }
+  }
+
+
+  /**
+   * Decodes base-64 without padding.
+   *
+   * @param  encoded  Encoded bytes.
+   *
+   * @return  Decoded bytes.
+   */
+  private static byte[] decode(final String encoded)
+  {
+    return CodecUtil.decode(new Base64Decoder.Builder().setPadding(false).build(), encoded);
+  }
+}
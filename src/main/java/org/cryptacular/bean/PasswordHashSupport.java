@@ -0,0 +1,122 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.nio.CharBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import org.cryptacular.util.ByteUtil;
+import org.cryptacular.util.NonceUtil;
+
+/**
+ * Input handling and calibration support shared by the password hash beans.
+ *
+ * @author  Middleware Services
+ */
+final class PasswordHashSupport
+{
+
+  /** Number of timed runs whose median is taken by {@link #median(Runnable)}. */
+  static final int CALIBRATION_SAMPLES = 5;
+
+
+  /** Private constructor of utility class. */
+  private PasswordHashSupport() {}
+
+
+  /**
+   * Gets the salt of a hash operation. A single data element is the password, for which a random salt is generated;
+   * two elements are a salt and password.
+   *
+   * @param  data  Hash operation input.
+   * @param  saltLength  Length of generated salts in bytes.
+   *
+   * @return  Salt bytes.
+   */
+  static byte[] salt(final Object[] data, final int saltLength)
+  {
+    if (data == null || data.length < 1 || data.length > 2) {
+      throw new IllegalArgumentException("Data must contain a password, optionally preceded by a salt");
+    }
+    if (data.length == 1) {
+      return NonceUtil.randomNonce(saltLength);
+    }
+    if (!(data[0] instanceof byte[])) {
+      throw new IllegalArgumentException("Expected salt of type byte[]");
+    }
+    return (byte[]) data[0];
+  }
+
+
+  /**
+   * Converts a password into bytes.
+   *
+   * @param  data  Password as {@link CharSequence}, <code>char[]</code>, or <code>byte[]</code>. Character data is
+   *               encoded in UTF-8.
+   *
+   * @return  Password bytes.
+   */
+  static byte[] password(final Object data)
+  {
+    final byte[] password;
+    if (data instanceof byte[]) {
+      password = (byte[]) data;
+    } else if (data instanceof char[]) {
+      password = ByteUtil.toBytes(CharBuffer.wrap((char[]) data));
+    } else if (data instanceof CharSequence) {
+      password = ByteUtil.toBytes((CharSequence) data);
+    } else {
+      throw new IllegalArgumentException("Expected password of type byte[], char[], or CharSequence");
+    }
+    return password;
+  }
+
+
+  /**
+   * Gets the password of a compare operation.
+   *
+   * @param  data  Compare operation input.
+   *
+   * @return  Password bytes.
+   */
+  static byte[] comparePassword(final Object[] data)
+  {
+    if (data == null || data.length != 1) {
+      throw new IllegalArgumentException("Expected exactly one element in data array");
+    }
+    return password(data[0]);
+  }
+
+
+  /**
+   * Measures the median latency of an operation after a warm-up run.
+   *
+   * @param  operation  Operation to time.
+   *
+   * @return  Median of {@link #CALIBRATION_SAMPLES} runs.
+   */
+  static Duration median(final Runnable operation)
+  {
+    operation.run();
+    final long[] samples = new long[CALIBRATION_SAMPLES];
+    for (int i = 0; i < samples.length; i++) {
+      final long start = System.nanoTime();
+      operation.run();
+      samples[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(samples);
+    return Duration.ofNanos(samples[samples.length / 2]);
+  }
+
+
+  /**
+   * Validates a calibration latency target.
+   *
+   * @param  target  Latency target.
+   */
+  static void checkTarget(final Duration target)
+  {
+    if (target == null || target.isNegative() || target.isZero()) {
+      throw new IllegalArgumentException("Target latency must be positive");
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.bouncycastle.util.Arrays;
+import org.cryptacular.CryptoException;
+
+/**
+ * {@link HashBean} implementation that uses the memory-hard <em>scrypt</em> function of RFC 7914 for password hashing.
+ * Hashes are produced as PHC strings of the following form:
+ * <br>
+ * <code>
+ *   $scrypt$ln=log2(N),r=blockSize,p=parallelism$salt$hash
+ * </code>
+ * <p>
+ * Comparison takes the parameters from the known hash. Use {@link #calibrate(Duration, int, int, int)} to choose a
+ * cost that meets a latency target on the current host.
+ * </p>
+ *
+ * @author  Middleware Services
+ */
+public class SCryptHashBean implements HashBean<CharSequence>
+{
+
+  /** PHC identifier of hashes produced by this bean. */
+  public static final String ID = "scrypt";
+
+  /** Default base-2 logarithm of the CPU/memory cost N. Value is {@value}. */
+  public static final int DEFAULT_LOG_COST = 17;
+
+  /** Default block size r. Value is {@value}. */
+  public static final int DEFAULT_BLOCK_SIZE = 8;
+
+  /** Default parallelism p. Value is {@value}. */
+  public static final int DEFAULT_PARALLELISM = 1;
+
+  /** Smallest base-2 logarithm of the cost tried by calibration. */
+  private static final int MIN_CALIBRATION_LOG_COST = 10;
+
+  /** Length of generated salts in bytes. */
+  private static final int SALT_LENGTH = 16;
+
+  /** Length of hash output in bytes. */
+  private static final int HASH_LENGTH = 32;
+
+  /** Base-2 logarithm of the CPU/memory cost N. */
+  private final int logCost;
+
+  /** Block size r. */
+  private final int blockSize;
+
+  /** Parallelism p. */
+  private final int parallelism;
+
+
+  /** Creates a new instance with default parameters. */
+  public SCryptHashBean()
+  {
+    this(DEFAULT_LOG_COST, DEFAULT_BLOCK_SIZE, DEFAULT_PARALLELISM);
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  logCost  Base-2 logarithm of the CPU/memory cost N in the range [1, 30].
+   * @param  blockSize  Block size r.
+   * @param  parallelism  Parallelism p, where p * r must be less than 2^30.
+   */
+  public SCryptHashBean(final int logCost, final int blockSize, final int parallelism)
+  {
+    if (logCost < 1 || logCost > 30) {
+      throw new IllegalArgumentException("Cost logarithm must be in the range [1, 30]");
+    }
+    if (blockSize < 1 || parallelism < 1) {
+      throw new IllegalArgumentException("Block size and parallelism must be positive");
+    }
+    if ((long) blockSize * parallelism >= 1 << 30) {
+      throw new IllegalArgumentException("Product of block size and parallelism must be less than 2^30");
+    }
+    this.logCost = logCost;
+    this.blockSize = blockSize;
+    this.parallelism = parallelism;
+  }
+
+
+  /**
+   * Creates a bean whose hash latency on this host is close to but does not exceed the given target. Block size and
+   * parallelism are fixed and the cost is doubled until the next doubling would exceed the target or the memory
+   * limit. Each candidate is timed by the median of several runs, so calibration takes several multiples of the
+   * target.
+   *
+   * @param  target  Target median hash latency.
+   * @param  maxMemory  Maximum memory of a hash operation, 128 * N * r bytes, in KiB.
+   * @param  blockSize  Block size r.
+   * @param  parallelism  Parallelism p.
+   *
+   * @return  Calibrated hash bean.
+   */
+  public static SCryptHashBean calibrate(
+    final Duration target, final int maxMemory, final int blockSize, final int parallelism)
+  {
+    PasswordHashSupport.checkTarget(target);
+    SCryptHashBean bean = new SCryptHashBean(MIN_CALIBRATION_LOG_COST, blockSize, parallelism);
+    Duration latency = bean.measure();
+    while (bean.logCost < 30 &&
+        bean.getMemory() * 2 <= maxMemory &&
+        latency.multipliedBy(2).compareTo(target) <= 0) {
+      final SCryptHashBean next = new SCryptHashBean(bean.logCost + 1, blockSize, parallelism);
+      final Duration nextLatency = next.measure();
+      if (nextLatency.compareTo(target) > 0) {
+        break;
+      }
+      bean = next;
+      latency = nextLatency;
+    }
+    return bean;
+  }
+
+
+  /** @return  Base-2 logarithm of the CPU/memory cost N. */
+  public int getLogCost()
+  {
+    return logCost;
+  }
+
+
+  /** @return  Block size r. */
+  public int getBlockSize()
+  {
+    return blockSize;
+  }
+
+
+  /** @return  Parallelism p. */
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+
+  /** @return  Memory of a hash operation, 128 * N * r bytes, in KiB. */
+  public long getMemory()
+  {
+    return (128L << logCost) * blockSize / 1024;
+  }
+
+
+  /**
+   * Computes an scrypt hash of a password.
+   *
+   * @param  data  Either a password, for which a random 16-byte salt is generated, or a 2-element array containing a
+   *               salt of type <code>byte[]</code> and a password. The password may be a {@link CharSequence},
+   *               <code>char[]</code>, or <code>byte[]</code>; character data is encoded in UTF-8.
+   *
+   * @return  PHC string of the form <code>$scrypt$ln=log2(N),r=blockSize,p=parallelism$salt$hash</code>.
+   *
+   * @throws  CryptoException  on scrypt computation errors.
+   */
+  @Override
+  public String hash(final Object... data) throws CryptoException
+  {
+    final byte[] salt = PasswordHashSupport.salt(data, SALT_LENGTH);
+    final byte[] password = PasswordHashSupport.password(data[data.length - 1]);
+    final Map<String, String> params = new LinkedHashMap<>();
+    params.put("ln", String.valueOf(logCost));
+    params.put("r", String.valueOf(blockSize));
+    params.put("p", String.valueOf(parallelism));
+    return new PHCString(
+      ID, -1, params, salt, generate(password, salt, logCost, blockSize, parallelism, HASH_LENGTH)).encode();
+  }
+
+
+  /**
+   * Compares an scrypt PHC string with the hash of the given password computed with the parameters of the PHC string.
+   *
+   * @param  hash  scrypt PHC string, e.g. <code>$scrypt$ln=17,r=8,p=1$salt$hash</code>.
+   * @param  data  A 1-element array containing the password.
+   *
+   * @return  True if the computed hash equals the known hash, false otherwise.
+   *
+   * @throws  CryptoException  on scrypt computation errors.
+   */
+  @Override
+  public boolean compare(final CharSequence hash, final Object... data) throws CryptoException
+  {
+    final byte[] password = PasswordHashSupport.comparePassword(data);
+    final PHCString phc = PHCString.parse(hash);
+    if (!ID.equals(phc.getId())) {
+      throw new IllegalArgumentException("Expected scrypt hash but got " + phc.getId());
+    }
+    if (phc.getHash() == null) {
+      throw new IllegalArgumentException("scrypt hash has no hash output");
+    }
+    final int ln = phc.getIntParam("ln");
+    if (ln < 1 || ln > 30) {
+      throw new IllegalArgumentException("Invalid scrypt cost logarithm " + ln);
+    }
+    final byte[] computed = generate(
+      password, phc.getSalt(), ln, phc.getIntParam("r"), phc.getIntParam("p"), phc.getHash().length);
+    return Arrays.constantTimeAreEqual(computed, phc.getHash());
+  }
+
+
+  /**
+   * Computes an scrypt hash.
+   *
+   * @param  password  Password bytes.
+   * @param  salt  Salt.
+   * @param  ln  Base-2 logarithm of the cost.
+   * @param  r  Block size.
+   * @param  p  Parallelism.
+   * @param  length  Hash output length in bytes.
+   *
+   * @return  Hash output.
+   */
+  private static byte[] generate(
+    final byte[] password,
+    final byte[] salt,
+    final int ln,
+    final int r,
+    final int p,
+    final int length)
+  {
+    try {
+      return SCrypt.generate(password, salt, 1 << ln, r, p, length);
+    } catch (IllegalArgumentException e) {
+      throw new CryptoException("scrypt computation error", e);
+    }
+  }
+
+
+  /** @return  Median latency of a hash operation with the parameters of this bean. */
+  private Duration measure()
+  {
+    final byte[] salt = new byte[SALT_LENGTH];
+    return PasswordHashSupport.median(() -> hash(salt, "calibration"));
+  }
+}
@@ -0,0 +1,305 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.cryptacular.CryptUtil;
+import org.cryptacular.CryptoException;
+import org.cryptacular.StreamException;
+
+/**
+ * {@link HashBean} decorator that bounds the number of concurrent operations of an expensive hash bean, e.g. {@link
+ * BCryptHashBean} or {@link Argon2HashBean}, so that bursts of password verifications cannot saturate all cores.
+ * Operations beyond the concurrency limit wait in FIFO order for at most a configured time; when the wait queue is
+ * full or the wait times out, the operation is shed with an {@link OverloadException} instead of adding to the load.
+ * Operations may optionally run on a dedicated executor, e.g. a small pool of low priority threads.
+ *
+ * <p>Queue depth, wait times, and shed operations are exposed for monitoring. Instances of this class are thread
+ * safe if the wrapped bean is.</p>
+ *
+ * @param  <T>  Type of output produced by the wrapped hash bean.
+ *
+ * @author  Middleware Services
+ */
+public class ThrottledHashBean<T> implements HashBean<T>
+{
+
+  /** Wrapped hash bean. */
+  private final HashBean<T> delegate;
+
+  /** Maximum number of concurrent operations. */
+  private final int maxConcurrent;
+
+  /** Maximum number of operations waiting for a permit. */
+  private final int maxQueued;
+
+  /** Maximum time an operation waits for a permit in nanoseconds. */
+  private final long timeout;
+
+  /** Runs operations, or null to run them on the calling thread. */
+  private final Executor executor;
+
+  /** Fair permits for concurrent operations. */
+  private final Semaphore permits;
+
+  /** Number of operations waiting for a permit. */
+  private final AtomicInteger queued = new AtomicInteger();
+
+  /** Number of operations that obtained a permit. */
+  private final LongAdder admitted = new LongAdder();
+
+  /** Number of operations shed because the queue was full. */
+  private final LongAdder rejected = new LongAdder();
+
+  /** Number of operations shed because the wait timed out. */
+  private final LongAdder timedOut = new LongAdder();
+
+  /** Total time admitted operations waited for a permit in nanoseconds. */
+  private final LongAdder totalWait = new LongAdder();
+
+  /** Longest time an admitted operation waited for a permit in nanoseconds. */
+  private final AtomicLong maxWait = new AtomicLong();
+
+
+  /**
+   * Creates a new instance that runs operations on the calling thread and lets operations wait indefinitely.
+   *
+   * @param  delegate  Hash bean to wrap.
+   * @param  maxConcurrent  Maximum number of concurrent operations.
+   */
+  public ThrottledHashBean(final HashBean<T> delegate, final int maxConcurrent)
+  {
+    this(delegate, maxConcurrent, Integer.MAX_VALUE, Duration.ofNanos(Long.MAX_VALUE), null);
+  }
+
+
+  /**
+   * Creates a new instance that runs operations on the calling thread.
+   *
+   * @param  delegate  Hash bean to wrap.
+   * @param  maxConcurrent  Maximum number of concurrent operations.
+   * @param  maxQueued  Maximum number of operations waiting for a permit; 0 sheds all operations beyond the limit.
+   * @param  timeout  Maximum time an operation waits for a permit.
+   */
+  public ThrottledHashBean(
+    final HashBean<T> delegate,
+    final int maxConcurrent,
+    final int maxQueued,
+    final Duration timeout)
+  {
+    this(delegate, maxConcurrent, maxQueued, timeout, null);
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  delegate  Hash bean to wrap.
+   * @param  maxConcurrent  Maximum number of concurrent operations.
+   * @param  maxQueued  Maximum number of operations waiting for a permit; 0 sheds all operations beyond the limit.
+   * @param  timeout  Maximum time an operation waits for a permit.
+   * @param  executor  Runs operations while the calling thread waits for the result, or null to run operations on
+   *                   the calling thread.
+   */
+  public ThrottledHashBean(
+    final HashBean<T> delegate,
+    final int maxConcurrent,
+    final int maxQueued,
+    final Duration timeout,
+    final Executor executor)
+  {
+    this.delegate = CryptUtil.assertNotNullArg(delegate, "Hash bean cannot be null");
+    CryptUtil.assertNotNullArg(timeout, "Timeout cannot be null");
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("Maximum concurrency must be positive");
+    }
+    if (maxQueued < 0) {
+      throw new IllegalArgumentException("Maximum queue size cannot be negative");
+    }
+    if (timeout.isNegative()) {
+      throw new IllegalArgumentException("Timeout cannot be negative");
+    }
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueued = maxQueued;
+    this.timeout = timeout.getSeconds() >= Long.MAX_VALUE / 1000000000L ? Long.MAX_VALUE : timeout.toNanos();
+    this.executor = executor;
+    this.permits = new Semaphore(maxConcurrent, true);
+  }
+
+
+  /** @return  Wrapped hash bean. */
+  public HashBean<T> getDelegate()
+  {
+    return delegate;
+  }
+
+
+  /** @return  Maximum number of concurrent operations. */
+  public int getMaxConcurrent()
+  {
+    return maxConcurrent;
+  }
+
+
+  /** @return  Number of operations currently running. */
+  public int getActiveCount()
+  {
+    return maxConcurrent - permits.availablePermits();
+  }
+
+
+  /** @return  Number of operations currently waiting for a permit. */
+  public int getQueueDepth()
+  {
+    return queued.get();
+  }
+
+
+  /** @return  Number of operations that obtained a permit. */
+  public long getAdmittedCount()
+  {
+    return admitted.sum();
+  }
+
+
+  /** @return  Number of operations shed because the wait queue was full. */
+  public long getRejectedCount()
+  {
+    return rejected.sum();
+  }
+
+
+  /** @return  Number of operations shed because the wait for a permit timed out. */
+  public long getTimedOutCount()
+  {
+    return timedOut.sum();
+  }
+
+
+  /** @return  Mean time admitted operations waited for a permit. */
+  public Duration getAverageWaitTime()
+  {
+    final long count = admitted.sum();
+    return Duration.ofNanos(count == 0 ? 0 : totalWait.sum() / count);
+  }
+
+
+  /** @return  Longest time an admitted operation waited for a permit. */
+  public Duration getMaxWaitTime()
+  {
+    return Duration.ofNanos(maxWait.get());
+  }
+
+
+  /**
+   * Hashes the given data with the wrapped bean once a permit is available.
+   *
+   * @param  data  Data to hash.
+   *
+   * @return  Digest output.
+   *
+   * @throws  OverloadException  if the operation is shed.
+   * @throws  CryptoException  on hash computation errors.
+   * @throws  StreamException  on stream IO errors.
+   */
+  @Override
+  public T hash(final Object... data) throws CryptoException, StreamException
+  {
+    return execute(() -> delegate.hash(data));
+  }
+
+
+  /**
+   * Compares a known hash value with the hash of the given data with the wrapped bean once a permit is available.
+   *
+   * @param  hash  Known hash value.
+   * @param  data  Data to hash.
+   *
+   * @return  True if the hashed data matches the given hash, false otherwise.
+   *
+   * @throws  OverloadException  if the operation is shed.
+   * @throws  CryptoException  on hash computation errors.
+   * @throws  StreamException  on stream IO errors.
+   */
+  @Override
+  public boolean compare(final T hash, final Object... data) throws CryptoException, StreamException
+  {
+    return execute(() -> delegate.compare(hash, data));
+  }
+
+
+  /**
+   * Runs an operation once a permit is available.
+   *
+   * @param  <R>  Type of operation result.
+   * @param  operation  Operation to run.
+   *
+   * @return  Operation result.
+   */
+  private <R> R execute(final Supplier<R> operation)
+  {
+    acquire();
+    if (executor == null) {
+      try {
+        return operation.get();
+      } finally {
+        permits.release();
+      }
+    }
+    final CompletableFuture<R> future;
+    try {
+      // The permit is held until the operation completes, even if the caller stops waiting
+      future = CompletableFuture.supplyAsync(operation, executor);
+      future.whenComplete((result, error) -> permits.release());
+    } catch (RejectedExecutionException e) {
+      permits.release();
+      throw new OverloadException("Executor rejected hash operation", e);
+    }
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new CryptoException("Hash operation failed", e.getCause());
+    }
+  }
+
+
+  /** Obtains a permit, waiting in FIFO order if none is available. */
+  private void acquire()
+  {
+    final int depth = queued.incrementAndGet();
+    try {
+      if (depth > maxQueued && !permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+        rejected.increment();
+        throw new OverloadException("Too many hash operations waiting");
+      }
+      if (depth <= maxQueued) {
+        final long start = System.nanoTime();
+        if (!permits.tryAcquire(timeout, TimeUnit.NANOSECONDS)) {
+          timedOut.increment();
+          throw new OverloadException("Timed out waiting to start hash operation");
+        }
+        final long wait = System.nanoTime() - start;
+        totalWait.add(wait);
+        maxWait.accumulateAndGet(wait, Math::max);
+      }
+      admitted.increment();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OverloadException("Interrupted waiting to start hash operation", e);
+    } finally {
+      queued.decrementAndGet();
+    }
+  }
+}
@@ -4,11 +4,14 @@ package org.cryptacular.codec;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.util.Arrays;
 import org.cryptacular.CryptUtil;
 import org.cryptacular.EncodingException;
 
 /**
- * Base decoder class for encoding schemes described in RFC 3548.
+ * Base decoder class for encoding schemes described in RFC 3548. Base-64 and base-32 input in array-backed buffers is
+ * decoded a whole block at a time until a block contains whitespace, padding, or an invalid character; such blocks go
+ * through the character-at-a-time path, which skips whitespace and padding unless the decoder is strict.
  *
  * @author  Middleware Services
  */
@@ -18,15 +21,27 @@ public abstract class AbstractBaseNDecoder implements Decoder
   /** Block of encoded characters. */
   private final char[] block = new char[getBlockLength() / getBitsPerChar()];
 
-  /** Decoding table. */
-  private final byte[] decodingTable;
+  /** Number of bits encoding a single character. */
+  private final int bitsPerChar = getBitsPerChar();
+
+  /** Values of characters 0-255, or -1 for characters outside the alphabet. */
+  private final int[] lookup = new int[256];
 
   /** Flag indicating whether input is padded. True by default. */
   private final boolean paddedInput;
 
+  /** Whether whitespace and misplaced padding are rejected rather than skipped. */
+  private final boolean strict;
+
+  /** Whether whole blocks may be decoded by {@link #decodeBlocks(CharBuffer, ByteBuffer)}. */
+  private final boolean bulkDecoding = bitsPerChar == 6 || bitsPerChar == 5;
+
   /** Current position in character block. */
   private int blockPos;
 
+  /** Whether padding has been read by a strict decoder. */
+  private boolean padding;
+
 
   /**
    * Creates a new instance with given parameters.
@@ -47,8 +62,27 @@ public abstract class AbstractBaseNDecoder implements Decoder
    */
   public AbstractBaseNDecoder(final byte[] decodingTable, final boolean paddedInput)
   {
-    this.decodingTable = CryptUtil.assertNotNullArg(decodingTable, "Decoding table cannot be null");
+    this(decodingTable, paddedInput, false);
+  }
+
+
+  /**
+   * Creates a new instance with given parameters.
+   *
+   * @param  decodingTable  Byte array indexed by characters in the character set encoding.
+   * @param  paddedInput  True to enable support for padded input, false otherwise.
+   * @param  strict  True to reject whitespace, characters outside the alphabet, and padding that is followed by data
+   *                 or not supported; false to skip whitespace and padding.
+   */
+  public AbstractBaseNDecoder(final byte[] decodingTable, final boolean paddedInput, final boolean strict)
+  {
+    CryptUtil.assertNotNullArg(decodingTable, "Decoding table cannot be null");
     this.paddedInput = paddedInput;
+    this.strict = strict;
+    Arrays.fill(lookup, -1);
+    for (int i = 0; i < Math.min(decodingTable.length, lookup.length); i++) {
+      lookup[i] = decodingTable[i];
+    }
   }
 
 
@@ -59,20 +93,25 @@ public abstract class AbstractBaseNDecoder implements Decoder
   }
 
 
+  /** @return  True if whitespace and misplaced padding are rejected, false if they are skipped (default). */
+  public boolean isStrict()
+  {
+    return strict;
+  }
+
+
   @Override
   public void decode(final CharBuffer input, final ByteBuffer output) throws EncodingException
   {
     CryptUtil.assertNotNullArg(input, "Input cannot be null");
     CryptUtil.assertNotNullArg(output, "Output cannot be null");
-    char current;
+    final boolean bulk = bulkDecoding && input.hasArray() && output.hasArray() && !output.isReadOnly();
     while (input.hasRemaining()) {
-      current = input.get();
-      if (Character.isWhitespace(current) || current == '=') {
-        continue;
+      if (bulk && blockPos == 0 && !padding) {
+        decodeBlocks(input, output);
       }
-      block[blockPos++] = current;
-      if (blockPos == block.length) {
-        writeOutput(output, block.length);
+      if (input.hasRemaining()) {
+        decodeChar(input.get(), output);
       }
     }
   }
@@ -89,6 +128,7 @@ public abstract class AbstractBaseNDecoder implements Decoder
         throw new EncodingException("Buffer overflow", e);
       }
     }
+    padding = false;
   }
 
 
@@ -106,6 +146,23 @@ public abstract class AbstractBaseNDecoder implements Decoder
   }
 
 
+  @Override
+  public int decodedSize(final CharSequence encoded)
+  {
+    int count = 0;
+    for (int i = 0; i < encoded.length(); i++) {
+      final char c = encoded.charAt(i);
+      if (c != '=' && !Character.isWhitespace(c)) {
+        count++;
+      }
+    }
+    final int blockChars = block.length;
+    final int partial = count % blockChars;
+    // A partial block of n characters yields the bytes covered by its first n - 1 characters plus one
+    return count / blockChars * (getBlockLength() / 8) + (partial > 0 ? ((partial - 1) * bitsPerChar + 8) / 8 : 0);
+  }
+
+
   /** @return  Number of bits in a block of encoded characters. */
   protected abstract int getBlockLength();
 
@@ -129,6 +186,7 @@ public abstract class AbstractBaseNDecoder implements Decoder
       throw new IllegalArgumentException("Alphabet must be exactly " + n + " characters long");
     }
     final byte[] decodingTable = new byte[128];
+    Arrays.fill(decodingTable, (byte) -1);
     for (int i = 0; i < n; i++) {
       decodingTable[alphabet.charAt(i)] = (byte) i;
     }
@@ -136,6 +194,98 @@ public abstract class AbstractBaseNDecoder implements Decoder
   }
 
 
+  /**
+   * Adds a character to the current block and decodes the block once it is full.
+   *
+   * @param  c  Input character.
+   * @param  output  Output buffer.
+   */
+  private void decodeChar(final char c, final ByteBuffer output)
+  {
+    if (c == '=') {
+      if (strict && !paddedInput) {
+        throw new EncodingException("Padding is not supported");
+      }
+      padding = strict;
+    } else if (Character.isWhitespace(c)) {
+      if (strict) {
+        throw new EncodingException("Invalid whitespace character");
+      }
+    } else {
+      if (padding) {
+        throw new EncodingException("Invalid character " + c + " after padding");
+      }
+      block[blockPos++] = c;
+      if (blockPos == block.length) {
+        writeOutput(output, block.length);
+      }
+    }
+  }
+
+
+  /**
+   * Decodes whole blocks of input directly between the backing arrays of the given buffers while the output has
+   * room for a block. Stops at the first block that contains a character outside the alphabet, which includes
+   * whitespace and padding, and leaves that block in the input buffer. The current block must be empty on entry.
+   *
+   * @param  input  Array-backed input buffer.
+   * @param  output  Array-backed output buffer.
+   */
+  private void decodeBlocks(final CharBuffer input, final ByteBuffer output)
+  {
+    final char[] in = input.array();
+    final byte[] out = output.array();
+    final int inEnd = input.arrayOffset() + input.limit();
+    final int outEnd = output.arrayOffset() + output.limit();
+    int ip = input.arrayOffset() + input.position();
+    int op = output.arrayOffset() + output.position();
+    if (bitsPerChar == 6) {
+      while (inEnd - ip >= 4 && outEnd - op >= 3) {
+        final char c0 = in[ip];
+        final char c1 = in[ip + 1];
+        final char c2 = in[ip + 2];
+        final char c3 = in[ip + 3];
+        final int bits = lookup[c0 & 0xff] << 18 | lookup[c1 & 0xff] << 12 | lookup[c2 & 0xff] << 6 |
+          lookup[c3 & 0xff];
+        // Invalid characters are -1, so any of them makes the combined value negative
+        if (bits < 0 || (c0 | c1 | c2 | c3) > 0xff) {
+          break;
+        }
+        out[op] = (byte) (bits >> 16);
+        out[op + 1] = (byte) (bits >> 8);
+        out[op + 2] = (byte) bits;
+        ip += 4;
+        op += 3;
+      }
+    } else {
+      while (inEnd - ip >= 8 && outEnd - op >= 5) {
+        int valid = 0;
+        int chars = 0;
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+          final char c = in[ip + i];
+          final int value = lookup[c & 0xff];
+          valid |= value;
+          chars |= c;
+          bits = bits << 5 | value & 0x1f;
+        }
+        if (valid < 0 || chars > 0xff) {
+          break;
+        }
+        out[op] = (byte) (bits >> 32);
+        out[op + 1] = (byte) (bits >> 24);
+        out[op + 2] = (byte) (bits >> 16);
+        out[op + 3] = (byte) (bits >> 8);
+        out[op + 4] = (byte) bits;
+        ip += 8;
+        op += 5;
+      }
+    }
+    input.position(ip - input.arrayOffset());
+    output.position(op - output.arrayOffset());
+  }
+
+
   /**
    * Writes bytes in the current encoding block to the output buffer.
    *
@@ -148,9 +298,13 @@ public abstract class AbstractBaseNDecoder implements Decoder
     long value = 0;
     int shift = getBlockLength();
     for (int i = 0; i < len; i++) {
-      b = decodingTable[block[i] & 0x7F];
+      b = block[i] < lookup.length ? lookup[block[i]] : -1;
       if (b < 0) {
-        throw new EncodingException("Invalid character " + block[i]);
+        if (strict) {
+          throw new EncodingException("Invalid character " + block[i]);
+        }
+        // Lenient decoding has always decoded characters outside the alphabet as zero bits
+        b = 0;
       }
       shift -= getBitsPerChar();
       value |= b << shift;
@@ -7,7 +7,8 @@ import org.cryptacular.CryptUtil;
 import org.cryptacular.EncodingException;
 
 /**
- * Base encoder class for encoding schemes described in RFC 3548.
+ * Base encoder class for encoding schemes described in RFC 3548. Base-64 and base-32 input in array-backed buffers is
+ * encoded a whole block at a time; partial blocks and other buffers go through a bit accumulator.
  *
  * @author  Middleware Services
  */
@@ -17,6 +18,9 @@ public abstract class AbstractBaseNEncoder implements Encoder
   /** Platform-specific line terminator string, e.g. LF (Unix), CRLF (Windows). */
   private static final String NEWLINE = System.lineSeparator();
 
+  /** Characters of {@link #NEWLINE}. */
+  private static final char[] NEWLINE_CHARS = NEWLINE.toCharArray();
+
   /** Number of base64 characters per line. */
   protected final int lineLength;
 
@@ -35,6 +39,15 @@ public abstract class AbstractBaseNEncoder implements Encoder
   /** Flag indicating whether output is padded. True by default. */
   private final boolean paddedOutput;
 
+  /** Number of input bytes in a block. */
+  private final int blockBytes = blockLength / 8;
+
+  /** Number of output characters of a block. */
+  private final int blockChars = blockLength / bitsPerChar;
+
+  /** Whether whole blocks may be encoded by {@link #encodeBlocks(ByteBuffer, CharBuffer)}. */
+  private final boolean bulkEncoding;
+
   /** Holds a block of bytes to encode. */
   private long block;
 
@@ -75,6 +88,8 @@ public abstract class AbstractBaseNEncoder implements Encoder
     initialBitMask = mask;
     lineLength = charactersPerLine;
     this.paddedOutput = paddedOutput;
+    // Line breaks must fall on block boundaries so they can be written once per block
+    bulkEncoding = (bitsPerChar == 6 || bitsPerChar == 5) && (lineLength <= 0 || lineLength % blockChars == 0);
   }
 
 
@@ -92,12 +107,15 @@ public abstract class AbstractBaseNEncoder implements Encoder
   {
     CryptUtil.assertNotNullArg(input, "Input cannot be null");
     CryptUtil.assertNotNullArg(output, "Output cannot be null");
-    while (input.hasRemaining()) {
-      remaining -= 8;
-      block |= (input.get() & 0xffL) << remaining;
-      if (remaining == 0) {
-        writeOutput(output, 0);
+    if (bulkEncoding && input.hasArray() && output.hasArray() && !output.isReadOnly()) {
+      // Complete a block left over from the previous call before switching to whole blocks
+      while (remaining < blockLength && input.hasRemaining()) {
+        encodeByte(input.get(), output);
       }
+      encodeBlocks(input, output);
+    }
+    while (input.hasRemaining()) {
+      encodeByte(input.get(), output);
     }
   }
 
@@ -135,6 +153,19 @@ public abstract class AbstractBaseNEncoder implements Encoder
   }
 
 
+  @Override
+  public int encodedSize(final int inputSize)
+  {
+    final int dataChars = (int) (((long) inputSize * 8 + bitsPerChar - 1) / bitsPerChar);
+    int len = paddedOutput ? (inputSize + blockBytes - 1) / blockBytes * blockChars : dataChars;
+    if (lineLength > 0 && inputSize > 0) {
+      // Line breaks follow every full line of data characters, and finalize appends a trailing one
+      len += (dataChars / lineLength + 1) * NEWLINE_CHARS.length;
+    }
+    return len;
+  }
+
+
   /** @return  Number of bits in a block of encoded characters. */
   protected abstract int getBlockLength();
 
@@ -165,6 +196,77 @@ public abstract class AbstractBaseNEncoder implements Encoder
   }
 
 
+  /**
+   * Adds a byte to the current encoding block and writes the block once it is full.
+   *
+   * @param  b  Input byte.
+   * @param  output  Output buffer.
+   */
+  private void encodeByte(final byte b, final CharBuffer output)
+  {
+    remaining -= 8;
+    block |= (b & 0xffL) << remaining;
+    if (remaining == 0) {
+      writeOutput(output, 0);
+    }
+  }
+
+
+  /**
+   * Encodes whole blocks of input directly between the backing arrays of the given buffers while the output has
+   * room for a block and a line break. The encoding block must be empty on entry. Input that does not fill a block
+   * is left in the input buffer.
+   *
+   * @param  input  Array-backed input buffer.
+   * @param  output  Array-backed output buffer.
+   */
+  private void encodeBlocks(final ByteBuffer input, final CharBuffer output)
+  {
+    final byte[] in = input.array();
+    final char[] out = output.array();
+    final int inEnd = input.arrayOffset() + input.limit();
+    final int outEnd = output.arrayOffset() + output.limit() - blockChars - NEWLINE_CHARS.length;
+    int ip = input.arrayOffset() + input.position();
+    int op = output.arrayOffset() + output.position();
+    int lineRemaining = lineLength > 0 ? lineLength - outCount % lineLength : -1;
+    while (inEnd - ip >= blockBytes && op <= outEnd) {
+      if (bitsPerChar == 6) {
+        final int bits = (in[ip] & 0xff) << 16 | (in[ip + 1] & 0xff) << 8 | in[ip + 2] & 0xff;
+        out[op] = charset[bits >>> 18];
+        out[op + 1] = charset[bits >>> 12 & 0x3f];
+        out[op + 2] = charset[bits >>> 6 & 0x3f];
+        out[op + 3] = charset[bits & 0x3f];
+      } else {
+        final long bits = (in[ip] & 0xffL) << 32 | (in[ip + 1] & 0xffL) << 24 | (in[ip + 2] & 0xffL) << 16 |
+          (in[ip + 3] & 0xffL) << 8 | in[ip + 4] & 0xffL;
+        out[op] = charset[(int) (bits >>> 35)];
+        out[op + 1] = charset[(int) (bits >>> 30) & 0x1f];
+        out[op + 2] = charset[(int) (bits >>> 25) & 0x1f];
+        out[op + 3] = charset[(int) (bits >>> 20) & 0x1f];
+        out[op + 4] = charset[(int) (bits >>> 15) & 0x1f];
+        out[op + 5] = charset[(int) (bits >>> 10) & 0x1f];
+        out[op + 6] = charset[(int) (bits >>> 5) & 0x1f];
+        out[op + 7] = charset[(int) bits & 0x1f];
+      }
+      ip += blockBytes;
+      op += blockChars;
+      if (lineLength > 0) {
+        lineRemaining -= blockChars;
+        if (lineRemaining == 0) {
+          System.arraycopy(NEWLINE_CHARS, 0, out, op, NEWLINE_CHARS.length);
+          op += NEWLINE_CHARS.length;
+          lineRemaining = lineLength;
+        }
+      }
+    }
+    if (lineLength > 0) {
+      outCount = lineLength - lineRemaining;
+    }
+    input.position(ip - input.arrayOffset());
+    output.position(op - output.arrayOffset());
+  }
+
+
   /**
    * Writes bytes in the current encoding block to the output buffer.
    *
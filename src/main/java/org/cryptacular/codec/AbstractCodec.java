@@ -0,0 +1,48 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.codec;
+
+import org.cryptacular.EncodingException;
+import org.cryptacular.util.CodecUtil;
+
+/**
+ * Base class for codecs whose one-shot {@link #encode(byte[])} and {@link #decode(CharSequence)} operations reuse an
+ * encoder and decoder per thread, so that a single instance can be shared by all threads without allocating codec
+ * objects on each operation.
+ *
+ * @author  Middleware Services
+ */
+public abstract class AbstractCodec implements Codec
+{
+
+  /** Per-thread encoders used by {@link #encode(byte[])}. */
+  private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(this::newEncoder);
+
+  /** Per-thread decoders used by {@link #decode(CharSequence)}. */
+  private final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(this::newDecoder);
+
+
+  @Override
+  public String encode(final byte[] raw) throws EncodingException
+  {
+    try {
+      return CodecUtil.encode(encoders.get(), raw);
+    } catch (RuntimeException e) {
+      // A failed operation may leave a partial block behind
+      encoders.remove();
+      throw e;
+    }
+  }
+
+
+  @Override
+  public byte[] decode(final CharSequence encoded) throws EncodingException
+  {
+    try {
+      return CodecUtil.decode(decoders.get(), encoded);
+    } catch (RuntimeException e) {
+      // A failed operation may leave a partial block behind
+      decoders.remove();
+      throw e;
+    }
+  }
+}
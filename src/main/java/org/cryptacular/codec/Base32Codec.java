@@ -8,7 +8,7 @@ import org.cryptacular.CryptUtil;
  *
  * @author  Middleware Services
  */
-public class Base32Codec implements Codec
+public class Base32Codec extends AbstractCodec
 {
 
   /** Encoder. */
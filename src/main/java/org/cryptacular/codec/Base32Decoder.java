@@ -62,6 +62,31 @@ public class Base32Decoder extends AbstractBaseNDecoder
   }
 
 
+  /**
+   * Creates a new instance using the RFC 4648 alphabet for decoding.
+   *
+   * @param  paddedInput  True to enable support for padded input, false otherwise.
+   * @param  strict  True to reject whitespace, invalid characters, and misplaced padding, false otherwise.
+   */
+  public Base32Decoder(final boolean paddedInput, final boolean strict)
+  {
+    super(DECODING_TABLE, paddedInput, strict);
+  }
+
+
+  /**
+   * Creates a new instance using the given 32-character alphabet for decoding.
+   *
+   * @param  alphabet  32-character alphabet to use.
+   * @param  paddedInput  True to enable support for padded input, false otherwise.
+   * @param  strict  True to reject whitespace, invalid characters, and misplaced padding, false otherwise.
+   */
+  public Base32Decoder(final String alphabet, final boolean paddedInput, final boolean strict)
+  {
+    super(decodingTable(alphabet, 32), paddedInput, strict);
+  }
+
+
   @Override
   protected int getBlockLength()
   {
@@ -8,7 +8,7 @@ import org.cryptacular.CryptUtil;
  *
  * @author  Middleware Services
  */
-public class Base64Codec implements Codec
+public class Base64Codec extends AbstractCodec
 {
 
   /** Encoder. */
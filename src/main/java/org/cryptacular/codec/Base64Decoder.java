@@ -77,6 +77,32 @@ public class Base64Decoder extends AbstractBaseNDecoder
   }
 
 
+  /**
+   * Creates a new instance that decodes base 64-encoded input in the optional URL-safe character set.
+   *
+   * @param  urlSafe  True to use URL and filesystem-safe character set, false otherwise.
+   * @param  paddedInput  True to enable support for padded input, false otherwise.
+   * @param  strict  True to reject whitespace, invalid characters, and misplaced padding, false otherwise.
+   */
+  public Base64Decoder(final boolean urlSafe, final boolean paddedInput, final boolean strict)
+  {
+    super(urlSafe ? URLSAFE_DECODING_TABLE : DEFAULT_DECODING_TABLE, paddedInput, strict);
+  }
+
+
+  /**
+   * Creates a new instance that decodes base-64 character data encoded in the given alphabet.
+   *
+   * @param  alphabet  Base-64 alphabet to use for decoding
+   * @param  paddedInput  True to enable support for padded input, false otherwise.
+   * @param  strict  True to reject whitespace, invalid characters, and misplaced padding, false otherwise.
+   */
+  public Base64Decoder(final String alphabet, final boolean paddedInput, final boolean strict)
+  {
+    super(decodingTable(alphabet, 64), paddedInput, strict);
+  }
+
+
   @Override
   protected int getBlockLength()
   {
@@ -105,6 +131,9 @@ public class Base64Decoder extends AbstractBaseNDecoder
     /** Padding flag. */
     private boolean padding;
 
+    /** Strict decoding flag. */
+    private boolean strict;
+
 
     /**
      * Sets the URL-safe alphabet flag.
@@ -148,6 +177,20 @@ public class Base64Decoder extends AbstractBaseNDecoder
     }
 
 
+    /**
+     * Sets strict decoding flag on the decoder.
+     *
+     * @param strictDecoding True to reject whitespace, invalid characters, and misplaced padding, false otherwise.
+     *
+     * @return This instance.
+     */
+    public Builder setStrict(final boolean strictDecoding)
+    {
+      strict = strictDecoding;
+      return this;
+    }
+
+
     /**
      * Builds a base-64 decoder with the given options.
      *
@@ -157,9 +200,9 @@ public class Base64Decoder extends AbstractBaseNDecoder
     {
       final Base64Decoder decoder;
       if (alphabet != null) {
-        decoder = new Base64Decoder(alphabet, padding);
+        decoder = new Base64Decoder(alphabet, padding, strict);
       } else {
-        decoder = new Base64Decoder(urlSafe, padding);
+        decoder = new Base64Decoder(urlSafe, padding, strict);
       }
       return decoder;
     }
@@ -1,8 +1,12 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.codec;
 
+import org.cryptacular.EncodingException;
+import org.cryptacular.util.CodecUtil;
+
 /**
- * Container for an encoder/decoder pair.
+ * Container for an encoder/decoder pair. The encoder and decoder are stateful and must not be shared between threads,
+ * whereas the one-shot {@link #encode(byte[])} and {@link #decode(CharSequence)} operations are thread safe.
  *
  * @author  Middleware Services
  */
@@ -24,4 +28,36 @@ public interface Codec
 
   /** @return  A new instance of the char-to-byte decoder of the codec pair. */
   Decoder newDecoder();
+
+
+  /**
+   * Encodes the given bytes in a single operation. This method is thread safe. The default implementation uses a new
+   * encoder for each call.
+   *
+   * @param  raw  Raw bytes to encode.
+   *
+   * @return  Encoded data as a string.
+   *
+   * @throws  EncodingException  on encoding errors.
+   */
+  default String encode(final byte[] raw) throws EncodingException
+  {
+    return CodecUtil.encode(newEncoder(), raw);
+  }
+
+
+  /**
+   * Decodes the given characters in a single operation. This method is thread safe. The default implementation uses
+   * a new decoder for each call.
+   *
+   * @param  encoded  Encoded character data.
+   *
+   * @return  Decoded data as raw bytes.
+   *
+   * @throws  EncodingException  on decoding errors.
+   */
+  default byte[] decode(final CharSequence encoded) throws EncodingException
+  {
+    return CodecUtil.decode(newDecoder(), encoded);
+  }
 }
@@ -43,4 +43,20 @@ public interface Decoder
    * @return  Minimum byte buffer size required to store all decoded characters in input buffer.
    */
   int outputSize(int inputSize);
+
+
+  /**
+   * Exact number of bytes produced by decoding the given characters with a single call to {@link
+   * #decode(CharBuffer, ByteBuffer)} followed by {@link #finalize(ByteBuffer)}, which allows callers to size output
+   * buffers precisely. The default implementation returns {@link #outputSize(int)} for the input length, which may
+   * overestimate.
+   *
+   * @param  encoded  Encoded characters.
+   *
+   * @return  Number of decoded bytes.
+   */
+  default int decodedSize(final CharSequence encoded)
+  {
+    return outputSize(encoded.length());
+  }
 }
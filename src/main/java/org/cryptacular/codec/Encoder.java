@@ -43,4 +43,19 @@ public interface Encoder
    * @return  Minimum character buffer size required to store all encoded input bytes.
    */
   int outputSize(int inputSize);
+
+
+  /**
+   * Exact number of characters produced by encoding input of the given size with a single call to {@link
+   * #encode(ByteBuffer, CharBuffer)} followed by {@link #finalize(CharBuffer)}, which allows callers to size output
+   * buffers precisely. The default implementation returns {@link #outputSize(int)}, which may overestimate.
+   *
+   * @param  inputSize  Size of input in bytes.
+   *
+   * @return  Number of encoded characters.
+   */
+  default int encodedSize(final int inputSize)
+  {
+    return outputSize(inputSize);
+  }
 }
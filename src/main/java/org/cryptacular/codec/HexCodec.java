@@ -6,7 +6,7 @@ package org.cryptacular.codec;
  *
  * @author  Middleware Services
  */
-public class HexCodec implements Codec
+public class HexCodec extends AbstractCodec
 {
 
   /** Encoder. */
@@ -76,6 +76,21 @@ public class HexDecoder implements Decoder
   }
 
 
+  @Override
+  public int decodedSize(final CharSequence encoded)
+  {
+    final int start = encoded.length() > 1 && encoded.charAt(0) == '0' && encoded.charAt(1) == 'x' ? 2 : 0;
+    int count = 0;
+    for (int i = start; i < encoded.length(); i++) {
+      final char c = encoded.charAt(i);
+      if (c != ':' && !Character.isWhitespace(c)) {
+        count++;
+      }
+    }
+    return count / 2;
+  }
+
+
   /**
    * Looks up the byte that corresponds to the given character.
    *
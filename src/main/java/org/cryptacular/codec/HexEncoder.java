@@ -97,6 +97,13 @@ public class HexEncoder implements Encoder
   }
 
 
+  @Override
+  public int encodedSize(final int inputSize)
+  {
+    return inputSize > 0 ? outputSize(inputSize) : 0;
+  }
+
+
   /**
    * Initializes the encoding table for the given character set.
    *
@@ -0,0 +1,109 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.io;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread pool of byte arrays used as scratch buffers by chunked stream and cipher operations, so that repeated
+ * operations on the same thread do not allocate a new buffer for every call.
+ *
+ * <p>Buffers are cleared on release, since they commonly hold plaintext and key-derived data, and may be larger than
+ * requested. Callers must bound reads and writes by the requested size and must not retain a buffer after releasing
+ * it. Callers that honor the bound should release with {@link #release(byte[], int)} and the requested size, so that
+ * only the used range of a large pooled buffer is cleared.</p>
+ *
+ * @author  Middleware Services
+ */
+public final class BufferPool
+{
+
+  /** Largest buffer retained by the pool; larger buffers are left to the garbage collector when released. */
+  public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+  /** Number of buffers retained per thread, which covers an input and an output buffer for nested operations. */
+  private static final int SLOTS = 4;
+
+  /** Idle buffers of the current thread. */
+  private static final ThreadLocal<byte[][]> BUFFERS = ThreadLocal.withInitial(() -> new byte[SLOTS][]);
+
+
+  /** Private constructor of utility class. */
+  private BufferPool() {}
+
+
+  /**
+   * Takes the smallest idle buffer of at least the given size from the pool of the current thread, or allocates a new
+   * one if none is available.
+   *
+   * @param  size  Minimum buffer size in bytes.
+   *
+   * @return  Buffer of at least the given size.
+   */
+  public static byte[] acquire(final int size)
+  {
+    if (size < 0) {
+      throw new IllegalArgumentException("Buffer size cannot be negative");
+    }
+    final byte[][] slots = BUFFERS.get();
+    int best = -1;
+    for (int i = 0; i < SLOTS; i++) {
+      if (slots[i] != null && slots[i].length >= size && (best < 0 || slots[i].length < slots[best].length)) {
+        best = i;
+      }
+    }
+    if (best < 0) {
+      return new byte[size];
+    }
+    final byte[] buffer = slots[best];
+    slots[best] = null;
+    return buffer;
+  }
+
+
+  /**
+   * Clears a buffer obtained from {@link #acquire(int)} and returns it to the pool of the current thread. When the pool
+   * is full the smallest idle buffer is replaced if it is smaller than the given buffer.
+   *
+   * @param  buffer  Buffer to return, which must not be used afterwards. Null is ignored.
+   */
+  public static void release(final byte[] buffer)
+  {
+    release(buffer, buffer == null ? 0 : buffer.length);
+  }
+
+
+  /**
+   * Clears the leading bytes of a buffer obtained from {@link #acquire(int)} and returns it to the pool of the current
+   * thread. Only the given number of bytes is cleared, so it must cover every byte written since the buffer was
+   * acquired; the size passed to {@link #acquire(int)} does when writes are bounded by it.
+   *
+   * @param  buffer  Buffer to return, which must not be used afterwards. Null is ignored.
+   * @param  length  Number of leading bytes to clear.
+   */
+  public static void release(final byte[] buffer, final int length)
+  {
+    if (buffer != null) {
+      Arrays.fill(buffer, 0, Math.max(0, Math.min(length, buffer.length)), (byte) 0);
+    }
+    if (buffer == null || buffer.length > MAX_BUFFER_SIZE) {
+      return;
+    }
+    final byte[][] slots = BUFFERS.get();
+    int target = -1;
+    for (int i = 0; i < SLOTS && target != SLOTS; i++) {
+      if (slots[i] == buffer) {
+        // Already pooled
+        target = SLOTS;
+      } else if (slots[i] == null) {
+        if (target < 0 || slots[target] != null) {
+          target = i;
+        }
+      } else if (target < 0 || slots[target] != null && slots[i].length < slots[target].length) {
+        target = i;
+      }
+    }
+    if (target < SLOTS && (slots[target] == null || slots[target].length < buffer.length)) {
+      slots[target] = buffer;
+    }
+  }
+}
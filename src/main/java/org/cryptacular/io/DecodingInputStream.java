@@ -4,7 +4,6 @@ package org.cryptacular.io;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import org.cryptacular.CryptUtil;
@@ -14,23 +13,34 @@ import org.cryptacular.codec.HexDecoder;
 
 /**
  * Filters read bytes through a {@link Decoder} such that consumers obtain raw (decoded) bytes from read operations.
+ * Encoded ASCII input is read ahead from the underlying stream in large chunks and decoded into an internal buffer,
+ * from which reads of any length are served.
  *
  * @author  Middleware Services
  */
 public class DecodingInputStream extends FilterInputStream
 {
 
+  /** Default size of the read-ahead buffer in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
   /** Performs decoding. */
   private final Decoder decoder;
 
-  /** Wraps the input stream to convert bytes to characters. */
-  private final InputStreamReader reader;
+  /** Receives encoded bytes read from the underlying stream. */
+  private final byte[] buffer;
+
+  /** Holds encoded bytes as characters. */
+  private final CharBuffer input;
 
-  /** Holds input bytes as characters. */
-  private CharBuffer input;
+  /** Holds decoded bytes that have not been read yet. */
+  private final ByteBuffer output;
 
-  /** Receives decoding result. */
-  private ByteBuffer output;
+  /** Output buffer of {@link #read()}. */
+  private final byte[] single = new byte[1];
+
+  /** Whether the end of the underlying stream has been reached and the decoder finalized. */
+  private boolean finished;
 
 
   /**
@@ -40,10 +50,30 @@ public class DecodingInputStream extends FilterInputStream
    * @param  d  Decoder that provides on-the-fly decoding.
    */
   public DecodingInputStream(final InputStream in, final Decoder d)
+  {
+    this(in, d, DEFAULT_BUFFER_SIZE);
+  }
+
+
+  /**
+   * Creates a new instance that wraps the given stream and performs decoding using the given encoder component.
+   *
+   * @param  in  Input stream to wrap.
+   * @param  d  Decoder that provides on-the-fly decoding.
+   * @param  bufferSize  Number of encoded bytes read from the underlying stream at once.
+   */
+  public DecodingInputStream(final InputStream in, final Decoder d, final int bufferSize)
   {
     super(CryptUtil.assertNotNullArg(in, "Input stream cannot be null"));
     decoder = CryptUtil.assertNotNullArg(d,  "Decoder cannot be null");
-    reader = new InputStreamReader(in);
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be positive");
+    }
+    buffer = new byte[bufferSize];
+    input = CharBuffer.allocate(bufferSize);
+    // Leave room for a partial block carried over from the previous chunk
+    output = ByteBuffer.allocate(decoder.outputSize(bufferSize + 8));
+    output.flip();
   }
 
 
@@ -51,7 +81,7 @@ public class DecodingInputStream extends FilterInputStream
   public int read()
     throws IOException
   {
-    return read(new byte[1]);
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
   }
 
 
@@ -69,20 +99,66 @@ public class DecodingInputStream extends FilterInputStream
     throws IOException
   {
     CryptUtil.assertNotNullArg(b, "Input byte array cannot be null");
-    prepareInputBuffer(len - off);
-    prepareOutputBuffer();
-    if (reader.read(input) < 0) {
-      decoder.finalize(output);
-      if (output.position() == 0) {
-        return -1;
-      }
-    } else {
-      input.flip();
-      decoder.decode(input, output);
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException("Invalid offset or length");
     }
-    output.flip();
-    output.get(b, off, output.limit());
-    return output.position();
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    final int n = Math.min(len, output.remaining());
+    output.get(b, off, n);
+    return n;
+  }
+
+
+  @Override
+  public long skip(final long n)
+    throws IOException
+  {
+    long skipped = 0;
+    while (skipped < n && fill()) {
+      final int count = (int) Math.min(n - skipped, output.remaining());
+      output.position(output.position() + count);
+      skipped += count;
+    }
+    return skipped;
+  }
+
+
+  /**
+   * Gets the number of decoded bytes that can be read without reading from the underlying stream.
+   *
+   * @return  Number of buffered decoded bytes.
+   */
+  @Override
+  public int available()
+  {
+    return output.remaining();
+  }
+
+
+  @Override
+  public boolean markSupported()
+  {
+    return false;
+  }
+
+
+  @Override
+  public void mark(final int readlimit)
+  {
+    // Not supported
+  }
+
+
+  @Override
+  public void reset()
+    throws IOException
+  {
+    throw new IOException("Mark/reset not supported");
   }
 
 
@@ -113,28 +189,33 @@ public class DecodingInputStream extends FilterInputStream
 
 
   /**
-   * Prepares the input buffer to receive the given number of bytes.
+   * Reads and decodes chunks of the underlying stream until decoded bytes are available or the stream is exhausted.
+   * Encoders produce only ASCII characters, so input bytes map directly to characters.
+   *
+   * @return  True if decoded bytes are available, false at the end of the stream.
    *
-   * @param  required  Number of bytes required.
+   * @throws  IOException  on IO errors.
    */
-  private void prepareInputBuffer(final int required)
-  {
-    if (input == null || input.capacity() < required) {
-      input = CharBuffer.allocate(required);
-    } else {
-      input.clear();
-    }
-  }
-
-
-  /** Prepares the output buffer based on input buffer capacity. */
-  private void prepareOutputBuffer()
+  private boolean fill()
+    throws IOException
   {
-    final int required = decoder.outputSize(input.capacity());
-    if (output == null || output.capacity() < required) {
-      output = ByteBuffer.allocate(required);
-    } else {
+    while (!output.hasRemaining() && !finished) {
+      final int n = in.read(buffer);
       output.clear();
+      if (n < 0) {
+        decoder.finalize(output);
+        finished = true;
+      } else {
+        final char[] chars = input.array();
+        for (int i = 0; i < n; i++) {
+          chars[i] = (char) (buffer[i] & 0xff);
+        }
+        input.clear();
+        input.limit(n);
+        decoder.decode(input, output);
+      }
+      output.flip();
     }
+    return output.hasRemaining();
   }
 }
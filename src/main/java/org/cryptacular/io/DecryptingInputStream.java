@@ -0,0 +1,261 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Function;
+import javax.crypto.SecretKey;
+import org.cryptacular.CiphertextHeader;
+import org.cryptacular.CryptUtil;
+import org.cryptacular.CryptoException;
+import org.cryptacular.adapter.BlockCipherAdapter;
+
+/**
+ * Decrypts ciphertext read from the underlying input stream such that consumers obtain plaintext from read operations.
+ * The {@link CiphertextHeader} at the start of the underlying stream is decoded on the first read, and ciphertext is
+ * decrypted on demand through a fixed-size buffer.
+ *
+ * <p><strong>NOTE:</strong> plaintext is released as it is decrypted. With authenticated (AEAD) ciphers the
+ * authentication tag is only verified when the end of the underlying stream is reached, which raises a {@link
+ * CryptoException} if the ciphertext was modified. Consumers must read to the end of the stream before trusting the
+ * plaintext. Segmented ciphertext is not supported.</p>
+ *
+ * @author  Middleware Services
+ * @see  EncryptingOutputStream
+ */
+public class DecryptingInputStream extends FilterInputStream
+{
+
+  /** Default size of the ciphertext read buffer in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /** Looks up the decryption key from the key name in the header. */
+  private final Function<String, SecretKey> keyLookup;
+
+  /** Produces a block cipher initialized for decryption for the decoded header. */
+  private final Function<CiphertextHeader, BlockCipherAdapter> cipherFactory;
+
+  /** Holds ciphertext read from the underlying stream. */
+  private final byte[] input;
+
+  /** Holds a single byte read by {@link #read()}. */
+  private final byte[] single = new byte[1];
+
+  /** Ciphertext header, which is null until the first read. */
+  private CiphertextHeader header;
+
+  /** Block cipher initialized for decryption. */
+  private BlockCipherAdapter cipher;
+
+  /** Holds decrypted plaintext. */
+  private byte[] output;
+
+  /** Position of the next plaintext byte in {@link #output}. */
+  private int outputPos;
+
+  /** Number of plaintext bytes in {@link #output}. */
+  private int outputLimit;
+
+  /** Whether the cipher has been finalized. */
+  private boolean finished;
+
+
+  /**
+   * Creates a new instance that reads ciphertext in chunks of at most {@link #DEFAULT_BUFFER_SIZE} bytes.
+   *
+   * @param  in  Input stream positioned at the start of the ciphertext header.
+   * @param  keyLookup  Decryption key lookup function.
+   * @param  cipherFactory  Produces a block cipher initialized for decryption for the decoded header.
+   */
+  public DecryptingInputStream(
+    final InputStream in,
+    final Function<String, SecretKey> keyLookup,
+    final Function<CiphertextHeader, BlockCipherAdapter> cipherFactory)
+  {
+    this(in, keyLookup, cipherFactory, DEFAULT_BUFFER_SIZE);
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  in  Input stream positioned at the start of the ciphertext header.
+   * @param  keyLookup  Decryption key lookup function.
+   * @param  cipherFactory  Produces a block cipher initialized for decryption for the decoded header.
+   * @param  bufferSize  Maximum number of ciphertext bytes read from the underlying stream at once.
+   */
+  public DecryptingInputStream(
+    final InputStream in,
+    final Function<String, SecretKey> keyLookup,
+    final Function<CiphertextHeader, BlockCipherAdapter> cipherFactory,
+    final int bufferSize)
+  {
+    super(CryptUtil.assertNotNullArg(in, "Input stream cannot be null"));
+    this.keyLookup = CryptUtil.assertNotNullArg(keyLookup, "Key lookup cannot be null");
+    this.cipherFactory = CryptUtil.assertNotNullArg(cipherFactory, "Cipher factory cannot be null");
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be greater than 0");
+    }
+    this.input = new byte[bufferSize];
+  }
+
+
+  /**
+   * Gets the ciphertext header, decoding it from the underlying stream if no data has been read yet.
+   *
+   * @return  Ciphertext header.
+   *
+   * @throws  IOException  on IO errors.
+   */
+  public CiphertextHeader getHeader()
+    throws IOException
+  {
+    init();
+    return header;
+  }
+
+
+  @Override
+  public int read()
+    throws IOException
+  {
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+  }
+
+
+  @Override
+  public int read(final byte[] b)
+    throws IOException
+  {
+    CryptUtil.assertNotNullArg(b, "Input byte array cannot be null");
+    return read(b, 0, b.length);
+  }
+
+
+  @Override
+  public int read(final byte[] b, final int off, final int len)
+    throws IOException
+  {
+    CryptUtil.assertNotNullArg(b, "Input byte array cannot be null");
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException("Invalid offset or length");
+    }
+    if (len == 0) {
+      return 0;
+    }
+    init();
+    while (outputPos == outputLimit && !finished) {
+      fill();
+    }
+    if (outputPos == outputLimit) {
+      return -1;
+    }
+    final int count = Math.min(len, outputLimit - outputPos);
+    System.arraycopy(output, outputPos, b, off, count);
+    outputPos += count;
+    return count;
+  }
+
+
+  @Override
+  public long skip(final long n)
+    throws IOException
+  {
+    if (n <= 0) {
+      return 0;
+    }
+    // Skipped plaintext must still pass through the cipher
+    final byte[] scratch = new byte[(int) Math.min(n, input.length)];
+    long remaining = n;
+    int count = 0;
+    while (remaining > 0 && count >= 0) {
+      count = read(scratch, 0, (int) Math.min(remaining, scratch.length));
+      if (count > 0) {
+        remaining -= count;
+      }
+    }
+    return n - remaining;
+  }
+
+
+  @Override
+  public int available()
+  {
+    return outputLimit - outputPos;
+  }
+
+
+  @Override
+  public boolean markSupported()
+  {
+    return false;
+  }
+
+
+  @Override
+  public void mark(final int readlimit) {}
+
+
+  @Override
+  public void reset()
+    throws IOException
+  {
+    throw new IOException("Mark/reset not supported");
+  }
+
+
+  /**
+   * Decodes the header and creates the cipher if that has not happened yet.
+   *
+   * @throws  IOException  on IO errors.
+   */
+  private void init()
+    throws IOException
+  {
+    if (header == null) {
+      final CiphertextHeader decoded = CiphertextHeader.decode(in, keyLookup);
+      if (decoded.isSegmented()) {
+        throw new CryptoException("Segmented ciphertext is not supported by " + getClass().getSimpleName());
+      }
+      cipher = cipherFactory.apply(decoded);
+      output = new byte[Math.max(cipher.getOutputSize(input.length), input.length)];
+      header = decoded;
+    }
+  }
+
+
+  /**
+   * Decrypts the next chunk of ciphertext, or finalizes the cipher at the end of the underlying stream.
+   *
+   * @throws  IOException  on IO errors.
+   */
+  private void fill()
+    throws IOException
+  {
+    final int count = in.read(input, 0, input.length);
+    outputPos = 0;
+    if (count < 0) {
+      prepareOutput(0);
+      outputLimit = cipher.doFinal(output, 0);
+      finished = true;
+    } else {
+      prepareOutput(count);
+      outputLimit = cipher.processBytes(input, 0, count, output, 0);
+    }
+  }
+
+
+  /**
+   * Ensures the output buffer can hold the output of the cipher for the given number of input bytes.
+   *
+   * @param  length  Number of input bytes.
+   */
+  private void prepareOutput(final int length)
+  {
+    final int required = cipher.getOutputSize(length);
+    if (output.length < required) {
+      output = new byte[required];
+    }
+  }
+}
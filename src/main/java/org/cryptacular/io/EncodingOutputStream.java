@@ -4,7 +4,6 @@ package org.cryptacular.io;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import org.cryptacular.CryptUtil;
@@ -14,20 +13,38 @@ import org.cryptacular.codec.HexEncoder;
 
 /**
  * Filters written bytes through an {@link Encoder} such that encoded data is written to the underlying output stream.
+ * Encoded characters are collected as ASCII bytes in an internal buffer that is written to the underlying stream only
+ * when it is full or on {@link #flush()} and {@link #close()}, so many small writes do not produce many small writes
+ * on the underlying stream.
  *
  * @author  Middleware Services
  */
 public class EncodingOutputStream extends FilterOutputStream
 {
 
-  /** Performs decoding. */
-  private final Encoder encoder;
+  /** Default size of the internal buffer in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
 
-  /** Wraps the output stream to convert characters to bytes. */
-  private final OutputStreamWriter writer;
+  /** Performs encoding. */
+  private final Encoder encoder;
 
   /** Receives encoding result. */
-  private CharBuffer output;
+  private final CharBuffer output;
+
+  /** Maximum number of input bytes encoded at once, such that the result fits in {@link #output}. */
+  private final int maxInput;
+
+  /** Holds encoded ASCII bytes until they are written to the underlying stream. */
+  private final byte[] buffer;
+
+  /** Number of bytes in {@link #buffer}. */
+  private int count;
+
+  /** Input buffer of {@link #write(int)}. */
+  private final ByteBuffer single = ByteBuffer.allocate(1);
+
+  /** Whether the stream has been closed. */
+  private boolean closed;
 
 
   /**
@@ -37,10 +54,34 @@ public class EncodingOutputStream extends FilterOutputStream
    * @param  e  Encoder that provides on-the-fly encoding.
    */
   public EncodingOutputStream(final OutputStream out, final Encoder e)
+  {
+    this(out, e, DEFAULT_BUFFER_SIZE);
+  }
+
+
+  /**
+   * Creates a new instance that wraps the given stream and performs encoding using the given encoder component.
+   *
+   * @param  out  Output stream to wrap.
+   * @param  e  Encoder that provides on-the-fly encoding.
+   * @param  bufferSize  Size of the internal buffer in bytes.
+   */
+  public EncodingOutputStream(final OutputStream out, final Encoder e, final int bufferSize)
   {
     super(CryptUtil.assertNotNullArg(out, "Output stream cannot be null"));
     encoder = CryptUtil.assertNotNullArg(e, "Encoder cannot be null");
-    writer = new OutputStreamWriter(out);
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be positive");
+    }
+    buffer = new byte[bufferSize];
+    // Room for at least one encoded block plus padding and line break
+    final int size = Math.max(bufferSize, encoder.outputSize(64));
+    int n = size;
+    while (n > 1 && encoder.outputSize(n) > size) {
+      n /= 2;
+    }
+    maxInput = n;
+    output = CharBuffer.allocate(size);
   }
 
 
@@ -48,7 +89,10 @@ public class EncodingOutputStream extends FilterOutputStream
   public void write(final int b)
     throws IOException
   {
-    write(new byte[] {(byte) b});
+    ensureOpen();
+    single.clear();
+    single.put(0, (byte) b);
+    encode(single);
   }
 
 
@@ -66,17 +110,17 @@ public class EncodingOutputStream extends FilterOutputStream
     throws IOException
   {
     CryptUtil.assertNotNullArg(b, "Byte array cannot be null");
-    final ByteBuffer input = ByteBuffer.wrap(b, off, len);
-    final int required = encoder.outputSize(len - off);
-    if (output == null || output.capacity() < required) {
-      output = CharBuffer.allocate(required);
-    } else {
-      output.clear();
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException("Invalid offset or length");
+    }
+    ensureOpen();
+    int pos = off;
+    final int end = off + len;
+    while (pos < end) {
+      final int n = Math.min(end - pos, maxInput);
+      encode(ByteBuffer.wrap(b, pos, n));
+      pos += n;
     }
-    encoder.encode(input, output);
-    output.flip();
-    writer.write(output.toString());
-    writer.flush();
   }
 
 
@@ -84,24 +128,103 @@ public class EncodingOutputStream extends FilterOutputStream
   public void flush()
     throws IOException
   {
-    writer.flush();
+    ensureOpen();
+    flushBuffer();
+    out.flush();
   }
 
 
+  /**
+   * Writes the final encoded block and any buffered output to the underlying stream, and closes it. Subsequent calls
+   * have no effect.
+   *
+   * @throws  IOException  on IO errors.
+   */
   @Override
   public void close()
     throws IOException
   {
-    if (output == null) {
-      output = CharBuffer.allocate(8);
-    } else {
-      output.clear();
+    if (!closed) {
+      closed = true;
+      try {
+        output.clear();
+        encoder.finalize(output);
+        drain();
+        flushBuffer();
+        out.flush();
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+
+  /**
+   * Encodes the given input and appends the result to the internal buffer.
+   *
+   * @param  input  Input bytes, whose encoded size fits in {@link #output}.
+   *
+   * @throws  IOException  on IO errors.
+   */
+  private void encode(final ByteBuffer input)
+    throws IOException
+  {
+    output.clear();
+    encoder.encode(input, output);
+    drain();
+  }
+
+
+  /**
+   * Moves encoded characters from {@link #output} to the internal buffer, writing the buffer to the underlying stream
+   * whenever it fills up. Encoders produce only ASCII characters, which map directly to bytes.
+   *
+   * @throws  IOException  on IO errors.
+   */
+  private void drain()
+    throws IOException
+  {
+    final char[] chars = output.array();
+    final int end = output.position();
+    int pos = 0;
+    while (pos < end) {
+      if (count == buffer.length) {
+        flushBuffer();
+      }
+      final int n = Math.min(end - pos, buffer.length - count);
+      for (int i = 0; i < n; i++) {
+        buffer[count++] = (byte) chars[pos++];
+      }
+    }
+  }
+
+
+  /**
+   * Writes the internal buffer to the underlying stream.
+   *
+   * @throws  IOException  on IO errors.
+   */
+  private void flushBuffer()
+    throws IOException
+  {
+    if (count > 0) {
+      out.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+
+  /**
+   * Ensures the stream has not been closed.
+   *
+   * @throws  IOException  if the stream is closed.
+   */
+  private void ensureOpen()
+    throws IOException
+  {
+    if (closed) {
+      throw new IOException("Stream closed");
     }
-    encoder.finalize(output);
-    output.flip();
-    writer.write(output.toString());
-    writer.flush();
-    writer.close();
   }
 
 
@@ -0,0 +1,206 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.cryptacular.CiphertextHeader;
+import org.cryptacular.CryptUtil;
+import org.cryptacular.adapter.BlockCipherAdapter;
+
+/**
+ * Encrypts written bytes such that the underlying output stream receives the encoded {@link CiphertextHeader} followed
+ * by ciphertext. The header is written before the first ciphertext bytes, and the cipher is finalized (e.g. padding or
+ * authentication tag is written) when the stream is closed, so the stream <strong>must</strong> be closed to produce
+ * valid ciphertext.
+ *
+ * <p>Flushing writes the header and any ciphertext produced so far; data buffered by the cipher in order to complete a
+ * block remains buffered until more data is written or the stream is closed.</p>
+ *
+ * @author  Middleware Services
+ * @see  DecryptingInputStream
+ */
+public class EncryptingOutputStream extends FilterOutputStream
+{
+
+  /** Default maximum number of bytes passed to the cipher at once. */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /** Encoded ciphertext header. */
+  private final byte[] header;
+
+  /** Block cipher initialized for encryption. */
+  private final BlockCipherAdapter cipher;
+
+  /** Maximum number of bytes passed to the cipher at once. */
+  private final int bufferSize;
+
+  /** Holds a single byte written by {@link #write(int)}. */
+  private final byte[] single = new byte[1];
+
+  /** Holds the output of the cipher. */
+  private byte[] output;
+
+  /** Whether the header has been written to the underlying stream. */
+  private boolean headerWritten;
+
+  /** Whether the stream has been closed. */
+  private boolean closed;
+
+
+  /**
+   * Creates a new instance that encrypts with chunks of at most {@link #DEFAULT_BUFFER_SIZE} bytes.
+   *
+   * @param  out  Output stream that receives the header and ciphertext.
+   * @param  header  Ciphertext header that describes the key and nonce used to initialize the cipher.
+   * @param  cipher  Block cipher initialized for encryption.
+   */
+  public EncryptingOutputStream(final OutputStream out, final CiphertextHeader header, final BlockCipherAdapter cipher)
+  {
+    this(out, header, cipher, DEFAULT_BUFFER_SIZE);
+  }
+
+
+  /**
+   * Creates a new instance.
+   *
+   * @param  out  Output stream that receives the header and ciphertext.
+   * @param  header  Ciphertext header that describes the key and nonce used to initialize the cipher.
+   * @param  cipher  Block cipher initialized for encryption.
+   * @param  bufferSize  Maximum number of bytes passed to the cipher at once.
+   */
+  public EncryptingOutputStream(
+    final OutputStream out,
+    final CiphertextHeader header,
+    final BlockCipherAdapter cipher,
+    final int bufferSize)
+  {
+    super(CryptUtil.assertNotNullArg(out, "Output stream cannot be null"));
+    this.header = CryptUtil.assertNotNullArg(header, "Header cannot be null").encode();
+    this.cipher = CryptUtil.assertNotNullArg(cipher, "Cipher cannot be null");
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be greater than 0");
+    }
+    this.bufferSize = bufferSize;
+    this.output = new byte[Math.max(cipher.getOutputSize(bufferSize), bufferSize)];
+  }
+
+
+  @Override
+  public void write(final int b)
+    throws IOException
+  {
+    single[0] = (byte) b;
+    write(single, 0, 1);
+  }
+
+
+  @Override
+  public void write(final byte[] b)
+    throws IOException
+  {
+    CryptUtil.assertNotNullArg(b, "Byte array cannot be null");
+    write(b, 0, b.length);
+  }
+
+
+  @Override
+  public void write(final byte[] b, final int off, final int len)
+    throws IOException
+  {
+    CryptUtil.assertNotNullArg(b, "Byte array cannot be null");
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException("Invalid offset or length");
+    }
+    ensureOpen();
+    writeHeader();
+    int pos = off;
+    final int end = off + len;
+    while (pos < end) {
+      final int count = Math.min(end - pos, bufferSize);
+      prepareOutput(count);
+      final int n = cipher.processBytes(b, pos, count, output, 0);
+      out.write(output, 0, n);
+      pos += count;
+    }
+  }
+
+
+  @Override
+  public void flush()
+    throws IOException
+  {
+    ensureOpen();
+    writeHeader();
+    out.flush();
+  }
+
+
+  /**
+   * Finalizes the cipher, writes the final ciphertext bytes and closes the underlying stream. Subsequent calls have no
+   * effect.
+   *
+   * @throws  IOException  on IO errors.
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      writeHeader();
+      prepareOutput(0);
+      final int n = cipher.doFinal(output, 0);
+      out.write(output, 0, n);
+      out.flush();
+    } finally {
+      out.close();
+    }
+  }
+
+
+  /**
+   * Writes the header to the underlying stream if it has not been written yet.
+   *
+   * @throws  IOException  on IO errors.
+   */
+  private void writeHeader()
+    throws IOException
+  {
+    if (!headerWritten) {
+      out.write(header);
+      headerWritten = true;
+    }
+  }
+
+
+  /**
+   * Ensures the output buffer can hold the output of the cipher for the given number of input bytes.
+   *
+   * @param  length  Number of input bytes.
+   */
+  private void prepareOutput(final int length)
+  {
+    final int required = cipher.getOutputSize(length);
+    if (output.length < required) {
+      output = new byte[required];
+    }
+  }
+
+
+  /**
+   * Ensures the stream has not been closed.
+   *
+   * @throws  IOException  if the stream has been closed.
+   */
+  private void ensureOpen()
+    throws IOException
+  {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
@@ -32,6 +32,13 @@ public class FileResource implements Resource
   }
 
 
+  /** @return  Underlying file. */
+  public File getFile()
+  {
+    return file;
+  }
+
+
   @Override
   public InputStream getInputStream()
     throws IOException
@@ -2,6 +2,10 @@
 package org.cryptacular.spec;
 
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
 import org.cryptacular.CryptUtil;
 import org.cryptacular.codec.Base32Codec;
 import org.cryptacular.codec.Base64Codec;
@@ -10,7 +14,8 @@ import org.cryptacular.codec.HexCodec;
 
 /**
  * Describes a string-to-byte encoding and provides a means to create a new instance of the codec via the {@link
- * #newInstance()} method.
+ * #newInstance()} method. {@link #getSharedInstance()} provides a codec per encoding that is shared by all threads
+ * for one-shot encoding and decoding.
  *
  * @author  Middleware Services
  */
@@ -41,9 +46,31 @@ public class CodecSpec implements Spec<Codec>
   /** Unpadded base64 encoding specification. */
   public static final CodecSpec BASE64_UNPADDED = new CodecSpec("Base64-Unpadded");
 
+  /** Codec factories keyed by upper case encoding name. */
+  private static final Map<String, Supplier<Codec>> FACTORIES = new HashMap<>();
+
+  /** Shared codecs keyed by upper case encoding name. */
+  private static final Map<String, Codec> SHARED = new HashMap<>();
+
   /** Name of encoding, e.g. "Hex", "Base64". */
   private final String encoding;
 
+  /** Upper case encoding name used as the key of {@link #FACTORIES} and {@link #SHARED}. */
+  private final String key;
+
+  static {
+    register(HexCodec::new, "Hex", "Hex-Lower");
+    register(() -> new HexCodec(true), "Hex-Upper");
+    register(Base32Codec::new, "Base32", "Base-32");
+    register(() -> new Base32Codec("ABCDEFGHIJKLMNOPQRSTUVWXYZ234567", true), "Base32-Unpadded");
+    register(Base64Codec::new, "Base64", "Base-64");
+    register(
+      () -> new Base64Codec("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"), "Base64-URLSafe");
+    register(
+      () -> new Base64Codec("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", false),
+      "Base64-Unpadded");
+  }
+
 
   /**
    * Creates a new instance of the given encoding.
@@ -53,6 +80,7 @@ public class CodecSpec implements Spec<Codec>
   public CodecSpec(final String encoding)
   {
     this.encoding = CryptUtil.assertNotNullArg(encoding, "Encoding cannot be null.");
+    this.key = encoding.toUpperCase(Locale.ROOT);
   }
 
 
@@ -67,22 +95,25 @@ public class CodecSpec implements Spec<Codec>
   @Override
   public Codec newInstance()
   {
-    final Codec codec;
-    if ("Hex".equalsIgnoreCase(encoding) || "Hex-Lower".equalsIgnoreCase(encoding)) {
-      codec = new HexCodec();
-    } else if ("Hex-Upper".equalsIgnoreCase(encoding)) {
-      codec = new HexCodec(true);
-    } else if ("Base32".equalsIgnoreCase(encoding) || "Base-32".equalsIgnoreCase(encoding)) {
-      codec = new Base32Codec();
-    } else if ("Base32-Unpadded".equalsIgnoreCase(encoding)) {
-      codec = new Base32Codec("ABCDEFGHIJKLMNOPQRSTUVWXYZ234567", true);
-    } else if ("Base64".equalsIgnoreCase(encoding) || "Base-64".equalsIgnoreCase(encoding)) {
-      codec = new Base64Codec();
-    } else if ("Base64-URLSafe".equalsIgnoreCase(encoding)) {
-      codec = new Base64Codec("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_");
-    } else if ("Base64-Unpadded".equalsIgnoreCase(encoding)) {
-      codec = new Base64Codec("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", false);
-    } else {
+    final Supplier<Codec> factory = FACTORIES.get(key);
+    if (factory == null) {
+      throw new IllegalArgumentException("Invalid encoding.");
+    }
+    return factory.get();
+  }
+
+
+  /**
+   * Gets the codec of this encoding that is shared by all threads. Only the thread safe {@link
+   * Codec#encode(byte[])} and {@link Codec#decode(CharSequence)} operations may be used on it; use {@link
+   * #newInstance()} for an encoder or decoder.
+   *
+   * @return  Shared codec.
+   */
+  public Codec getSharedInstance()
+  {
+    final Codec codec = SHARED.get(key);
+    if (codec == null) {
       throw new IllegalArgumentException("Invalid encoding.");
     }
     return codec;
@@ -94,4 +125,20 @@ public class CodecSpec implements Spec<Codec>
   {
     return encoding;
   }
+
+
+  /**
+   * Registers a codec factory and creates the shared codec under one or more encoding names.
+   *
+   * @param  factory  Creates codec instances.
+   * @param  names  Encoding names.
+   */
+  private static void register(final Supplier<Codec> factory, final String... names)
+  {
+    final Codec shared = factory.get();
+    for (String name : names) {
+      FACTORIES.put(name.toUpperCase(Locale.ROOT), factory);
+      SHARED.put(name.toUpperCase(Locale.ROOT), shared);
+    }
+  }
 }
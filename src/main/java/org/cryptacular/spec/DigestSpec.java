@@ -1,7 +1,13 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.spec;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.EncodableDigest;
 import org.bouncycastle.crypto.digests.GOST3411Digest;
 import org.bouncycastle.crypto.digests.MD2Digest;
 import org.bouncycastle.crypto.digests.MD4Digest;
@@ -29,12 +35,40 @@ import org.cryptacular.CryptUtil;
 public class DigestSpec implements Spec<Digest>
 {
 
+  /** Digest factories keyed by upper case algorithm name; factories receive the requested digest size. */
+  private static final Map<String, IntFunction<Digest>> FACTORIES = new HashMap<>();
+
+  /** Factories that restore digests from encoded state, keyed by upper case algorithm name. */
+  private static final Map<String, Function<byte[], Digest>> RESTORERS = new HashMap<>();
+
   /** Digest algorithm name. */
   private final String algorithm;
 
   /** Requested size of variable-size hash algorithms, e.g. SHA-3. -1 for hashes with fixed size outputs. */
   private final int size;
 
+  /** Creates digest instances for {@link #algorithm}, or null if the algorithm is not supported. */
+  private final IntFunction<Digest> factory;
+
+  static {
+    register(size -> new GOST3411Digest(), null, "GOST3411");
+    register(size -> new MD2Digest(), null, "MD2");
+    register(size -> new MD4Digest(), null, "MD4");
+    register(size -> new MD5Digest(), MD5Digest::new, "MD5");
+    register(size -> new RIPEMD128Digest(), null, "RIPEMD128", "RIPEMD-128");
+    register(size -> new RIPEMD160Digest(), null, "RIPEMD160", "RIPEMD-160");
+    register(size -> new RIPEMD256Digest(), null, "RIPEMD256", "RIPEMD-256");
+    register(size -> new RIPEMD320Digest(), null, "RIPEMD320", "RIPEMD-320");
+    register(size -> new SHA1Digest(), SHA1Digest::new, "SHA1", "SHA-1");
+    register(size -> new SHA224Digest(), SHA224Digest::new, "SHA224", "SHA-224");
+    register(size -> new SHA256Digest(), SHA256Digest::new, "SHA256", "SHA-256");
+    register(size -> new SHA384Digest(), SHA384Digest::new, "SHA384", "SHA-384");
+    register(size -> new SHA512Digest(), SHA512Digest::new, "SHA512", "SHA-512");
+    register(SHA3Digest::new, SHA3Digest::new, "SHA3", "SHA-3");
+    register(size -> new TigerDigest(), null, "Tiger");
+    register(size -> new WhirlpoolDigest(), null, "Whirlpool");
+  }
+
 
   /**
    * Creates a new instance from the given algorithm name.
@@ -45,6 +79,7 @@ public class DigestSpec implements Spec<Digest>
   {
     this.algorithm = CryptUtil.assertNotNullArg(algName, "Algorithm name cannot be null.");
     this.size = -1;
+    this.factory = lookup(algName);
   }
 
 
@@ -61,6 +96,7 @@ public class DigestSpec implements Spec<Digest>
       throw new IllegalArgumentException("Digest size must be positive.");
     }
     this.size = digestSize;
+    this.factory = lookup(algName);
   }
 
 
@@ -86,43 +122,32 @@ public class DigestSpec implements Spec<Digest>
   @Override
   public Digest newInstance()
   {
-    final Digest digest;
-    if ("GOST3411".equalsIgnoreCase(algorithm)) {
-      digest = new GOST3411Digest();
-    } else if ("MD2".equalsIgnoreCase(algorithm)) {
-      digest = new MD2Digest();
-    } else if ("MD4".equalsIgnoreCase(algorithm)) {
-      digest = new MD4Digest();
-    } else if ("MD5".equalsIgnoreCase(algorithm)) {
-      digest = new MD5Digest();
-    } else if ("RIPEMD128".equalsIgnoreCase(algorithm) || "RIPEMD-128".equalsIgnoreCase(algorithm)) {
-      digest = new RIPEMD128Digest();
-    } else if ("RIPEMD160".equalsIgnoreCase(algorithm) || "RIPEMD-160".equalsIgnoreCase(algorithm)) {
-      digest = new RIPEMD160Digest();
-    } else if ("RIPEMD256".equalsIgnoreCase(algorithm) || "RIPEMD-256".equalsIgnoreCase(algorithm)) {
-      digest = new RIPEMD256Digest();
-    } else if ("RIPEMD320".equalsIgnoreCase(algorithm) || "RIPEMD-320".equalsIgnoreCase(algorithm)) {
-      digest = new RIPEMD320Digest();
-    } else if ("SHA1".equalsIgnoreCase(algorithm) || "SHA-1".equalsIgnoreCase(algorithm)) {
-      digest = new SHA1Digest();
-    } else if ("SHA224".equalsIgnoreCase(algorithm) || "SHA-224".equalsIgnoreCase(algorithm)) {
-      digest = new SHA224Digest();
-    } else if ("SHA256".equalsIgnoreCase(algorithm) || "SHA-256".equalsIgnoreCase(algorithm)) {
-      digest = new SHA256Digest();
-    } else if ("SHA384".equalsIgnoreCase(algorithm) || "SHA-384".equalsIgnoreCase(algorithm)) {
-      digest = new SHA384Digest();
-    } else if ("SHA512".equalsIgnoreCase(algorithm) || "SHA-512".equalsIgnoreCase(algorithm)) {
-      digest = new SHA512Digest();
-    } else if ("SHA3".equalsIgnoreCase(algorithm) || "SHA-3".equalsIgnoreCase(algorithm)) {
-      digest = new SHA3Digest(size);
-    } else if ("Tiger".equalsIgnoreCase(algorithm)) {
-      digest = new TigerDigest();
-    } else if ("Whirlpool".equalsIgnoreCase(algorithm)) {
-      digest = new WhirlpoolDigest();
-    } else {
+    if (factory == null) {
       throw new IllegalStateException("Unsupported digest algorithm " + algorithm);
     }
-    return digest;
+    return factory.apply(size);
+  }
+
+
+  /**
+   * Creates a digest instance that resumes from the given state, which is produced by {@link
+   * EncodableDigest#getEncodedState()}. Only algorithms whose digests implement {@link EncodableDigest} support this,
+   * i.e. MD5, SHA-1, SHA-2, and SHA-3.
+   *
+   * @param  encodedState  Digest state.
+   *
+   * @return  Digest instance in the given state.
+   *
+   * @throws  IllegalStateException  if the algorithm does not support state encoding.
+   */
+  public Digest newInstance(final byte[] encodedState)
+  {
+    CryptUtil.assertNotNullArg(encodedState, "Encoded state cannot be null.");
+    final Function<byte[], Digest> restorer = RESTORERS.get(algorithm.toUpperCase(Locale.ROOT));
+    if (restorer == null) {
+      throw new IllegalStateException("Digest algorithm " + algorithm + " does not support state encoding");
+    }
+    return restorer.apply(encodedState);
   }
 
 
@@ -131,4 +156,36 @@ public class DigestSpec implements Spec<Digest>
   {
     return algorithm;
   }
+
+
+  /**
+   * Registers a digest factory under one or more algorithm names.
+   *
+   * @param  factory  Digest factory.
+   * @param  restorer  Restores digests from encoded state, or null if the algorithm does not support state encoding.
+   * @param  names  Algorithm names.
+   */
+  private static void register(
+    final IntFunction<Digest> factory, final Function<byte[], Digest> restorer, final String... names)
+  {
+    for (String name : names) {
+      FACTORIES.put(name.toUpperCase(Locale.ROOT), factory);
+      if (restorer != null) {
+        RESTORERS.put(name.toUpperCase(Locale.ROOT), restorer);
+      }
+    }
+  }
+
+
+  /**
+   * Looks up the digest factory for an algorithm name, ignoring case.
+   *
+   * @param  algName  Algorithm name.
+   *
+   * @return  Digest factory or null if the algorithm is not supported.
+   */
+  private static IntFunction<Digest> lookup(final String algName)
+  {
+    return FACTORIES.get(algName.toUpperCase(Locale.ROOT));
+  }
 }
@@ -4,6 +4,9 @@ package org.cryptacular.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.function.Function;
 import javax.crypto.SecretKey;
 import org.bouncycastle.crypto.BlockCipher;
@@ -17,11 +20,14 @@ import org.cryptacular.CiphertextHeader;
 import org.cryptacular.CryptUtil;
 import org.cryptacular.CryptoException;
 import org.cryptacular.EncodingException;
+import org.cryptacular.SegmentedAEADCipher;
 import org.cryptacular.StreamException;
 import org.cryptacular.adapter.AEADBlockCipherAdapter;
 import org.cryptacular.adapter.BlockCipherAdapter;
 import org.cryptacular.adapter.BufferedBlockCipherAdapter;
 import org.cryptacular.generator.Nonce;
+import org.cryptacular.io.BufferPool;
+import org.cryptacular.spec.Spec;
 
 /**
  * Utility class that performs encryption and decryption operations using a block cipher.
@@ -121,6 +127,7 @@ public final class CipherUtil
     CryptUtil.assertNotNullArg(key, "Key cannot be null");
     CryptUtil.assertNotNullArg(data, "Data cannot be null");
     final CiphertextHeader header = decodeHeader(data, String -> key);
+    assertNotSegmented(header);
     final byte[] nonce = header.getNonce();
     final byte[] hbytes = header.encode();
     cipher.init(false, new AEADParameters(new KeyParameter(key.getEncoded()), MAC_SIZE_BITS, nonce, hbytes));
@@ -153,6 +160,7 @@ public final class CipherUtil
     CryptUtil.assertNotNullArg(input, "Input stream cannot be null");
     CryptUtil.assertNotNullArg(output, "Output stream cannot be null");
     final CiphertextHeader header = decodeHeader(input, String -> key);
+    assertNotSegmented(header);
     final byte[] nonce = header.getNonce();
     final byte[] hbytes = header.encode();
     cipher.init(false, new AEADParameters(new KeyParameter(key.getEncoded()), MAC_SIZE_BITS, nonce, hbytes));
@@ -160,6 +168,229 @@ public final class CipherUtil
   }
 
 
+  /**
+   * Encrypts data using an AEAD cipher. A {@link CiphertextHeader} is written to the output buffer ahead of the
+   * ciphertext and used as AAD (Additional Authenticated Data) passed to the AEAD cipher. Heap and direct buffers are
+   * supported and no buffer proportional to the input is allocated.
+   *
+   * @param  cipher  AEAD cipher.
+   * @param  key  Encryption key.
+   * @param  nonce  Nonce generator.
+   * @param  input  Buffer containing plaintext data. On success its position is advanced to its limit.
+   * @param  output  Buffer that receives the encoded {@link CiphertextHeader} followed by encrypted data. On success
+   *                 its position is advanced by the number of bytes written.
+   *
+   * @return  Number of bytes written to the output buffer.
+   *
+   * @throws  CryptoException  on encryption errors.
+   * @throws  IllegalArgumentException  if the output buffer is too small, in which case neither buffer is modified.
+   */
+  public static int encrypt(
+    final AEADBlockCipher cipher,
+    final SecretKey key,
+    final Nonce nonce,
+    final ByteBuffer input,
+    final ByteBuffer output)
+    throws CryptoException
+  {
+    CryptUtil.assertNotNullArg(cipher, "Cipher cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(nonce, "Nonce cannot be null");
+    CryptUtil.assertNotNullArg(input, "Input buffer cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output buffer cannot be null");
+    final byte[] iv = nonce.generate();
+    final byte[] header = new CiphertextHeader(iv, "1").encode(key);
+    cipher.init(true, new AEADParameters(new KeyParameter(key.getEncoded()), MAC_SIZE_BITS, iv, header));
+    final BlockCipherAdapter adapter = new AEADBlockCipherAdapter(cipher);
+    assertOutputSize(output, header.length + adapter.getOutputSize(input.remaining()));
+    output.put(header);
+    return header.length + process(adapter, input, output);
+  }
+
+
+  /**
+   * Decrypts data using an AEAD cipher. Heap and direct buffers are supported and no buffer proportional to the input
+   * is allocated.
+   *
+   * @param  cipher  AEAD cipher.
+   * @param  key  Encryption key.
+   * @param  input  Buffer containing a {@link CiphertextHeader} followed by ciphertext data. The header is treated as
+   *                AAD input to the cipher that is verified during decryption. On success its position is advanced
+   *                to its limit.
+   * @param  output  Buffer that receives plaintext. It must have at least as many bytes remaining as the ciphertext
+   *                 following the header; on success its position is advanced by the number of bytes written.
+   *
+   * @return  Number of bytes written to the output buffer.
+   *
+   * @throws  CryptoException  on decryption errors, e.g. authentication failure, in which case any plaintext written
+   *                           to the output buffer is zeroed and the positions of both buffers are restored.
+   * @throws  EncodingException  on decoding cyphertext header.
+   * @throws  IllegalArgumentException  if the output buffer is too small, in which case neither buffer is modified.
+   */
+  public static int decrypt(
+    final AEADBlockCipher cipher,
+    final SecretKey key,
+    final ByteBuffer input,
+    final ByteBuffer output)
+    throws CryptoException, EncodingException
+  {
+    CryptUtil.assertNotNullArg(cipher, "Cipher cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(input, "Input buffer cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output buffer cannot be null");
+    final CiphertextHeader header = decodeHeader(input.duplicate(), name -> key);
+    assertNotSegmented(header);
+    final byte[] nonce = header.getNonce();
+    final byte[] hbytes = header.encode();
+    cipher.init(false, new AEADParameters(new KeyParameter(key.getEncoded()), MAC_SIZE_BITS, nonce, hbytes));
+    return decrypt(new AEADBlockCipherAdapter(cipher), header, input, output);
+  }
+
+
+  /**
+   * Encrypts data using an AEAD cipher in the segmented format described in {@link SegmentedAEADCipher}. Segments
+   * are encrypted in parallel on the common fork/join pool, so the memory required is bounded by a small multiple of
+   * the segment size and the number of available processors.
+   *
+   * @param  cipherSpec  AEAD cipher specification.
+   * @param  key  Encryption key.
+   * @param  nonce  Nonce generator.
+   * @param  segmentSize  Plaintext bytes per segment, e.g. {@link SegmentedAEADCipher#DEFAULT_SEGMENT_SIZE}.
+   * @param  input  Input stream containing plaintext data.
+   * @param  output  Output stream that receives a segmented {@link CiphertextHeader} followed by ciphertext segments.
+   *
+   * @throws  CryptoException  on encryption errors.
+   * @throws  StreamException  on IO errors.
+   */
+  public static void encrypt(
+    final Spec<AEADBlockCipher> cipherSpec,
+    final SecretKey key,
+    final Nonce nonce,
+    final int segmentSize,
+    final InputStream input,
+    final OutputStream output)
+    throws CryptoException, StreamException
+  {
+    CryptUtil.assertNotNullArg(cipherSpec, "Cipher spec cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(nonce, "Nonce cannot be null");
+    final CiphertextHeader header = new CiphertextHeader(nonce.generate(), "1", segmentSize, null);
+    new SegmentedAEADCipher(cipherSpec).encrypt(header, key, input, output);
+  }
+
+
+  /**
+   * Decrypts data using an AEAD cipher. Both segmented ciphertext, which is decrypted in parallel on the common
+   * fork/join pool, and single-pass ciphertext are supported; the format is determined by the {@link
+   * CiphertextHeader}.
+   *
+   * @param  cipherSpec  AEAD cipher specification.
+   * @param  key  Encryption key.
+   * @param  input  Input stream containing a {@link CiphertextHeader} followed by ciphertext data.
+   * @param  output  Output stream that receives plaintext produced by the cipher in decryption mode.
+   *
+   * @throws  CryptoException  on decryption errors.
+   * @throws  EncodingException  on decoding cyphertext header.
+   * @throws  StreamException  on IO errors.
+   */
+  public static void decrypt(
+    final Spec<AEADBlockCipher> cipherSpec,
+    final SecretKey key,
+    final InputStream input,
+    final OutputStream output)
+    throws CryptoException, EncodingException, StreamException
+  {
+    CryptUtil.assertNotNullArg(cipherSpec, "Cipher spec cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(input, "Input stream cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output stream cannot be null");
+    final CiphertextHeader header = decodeHeader(input, String -> key);
+    if (header.isSegmented()) {
+      new SegmentedAEADCipher(cipherSpec).decrypt(header, key, input, output);
+    } else {
+      decrypt(cipherSpec.newInstance(), key, header, input, output);
+    }
+  }
+
+
+  /**
+   * Encrypts a file using an AEAD cipher in the segmented format described in {@link SegmentedAEADCipher}. The input
+   * file is memory mapped and segments are encrypted in parallel on the common fork/join pool and written directly to
+   * their position in the output file, which avoids stream copying and scales with the number of processors.
+   *
+   * @param  cipherSpec  AEAD cipher specification.
+   * @param  key  Encryption key.
+   * @param  nonce  Nonce generator.
+   * @param  segmentSize  Plaintext bytes per segment, e.g. {@link SegmentedAEADCipher#DEFAULT_SEGMENT_SIZE}.
+   * @param  input  Path to plaintext file.
+   * @param  output  Path to file that receives a segmented {@link CiphertextHeader} followed by ciphertext segments.
+   *                 The file is created or truncated, and it is deleted if encryption fails.
+   *
+   * @throws  CryptoException  on encryption errors.
+   * @throws  StreamException  on IO errors.
+   */
+  public static void encrypt(
+    final Spec<AEADBlockCipher> cipherSpec,
+    final SecretKey key,
+    final Nonce nonce,
+    final int segmentSize,
+    final Path input,
+    final Path output)
+    throws CryptoException, StreamException
+  {
+    CryptUtil.assertNotNullArg(cipherSpec, "Cipher spec cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(nonce, "Nonce cannot be null");
+    final CiphertextHeader header = new CiphertextHeader(nonce.generate(), "1", segmentSize, null);
+    new SegmentedAEADCipher(cipherSpec).encrypt(header, key, input, output);
+  }
+
+
+  /**
+   * Decrypts a file using an AEAD cipher. Segmented ciphertext is decrypted in parallel from a memory mapped input
+   * file as described in {@link #encrypt(Spec, SecretKey, Nonce, int, Path, Path)}; single-pass ciphertext is
+   * decrypted sequentially.
+   *
+   * @param  cipherSpec  AEAD cipher specification.
+   * @param  key  Encryption key.
+   * @param  input  Path to file containing a {@link CiphertextHeader} followed by ciphertext data.
+   * @param  output  Path to file that receives plaintext. The file is created or truncated, and it is deleted if
+   *                 decryption fails, so that no unauthenticated or partial plaintext remains.
+   *
+   * @throws  CryptoException  on decryption errors.
+   * @throws  EncodingException  on decoding cyphertext header.
+   * @throws  StreamException  on IO errors.
+   */
+  public static void decrypt(
+    final Spec<AEADBlockCipher> cipherSpec,
+    final SecretKey key,
+    final Path input,
+    final Path output)
+    throws CryptoException, EncodingException, StreamException
+  {
+    CryptUtil.assertNotNullArg(cipherSpec, "Cipher spec cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    final CiphertextHeader header;
+    try (InputStream in = Files.newInputStream(input)) {
+      header = decodeHeader(in, name -> key);
+      if (!header.isSegmented()) {
+        try (OutputStream out = Files.newOutputStream(output)) {
+          decrypt(cipherSpec.newInstance(), key, header, in, out);
+        } catch (IOException | RuntimeException e) {
+          delete(output);
+          throw e;
+        }
+        return;
+      }
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+    new SegmentedAEADCipher(cipherSpec).decrypt(header, key, input, output);
+  }
+
+
   /**
    * Encrypts data using the given block cipher with PKCS5 padding. A {@link CiphertextHeader} is prepended to the
    * resulting ciphertext.
@@ -281,6 +512,84 @@ public final class CipherUtil
   }
 
 
+  /**
+   * Encrypts data using the given block cipher with PKCS5 padding. A {@link CiphertextHeader} is written directly to
+   * the output buffer ahead of the ciphertext. Heap and direct buffers are supported and no buffer proportional to the
+   * input is allocated.
+   *
+   * @param  cipher  Block cipher.
+   * @param  key  Encryption key.
+   * @param  nonce  IV generator. Callers must take care to ensure that the length of generated IVs is equal to the
+   *                cipher block size.
+   * @param  input  Buffer containing plaintext data. On success its position is advanced to its limit.
+   * @param  output  Buffer that receives the encoded {@link CiphertextHeader} followed by encrypted data. On success
+   *                 its position is advanced by the number of bytes written.
+   *
+   * @return  Number of bytes written to the output buffer.
+   *
+   * @throws  CryptoException  on encryption errors.
+   * @throws  IllegalArgumentException  if the output buffer is too small, in which case neither buffer is modified.
+   */
+  public static int encrypt(
+    final BlockCipher cipher,
+    final SecretKey key,
+    final Nonce nonce,
+    final ByteBuffer input,
+    final ByteBuffer output)
+    throws CryptoException
+  {
+    CryptUtil.assertNotNullArg(cipher, "Cipher cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(nonce, "Nonce cannot be null");
+    CryptUtil.assertNotNullArg(input, "Input buffer cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output buffer cannot be null");
+    final byte[] iv = nonce.generate();
+    final CiphertextHeader header = new CiphertextHeader(iv, "1");
+    final PaddedBufferedBlockCipher padded = new PaddedBufferedBlockCipher(cipher, new PKCS7Padding());
+    padded.init(true, new ParametersWithIV(new KeyParameter(key.getEncoded()), iv));
+    final BlockCipherAdapter adapter = new BufferedBlockCipherAdapter(padded);
+    assertOutputSize(output, header.getLength() + adapter.getOutputSize(input.remaining()));
+    header.encode(key, output);
+    return header.getLength() + process(adapter, input, output);
+  }
+
+
+  /**
+   * Decrypts data using the given block cipher with PKCS5 padding. Heap and direct buffers are supported and no buffer
+   * proportional to the input is allocated.
+   *
+   * @param  cipher  Block cipher.
+   * @param  key  Encryption key.
+   * @param  input  Buffer containing a {@link CiphertextHeader} followed by ciphertext data. On success its position
+   *                is advanced to its limit.
+   * @param  output  Buffer that receives plaintext. It must have at least as many bytes remaining as the ciphertext
+   *                 following the header; on success its position is advanced by the number of bytes written.
+   *
+   * @return  Number of bytes written to the output buffer.
+   *
+   * @throws  CryptoException  on decryption errors, e.g. authentication failure, in which case any plaintext written
+   *                           to the output buffer is zeroed and the positions of both buffers are restored.
+   * @throws  EncodingException  on decoding cyphertext header.
+   * @throws  IllegalArgumentException  if the output buffer is too small, in which case neither buffer is modified.
+   */
+  public static int decrypt(
+    final BlockCipher cipher,
+    final SecretKey key,
+    final ByteBuffer input,
+    final ByteBuffer output)
+    throws CryptoException, EncodingException
+  {
+    CryptUtil.assertNotNullArg(cipher, "Cipher cannot be null");
+    CryptUtil.assertNotNullArg(key, "Key cannot be null");
+    CryptUtil.assertNotNullArg(input, "Input buffer cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output buffer cannot be null");
+    final CiphertextHeader header = decodeHeader(input.duplicate(), name -> key);
+    final PaddedBufferedBlockCipher padded = new PaddedBufferedBlockCipher(cipher, new PKCS7Padding());
+    padded.init(false, new ParametersWithIV(new KeyParameter(key.getEncoded()), header.getNonce()));
+    return decrypt(new BufferedBlockCipherAdapter(padded), header, input, output);
+  }
+
+
   /**
    * Decodes the ciphertext header at the start of the given byte array.
    * Supports both original (deprecated) and v2 formats.
@@ -311,6 +620,58 @@ public final class CipherUtil
   }
 
 
+  /**
+   * Decodes the ciphertext header at the current position of the given buffer and advances the buffer position past
+   * the header.
+   *
+   * @param  data  Buffer positioned at the start of the ciphertext header.
+   * @param  keyLookup  Decryption key lookup function.
+   *
+   * @return  Ciphertext header instance.
+   */
+  public static CiphertextHeader decodeHeader(final ByteBuffer data, final Function<String, SecretKey> keyLookup)
+  {
+    return CiphertextHeader.decode(data, keyLookup);
+  }
+
+
+  /**
+   * Decrypts single-pass AEAD ciphertext that follows a decoded header.
+   *
+   * @param  cipher  AEAD block cipher.
+   * @param  key  Decryption key.
+   * @param  header  Ciphertext header decoded from the input stream.
+   * @param  input  Input stream positioned immediately after the header.
+   * @param  output  Output stream that receives plaintext.
+   */
+  private static void decrypt(
+    final AEADBlockCipher cipher,
+    final SecretKey key,
+    final CiphertextHeader header,
+    final InputStream input,
+    final OutputStream output)
+  {
+    final byte[] nonce = header.getNonce();
+    final byte[] hbytes = header.encode();
+    cipher.init(false, new AEADParameters(new KeyParameter(key.getEncoded()), MAC_SIZE_BITS, nonce, hbytes));
+    process(new AEADBlockCipherAdapter(cipher), input, output);
+  }
+
+
+  /**
+   * Ensures the given header does not describe segmented ciphertext, which requires a cipher specification so that
+   * segments can be processed concurrently.
+   *
+   * @param  header  Decoded ciphertext header.
+   */
+  private static void assertNotSegmented(final CiphertextHeader header)
+  {
+    if (header.isSegmented()) {
+      throw new CryptoException("Segmented ciphertext must be decrypted with an AEAD cipher specification");
+    }
+  }
+
+
   /**
    * Encrypts the given data.
    *
@@ -360,6 +721,83 @@ public final class CipherUtil
   }
 
 
+  /**
+   * Decrypts the ciphertext following the header in the given buffer.
+   *
+   * @param  cipher  Adapter for either a block or AEAD cipher.
+   * @param  header  Ciphertext header decoded from the start of the input buffer.
+   * @param  input  Buffer positioned at the start of the header.
+   * @param  output  Buffer that receives plaintext.
+   *
+   * @return  Number of bytes written to the output buffer.
+   */
+  private static int decrypt(
+    final BlockCipherAdapter cipher,
+    final CiphertextHeader header,
+    final ByteBuffer input,
+    final ByteBuffer output)
+  {
+    assertOutputSize(output, cipher.getOutputSize(input.remaining() - header.getLength()));
+    final int start = input.position();
+    input.position(start + header.getLength());
+    try {
+      return process(cipher, input, output);
+    } catch (RuntimeException e) {
+      input.position(start);
+      throw e;
+    }
+  }
+
+
+  /**
+   * Performs encryption or decryption on the remaining bytes of the input buffer based on the underlying cipher mode
+   * and writes the result to the output buffer.
+   *
+   * @param  cipher  Adapter for either a block or AEAD cipher.
+   * @param  input  Buffer containing data to be processed by the cipher.
+   * @param  output  Buffer that receives the output of the cipher acting on the input.
+   *
+   * @return  Number of bytes written to the output buffer.
+   */
+  private static int process(final BlockCipherAdapter cipher, final ByteBuffer input, final ByteBuffer output)
+  {
+    final int n = cipher.processAll(input, output);
+    cipher.reset();
+    return n;
+  }
+
+
+  /**
+   * Ensures the output buffer can hold the given number of bytes.
+   *
+   * @param  output  Output buffer.
+   * @param  size  Number of bytes that will be written to the output buffer.
+   */
+  private static void assertOutputSize(final ByteBuffer output, final int size)
+  {
+    if (output.remaining() < size) {
+      throw new IllegalArgumentException(
+        "Output buffer has " + output.remaining() + " bytes remaining but " + size + " are required");
+    }
+  }
+
+
+  /**
+   * Deletes a partially written output file.
+   *
+   * @param  path  Output file.
+   */
+  private static void delete(final Path path)
+  {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // Preserve the original failure
+      return;
+    }
+  }
+
+
   /**
    * Performs encryption or decryption on the given input stream based on the underlying cipher mode and writes the
    * result to the given output stream.
@@ -370,14 +808,15 @@ public final class CipherUtil
    */
   private static void process(final BlockCipherAdapter cipher, final InputStream input, final OutputStream output)
   {
-    final int inSize = 1024;
+    final int inSize = StreamUtil.BUFFER_SIZE;
     final int outSize = cipher.getOutputSize(inSize);
-    final byte[] inBuf = new byte[inSize];
-    final byte[] outBuf = new byte[Math.max(outSize, inSize)];
+    final byte[] inBuf = BufferPool.acquire(inSize);
+    final int outBufSize = Math.max(outSize, inSize);
+    final byte[] outBuf = BufferPool.acquire(outBufSize);
     int readLen;
     int writeLen;
     try {
-      while ((readLen = input.read(inBuf)) > 0) {
+      while ((readLen = input.read(inBuf, 0, inSize)) > 0) {
         writeLen = cipher.processBytes(inBuf, 0, readLen, outBuf, 0);
         output.write(outBuf, 0, writeLen);
       }
@@ -385,6 +824,9 @@ public final class CipherUtil
       output.write(outBuf, 0, writeLen);
     } catch (IOException e) {
       throw new StreamException(e);
+    } finally {
+      BufferPool.release(outBuf, outBufSize);
+      BufferPool.release(inBuf, inSize);
     }
   }
 
@@ -1,17 +1,20 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.util;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.util.Arrays;
 import org.cryptacular.CryptUtil;
 import org.cryptacular.EncodingException;
-import org.cryptacular.codec.Base32Decoder;
+import org.cryptacular.codec.Base32Codec;
 import org.cryptacular.codec.Base32Encoder;
-import org.cryptacular.codec.Base64Decoder;
+import org.cryptacular.codec.Base64Codec;
 import org.cryptacular.codec.Base64Encoder;
+import org.cryptacular.codec.Codec;
 import org.cryptacular.codec.Decoder;
 import org.cryptacular.codec.Encoder;
-import org.cryptacular.codec.HexDecoder;
+import org.cryptacular.codec.HexCodec;
 import org.cryptacular.codec.HexEncoder;
 
 
@@ -23,6 +26,21 @@ import org.cryptacular.codec.HexEncoder;
 public final class CodecUtil
 {
 
+  /** Largest per-thread scratch buffer in characters that is kept for reuse. */
+  private static final int MAX_SCRATCH_SIZE = 1024 * 1024;
+
+  /** Shared lowercase hexadecimal codec. */
+  private static final Codec HEX = new HexCodec();
+
+  /** Shared base-64 codec. */
+  private static final Codec BASE64 = new Base64Codec();
+
+  /** Shared base-32 codec. */
+  private static final Codec BASE32 = new Base32Codec();
+
+  /** Per-thread scratch buffer for encoded characters, cleared after each use. */
+  private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[1024]);
+
   /** Private constructor of utility class. */
   private CodecUtil() {}
 
@@ -38,7 +56,7 @@ public final class CodecUtil
    */
   public static String hex(final byte[] raw) throws EncodingException
   {
-    return encode(new HexEncoder(), raw);
+    return HEX.encode(raw);
   }
 
 
@@ -70,7 +88,7 @@ public final class CodecUtil
    */
   public static byte[] hex(final CharSequence encoded) throws EncodingException
   {
-    return decode(new HexDecoder(), encoded);
+    return HEX.decode(encoded);
   }
 
 
@@ -85,7 +103,7 @@ public final class CodecUtil
    */
   public static String b64(final byte[] raw) throws EncodingException
   {
-    return encode(new Base64Encoder(), raw);
+    return BASE64.encode(raw);
   }
 
 
@@ -100,7 +118,7 @@ public final class CodecUtil
    */
   public static byte[] b64(final CharSequence encoded) throws EncodingException
   {
-    return decode(new Base64Decoder(), encoded);
+    return BASE64.decode(encoded);
   }
 
 
@@ -131,7 +149,7 @@ public final class CodecUtil
    */
   public static String b32(final byte[] raw) throws EncodingException
   {
-    return encode(new Base32Encoder(), raw);
+    return BASE32.encode(raw);
   }
 
 
@@ -146,7 +164,7 @@ public final class CodecUtil
    */
   public static byte[] b32(final CharSequence encoded) throws EncodingException
   {
-    return decode(new Base32Decoder(), encoded);
+    return BASE32.decode(encoded);
   }
 
 
@@ -180,10 +198,114 @@ public final class CodecUtil
   {
     CryptUtil.assertNotNullArg(encoder, "Encoder cannot be null");
     CryptUtil.assertNotNullArg(raw, "Raw bytes cannot be null");
-    final CharBuffer output = CharBuffer.allocate(encoder.outputSize(raw.length));
-    encoder.encode(ByteBuffer.wrap(raw), output);
-    encoder.finalize(output);
-    return output.flip().toString();
+    final int size = encoder.outputSize(raw.length);
+    final CharBuffer output = CharBuffer.wrap(scratch(size));
+    try {
+      encoder.encode(ByteBuffer.wrap(raw), output);
+      encoder.finalize(output);
+      return new String(output.array(), 0, output.position());
+    } finally {
+      clear(output.array(), size);
+    }
+  }
+
+
+  /**
+   * Encodes raw bytes into the given character array. Use {@link Encoder#encodedSize(int)} to size the array.
+   *
+   * @param  encoder  Encoder to perform byte-to-char conversion.
+   * @param  raw  Raw bytes to encode.
+   * @param  output  Array that receives encoded characters.
+   * @param  offset  Position in the array of the first encoded character.
+   *
+   * @return  Number of characters written.
+   *
+   * @throws  EncodingException  on encoding errors or if the output array is too small.
+   */
+  public static int encode(final Encoder encoder, final byte[] raw, final char[] output, final int offset)
+    throws EncodingException
+  {
+    CryptUtil.assertNotNullArg(encoder, "Encoder cannot be null");
+    CryptUtil.assertNotNullArg(raw, "Raw bytes cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    final CharBuffer buffer = CharBuffer.wrap(output, offset, output.length - offset);
+    try {
+      encoder.encode(ByteBuffer.wrap(raw), buffer);
+      encoder.finalize(buffer);
+    } catch (BufferOverflowException e) {
+      throw new EncodingException("Output array too small", e);
+    }
+    return buffer.position() - offset;
+  }
+
+
+  /**
+   * Encodes raw bytes into the given byte array as ASCII characters. Use {@link Encoder#encodedSize(int)} to size the
+   * array.
+   *
+   * @param  encoder  Encoder to perform byte-to-char conversion.
+   * @param  raw  Raw bytes to encode.
+   * @param  output  Array that receives encoded ASCII characters.
+   * @param  offset  Position in the array of the first encoded character.
+   *
+   * @return  Number of bytes written.
+   *
+   * @throws  EncodingException  on encoding errors or if the output array is too small.
+   */
+  public static int encode(final Encoder encoder, final byte[] raw, final byte[] output, final int offset)
+    throws EncodingException
+  {
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    return encode(encoder, raw, ByteBuffer.wrap(output, offset, output.length - offset));
+  }
+
+
+  /**
+   * Encodes raw bytes into the given buffer as ASCII characters, starting at its current position. The position is
+   * advanced past the encoded data. Characters are encoded through a per-thread scratch array, so that no output
+   * is allocated once the scratch array has grown to the size of the largest output on the thread. The used part of
+   * the scratch array is cleared before returning.
+   *
+   * @param  encoder  Encoder to perform byte-to-char conversion.
+   * @param  raw  Raw bytes to encode.
+   * @param  output  Buffer that receives encoded ASCII characters.
+   *
+   * @return  Number of bytes written.
+   *
+   * @throws  EncodingException  on encoding errors or if the output buffer has too little room.
+   */
+  public static int encode(final Encoder encoder, final byte[] raw, final ByteBuffer output)
+    throws EncodingException
+  {
+    CryptUtil.assertNotNullArg(encoder, "Encoder cannot be null");
+    CryptUtil.assertNotNullArg(raw, "Raw bytes cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    final int size = encoder.outputSize(raw.length);
+    final char[] chars = scratch(size);
+    try {
+      final CharBuffer buffer = CharBuffer.wrap(chars);
+      encoder.encode(ByteBuffer.wrap(raw), buffer);
+      encoder.finalize(buffer);
+      final int count = buffer.position();
+      if (output.remaining() < count) {
+        throw new EncodingException("Output buffer too small: " + count + " bytes required");
+      }
+      if (output.hasArray()) {
+        final byte[] out = output.array();
+        final int start = output.arrayOffset() + output.position();
+        for (int i = 0; i < count; i++) {
+          out[start + i] = (byte) chars[i];
+        }
+        output.position(output.position() + count);
+      } else {
+        for (int i = 0; i < count; i++) {
+          output.put((byte) chars[i]);
+        }
+      }
+      return count;
+    } finally {
+      clear(chars, size);
+    }
   }
 
 
@@ -201,10 +323,112 @@ public final class CodecUtil
   {
     CryptUtil.assertNotNullArg(decoder, "Decoder cannot be null");
     CryptUtil.assertNotNullArg(encoded, "Encoded cannot be null");
-    final ByteBuffer output = ByteBuffer.allocate(decoder.outputSize(encoded.length()));
-    decoder.decode(CharBuffer.wrap(encoded), output);
-    decoder.finalize(output);
-    output.flip();
-    return ByteUtil.toArray(output);
+    final byte[] output = new byte[decoder.outputSize(encoded.length())];
+    final int count = decode(decoder, encoded, ByteBuffer.wrap(output));
+    return count == output.length ? output : Arrays.copyOf(output, count);
+  }
+
+
+  /**
+   * Decodes the given encoded data into the given byte array. Use {@link Decoder#decodedSize(CharSequence)} to size
+   * the array.
+   *
+   * @param  decoder  Decoder to perform char-to-byte conversion.
+   * @param  encoded  Encoded character data.
+   * @param  output  Array that receives decoded bytes.
+   * @param  offset  Position in the array of the first decoded byte.
+   *
+   * @return  Number of bytes written.
+   *
+   * @throws  EncodingException  on decoding errors or if the output array is too small.
+   */
+  public static int decode(final Decoder decoder, final CharSequence encoded, final byte[] output, final int offset)
+    throws EncodingException
+  {
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    return decode(decoder, encoded, ByteBuffer.wrap(output, offset, output.length - offset));
+  }
+
+
+  /**
+   * Decodes the given encoded data into the given buffer, starting at its current position. The position is advanced
+   * past the decoded data. Input that is not an array-backed {@link CharBuffer} is copied through a per-thread
+   * scratch array so that base-N decoders can decode whole blocks at a time; the copy is cleared before returning.
+   *
+   * @param  decoder  Decoder to perform char-to-byte conversion.
+   * @param  encoded  Encoded character data.
+   * @param  output  Buffer that receives decoded bytes.
+   *
+   * @return  Number of bytes written.
+   *
+   * @throws  EncodingException  on decoding errors or if the output buffer has too little room.
+   */
+  public static int decode(final Decoder decoder, final CharSequence encoded, final ByteBuffer output)
+    throws EncodingException
+  {
+    CryptUtil.assertNotNullArg(decoder, "Decoder cannot be null");
+    CryptUtil.assertNotNullArg(encoded, "Encoded cannot be null");
+    CryptUtil.assertNotNullArg(output, "Output cannot be null");
+    final CharBuffer input;
+    final char[] chars;
+    if (encoded instanceof CharBuffer && ((CharBuffer) encoded).hasArray()) {
+      input = ((CharBuffer) encoded).slice();
+      chars = null;
+    } else {
+      chars = scratch(encoded.length());
+      if (encoded instanceof String) {
+        ((String) encoded).getChars(0, encoded.length(), chars, 0);
+      } else {
+        for (int i = 0; i < encoded.length(); i++) {
+          chars[i] = encoded.charAt(i);
+        }
+      }
+      input = CharBuffer.wrap(chars, 0, encoded.length());
+    }
+    final int start = output.position();
+    try {
+      decoder.decode(input, output);
+      decoder.finalize(output);
+    } catch (BufferOverflowException e) {
+      throw new EncodingException("Output buffer too small", e);
+    } finally {
+      if (chars != null) {
+        clear(chars, encoded.length());
+      }
+    }
+    return output.position() - start;
+  }
+
+
+  /**
+   * Gets the scratch array of the calling thread, replacing it with a larger one if needed. Arrays larger than
+   * {@link #MAX_SCRATCH_SIZE} are not kept.
+   *
+   * @param  size  Minimum size in characters.
+   *
+   * @return  Scratch array of at least the given size.
+   */
+  private static char[] scratch(final int size)
+  {
+    char[] chars = SCRATCH.get();
+    if (chars.length < size) {
+      chars = new char[size];
+      if (size <= MAX_SCRATCH_SIZE) {
+        SCRATCH.set(chars);
+      }
+    }
+    return chars;
+  }
+
+
+  /**
+   * Overwrites the leading characters of a scratch array so that encoded data does not outlive the call.
+   *
+   * @param  chars  Scratch array.
+   * @param  length  Number of leading characters to clear.
+   */
+  private static void clear(final char[] chars, final int length)
+  {
+    Arrays.fill(chars, 0, Math.min(length, chars.length), '\0');
   }
 }
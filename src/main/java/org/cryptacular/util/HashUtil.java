@@ -3,17 +3,30 @@ package org.cryptacular.util;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.EncodableDigest;
 import org.bouncycastle.crypto.digests.SHA1Digest;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.digests.SHA3Digest;
 import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.util.Arrays;
 import org.cryptacular.CryptUtil;
 import org.cryptacular.CryptoException;
 import org.cryptacular.SaltedHash;
 import org.cryptacular.StreamException;
+import org.cryptacular.TreeHash;
+import org.cryptacular.io.BufferPool;
+import org.cryptacular.io.FileResource;
 import org.cryptacular.io.Resource;
+import org.cryptacular.spec.DigestSpec;
+import org.cryptacular.spec.Spec;
 
 /**
  * Utility class for computing cryptographic hashes.
@@ -23,6 +36,18 @@ import org.cryptacular.io.Resource;
 public final class HashUtil
 {
 
+  /** Chunk size of parallel multi-digest computation, which amortizes the cost of dispatching digest updates. */
+  private static final int PARALLEL_CHUNK_SIZE = BufferPool.MAX_BUFFER_SIZE;
+
+  /** Files of at least this size are memory mapped; smaller files are read with plain channel reads. */
+  private static final long MAP_THRESHOLD = 1024 * 1024;
+
+  /**
+   * Size of memory mapped file windows. Mappings are only released by garbage collection, so windows are kept
+   * moderate to bound the address space held by scans of many large files.
+   */
+  private static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
   /** Private constructor of utility class. */
   private HashUtil() {}
 
@@ -37,10 +62,11 @@ public final class HashUtil
    * </pre>
    *
    * @param  digest  Hash algorithm.
-   * @param  data  Data to hash. Supported types are <code>byte[]</code>, {@link CharSequence} ,{@link InputStream}, and
-   *               {@link Resource}. Character data is processed in the <code>UTF-8</code> character set; if another
-   *               character set is desired, the caller should convert to <code>byte[]</code> and provide the resulting
-   *               bytes.
+   * @param  data  Data to hash. Supported types are <code>byte[]</code>, {@link CharSequence}, {@link InputStream},
+   *               {@link Path}, and {@link Resource}. Character data is processed in the <code>UTF-8</code> character
+   *               set; if another character set is desired, the caller should convert to <code>byte[]</code> and
+   *               provide the resulting bytes. Files, i.e. {@link Path} and {@link FileResource}, are read through a
+   *               {@link FileChannel} rather than a stream; resource streams are closed after hashing.
    *
    * @return  Byte array of length {@link Digest#getDigestSize()} containing hash output.
    *
@@ -51,35 +77,8 @@ public final class HashUtil
   {
     CryptUtil.assertNotNullArg(digest, "Digest cannot be null");
     CryptUtil.assertNotNullArg(data, "Data cannot be null");
-    for (Object o : data) {
-      if (o instanceof byte[]) {
-        final byte[] bytes = (byte[]) o;
-        digest.update(bytes, 0, bytes.length);
-      } else if (o instanceof CharSequence) {
-        final byte[] bytes = ByteUtil.toBytes((CharSequence) o);
-        digest.update(bytes, 0, bytes.length);
-      } else if (o instanceof InputStream) {
-        hashStream(digest, (InputStream) o);
-      } else if (o instanceof Resource) {
-        final InputStream in;
-        try {
-          in = ((Resource) o).getInputStream();
-        } catch (IOException e) {
-          throw new StreamException(e);
-        }
-        hashStream(digest, in);
-      } else {
-        throw new IllegalArgumentException("Invalid input data type " + o);
-      }
-    }
-
-    final byte[] output = new byte[digest.getDigestSize()];
-    try {
-      digest.doFinal(output, 0);
-    } catch (RuntimeException e) {
-      throw new CryptoException("Hash computation error", e);
-    }
-    return output;
+    update(digest, data);
+    return finish(digest, 1);
   }
 
 
@@ -95,10 +94,11 @@ public final class HashUtil
    *
    * @param  digest  Hash algorithm.
    * @param  iterations  Number of hash rounds. Must be positive value.
-   * @param  data  Data to hash. Supported types are <code>byte[]</code>, {@link CharSequence} ,{@link InputStream}, and
-   *               {@link Resource}. Character data is processed in the <code>UTF-8</code> character set; if another
-   *               character set is desired, the caller should convert to <code>byte[]</code> and provide the resulting
-   *               bytes.
+   * @param  data  Data to hash. Supported types are <code>byte[]</code>, {@link CharSequence}, {@link InputStream},
+   *               {@link Path}, and {@link Resource}. Character data is processed in the <code>UTF-8</code> character
+   *               set; if another character set is desired, the caller should convert to <code>byte[]</code> and
+   *               provide the resulting bytes. Files, i.e. {@link Path} and {@link FileResource}, are read through a
+   *               {@link FileChannel} rather than a stream; resource streams are closed after hashing.
    *
    * @return  Byte array of length {@link Digest#getDigestSize()} containing hash output.
    *
@@ -111,16 +111,99 @@ public final class HashUtil
     if (iterations < 1) {
       throw new IllegalArgumentException("Iterations must be positive");
     }
-    final byte[] output = hash(digest, data);
+    CryptUtil.assertNotNullArg(digest, "Digest cannot be null");
+    CryptUtil.assertNotNullArg(data, "Data cannot be null");
+    update(digest, data);
+    return finish(digest, iterations);
+  }
+
+
+  /**
+   * Computes several hashes of the data in the given stream in a single pass. Each chunk is read once and fed to all
+   * digests. The caller is responsible for closing the stream.
+   *
+   * <pre>
+       final byte[][] hashes = HashUtil.hashAll(
+         in, new DigestSpec("SHA256"), new DigestSpec("SHA1"), new DigestSpec("MD5"));
+   * </pre>
+   *
+   * @param  input  Input stream containing data to hash.
+   * @param  digestSpecs  Digest specifications.
+   *
+   * @return  Hash output of each digest, in the order of the digest specifications.
+   *
+   * @throws  CryptoException  on hash computation errors.
+   * @throws  StreamException  on stream IO errors.
+   */
+  @SafeVarargs
+  public static byte[][] hashAll(final InputStream input, final Spec<Digest>... digestSpecs)
+      throws CryptoException, StreamException
+  {
+    final Digest[] digests = newDigests(input, digestSpecs);
+    final byte[] buffer = BufferPool.acquire(StreamUtil.BUFFER_SIZE);
+    int length;
     try {
-      for (int i = 1; i < iterations; i++) {
-        digest.update(output, 0, output.length);
-        digest.doFinal(output, 0);
+      while ((length = input.read(buffer, 0, StreamUtil.BUFFER_SIZE)) > 0) {
+        for (Digest digest : digests) {
+          digest.update(buffer, 0, length);
+        }
       }
-    } catch (RuntimeException e) {
-      throw new CryptoException("Hash computation error", e);
+    } catch (IOException e) {
+      throw new StreamException(e);
+    } finally {
+      BufferPool.release(buffer, StreamUtil.BUFFER_SIZE);
     }
-    return output;
+    return doFinal(digests);
+  }
+
+
+  /**
+   * Computes several hashes of the data in the given stream in a single pass, updating the digests in parallel. Each
+   * chunk is read once; while all digests are updated with a chunk by tasks on the given executor, the next chunk is
+   * read. This pays off for large streams and expensive digests; for small streams {@link #hashAll(InputStream,
+   * Spec[])} is faster. The caller is responsible for closing the stream.
+   *
+   * @param  input  Input stream containing data to hash.
+   * @param  executor  Executes digest updates.
+   * @param  digestSpecs  Digest specifications.
+   *
+   * @return  Hash output of each digest, in the order of the digest specifications.
+   *
+   * @throws  CryptoException  on hash computation errors.
+   * @throws  StreamException  on stream IO errors.
+   */
+  @SafeVarargs
+  public static byte[][] hashAll(final InputStream input, final Executor executor, final Spec<Digest>... digestSpecs)
+      throws CryptoException, StreamException
+  {
+    CryptUtil.assertNotNullArg(executor, "Executor cannot be null");
+    final Digest[] digests = newDigests(input, digestSpecs);
+    byte[] current = BufferPool.acquire(PARALLEL_CHUNK_SIZE);
+    byte[] next = BufferPool.acquire(PARALLEL_CHUNK_SIZE);
+    final CompletableFuture<?>[] tasks = new CompletableFuture<?>[digests.length];
+    try {
+      int length = readFully(input, current, PARALLEL_CHUNK_SIZE);
+      while (length > 0) {
+        final byte[] chunk = current;
+        final int chunkLength = length;
+        for (int i = 0; i < digests.length; i++) {
+          final Digest digest = digests[i];
+          tasks[i] = CompletableFuture.runAsync(() -> digest.update(chunk, 0, chunkLength), executor);
+        }
+        length = readFully(input, next, PARALLEL_CHUNK_SIZE);
+        CompletableFuture.allOf(tasks).join();
+        current = next;
+        next = chunk;
+      }
+    } catch (CompletionException e) {
+      throw new CryptoException("Hash computation error", e.getCause());
+    } finally {
+      // Tasks may still be reading a buffer if the stream failed
+      awaitQuietly(tasks);
+      BufferPool.release(next, PARALLEL_CHUNK_SIZE);
+      BufferPool.release(current, PARALLEL_CHUNK_SIZE);
+    }
+    return doFinal(digests);
   }
 
 
@@ -134,7 +217,8 @@ public final class HashUtil
    * @param  iterations  Number of hash rounds.
    * @param  data  Data to hash.
    *
-   * @return  True if the hash of the data under the given digest is equal to the hash, false otherwise.
+   * @return  True if the hash of the data under the given digest is equal to the hash, false otherwise. The
+   *          comparison takes constant time with respect to the hash contents.
    *
    * @throws  CryptoException  on hash computation errors.
    * @throws  StreamException  on stream IO errors.
@@ -148,14 +232,13 @@ public final class HashUtil
     CryptUtil.assertNotNullArg(digest, "Digest cannot be null");
     CryptUtil.assertNotNullArg(hash, "Hash cannot be null");
     CryptUtil.assertNotNullArg(data, "Data cannot be null");
-    if (hash.length > digest.getDigestSize()) {
-      final byte[] hashPart = Arrays.copyOfRange(hash, 0, digest.getDigestSize());
-      final byte[] saltPart = Arrays.copyOfRange(hash, digest.getDigestSize(), hash.length);
-      final Object[] dataWithSalt = Arrays.copyOf(data, data.length + 1);
-      dataWithSalt[data.length] = saltPart;
-      return Arrays.equals(hash(digest, iterations, dataWithSalt), hashPart);
+    final int size = digest.getDigestSize();
+    update(digest, data);
+    if (hash.length > size) {
+      digest.update(hash, size, hash.length - size);
     }
-    return Arrays.equals(hash(digest, iterations, data), hash);
+    final byte[] output = finish(digest, iterations);
+    return hash.length >= size && Arrays.constantTimeAreEqual(size, output, 0, hash, 0);
   }
 
 
@@ -168,7 +251,8 @@ public final class HashUtil
    * @param  saltAfterData  True to apply salt after data, false to apply salt before data.
    * @param  data  Data to hash, which should NOT include the salt value.
    *
-   * @return  True if the hash of the data under the given digest is equal to the hash, false otherwise.
+   * @return  True if the hash of the data under the given digest is equal to the hash, false otherwise. The
+   *          comparison takes constant time with respect to the hash contents.
    *
    * @throws  CryptoException  on hash computation errors.
    * @throws  StreamException  on stream IO errors.
@@ -187,16 +271,15 @@ public final class HashUtil
     CryptUtil.assertNotNullArg(digest, "Digest cannot be null");
     CryptUtil.assertNotNullArg(hash, "Hash cannot be null");
     CryptUtil.assertNotNullArg(data, "Data cannot be null");
-    final Object[] dataWithSalt;
+    final byte[] salt = hash.getSalt();
+    if (!saltAfterData) {
+      digest.update(salt, 0, salt.length);
+    }
+    update(digest, data);
     if (saltAfterData) {
-      dataWithSalt = Arrays.copyOf(data, data.length + 1);
-      dataWithSalt[data.length] = hash.getSalt();
-    } else {
-      dataWithSalt = new Object[data.length + 1];
-      dataWithSalt[0] = hash.getSalt();
-      System.arraycopy(data, 0, dataWithSalt, 1, data.length);
+      digest.update(salt, 0, salt.length);
     }
-    return Arrays.equals(hash(digest, iterations, dataWithSalt), hash.getHash());
+    return Arrays.constantTimeAreEqual(finish(digest, iterations), hash.getHash());
   }
 
 
@@ -261,6 +344,303 @@ public final class HashUtil
   }
 
 
+  /**
+   * Computes the {@link TreeHash} of the given resource with {@link TreeHash#DEFAULT_LEAF_SIZE} leaves. Leaves are
+   * hashed in parallel on the common fork/join pool, and {@link FileResource} is memory mapped.
+   *
+   * @param  digestSpec  Digest specification.
+   * @param  resource  Resource to hash.
+   *
+   * @return  Tree hash, which can be reproduced from the parameter string of {@link TreeHash#getParameters()}.
+   *
+   * @throws  StreamException  on IO errors.
+   */
+  public static byte[] treeHash(final Spec<Digest> digestSpec, final Resource resource) throws StreamException
+  {
+    return new TreeHash(digestSpec).hash(resource);
+  }
+
+
+  /**
+   * Hashes the given data, resuming from and producing encoded digest state. This supports hashing data that arrives
+   * in parts over a long time, possibly on different hosts, where each part only requires hashing the new bytes:
+   *
+   * <pre>
+       byte[] state = HashUtil.updateHashState(spec, null, part1);
+       // ... persist state, later possibly elsewhere ...
+       state = HashUtil.updateHashState(spec, state, part2);
+       final byte[] hash = HashUtil.finishHashState(spec, state);
+   * </pre>
+   *
+   * @param  digestSpec  Digest specification, which must support state encoding; see {@link
+   *                     DigestSpec#newInstance(byte[])}.
+   * @param  state  State produced by this method or {@link #exportState(Digest)}, or null to start a new hash.
+   * @param  data  Data to hash. See {@link #hash(Digest, Object...)} for supported inputs.
+   *
+   * @return  Encoded digest state after hashing the data.
+   *
+   * @throws  CryptoException  on hash computation errors.
+   * @throws  StreamException  on stream IO errors.
+   */
+  public static byte[] updateHashState(final DigestSpec digestSpec, final byte[] state, final Object... data)
+      throws CryptoException, StreamException
+  {
+    CryptUtil.assertNotNullArg(digestSpec, "Digest spec cannot be null");
+    CryptUtil.assertNotNullArg(data, "Data cannot be null");
+    final Digest digest = state == null ? digestSpec.newInstance() : importState(digestSpec, state);
+    update(digest, data);
+    return exportState(digest);
+  }
+
+
+  /**
+   * Computes the hash output from encoded digest state.
+   *
+   * @param  digestSpec  Digest specification, which must support state encoding.
+   * @param  state  State produced by {@link #updateHashState(DigestSpec, byte[], Object...)} or {@link
+   *                #exportState(Digest)}.
+   *
+   * @return  Byte array of length {@link Digest#getDigestSize()} containing hash output.
+   *
+   * @throws  CryptoException  on hash computation errors.
+   */
+  public static byte[] finishHashState(final DigestSpec digestSpec, final byte[] state) throws CryptoException
+  {
+    return finish(importState(digestSpec, state), 1);
+  }
+
+
+  /**
+   * Exports the running state of a digest. The state consists of a one byte length and the digest algorithm name,
+   * which guards against resuming with the wrong algorithm, followed by the state produced by {@link
+   * EncodableDigest#getEncodedState()}. The digest is not modified.
+   *
+   * @param  digest  Digest that implements {@link EncodableDigest}.
+   *
+   * @return  Encoded digest state.
+   */
+  public static byte[] exportState(final Digest digest)
+  {
+    CryptUtil.assertNotNullArg(digest, "Digest cannot be null");
+    if (!(digest instanceof EncodableDigest)) {
+      throw new IllegalArgumentException(digest.getAlgorithmName() + " does not support state encoding");
+    }
+    final byte[] name = ByteUtil.toBytes(digest.getAlgorithmName());
+    final byte[] encoded = ((EncodableDigest) digest).getEncodedState();
+    final byte[] state = new byte[1 + name.length + encoded.length];
+    state[0] = (byte) name.length;
+    System.arraycopy(name, 0, state, 1, name.length);
+    System.arraycopy(encoded, 0, state, 1 + name.length, encoded.length);
+    return state;
+  }
+
+
+  /**
+   * Creates a digest that resumes from state produced by {@link #exportState(Digest)}.
+   *
+   * @param  digestSpec  Digest specification, which must support state encoding.
+   * @param  state  Encoded digest state.
+   *
+   * @return  Digest in the given state.
+   */
+  public static Digest importState(final DigestSpec digestSpec, final byte[] state)
+  {
+    CryptUtil.assertNotNullArg(digestSpec, "Digest spec cannot be null");
+    CryptUtil.assertNotNullArg(state, "State cannot be null");
+    if (state.length == 0 || state.length <= 1 + (state[0] & 0xFF)) {
+      throw new IllegalArgumentException("Invalid digest state");
+    }
+    final int nameLength = state[0] & 0xFF;
+    final String name = ByteUtil.toString(state, 1, nameLength);
+    final String expected = digestSpec.newInstance().getAlgorithmName();
+    if (!expected.equals(name)) {
+      throw new IllegalArgumentException("Digest state for " + name + " cannot be resumed as " + expected);
+    }
+    try {
+      return digestSpec.newInstance(Arrays.copyOfRange(state, 1 + nameLength, state.length));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid digest state", e);
+    }
+  }
+
+
+  /**
+   * Updates the digest with the given data. See {@link #hash(Digest, Object...)} for supported inputs.
+   *
+   * @param  digest  Digest algorithm.
+   * @param  data  Data to hash.
+   */
+  private static void update(final Digest digest, final Object[] data)
+  {
+    for (Object o : data) {
+      if (o instanceof byte[]) {
+        final byte[] bytes = (byte[]) o;
+        digest.update(bytes, 0, bytes.length);
+      } else if (o instanceof CharSequence) {
+        final byte[] bytes = ByteUtil.toBytes((CharSequence) o);
+        digest.update(bytes, 0, bytes.length);
+      } else if (o instanceof InputStream) {
+        hashStream(digest, (InputStream) o);
+      } else if (o instanceof FileResource) {
+        hashFile(digest, ((FileResource) o).getFile().toPath());
+      } else if (o instanceof Path) {
+        hashFile(digest, (Path) o);
+      } else if (o instanceof Resource) {
+        try (InputStream in = ((Resource) o).getInputStream()) {
+          hashStream(digest, in);
+        } catch (IOException e) {
+          throw new StreamException(e);
+        }
+      } else {
+        throw new IllegalArgumentException("Invalid input data type " + o);
+      }
+    }
+  }
+
+
+  /**
+   * Finalizes the digest and applies the remaining hash rounds to its output.
+   *
+   * @param  digest  Digest algorithm.
+   * @param  iterations  Total number of hash rounds.
+   *
+   * @return  Byte array of length {@link Digest#getDigestSize()} containing hash output.
+   */
+  private static byte[] finish(final Digest digest, final int iterations)
+  {
+    final byte[] output = new byte[digest.getDigestSize()];
+    try {
+      digest.doFinal(output, 0);
+      for (int i = 1; i < iterations; i++) {
+        digest.update(output, 0, output.length);
+        digest.doFinal(output, 0);
+      }
+    } catch (RuntimeException e) {
+      throw new CryptoException("Hash computation error", e);
+    }
+    return output;
+  }
+
+
+  /**
+   * Validates the arguments of the multi-digest methods and creates the digests.
+   *
+   * @param  input  Input stream.
+   * @param  digestSpecs  Digest specifications.
+   *
+   * @return  New digest instances.
+   */
+  private static Digest[] newDigests(final InputStream input, final Spec<Digest>[] digestSpecs)
+  {
+    CryptUtil.assertNotNullArg(input, "Input cannot be null");
+    CryptUtil.assertNotNullArg(digestSpecs, "Digest specs cannot be null");
+    final Digest[] digests = new Digest[digestSpecs.length];
+    for (int i = 0; i < digests.length; i++) {
+      digests[i] = CryptUtil.assertNotNullArg(digestSpecs[i], "Digest spec cannot be null").newInstance();
+    }
+    return digests;
+  }
+
+
+  /**
+   * Finalizes the given digests.
+   *
+   * @param  digests  Digests.
+   *
+   * @return  Hash output of each digest.
+   */
+  private static byte[][] doFinal(final Digest[] digests)
+  {
+    final byte[][] hashes = new byte[digests.length][];
+    for (int i = 0; i < digests.length; i++) {
+      hashes[i] = new byte[digests[i].getDigestSize()];
+      digests[i].doFinal(hashes[i], 0);
+    }
+    return hashes;
+  }
+
+
+  /**
+   * Reads from the stream until the given number of bytes has been read or the end of the stream is reached.
+   *
+   * @param  input  Input stream.
+   * @param  buffer  Buffer to fill.
+   * @param  size  Number of bytes to read.
+   *
+   * @return  Number of bytes read.
+   */
+  private static int readFully(final InputStream input, final byte[] buffer, final int size)
+  {
+    int total = 0;
+    try {
+      int n = 0;
+      while (total < size && n >= 0) {
+        n = input.read(buffer, total, size - total);
+        if (n > 0) {
+          total += n;
+        }
+      }
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+    return total;
+  }
+
+
+  /**
+   * Waits for the given tasks to complete, ignoring their failures.
+   *
+   * @param  tasks  Tasks to wait for, which may contain null elements for tasks not started.
+   */
+  private static void awaitQuietly(final CompletableFuture<?>[] tasks)
+  {
+    for (CompletableFuture<?> task : tasks) {
+      if (task != null) {
+        task.handle((result, error) -> null).join();
+      }
+    }
+  }
+
+
+  /**
+   * Digests the contents of the given file. Large files are memory mapped in windows of {@link #MAP_WINDOW_SIZE}
+   * bytes, which avoids a read system call and kernel copy per chunk; small files are read directly from the channel.
+   * Either way data reaches the digest through a cache-sized heap buffer, since digests only accept arrays. Note this
+   * method does not finalize the digest process by calling {@link Digest#doFinal(byte[], int)}.
+   *
+   * @param  digest  Digest algorithm.
+   * @param  file  File to hash.
+   */
+  private static void hashFile(final Digest digest, final Path file)
+  {
+    final byte[] buffer = BufferPool.acquire(StreamUtil.BUFFER_SIZE);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long length = channel.size();
+      if (length < MAP_THRESHOLD) {
+        final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, StreamUtil.BUFFER_SIZE);
+        while (channel.read(chunk) >= 0) {
+          digest.update(buffer, 0, chunk.position());
+          chunk.clear();
+        }
+      } else {
+        for (long offset = 0; offset < length; offset += MAP_WINDOW_SIZE) {
+          final ByteBuffer window = channel.map(
+            FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW_SIZE, length - offset));
+          while (window.hasRemaining()) {
+            final int n = Math.min(window.remaining(), StreamUtil.BUFFER_SIZE);
+            window.get(buffer, 0, n);
+            digest.update(buffer, 0, n);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new StreamException(e);
+    } finally {
+      BufferPool.release(buffer, StreamUtil.BUFFER_SIZE);
+    }
+  }
+
+
   /**
    * Digests the data in the given stream. Note this method does not finalize the digest process by calling {@link
    * Digest#doFinal(byte[], int)}.
@@ -270,14 +650,16 @@ public final class HashUtil
    */
   private static void hashStream(final Digest digest, final InputStream in)
   {
-    final byte[] buffer = new byte[StreamUtil.CHUNK_SIZE];
+    final byte[] buffer = BufferPool.acquire(StreamUtil.BUFFER_SIZE);
     int length;
     try {
-      while ((length = in.read(buffer)) > 0) {
+      while ((length = in.read(buffer, 0, StreamUtil.BUFFER_SIZE)) > 0) {
         digest.update(buffer, 0, length);
       }
     } catch (IOException e) {
       throw new StreamException(e);
+    } finally {
+      BufferPool.release(buffer, StreamUtil.BUFFER_SIZE);
     }
   }
 }
@@ -16,6 +16,7 @@ import java.io.Writer;
 import org.bouncycastle.util.io.Streams;
 import org.cryptacular.CryptUtil;
 import org.cryptacular.StreamException;
+import org.cryptacular.io.BufferPool;
 import org.cryptacular.io.ChunkHandler;
 
 /**
@@ -27,11 +28,17 @@ public final class StreamUtil
 {
 
   /**
-   * Buffer size of chunked operations, e.g. {@link #pipeAll(java.io.InputStream, java.io.OutputStream,
-   * org.cryptacular.io.ChunkHandler)}.
+   * Chunk size of 1 KiB used by earlier versions of this library. No longer used by the library itself, which uses
+   * {@link #BUFFER_SIZE}; retained for callers that pass it to the chunk size overloads.
    */
   public static final int CHUNK_SIZE = 1024;
 
+  /**
+   * Default buffer size of chunked stream, hash, and cipher operations of this library. Large enough to amortize
+   * per-read and per-call overhead on file and network streams.
+   */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
   /** Private method of utility class. */
   private StreamUtil() {}
 
@@ -147,7 +154,7 @@ public final class StreamUtil
       throw new IllegalArgumentException("Size hint must be greater than 0");
     }
     final CharArrayWriter writer = new CharArrayWriter(sizeHint);
-    final char[] buffer = new char[CHUNK_SIZE];
+    final char[] buffer = new char[Math.min(sizeHint, BUFFER_SIZE)];
     int len;
     try {
       while ((len = reader.read(buffer)) > 0) {
@@ -164,7 +171,8 @@ public final class StreamUtil
 
 
   /**
-   * Pipes an input stream into an output stream with chunked processing.
+   * Pipes an input stream into an output stream with chunked processing using chunks of {@link #BUFFER_SIZE} bytes
+   * (64 KiB).
    *
    * @param  in  Input stream providing data to process.
    * @param  out  Output stream holding processed data.
@@ -174,18 +182,45 @@ public final class StreamUtil
    */
   public static void pipeAll(final InputStream in, final OutputStream out, final ChunkHandler handler)
       throws StreamException
+  {
+    pipeAll(in, out, handler, BUFFER_SIZE);
+  }
+
+
+  /**
+   * Pipes an input stream into an output stream with chunked processing. The chunk buffer is taken from {@link
+   * BufferPool}, so the handler must not retain a reference to it.
+   *
+   * @param  in  Input stream providing data to process.
+   * @param  out  Output stream holding processed data.
+   * @param  handler  Arbitrary handler for processing input stream.
+   * @param  chunkSize  Maximum number of bytes passed to the handler at once.
+   *
+   * @throws  StreamException  on stream IO errors.
+   */
+  public static void pipeAll(
+    final InputStream in,
+    final OutputStream out,
+    final ChunkHandler handler,
+    final int chunkSize)
+      throws StreamException
   {
     CryptUtil.assertNotNullArg(in, "In cannot be null");
     CryptUtil.assertNotNullArg(out, "Out cannot be null");
     CryptUtil.assertNotNullArg(handler, "Handler cannot be null");
-    final byte[] buffer = new byte[CHUNK_SIZE];
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be greater than 0");
+    }
+    final byte[] buffer = BufferPool.acquire(chunkSize);
     int count;
     try {
-      while ((count = in.read(buffer)) > 0) {
+      while ((count = in.read(buffer, 0, chunkSize)) > 0) {
         handler.handle(buffer, 0, count, out);
       }
     } catch (IOException e) {
       throw new StreamException(e);
+    } finally {
+      BufferPool.release(buffer, chunkSize);
     }
   }
 
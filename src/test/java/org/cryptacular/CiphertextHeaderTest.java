@@ -1,9 +1,14 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.macs.HMac;
 import org.cryptacular.generator.sp80038a.RBGNonce;
 import org.testng.annotations.Test;
 import static org.assertj.core.api.Assertions.*;
@@ -56,6 +61,82 @@ public class CiphertextHeaderTest
       .hasMessage("Ciphertext header HMAC verification failed");
   }
 
+  @Test
+  public void testEncodeDecodeSegmented()
+  {
+    final byte[] nonce = new byte[12];
+    Arrays.fill(nonce, (byte) 5);
+    final CiphertextHeader expected = new CiphertextHeader(nonce, "aleph", 4096, this::getKey);
+    final byte[] encoded = expected.encode();
+    assertThat(encoded.length).isEqualTo(expected.getLength());
+    final CiphertextHeader actual = CiphertextHeader.decode(encoded, this::getKey);
+    assertThat(actual.isSegmented()).isTrue();
+    assertThat(actual.getSegmentSize()).isEqualTo(4096);
+    assertThat(actual.getNonce()).isEqualTo(expected.getNonce());
+    assertThat(actual.getKeyName()).isEqualTo(expected.getKeyName());
+    assertThat(actual.getLength()).isEqualTo(expected.getLength());
+  }
+
+  @Test
+  public void testEncodeDecodeByteBuffer()
+  {
+    final byte[] nonce = new byte[16];
+    Arrays.fill(nonce, (byte) 9);
+    final CiphertextHeader expected = new CiphertextHeader(nonce, "aleph", this::getKey);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(expected.getLength() + 3).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put((byte) 1);
+    expected.encode(buffer);
+    assertThat(buffer.position()).isEqualTo(expected.getLength() + 1);
+    buffer.flip().position(1);
+    final byte[] encoded = new byte[expected.getLength()];
+    buffer.duplicate().get(encoded);
+    assertThat(encoded).isEqualTo(expected.encode());
+    final CiphertextHeader actual = CiphertextHeader.decode(buffer, this::getKey);
+    assertThat(buffer.position()).isEqualTo(expected.getLength() + 1);
+    assertThat(actual.getNonce()).isEqualTo(expected.getNonce());
+    assertThat(actual.getKeyName()).isEqualTo(expected.getKeyName());
+    assertThatThrownBy(() -> expected.encode(ByteBuffer.allocate(expected.getLength() - 1)))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testEncodeHmacFormat()
+  {
+    final CiphertextHeader header = new CiphertextHeader(new byte[12], "aleph", this::getKey);
+    for (int i = 0; i < 3; i++) {
+      final byte[] encoded = header.encode(key);
+      final byte[] expected = new byte[32];
+      final HMac hmac = new HMac(new SHA256Digest());
+      hmac.update(encoded, 0, encoded.length - 32);
+      hmac.doFinal(expected, 0);
+      assertThat(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testDecodeCachesEncoding()
+  {
+    final AtomicInteger lookups = new AtomicInteger();
+    final byte[] encoded = new CiphertextHeader(new byte[16], "aleph", this::getKey).encode();
+    final CiphertextHeader header = CiphertextHeader.decode(encoded, alias -> {
+      lookups.incrementAndGet();
+      return getKey(alias);
+    });
+    assertThat(lookups.get()).isEqualTo(1);
+    assertThat(header.encode()).isEqualTo(encoded).isSameAs(header.encode());
+    final ByteBuffer buffer = ByteBuffer.allocate(encoded.length);
+    header.encode(buffer);
+    assertThat(buffer.array()).isEqualTo(encoded);
+    assertThat(lookups.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testInvalidSegmentSize()
+  {
+    assertThatThrownBy(() -> new CiphertextHeader(new byte[12], "aleph", 8, this::getKey))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
   private SecretKey getKey(final String alias)
   {
     if ("aleph".equals(alias)) {
@@ -0,0 +1,135 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.cryptacular.io.FileResource;
+import org.cryptacular.io.Resource;
+import org.cryptacular.spec.DigestSpec;
+import org.cryptacular.util.HashUtil;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link TreeHash}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class TreeHashTest
+{
+  @DataProvider(name = "lengths")
+  public Object[][] getLengths()
+  {
+    return
+      new Object[][] {
+        new Object[] {0},
+        new Object[] {1},
+        new Object[] {1024},
+        new Object[] {1025},
+        new Object[] {7 * 1024 + 100},
+        new Object[] {1 << 20},
+      };
+  }
+
+  @Test(dataProvider = "lengths")
+  public void testHashSources(final int length)
+    throws Exception
+  {
+    final byte[] data = new byte[length];
+    new Random(length).nextBytes(data);
+    final TreeHash treeHash = new TreeHash(new DigestSpec("SHA256"), 1024, new ForkJoinPool(3));
+    final byte[] expected = treeHash.hash(data);
+    assertThat(expected).hasSize(32);
+    assertThat(treeHash.hash(new ByteArrayInputStream(data))).isEqualTo(expected);
+
+    final Path file = Files.createTempFile("treehash", ".bin");
+    try {
+      Files.write(file, data);
+      assertThat(treeHash.hash(file)).isEqualTo(expected);
+      assertThat(treeHash.hash(new FileResource(file.toFile()))).isEqualTo(expected);
+      final Resource resource = () -> new ByteArrayInputStream(data);
+      assertThat(treeHash.hash(resource)).isEqualTo(expected);
+    } finally {
+      Files.delete(file);
+    }
+
+    // Reproducible from parameters on any pool
+    assertThat(TreeHash.parse(treeHash.getParameters()).hash(data)).isEqualTo(expected);
+  }
+
+  @Test
+  public void testFormat()
+  {
+    final byte[] data = "Four score and seven years ago".getBytes(StandardCharsets.UTF_8);
+    final TreeHash treeHash = new TreeHash(new DigestSpec("SHA256"), 1024);
+    assertThat(treeHash.getParameters()).isEqualTo("TreeHash/1/SHA-256/1024");
+
+    // Single leaf
+    final byte[] leaf = digest(new byte[] {0}, data);
+    final byte[] length = {0, 0, 0, 0, 0, 0, 0, (byte) data.length};
+    assertThat(treeHash.hash(data)).isEqualTo(
+      digest(new byte[] {2}, treeHash.getParameters().getBytes(StandardCharsets.UTF_8), length, leaf));
+
+    // Three leaves, where the last is promoted
+    final byte[] large = new byte[2048 + 1];
+    final byte[] left = digest(
+      new byte[] {1},
+      digest(new byte[] {0}, new byte[1024]),
+      digest(new byte[] {0}, new byte[1024]));
+    final byte[] node = digest(new byte[] {1}, left, digest(new byte[] {0}, new byte[1]));
+    assertThat(treeHash.hash(large)).isEqualTo(
+      digest(
+        new byte[] {2},
+        treeHash.getParameters().getBytes(StandardCharsets.UTF_8),
+        new byte[] {0, 0, 0, 0, 0, 0, 8, 1},
+        node));
+  }
+
+  @Test
+  public void testParameters()
+    throws Exception
+  {
+    final byte[] data = new byte[5000];
+    final TreeHash sha3 = new TreeHash(new DigestSpec("SHA3", 384), 2048);
+    assertThat(sha3.getParameters()).isEqualTo("TreeHash/1/SHA3-384/2048");
+    assertThat(TreeHash.parse(sha3.getParameters()).hash(data)).isEqualTo(sha3.hash(data));
+
+    // Parameters are bound into the root
+    assertThat(new TreeHash(new DigestSpec("SHA256"), 1024).hash(data))
+      .isNotEqualTo(new TreeHash(new DigestSpec("SHA256"), 2048).hash(data));
+
+    assertThatThrownBy(() -> TreeHash.parse("TreeHash/2/SHA-256/1024")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> TreeHash.parse("TreeHash/1/SHA-256/x")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new TreeHash(new DigestSpec("SHA256"), 100)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testHashUtil()
+    throws Exception
+  {
+    final File file = new File("src/test/resources/plaintexts/lorem-5000.txt");
+    assertThat(HashUtil.treeHash(new DigestSpec("SHA256"), new FileResource(file)))
+      .isEqualTo(new TreeHash(new DigestSpec("SHA256")).hash(Files.readAllBytes(file.toPath())));
+  }
+
+  private static byte[] digest(final byte[]... parts)
+  {
+    final Digest digest = new SHA256Digest();
+    for (byte[] part : parts) {
+      digest.update(part, 0, part.length);
+    }
+    final byte[] out = new byte[digest.getDigestSize()];
+    digest.doFinal(out, 0);
+    return out;
+  }
+}
@@ -4,8 +4,16 @@ package org.cryptacular.bean;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.cryptacular.CryptoException;
 import org.cryptacular.FailListener;
+import org.cryptacular.SegmentedAEADCipher;
 import org.cryptacular.generator.sp80038d.CounterNonce;
 import org.cryptacular.io.FileResource;
 import org.cryptacular.spec.AEADBlockCipherSpec;
@@ -75,6 +83,30 @@ public class AEADBlockCipherBeanTest
   }
 
 
+  @DataProvider(name = "test-segmented-streams")
+  public Object[][] getTestSegmentedStreams()
+  {
+    return
+      new Object[][] {
+        new Object[] {
+          "src/test/resources/plaintexts/lorem-5000.txt",
+          "AES/GCM",
+          64,
+        },
+        new Object[] {
+          "src/test/resources/plaintexts/lorem-5000.txt",
+          "Twofish/CCM",
+          1024,
+        },
+        new Object[] {
+          "src/test/resources/plaintexts/lorem-1200.txt",
+          "AES/EAX",
+          SegmentedAEADCipher.DEFAULT_SEGMENT_SIZE,
+        },
+      };
+  }
+
+
   @Test(dataProvider = "test-arrays")
   public void testEncryptDecryptArray(final String input, final String cipherSpecString)
     throws Exception
@@ -85,6 +117,52 @@ public class AEADBlockCipherBeanTest
   }
 
 
+  @Test(dataProvider = "test-arrays")
+  public void testEncryptDecryptByteBuffer(final String input, final String cipherSpecString)
+    throws Exception
+  {
+    final AEADBlockCipherBean cipherBean = newCipherBean(AEADBlockCipherSpec.parse(cipherSpecString));
+    final ByteBuffer plaintext = ByteBuffer.allocateDirect(input.length());
+    plaintext.put(ByteUtil.toBytes(input)).flip();
+    final ByteBuffer ciphertext = ByteBuffer.allocate(cipherBean.getEncryptOutputSize(plaintext.remaining()));
+    assertThatThrownBy(() -> cipherBean.encrypt(plaintext, ByteBuffer.allocate(ciphertext.capacity() - 1)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThat(cipherBean.encrypt(plaintext, ciphertext)).isEqualTo(ciphertext.capacity());
+
+    // Buffer ciphertext is interchangeable with array ciphertext
+    assertThat(ByteUtil.toString(cipherBean.decrypt(ciphertext.array()))).isEqualTo(input);
+    ciphertext.flip();
+    final ByteBuffer result = ByteBuffer.allocateDirect(cipherBean.getDecryptOutputSize(ciphertext));
+    cipherBean.decrypt(ciphertext, result);
+    result.flip();
+    assertThat(ByteUtil.toString(result)).isEqualTo(input);
+
+    // Failed authentication restores both buffers and leaves no plaintext behind
+    ciphertext.flip();
+    ciphertext.put(ciphertext.limit() - 1, (byte) (ciphertext.get(ciphertext.limit() - 1) ^ 1));
+    final ByteBuffer tampered = ByteBuffer.allocate(result.capacity());
+    assertThatThrownBy(() -> cipherBean.decrypt(ciphertext, tampered)).isInstanceOf(CryptoException.class);
+    assertThat(ciphertext.position()).isZero();
+    assertThat(tampered.position()).isZero();
+    assertThat(tampered.array()).containsOnly(0);
+  }
+
+
+  @Test(dataProvider = "test-arrays")
+  public void testEncryptDecryptPooled(final String input, final String cipherSpecString)
+    throws Exception
+  {
+    final AEADBlockCipherBean cipherBean = newCipherBean(AEADBlockCipherSpec.parse(cipherSpecString));
+    for (int i = 0; i < 3; i++) {
+      final byte[] ciphertext = cipherBean.encrypt(ByteUtil.toBytes(input));
+      assertThat(ByteUtil.toString(cipherBean.decrypt(ciphertext))).isEqualTo(input);
+    }
+    // Engines are reused for every operation after the first in each mode
+    assertThat(cipherBean.getCipherPool().getHitCount()).isEqualTo(4);
+    assertThat(cipherBean.getCipherPool().getIdleCount()).isEqualTo(2);
+  }
+
+
   @Test(dataProvider = "test-streams")
   public void testEncryptDecryptStream(final String path, final String cipherSpecString)
     throws Exception
@@ -100,6 +178,28 @@ public class AEADBlockCipherBeanTest
   }
 
 
+  @Test(dataProvider = "test-segmented-streams")
+  public void testEncryptDecryptSegmentedStream(final String path, final String cipherSpecString, final int segmentSize)
+    throws Exception
+  {
+    final AEADBlockCipherBean cipherBean = new AEADBlockCipherBean(
+      AEADBlockCipherSpec.parse(cipherSpecString),
+      getTestKeyStore(),
+      "vtcrypt",
+      "vtcrypt",
+      new CounterNonce("vtmw", System.nanoTime()),
+      segmentSize);
+    final ByteArrayOutputStream tempOut = new ByteArrayOutputStream(8192);
+    cipherBean.encrypt(StreamUtil.makeStream(new File(path)), tempOut);
+    final String expected = ByteUtil.toString(StreamUtil.readAll(path));
+
+    final ByteArrayOutputStream finalOut = new ByteArrayOutputStream(8192);
+    cipherBean.decrypt(new ByteArrayInputStream(tempOut.toByteArray()), finalOut);
+    assertThat(ByteUtil.toString(finalOut.toByteArray())).isEqualTo(expected);
+    assertThat(ByteUtil.toString(cipherBean.decrypt(tempOut.toByteArray()))).isEqualTo(expected);
+  }
+
+
   @Test(enabled = false)
   public void testDecryptArrayBackwardCompatibleHeader()
   {
@@ -128,6 +228,50 @@ public class AEADBlockCipherBeanTest
   }
 
 
+  @Test(dataProvider = "test-arrays")
+  public void testEncryptDecryptAll(final String input, final String cipherSpecString)
+    throws Exception
+  {
+    final AEADBlockCipherBean cipherBean = newCipherBean(AEADBlockCipherSpec.parse(cipherSpecString));
+    final List<byte[]> plaintexts = new ArrayList<>();
+    for (int i = 1; i <= 20; i++) {
+      plaintexts.add(ByteUtil.toBytes(String.join("", Collections.nCopies(i % 4, input))));
+    }
+    final CipherBatch ciphertexts = cipherBean.encryptAll(plaintexts);
+    assertThat(ciphertexts).hasSize(plaintexts.size());
+    for (int i = 0; i < plaintexts.size(); i++) {
+      assertThat(cipherBean.decrypt(ciphertexts.get(i))).isEqualTo(plaintexts.get(i));
+      assertThat(ciphertexts.slice(i).remaining()).isEqualTo(ciphertexts.getLength(i));
+    }
+    assertThat(cipherBean.decryptAll(ciphertexts)).containsExactlyElementsOf(plaintexts);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final CipherBatch asyncCiphertexts = cipherBean.encryptAllAsync(plaintexts, executor).get();
+      assertThat(cipherBean.decryptAllAsync(asyncCiphertexts, executor).get()).containsExactlyElementsOf(plaintexts);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  @Test(dataProvider = "test-arrays")
+  public void testRepeatedSizeProbes(final String input, final String cipherSpecString)
+    throws Exception
+  {
+    final AEADBlockCipherBean cipherBean = newCipherBean(AEADBlockCipherSpec.parse(cipherSpecString));
+    final byte[] plaintext = ByteUtil.toBytes(input);
+    final int size = cipherBean.encrypt(plaintext).length;
+    // Size probes must not leave pooled engines initialized with a repeated nonce
+    assertThat(cipherBean.getEncryptOutputSize(plaintext.length)).isEqualTo(size);
+    assertThat(cipherBean.getEncryptOutputSize(plaintext.length)).isEqualTo(size);
+    final List<byte[]> plaintexts = Collections.nCopies(3, plaintext);
+    assertThat(cipherBean.decryptAll(cipherBean.encryptAll(plaintexts))).containsExactlyElementsOf(plaintexts);
+    assertThat(cipherBean.decryptAll(cipherBean.encryptAll(plaintexts))).containsExactlyElementsOf(plaintexts);
+    assertThat(ByteUtil.toString(cipherBean.decrypt(cipherBean.encrypt(plaintext)))).isEqualTo(input);
+  }
+
+
   private static KeyStore getTestKeyStore()
   {
     final KeyStoreFactoryBean bean = new KeyStoreFactoryBean(
@@ -0,0 +1,65 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.cryptacular.FailListener;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link Argon2HashBean}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class Argon2HashBeanTest
+{
+  @Test
+  public void testCompareReference()
+  {
+    // Output of the Argon2 reference implementation
+    final String hash = "$argon2i$v=19$m=65536,t=2,p=4$c29tZXNhbHQ$RdescudvJCsgt3ub+b+dWRWJTmaaJObG";
+    final Argon2HashBean bean = new Argon2HashBean();
+    assertThat(bean.compare(hash, "password")).isTrue();
+    assertThat(bean.compare(hash, "Password")).isFalse();
+  }
+
+  @Test
+  public void testHash()
+  {
+    final Argon2HashBean bean = new Argon2HashBean(256, 2, 2);
+    final String hash = bean.hash("password");
+    assertThat(hash).startsWith("$argon2id$v=19$m=256,t=2,p=2$");
+    assertThat(bean.compare(hash, "password")).isTrue();
+    assertThat(bean.compare(hash, "password".toCharArray())).isTrue();
+    assertThat(bean.compare(hash, "passwort")).isFalse();
+    assertThat(bean.hash("password")).isNotEqualTo(hash);
+
+    // Parameters are taken from the hash
+    assertThat(new Argon2HashBean().compare(hash, "password")).isTrue();
+
+    final byte[] salt = "somesaltsomesalt".getBytes(StandardCharsets.UTF_8);
+    assertThat(bean.hash(salt, "password")).isEqualTo(bean.hash(salt, "password"));
+  }
+
+  @Test
+  public void testCalibrate()
+  {
+    final Argon2HashBean bean = Argon2HashBean.calibrate(Duration.ofMillis(20), 4096, 2);
+    assertThat(bean.getMemory()).isLessThanOrEqualTo(4096);
+    assertThat(bean.getParallelism()).isEqualTo(2);
+    assertThat(bean.getIterations()).isPositive();
+  }
+
+  @Test
+  public void testInvalid()
+  {
+    assertThatThrownBy(() -> new Argon2HashBean(8, 1, 2)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new Argon2HashBean().compare("$argon2id$v=19$m=8,t=1,p=1$c29tZXNhbHQ", "x"))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new Argon2HashBean().compare("$scrypt$ln=10,r=8,p=1$c29tZXNhbHQ$aGFzaA", "x"))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
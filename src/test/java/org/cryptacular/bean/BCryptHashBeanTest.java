@@ -1,6 +1,7 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.bean;
 
+import java.time.Duration;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import static org.assertj.core.api.Assertions.*;
@@ -37,4 +38,40 @@ public class BCryptHashBeanTest
   {
     assertThat(new BCryptHashBean(10).compare(expected, password)).isTrue();
   }
+
+  @Test(dataProvider = "hashes")
+  public void testEncode(final String password, final String expected)
+  {
+    assertThat(new BCryptHashBean.BCryptParameters(expected).encode()).isEqualTo(expected);
+  }
+
+  @Test(dataProvider = "hashes")
+  public void testVerify(final String password, final String expected)
+  {
+    final int cost = new BCryptHashBean.BCryptParameters(expected).getCost();
+    assertThat(new BCryptHashBean(cost).verify(expected, password)).isEqualTo(CompareResult.MATCH);
+    assertThat(new BCryptHashBean(cost + 1).verify(expected, password)).isEqualTo(CompareResult.MATCH_REHASH);
+    assertThat(new BCryptHashBean(cost).verify(expected, password + "x")).isEqualTo(CompareResult.MISMATCH);
+  }
+
+  @Test
+  public void testCalibrate()
+  {
+    final BCryptHashBean bean = BCryptHashBean.calibrate(Duration.ofMillis(5));
+    assertThat(bean.getCostFactor()).isBetween(4, 12);
+  }
+
+  @Test
+  public void testInvalid()
+  {
+    final String valid = "$2a$5$bvIG6Nmid91Mu9RcmmWZfO5HJIMCT8riNW0hEp8f6/FuA2/mHZFpe";
+    assertThatThrownBy(() -> new BCryptHashBean.BCryptParameters(valid.substring(0, valid.length() - 1)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new BCryptHashBean.BCryptParameters(valid.replace("$5$", "$x$")))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new BCryptHashBean.BCryptParameters(valid.replace('b', '!')))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new BCryptHashBean.BCryptParameters("$2a$5"))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
 }
@@ -5,7 +5,13 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.cryptacular.FailListener;
 import org.cryptacular.generator.Nonce;
 import org.cryptacular.generator.sp80038a.BigIntegerCounterNonce;
@@ -102,6 +108,28 @@ public class BufferedBlockCipherBeanTest
   }
 
 
+  @Test(dataProvider = "test-arrays")
+  public void testEncryptDecryptByteBuffer(final String input, final String cipherSpecString, final Nonce nonce)
+    throws Exception
+  {
+    final BufferedBlockCipherSpec cipherSpec = BufferedBlockCipherSpec.parse(cipherSpecString);
+    final BufferedBlockCipherBean cipherBean = new BufferedBlockCipherBean(
+      cipherSpec, getTestKeyStore(), "vtcrypt", "vtcrypt", nonce);
+
+    final ByteBuffer plaintext = ByteBuffer.wrap(ByteUtil.toBytes(input));
+    final ByteBuffer ciphertext = ByteBuffer.allocateDirect(cipherBean.getEncryptOutputSize(plaintext.remaining()));
+    final int n = cipherBean.encrypt(plaintext, ciphertext);
+    assertThat(n).isEqualTo(ciphertext.capacity());
+    assertThat(plaintext.hasRemaining()).isFalse();
+    ciphertext.flip();
+
+    final ByteBuffer result = ByteBuffer.allocate(cipherBean.getDecryptOutputSize(ciphertext));
+    cipherBean.decrypt(ciphertext, result);
+    result.flip();
+    assertThat(ByteUtil.toString(result)).isEqualTo(input);
+  }
+
+
   @Test(dataProvider = "test-streams")
   public void testEncryptDecryptStream(final String path, final String cipherSpecString, final Nonce nonce)
     throws Exception
@@ -119,6 +147,56 @@ public class BufferedBlockCipherBeanTest
     assertThat(ByteUtil.toString(finalOut.toByteArray())).isEqualTo(ByteUtil.toString(StreamUtil.readAll(path)));
   }
 
+  @Test(dataProvider = "test-streams")
+  public void testEncryptDecryptStreamChunkSize(final String path, final String cipherSpecString, final Nonce nonce)
+    throws Exception
+  {
+    final BufferedBlockCipherSpec cipherSpec = BufferedBlockCipherSpec.parse(cipherSpecString);
+    final BufferedBlockCipherBean smallChunks = new BufferedBlockCipherBean(
+      cipherSpec, new KeyStoreKeyProvider(getTestKeyStore(), "vtcrypt"), "vtcrypt", nonce, null, 7);
+    final BufferedBlockCipherBean defaultChunks = new BufferedBlockCipherBean(
+      cipherSpec, getTestKeyStore(), "vtcrypt", "vtcrypt", nonce);
+    assertThat(smallChunks.getChunkSize()).isEqualTo(7);
+    assertThat(defaultChunks.getChunkSize()).isEqualTo(StreamUtil.BUFFER_SIZE);
+
+    final ByteArrayOutputStream tempOut = new ByteArrayOutputStream(8192);
+    smallChunks.encrypt(StreamUtil.makeStream(new File(path)), tempOut);
+
+    final ByteArrayInputStream tempIn = new ByteArrayInputStream(tempOut.toByteArray());
+    final ByteArrayOutputStream finalOut = new ByteArrayOutputStream(8192);
+    defaultChunks.decrypt(tempIn, finalOut);
+    assertThat(ByteUtil.toString(finalOut.toByteArray())).isEqualTo(ByteUtil.toString(StreamUtil.readAll(path)));
+  }
+
+  @Test(dataProvider = "test-arrays")
+  public void testEncryptDecryptAll(final String input, final String cipherSpecString, final Nonce nonce)
+    throws Exception
+  {
+    final BufferedBlockCipherSpec cipherSpec = BufferedBlockCipherSpec.parse(cipherSpecString);
+    final BufferedBlockCipherBean cipherBean = new BufferedBlockCipherBean(
+      cipherSpec, getTestKeyStore(), "vtcrypt", "vtcrypt", nonce);
+    final List<byte[]> plaintexts = new ArrayList<>();
+    for (int i = 1; i <= 20; i++) {
+      plaintexts.add(ByteUtil.toBytes(String.join("", Collections.nCopies(i % 4, input))));
+    }
+    final CipherBatch ciphertexts = cipherBean.encryptAll(plaintexts);
+    assertThat(ciphertexts).hasSize(plaintexts.size());
+    for (int i = 0; i < plaintexts.size(); i++) {
+      assertThat(cipherBean.decrypt(ciphertexts.get(i))).isEqualTo(plaintexts.get(i));
+      assertThat(ciphertexts.slice(i).remaining()).isEqualTo(ciphertexts.getLength(i));
+    }
+    assertThat(cipherBean.decryptAll(ciphertexts)).containsExactlyElementsOf(plaintexts);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final CipherBatch asyncCiphertexts = cipherBean.encryptAllAsync(plaintexts, executor).get();
+      assertThat(cipherBean.decryptAllAsync(asyncCiphertexts, executor).get()).containsExactlyElementsOf(plaintexts);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
   private static KeyStore getTestKeyStore()
   {
     final KeyStoreFactoryBean bean = new KeyStoreFactoryBean(
@@ -0,0 +1,70 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.security.KeyStore;
+import javax.crypto.SecretKey;
+import org.cryptacular.FailListener;
+import org.cryptacular.generator.sp80038d.CounterNonce;
+import org.cryptacular.spec.AEADBlockCipherSpec;
+import org.cryptacular.util.ByteUtil;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link CachingKeyProvider}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class CachingKeyProviderTest
+{
+  @Test
+  public void testCaching()
+    throws Exception
+  {
+    final KeyStore keyStore = KeyStoreKeyProviderTest.newKeyStore("app.1");
+    final CachingKeyProvider provider = new CachingKeyProvider(new KeyStoreKeyProvider(keyStore, "changeit", "."));
+    final SecretKey key = provider.getKey("app.1");
+    assertThat(provider.getKey("app.1")).isSameAs(key);
+    assertThat(provider.resolveAlias("app")).isEqualTo("app.1");
+
+    KeyStoreKeyProviderTest.addKey(keyStore, "app.2");
+    assertThat(provider.resolveAlias("app")).isEqualTo("app.1");
+    provider.invalidate("app");
+    assertThat(provider.resolveAlias("app")).isEqualTo("app.2");
+    provider.invalidateAll();
+    assertThat(provider.getKey("app.1")).isNotSameAs(key).isEqualTo(key);
+  }
+
+  @Test
+  public void testExpiry()
+    throws Exception
+  {
+    final KeyStore keyStore = KeyStoreKeyProviderTest.newKeyStore("app.1");
+    final CachingKeyProvider provider = new CachingKeyProvider(new KeyStoreKeyProvider(keyStore, "changeit", "."), 1);
+    assertThat(provider.resolveAlias("app")).isEqualTo("app.1");
+    KeyStoreKeyProviderTest.addKey(keyStore, "app.2");
+    Thread.sleep(5);
+    assertThat(provider.resolveAlias("app")).isEqualTo("app.2");
+  }
+
+  @Test
+  public void testCipherBeanKeyRollover()
+    throws Exception
+  {
+    final KeyStore keyStore = KeyStoreKeyProviderTest.newKeyStore("app.1");
+    final CachingKeyProvider provider = new CachingKeyProvider(new KeyStoreKeyProvider(keyStore, "changeit", "."));
+    final AEADBlockCipherBean cipherBean = new AEADBlockCipherBean(
+      AEADBlockCipherSpec.parse("AES/GCM"), provider, "app", new CounterNonce("vtmw", 1), 0, new KeyedCipherPool<>());
+    final byte[] ciphertext1 = cipherBean.encrypt(ByteUtil.toBytes("Veni, vidi, vici"));
+
+    KeyStoreKeyProviderTest.addKey(keyStore, "app.2");
+    provider.invalidate("app");
+    final byte[] ciphertext2 = cipherBean.encrypt(ByteUtil.toBytes("Alea iacta est"));
+    assertThat(cipherBean.decrypt(ciphertext1)).isEqualTo(ByteUtil.toBytes("Veni, vidi, vici"));
+    assertThat(cipherBean.decrypt(ciphertext2)).isEqualTo(ByteUtil.toBytes("Alea iacta est"));
+    assertThat(new String(ciphertext1, 4, 5)).isEqualTo("app.1");
+    assertThat(new String(ciphertext2, 4, 5)).isEqualTo("app.2");
+  }
+}
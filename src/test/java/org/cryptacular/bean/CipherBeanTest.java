@@ -0,0 +1,179 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.cryptacular.CiphertextHeader;
+import org.cryptacular.FailListener;
+import org.cryptacular.generator.sp80038a.RBGNonce;
+import org.cryptacular.io.FileResource;
+import org.cryptacular.spec.BufferedBlockCipherSpec;
+import org.cryptacular.util.ByteUtil;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for the default methods of {@link CipherBean}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class CipherBeanTest
+{
+
+  /** Bean that performs the operations. */
+  private final BufferedBlockCipherBean delegate = new BufferedBlockCipherBean(
+    BufferedBlockCipherSpec.parse("AES/CBC/PKCS5"),
+    getTestKeyStore(),
+    "vtcrypt",
+    "vtcrypt",
+    new RBGNonce(16));
+
+  /** Bean that implements only the byte array and stream operations. */
+  private final CipherBean cipherBean = new MinimalCipherBean(delegate);
+
+
+  @Test
+  public void testDefaultByteBuffer()
+  {
+    final ByteBuffer plaintext = ByteBuffer.wrap(ByteUtil.toBytes("Able was I ere I saw elba."));
+    final ByteBuffer ciphertext = ByteBuffer.allocateDirect(256);
+    final int n = cipherBean.encrypt(plaintext, ciphertext);
+    assertThat(plaintext.hasRemaining()).isFalse();
+    assertThat(ciphertext.position()).isEqualTo(n);
+    assertThat(cipherBean.getEncryptOutputSize(plaintext.capacity())).isEqualTo(n);
+
+    ciphertext.flip();
+    assertThat(cipherBean.getDecryptOutputSize(ciphertext)).isEqualTo(n);
+    assertThatThrownBy(() -> cipherBean.decrypt(ciphertext, ByteBuffer.allocate(1)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThat(ciphertext.position()).isZero();
+    final ByteBuffer result = ByteBuffer.allocate(n);
+    cipherBean.decrypt(ciphertext, result);
+    result.flip();
+    assertThat(ByteUtil.toString(result)).isEqualTo("Able was I ere I saw elba.");
+  }
+
+
+  @Test
+  public void testDefaultBatch()
+    throws Exception
+  {
+    final List<byte[]> plaintexts = Arrays.asList(
+      ByteUtil.toBytes("Four score"), new byte[0], ByteUtil.toBytes("and seven years ago"));
+    final CipherBatch ciphertexts = cipherBean.encryptAll(plaintexts);
+    assertThat(cipherBean.decryptAll(ciphertexts)).containsExactlyElementsOf(plaintexts);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final CipherBatch async = cipherBean.encryptAllAsync(plaintexts, executor).get();
+      assertThat(cipherBean.decryptAllAsync(async, executor).get()).containsExactlyElementsOf(plaintexts);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  public void testAbstractCipherBeanDefaults()
+  {
+    final AbstractCipherBean bean = new MinimalAbstractCipherBean(delegate);
+    final ByteBuffer plaintext = ByteBuffer.wrap(ByteUtil.toBytes("Four score and seven years ago"));
+    final ByteBuffer ciphertext = ByteBuffer.allocate(bean.getEncryptOutputSize(plaintext.remaining()));
+    assertThat(bean.encrypt(plaintext, ciphertext)).isEqualTo(ciphertext.capacity());
+    ciphertext.flip();
+    final ByteBuffer result = ByteBuffer.allocate(bean.getDecryptOutputSize(ciphertext));
+    bean.decrypt(ciphertext, result);
+    result.flip();
+    assertThat(ByteUtil.toString(result)).isEqualTo("Four score and seven years ago");
+  }
+
+
+  private static KeyStore getTestKeyStore()
+  {
+    return new KeyStoreFactoryBean(
+      new FileResource(new File("src/test/resources/keystores/cipher-bean.jceks")), "JCEKS", "vtcrypt").newInstance();
+  }
+
+
+  /** Subclass that implements only the byte array and stream processing methods. */
+  private static final class MinimalAbstractCipherBean extends AbstractCipherBean
+  {
+    /** Performs the operations. */
+    private final AbstractCipherBean delegate;
+
+
+    MinimalAbstractCipherBean(final AbstractCipherBean delegate)
+    {
+      super(getTestKeyStore(), "vtcrypt", "vtcrypt", new RBGNonce(16));
+      this.delegate = delegate;
+    }
+
+
+    @Override
+    protected byte[] process(final CiphertextHeader header, final boolean mode, final byte[] input)
+    {
+      return delegate.process(header, mode, input);
+    }
+
+
+    @Override
+    protected void process(
+      final CiphertextHeader header,
+      final boolean mode,
+      final InputStream input,
+      final OutputStream output)
+    {
+      delegate.process(header, mode, input, output);
+    }
+  }
+
+
+  /** Implementor written against the original interface, which only has byte array and stream operations. */
+  private static final class MinimalCipherBean implements CipherBean
+  {
+    /** Performs the operations. */
+    private final CipherBean delegate;
+
+
+    MinimalCipherBean(final CipherBean delegate)
+    {
+      this.delegate = delegate;
+    }
+
+
+    @Override
+    public byte[] encrypt(final byte[] input)
+    {
+      return delegate.encrypt(input);
+    }
+
+
+    @Override
+    public void encrypt(final InputStream input, final OutputStream output)
+    {
+      delegate.encrypt(input, output);
+    }
+
+
+    @Override
+    public byte[] decrypt(final byte[] input)
+    {
+      return delegate.decrypt(input);
+    }
+
+
+    @Override
+    public void decrypt(final InputStream input, final OutputStream output)
+    {
+      delegate.decrypt(input, output);
+    }
+  }
+}
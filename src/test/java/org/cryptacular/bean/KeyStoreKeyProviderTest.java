@@ -0,0 +1,78 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.security.KeyStore;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.cryptacular.CryptoException;
+import org.cryptacular.FailListener;
+import org.cryptacular.generator.sp80038a.RBGNonce;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link KeyStoreKeyProvider}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class KeyStoreKeyProviderTest
+{
+  @Test
+  public void testGetKey()
+    throws Exception
+  {
+    final KeyStore keyStore = newKeyStore("app");
+    final KeyStoreKeyProvider provider = new KeyStoreKeyProvider(keyStore, "changeit");
+    assertThat(provider.resolveAlias("app")).isEqualTo("app");
+    assertThat(provider.getKey("app").getEncoded()).hasSize(16);
+    assertThatThrownBy(() -> provider.getKey("none")).isInstanceOf(CryptoException.class);
+  }
+
+  @Test
+  public void testResolveVersionedAlias()
+    throws Exception
+  {
+    final KeyStore keyStore = newKeyStore("app", "app.1", "app.10", "app.2", "app.x", "apple.11");
+    final KeyStoreKeyProvider provider = new KeyStoreKeyProvider(keyStore, "changeit", ".");
+    assertThat(provider.resolveAlias("app")).isEqualTo("app.10");
+    assertThat(provider.resolveAlias("other")).isEqualTo("other");
+  }
+
+  /**
+   * Creates a keystore with a random AES key for every alias.
+   *
+   * @param  aliases  Key aliases.
+   *
+   * @return  Keystore.
+   *
+   * @throws  Exception  on keystore errors.
+   */
+  static KeyStore newKeyStore(final String... aliases)
+    throws Exception
+  {
+    final KeyStore keyStore = KeyStore.getInstance("JCEKS");
+    keyStore.load(null, null);
+    for (String alias : aliases) {
+      addKey(keyStore, alias);
+    }
+    return keyStore;
+  }
+
+  /**
+   * Adds a random AES key to the keystore.
+   *
+   * @param  keyStore  Keystore.
+   * @param  alias  Key alias.
+   *
+   * @throws  Exception  on keystore errors.
+   */
+  static void addKey(final KeyStore keyStore, final String alias)
+    throws Exception
+  {
+    final SecretKey key = new SecretKeySpec(new RBGNonce(16).generate(), "AES");
+    keyStore.setEntry(
+      alias, new KeyStore.SecretKeyEntry(key), new KeyStore.PasswordProtection("changeit".toCharArray()));
+  }
+}
@@ -0,0 +1,76 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.cryptacular.FailListener;
+import org.cryptacular.adapter.AEADBlockCipherAdapter;
+import org.cryptacular.adapter.BlockCipherAdapter;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link KeyedCipherPool}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class KeyedCipherPoolTest
+{
+  @Test
+  public void testBorrowRelease()
+  {
+    final KeyedCipherPool<BlockCipherAdapter> pool = new KeyedCipherPool<>(2, 60000);
+    assertThat(pool.borrow("aleph", true)).isNull();
+    final BlockCipherAdapter a = newCipher();
+    final BlockCipherAdapter b = newCipher();
+    final BlockCipherAdapter c = newCipher();
+    pool.release("aleph", true, a);
+    pool.release("aleph", true, b);
+    pool.release("aleph", true, c);
+    assertThat(pool.getIdleCount()).isEqualTo(2);
+    assertThat(pool.getEvictionCount()).isEqualTo(1);
+
+    // Pools are separated by mode and key name
+    assertThat(pool.borrow("aleph", false)).isNull();
+    assertThat(pool.borrow("beth", true)).isNull();
+
+    // Most recently released engine is borrowed first
+    assertThat(pool.borrow("aleph", true)).isSameAs(b);
+    assertThat(pool.borrow("aleph", true)).isSameAs(a);
+    assertThat(pool.borrow("aleph", true)).isNull();
+    assertThat(pool.getHitCount()).isEqualTo(2);
+    assertThat(pool.getMissCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void testExpiry()
+    throws Exception
+  {
+    final KeyedCipherPool<BlockCipherAdapter> pool = new KeyedCipherPool<>(2, 1);
+    pool.release("aleph", true, newCipher());
+    Thread.sleep(5);
+    assertThat(pool.borrow("aleph", true)).isNull();
+    assertThat(pool.getEvictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testInvalidate()
+  {
+    final KeyedCipherPool<BlockCipherAdapter> pool = new KeyedCipherPool<>();
+    pool.release("aleph", true, newCipher());
+    pool.release("aleph", false, newCipher());
+    pool.release("beth", false, newCipher());
+    pool.invalidate("aleph");
+    assertThat(pool.getIdleCount()).isEqualTo(1);
+    assertThat(pool.getEvictionCount()).isEqualTo(2);
+    pool.clear();
+    assertThat(pool.getIdleCount()).isEqualTo(0);
+  }
+
+  private static BlockCipherAdapter newCipher()
+  {
+    return new AEADBlockCipherAdapter(GCMBlockCipher.newInstance(AESEngine.newInstance()));
+  }
+}
@@ -0,0 +1,92 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import org.cryptacular.FailListener;
+import org.cryptacular.spec.CodecSpec;
+import org.cryptacular.spec.DigestSpec;
+import org.cryptacular.util.ByteUtil;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link MultiFormatHashBean}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class MultiFormatHashBeanTest
+{
+  /** Legacy salted SHA-1 bean for {SSHA} hashes. */
+  private static final EncodingHashBean SSHA = new EncodingHashBean(
+    CodecSpec.BASE64, new DigestSpec("SHA1"), 1, true);
+
+  /** Legacy unprefixed salted SHA-256 bean. */
+  private static final EncodingHashBean SALTED_SHA256 = new EncodingHashBean(
+    CodecSpec.BASE64, new DigestSpec("SHA256"), 1, true);
+
+  /** Bean under test, which upgrades to scrypt with a low cost for test speed. */
+  private final MultiFormatHashBean bean = new MultiFormatHashBean(
+    new MultiFormatHashBean.Format(new SCryptHashBean(4, 8, 1), false, "$scrypt$"),
+    new MultiFormatHashBean.Format(SSHA, true, "{SSHA}"),
+    new MultiFormatHashBean.Format(new BCryptHashBean(), false, "$2a$", "$2b$", "$2y$"),
+    new MultiFormatHashBean.Format(SALTED_SHA256, 64));
+
+  @DataProvider(name = "legacy-hashes")
+  public Object[][] getLegacyHashes()
+  {
+    final byte[] salt = ByteUtil.toBytes("0123456789abcdef");
+    return
+      new Object[][] {
+        {"{SSHA}" + SSHA.hash("password", salt)},
+        {"{ssha}" + SSHA.hash("password", salt)},
+        {"$2a$5$bvIG6Nmid91Mu9RcmmWZfO5HJIMCT8riNW0hEp8f6/FuA2/mHZFpe"},
+        {SALTED_SHA256.hash("password", salt)},
+      };
+  }
+
+  @Test(dataProvider = "legacy-hashes")
+  public void testCompare(final String hash)
+  {
+    assertThat(bean.compare(hash, "password")).isTrue();
+    assertThat(bean.compare(hash, "passwort")).isFalse();
+  }
+
+  @Test(dataProvider = "legacy-hashes")
+  public void testVerifyUpgrade(final String hash)
+  {
+    final MultiFormatHashBean.Verification result = bean.verify(hash, "password");
+    assertThat(result.getResult()).isEqualTo(CompareResult.MATCH_REHASH);
+    assertThat(result.getNewHash()).startsWith("$scrypt$ln=4,r=8,p=1$");
+    assertThat(bean.verify(result.getNewHash(), "password").getResult()).isEqualTo(CompareResult.MATCH);
+
+    final MultiFormatHashBean.Verification mismatch = bean.verify(hash, "passwort");
+    assertThat(mismatch.isMatch()).isFalse();
+    assertThat(mismatch.getNewHash()).isNull();
+  }
+
+  @Test
+  public void testHash()
+  {
+    final String hash = bean.hash("password");
+    assertThat(hash).startsWith("$scrypt$");
+    assertThat(bean.compare(hash, "password")).isTrue();
+
+    final MultiFormatHashBean ssha = new MultiFormatHashBean(new MultiFormatHashBean.Format(SSHA, true, "{SSHA}"));
+    final byte[] salt = ByteUtil.toBytes("salt");
+    assertThat(ssha.hash("password", salt)).isEqualTo("{SSHA}" + SSHA.hash("password", salt));
+  }
+
+  @Test
+  public void testInvalid()
+  {
+    assertThatThrownBy(() -> bean.compare("{MD5}X03MO1qnZdYdgyfeuILPmQ==", "password"))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> bean.compare("", "password")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new MultiFormatHashBean(
+      new MultiFormatHashBean.Format(SSHA, true, "{SSHA}"),
+      new MultiFormatHashBean.Format(SSHA, true, "{ssha}")))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
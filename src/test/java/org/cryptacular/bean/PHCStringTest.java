@@ -0,0 +1,67 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import org.cryptacular.FailListener;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link PHCString}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class PHCStringTest
+{
+  @DataProvider(name = "valid")
+  public Object[][] getValid()
+  {
+    return
+      new Object[][] {
+        {"$argon2id$v=19$m=65536,t=2,p=4$c29tZXNhbHQ$RdescudvJCsgt3ub+b+dWRWJTmaaJObG"},
+        {"$scrypt$ln=14,r=8,p=1$U29kaXVtQ2hsb3JpZGU$cCO9yzr9c0hGHAbNgf046/2o+7qQT44+qbVD9lRdofI"},
+        {"$pbkdf2-sha256$i=1000$c29tZXNhbHQ"},
+        {"$md5-crypt"},
+      };
+  }
+
+  @DataProvider(name = "invalid")
+  public Object[][] getInvalid()
+  {
+    return
+      new Object[][] {
+        {"argon2id$v=19"},
+        {"$Argon2id$v=19"},
+        {"$argon2id$v=x$m=1"},
+        {"$argon2id$v=19$m=1,t$c29tZXNhbHQ"},
+        {"$argon2id$v=19$m=1$c29tZXNhbHQ$aGFzaA$extra"},
+      };
+  }
+
+  @Test(dataProvider = "valid")
+  public void testRoundTrip(final String phcString)
+  {
+    assertThat(PHCString.parse(phcString).encode()).isEqualTo(phcString);
+  }
+
+  @Test(dataProvider = "invalid")
+  public void testInvalid(final String phcString)
+  {
+    assertThatThrownBy(() -> PHCString.parse(phcString)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testParts()
+  {
+    final PHCString phc = PHCString.parse("$argon2id$v=19$m=65536,t=2,p=4$c29tZXNhbHQ$aGFzaA");
+    assertThat(phc.getId()).isEqualTo("argon2id");
+    assertThat(phc.getVersion()).isEqualTo(19);
+    assertThat(phc.getParams()).containsOnlyKeys("m", "t", "p");
+    assertThat(phc.getIntParam("m")).isEqualTo(65536);
+    assertThat(phc.getSalt()).isEqualTo("somesalt".getBytes());
+    assertThat(phc.getHash()).isEqualTo("hash".getBytes());
+    assertThatThrownBy(() -> phc.getIntParam("x")).isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,76 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.cryptacular.FailListener;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link SCryptHashBean}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class SCryptHashBeanTest
+{
+  @DataProvider(name = "hashes")
+  public Object[][] getHashes()
+  {
+    // RFC 7914 test vectors
+    return
+      new Object[][] {
+        {
+          "password",
+          "$scrypt$ln=10,r=8,p=16$TmFDbA$" +
+            "/bq+HJ00cgB4VucZDQHp/nxq18vII3gw53N2Y0s3MWIurzDZLiKjiG/xCSedmDDaxyevuUqD7m2DYMvfoswGQA",
+        },
+        {
+          "pleaseletmein",
+          "$scrypt$ln=14,r=8,p=1$U29kaXVtQ2hsb3JpZGU$cCO9yzr9c0hGHAbNgf046/2o+7qQT44+qbVD9lRdofI",
+        },
+      };
+  }
+
+  @Test(dataProvider = "hashes")
+  public void testCompare(final String password, final String hash)
+  {
+    final SCryptHashBean bean = new SCryptHashBean();
+    assertThat(bean.compare(hash, password)).isTrue();
+    assertThat(bean.compare(hash, password.toCharArray())).isTrue();
+    assertThat(bean.compare(hash, password + "x")).isFalse();
+  }
+
+  @Test
+  public void testHash()
+  {
+    final SCryptHashBean bean = new SCryptHashBean(10, 8, 2);
+    final String hash = bean.hash("password");
+    assertThat(hash).startsWith("$scrypt$ln=10,r=8,p=2$");
+    assertThat(bean.compare(hash, "password".getBytes(StandardCharsets.UTF_8))).isTrue();
+    assertThat(bean.hash("password")).isNotEqualTo(hash);
+
+    final byte[] salt = "SodiumChloride".getBytes(StandardCharsets.UTF_8);
+    assertThat(new SCryptHashBean(14, 8, 1).hash(salt, "pleaseletmein"))
+      .isEqualTo("$scrypt$ln=14,r=8,p=1$U29kaXVtQ2hsb3JpZGU$cCO9yzr9c0hGHAbNgf046/2o+7qQT44+qbVD9lRdofI");
+  }
+
+  @Test
+  public void testCalibrate()
+  {
+    final SCryptHashBean bean = SCryptHashBean.calibrate(Duration.ofMillis(20), 16 * 1024, 8, 1);
+    assertThat(bean.getLogCost()).isBetween(10, 14);
+    assertThat(bean.getMemory()).isLessThanOrEqualTo(16 * 1024);
+  }
+
+  @Test
+  public void testInvalid()
+  {
+    assertThatThrownBy(() -> new SCryptHashBean(0, 8, 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new SCryptHashBean().compare("$argon2id$v=19$m=8,t=1,p=1$c2FsdHNhbHQ$aGFzaA", "x"))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
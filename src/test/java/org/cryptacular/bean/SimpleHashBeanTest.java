@@ -1,9 +1,19 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.bean;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.bouncycastle.crypto.digests.SHA512Digest;
 import org.cryptacular.FailListener;
+import org.cryptacular.StreamException;
 import org.cryptacular.spec.DigestSpec;
 import org.cryptacular.util.CodecUtil;
+import org.cryptacular.util.HashUtil;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
@@ -50,4 +60,61 @@ public class SimpleHashBeanTest
     final SimpleHashBean bean = new SimpleHashBean(digest, iterations);
     assertThat(CodecUtil.b64(bean.hash(input))).isEqualTo(expectedBase64);
   }
+
+
+  @Test(dataProvider = "test-data")
+  public void testCompare(
+    final DigestSpec digest, final Object[] input, final int iterations, final String expectedBase64)
+    throws Exception
+  {
+    final SimpleHashBean bean = new SimpleHashBean(digest, iterations);
+    final byte[] hash = CodecUtil.b64(expectedBase64);
+    assertThat(bean.compare(hash, input)).isTrue();
+    hash[0] ^= 1;
+    assertThat(bean.compare(hash, input)).isFalse();
+    assertThat(bean.compare(new byte[4], input)).isFalse();
+  }
+
+
+  @Test
+  public void testReuseAfterFailure()
+    throws Exception
+  {
+    final SimpleHashBean bean = new SimpleHashBean(new DigestSpec("SHA256"));
+    final byte[] expected = bean.hash("data");
+    final InputStream failing = new InputStream()
+    {
+      @Override
+      public int read()
+        throws IOException
+      {
+        throw new IOException("Read failed");
+      }
+    };
+    assertThatThrownBy(() -> bean.hash("partial", failing)).isInstanceOf(StreamException.class);
+    assertThat(bean.hash("data")).isEqualTo(expected);
+    assertThat(bean.compare(expected, "data")).isTrue();
+  }
+
+
+  @Test
+  public void testConcurrentCompare()
+    throws Exception
+  {
+    final SimpleHashBean bean = new SimpleHashBean(new DigestSpec("SHA512"), 2);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        final String data = "token-" + i;
+        final byte[] hash = HashUtil.hash(new SHA512Digest(), 2, new Object[] {data});
+        results.add(executor.submit(() -> bean.compare(hash, data)));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
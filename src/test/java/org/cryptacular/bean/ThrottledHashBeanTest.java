@@ -0,0 +1,154 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.bean;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.cryptacular.FailListener;
+import org.cryptacular.spec.CodecSpec;
+import org.cryptacular.spec.DigestSpec;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link ThrottledHashBean}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class ThrottledHashBeanTest
+{
+  @Test
+  public void testDelegate()
+  {
+    final EncodingHashBean delegate = new EncodingHashBean(new CodecSpec("Hex"), new DigestSpec("SHA256"));
+    final ThrottledHashBean<CharSequence> bean = new ThrottledHashBean<>(delegate, 2);
+    final CharSequence hash = bean.hash("password");
+    assertThat(hash).isEqualTo(delegate.hash("password"));
+    assertThat(bean.compare(hash, "password")).isTrue();
+    assertThat(bean.compare(hash, "passwort")).isFalse();
+    assertThat(bean.getAdmittedCount()).isEqualTo(3);
+    assertThat(bean.getActiveCount()).isZero();
+    assertThat(bean.getQueueDepth()).isZero();
+  }
+
+  @Test
+  public void testLoadShedding()
+    throws Exception
+  {
+    final BlockingHashBean delegate = new BlockingHashBean(2);
+    final ThrottledHashBean<String> bean = new ThrottledHashBean<>(delegate, 2, 0, Duration.ofSeconds(10));
+    final ExecutorService callers = Executors.newFixedThreadPool(2);
+    try {
+      final Future<String> first = callers.submit(() -> bean.hash("a"));
+      final Future<String> second = callers.submit(() -> bean.hash("b"));
+      assertThat(delegate.started.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(bean.getActiveCount()).isEqualTo(2);
+
+      assertThatThrownBy(() -> bean.hash("c")).isInstanceOf(OverloadException.class);
+      assertThat(bean.getRejectedCount()).isEqualTo(1);
+
+      delegate.release.countDown();
+      assertThat(first.get()).isEqualTo("a");
+      assertThat(second.get()).isEqualTo("b");
+      assertThat(delegate.maxActive.get()).isEqualTo(2);
+      assertThat(bean.hash("d")).isEqualTo("d");
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testTimeout()
+    throws Exception
+  {
+    final BlockingHashBean delegate = new BlockingHashBean(1);
+    final ThrottledHashBean<String> bean = new ThrottledHashBean<>(delegate, 1, 10, Duration.ofMillis(50));
+    final ExecutorService callers = Executors.newSingleThreadExecutor();
+    try {
+      final Future<String> first = callers.submit(() -> bean.hash("a"));
+      assertThat(delegate.started.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThatThrownBy(() -> bean.hash("b")).isInstanceOf(OverloadException.class);
+      assertThat(bean.getTimedOutCount()).isEqualTo(1);
+      delegate.release.countDown();
+      assertThat(first.get()).isEqualTo("a");
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testExecutor()
+    throws Exception
+  {
+    final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "hash-worker"));
+    try {
+      final ThrottledHashBean<String> bean = new ThrottledHashBean<>(
+        new ThreadNameHashBean(), 1, 10, Duration.ofSeconds(10), executor);
+      assertThat(bean.hash()).isEqualTo("hash-worker");
+      assertThatThrownBy(() -> bean.compare("x")).isInstanceOf(IllegalStateException.class);
+      assertThat(bean.getActiveCount()).isZero();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Returns the first data element once released and tracks concurrency. */
+  private static final class BlockingHashBean implements HashBean<String>
+  {
+    private final CountDownLatch started;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    BlockingHashBean(final int expected)
+    {
+      started = new CountDownLatch(expected);
+    }
+
+    @Override
+    public String hash(final Object... data)
+    {
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      } finally {
+        active.decrementAndGet();
+      }
+      return (String) data[0];
+    }
+
+    @Override
+    public boolean compare(final String hash, final Object... data)
+    {
+      return hash.equals(hash(data));
+    }
+  }
+
+  /** Returns the name of the thread that runs the operation. */
+  private static final class ThreadNameHashBean implements HashBean<String>
+  {
+    @Override
+    public String hash(final Object... data)
+    {
+      return Thread.currentThread().getName();
+    }
+
+    @Override
+    public boolean compare(final String hash, final Object... data)
+    {
+      throw new IllegalStateException("Compare failed");
+    }
+  }
+}
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import org.cryptacular.EncodingException;
 import org.cryptacular.FailListener;
 import org.cryptacular.util.ByteUtil;
 import org.cryptacular.util.CodecUtil;
@@ -116,4 +117,57 @@ public class Base64DecoderTest
     }
     assertThat(actual.toString()).isEqualTo(expected);
   }
+
+
+  @DataProvider(name = "bulk-data")
+  public Object[][] getBulkData()
+  {
+    final byte[] data = new byte[4099];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31 + 7);
+    }
+    return
+      new Object[][] {
+        new Object[] {new Base64Decoder(), CodecUtil.b64(data), data},
+        new Object[] {new Base64Decoder(), CodecUtil.b64(data, 64), data},
+        new Object[] {new Base64Decoder(), CodecUtil.b64(data, 76).replace(System.lineSeparator(), " \t\r\n"), data},
+        new Object[] {new Base32Decoder(), CodecUtil.b32(data, 64), data},
+      };
+  }
+
+
+  @Test(dataProvider = "bulk-data")
+  public void testBulkDecode(final AbstractBaseNDecoder decoder, final String encoded, final byte[] expected)
+  {
+    final char[] chars = encoded.toCharArray();
+    for (int chunkSize : new int[] {1, 5, 100, chars.length}) {
+      final ByteBuffer output = ByteBuffer.allocate(decoder.outputSize(chars.length));
+      for (int i = 0; i < chars.length; i += chunkSize) {
+        decoder.decode(CharBuffer.wrap(chars, i, Math.min(chunkSize, chars.length - i)), output);
+      }
+      decoder.finalize(output);
+      output.flip();
+      assertThat(ByteUtil.toArray(output)).isEqualTo(expected);
+    }
+  }
+
+
+  @Test
+  public void testStrictDecode()
+  {
+    final Base64Decoder strict = new Base64Decoder.Builder().setPadding(true).setStrict(true).build();
+    assertThat(strict.isStrict()).isTrue();
+    assertThat(CodecUtil.decode(strict, "QWJsZSB3YXMgSSBlcmUgSSBzYXcgZWxiYQ=="))
+      .isEqualTo(ByteUtil.toBytes("Able was I ere I saw elba"));
+    assertThatThrownBy(() -> CodecUtil.decode(strict, "QWJsZSB3\nYXMg")).isInstanceOf(EncodingException.class);
+    assertThatThrownBy(() -> CodecUtil.decode(strict, "QQ==QWJs")).isInstanceOf(EncodingException.class);
+    assertThatThrownBy(() -> CodecUtil.decode(strict, "QW!s")).isInstanceOf(EncodingException.class);
+    assertThatThrownBy(() -> CodecUtil.decode(new Base64Decoder(false, false, true), "QQ=="))
+      .isInstanceOf(EncodingException.class);
+    assertThatThrownBy(() -> CodecUtil.decode(new Base32Decoder(true, true), "MFRGG ==="))
+      .isInstanceOf(EncodingException.class);
+
+    // Lenient decoders skip whitespace and padding anywhere
+    assertThat(CodecUtil.b64("QWJsZSB3\nYXMg")).isEqualTo(ByteUtil.toBytes("Able was "));
+  }
 }
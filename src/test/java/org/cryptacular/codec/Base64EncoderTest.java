@@ -85,6 +85,21 @@ public class Base64EncoderTest
   }
 
 
+  @DataProvider(name = "bulk-encoders")
+  public Object[][] getBulkEncoders()
+  {
+    return
+      new Object[][] {
+        new Object[] {new Base64Encoder(), new Base64Encoder()},
+        new Object[] {new Base64Encoder(64), new Base64Encoder(64)},
+        new Object[] {new Base64Encoder(true, 76, false), new Base64Encoder(true, 76, false)},
+        new Object[] {new Base64Encoder(10), new Base64Encoder(10)},
+        new Object[] {new Base32Encoder(64), new Base32Encoder(64)},
+        new Object[] {new Base32Encoder(-1, false), new Base32Encoder(-1, false)},
+      };
+  }
+
+
   @Test(dataProvider = "byte-data")
   public void testEncode(final Base64Encoder encoder, final byte[] inBytes, final String expected)
     throws Exception
@@ -128,4 +143,30 @@ public class Base64EncoderTest
     }
     assertThat(actual.toString()).isEqualTo(expected);
   }
+
+
+  @Test(dataProvider = "bulk-encoders")
+  public void testBulkEncode(final AbstractBaseNEncoder bulk, final AbstractBaseNEncoder streaming)
+  {
+    final byte[] data = new byte[4099];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31 + 7);
+    }
+    // Direct input buffers always take the byte-at-a-time path
+    final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+    direct.put(data).flip();
+    final CharBuffer expected = CharBuffer.allocate(streaming.outputSize(data.length));
+    streaming.encode(direct, expected);
+    streaming.finalize(expected);
+    expected.flip();
+
+    for (int chunkSize : new int[] {1, 7, 100, data.length}) {
+      final CharBuffer actual = CharBuffer.allocate(bulk.outputSize(data.length));
+      for (int i = 0; i < data.length; i += chunkSize) {
+        bulk.encode(ByteBuffer.wrap(data, i, Math.min(chunkSize, data.length - i)), actual);
+      }
+      bulk.finalize(actual);
+      assertThat(actual.flip().toString()).isEqualTo(expected.toString());
+    }
+  }
 }
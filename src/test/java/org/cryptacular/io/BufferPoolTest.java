@@ -0,0 +1,71 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.io;
+
+import java.util.Arrays;
+import org.cryptacular.FailListener;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link BufferPool}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class BufferPoolTest
+{
+  @Test
+  public void testAcquireRelease()
+  {
+    final byte[] small = BufferPool.acquire(100);
+    final byte[] large = BufferPool.acquire(10000);
+    assertThat(small.length).isGreaterThanOrEqualTo(100);
+    assertThat(large.length).isGreaterThanOrEqualTo(10000);
+    BufferPool.release(small);
+    BufferPool.release(large);
+
+    // Smallest sufficient idle buffer is reused
+    assertThat(BufferPool.acquire(50)).isSameAs(small);
+    assertThat(BufferPool.acquire(5000)).isSameAs(large);
+    BufferPool.release(large);
+    BufferPool.release(large);
+    assertThat(BufferPool.acquire(5000)).isSameAs(large);
+    assertThat(BufferPool.acquire(5000)).isNotSameAs(large);
+  }
+
+  @Test
+  public void testClearedOnRelease()
+  {
+    final byte[] buffer = BufferPool.acquire(64);
+    Arrays.fill(buffer, (byte) 0x5a);
+    BufferPool.release(buffer);
+    assertThat(buffer).containsOnly(0);
+  }
+
+  @Test
+  public void testUsedRangeClearedOnRelease()
+  {
+    final byte[] buffer = BufferPool.acquire(64);
+    Arrays.fill(buffer, 0, 16, (byte) 0x5a);
+    BufferPool.release(buffer, 16);
+    assertThat(buffer).containsOnly(0);
+    assertThat(BufferPool.acquire(8)).isSameAs(buffer);
+    BufferPool.release(buffer, buffer.length + 1);
+    BufferPool.release(null, 16);
+  }
+
+  @Test
+  public void testOversizedNotRetained()
+  {
+    final byte[] huge = BufferPool.acquire(BufferPool.MAX_BUFFER_SIZE + 1);
+    BufferPool.release(huge);
+    assertThat(BufferPool.acquire(BufferPool.MAX_BUFFER_SIZE + 1)).isNotSameAs(huge);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeSize()
+  {
+    BufferPool.acquire(-1);
+  }
+}
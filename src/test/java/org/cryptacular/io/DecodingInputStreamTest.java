@@ -1,11 +1,16 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.io;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.Arrays;
 import org.bouncycastle.util.io.Streams;
 import org.cryptacular.FailListener;
+import org.cryptacular.codec.Base64Decoder;
+import org.cryptacular.codec.Base64Encoder;
 import org.cryptacular.util.ByteUtil;
+import org.cryptacular.util.CodecUtil;
 import org.cryptacular.util.StreamUtil;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Listeners;
@@ -46,4 +51,41 @@ public class DecodingInputStreamTest
     }
     assertThat(ByteUtil.toString(output.toByteArray())).isEqualTo(expected);
   }
+
+
+  @Test
+  public void testPartialReads()
+    throws Exception
+  {
+    final byte[] raw = new byte[1000];
+    for (int i = 0; i < raw.length; i++) {
+      raw[i] = (byte) (i * 73 + 11);
+    }
+    final byte[] encoded = ByteUtil.toBytes(CodecUtil.encode(new Base64Encoder(64), raw));
+    final DecodingInputStream input = new DecodingInputStream(
+      new ByteArrayInputStream(encoded), new Base64Decoder(), 10);
+    final byte[] result = new byte[raw.length + 2];
+    int pos = 0;
+    while (pos < 500) {
+      result[pos] = (byte) input.read();
+      pos++;
+      final int n = input.read(result, pos, 3);
+      assertThat(n).isBetween(1, 3);
+      pos += n;
+    }
+    assertThat(input.available()).isLessThanOrEqualTo(10);
+    final int skipped = pos;
+    assertThat(input.skip(100)).isEqualTo(100);
+    pos += 100;
+    int n;
+    while ((n = input.read(result, pos, result.length - pos)) > 0) {
+      pos += n;
+    }
+    assertThat(n).isEqualTo(-1);
+    assertThat(input.read()).isEqualTo(-1);
+    assertThat(input.skip(1)).isZero();
+    assertThat(pos).isEqualTo(raw.length);
+    System.arraycopy(raw, skipped, result, skipped, 100);
+    assertThat(Arrays.copyOf(result, raw.length)).isEqualTo(raw);
+  }
 }
@@ -0,0 +1,131 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.Arrays;
+import org.bouncycastle.util.io.Streams;
+import org.cryptacular.CiphertextHeader;
+import org.cryptacular.CryptoException;
+import org.cryptacular.FailListener;
+import org.cryptacular.bean.AEADBlockCipherBean;
+import org.cryptacular.bean.AbstractBlockCipherBean;
+import org.cryptacular.bean.BufferedBlockCipherBean;
+import org.cryptacular.bean.KeyStoreFactoryBean;
+import org.cryptacular.bean.KeyStoreKeyProvider;
+import org.cryptacular.generator.sp80038a.RBGNonce;
+import org.cryptacular.spec.AEADBlockCipherSpec;
+import org.cryptacular.spec.BufferedBlockCipherSpec;
+import org.cryptacular.util.StreamUtil;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link DecryptingInputStream} class.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class DecryptingInputStreamTest
+{
+  @DataProvider(name = "cipher-beans")
+  public Object[][] getCipherBeans()
+  {
+    final KeyStoreKeyProvider keyProvider = new KeyStoreKeyProvider(getTestKeyStore(), "vtcrypt");
+    return
+      new Object[][] {
+        new Object[] {
+          new BufferedBlockCipherBean(
+            BufferedBlockCipherSpec.parse("AES/CBC/PKCS5"), keyProvider, "vtcrypt", new RBGNonce(16), null, 7),
+          "src/test/resources/plaintexts/lorem-1200.txt",
+        },
+        new Object[] {
+          new AEADBlockCipherBean(
+            AEADBlockCipherSpec.parse("AES/GCM"), keyProvider, "vtcrypt", new RBGNonce(12), 0, null, 7),
+          "src/test/resources/plaintexts/lorem-5000.txt",
+        },
+        new Object[] {
+          new AEADBlockCipherBean(
+            AEADBlockCipherSpec.parse("AES/GCM"), keyProvider, "vtcrypt", new RBGNonce(12), 0, null, 4096),
+          "src/test/resources/plaintexts/lorem-5000.txt",
+        },
+      };
+  }
+
+  @Test(dataProvider = "cipher-beans")
+  public void testDecrypt(final AbstractBlockCipherBean bean, final String path)
+    throws Exception
+  {
+    final byte[] plaintext = StreamUtil.readAll(new File(path));
+    final byte[] ciphertext = bean.encrypt(plaintext);
+
+    final ByteArrayOutputStream bufOut = new ByteArrayOutputStream();
+    try (InputStream input = bean.newDecryptingStream(new ByteArrayInputStream(ciphertext))) {
+      Streams.pipeAll(input, bufOut);
+    }
+    assertThat(bufOut.toByteArray()).isEqualTo(plaintext);
+
+    // Single byte reads and skips
+    bufOut.reset();
+    try (InputStream input = bean.newDecryptingStream(new ByteArrayInputStream(ciphertext))) {
+      assertThat(input.skip(10)).isEqualTo(10);
+      int b;
+      while ((b = input.read()) >= 0) {
+        bufOut.write(b);
+      }
+    }
+    assertThat(bufOut.toByteArray()).isEqualTo(Arrays.copyOfRange(plaintext, 10, plaintext.length));
+  }
+
+  @Test(dataProvider = "cipher-beans")
+  public void testHeader(final AbstractBlockCipherBean bean, final String path)
+    throws Exception
+  {
+    final byte[] plaintext = StreamUtil.readAll(new File(path));
+    final byte[] ciphertext = bean.encrypt(plaintext);
+    final ByteArrayOutputStream bufOut = new ByteArrayOutputStream();
+    try (DecryptingInputStream input = bean.newDecryptingStream(new ByteArrayInputStream(ciphertext))) {
+      final CiphertextHeader header = input.getHeader();
+      assertThat(header.getKeyName()).isEqualTo("vtcrypt");
+      assertThat(input.getHeader()).isSameAs(header);
+      Streams.pipeAll(input, bufOut);
+    }
+    assertThat(bufOut.toByteArray()).isEqualTo(plaintext);
+  }
+
+  @Test(expectedExceptions = CryptoException.class)
+  public void testTamperedCiphertext()
+    throws Exception
+  {
+    final AEADBlockCipherBean bean = new AEADBlockCipherBean(
+      AEADBlockCipherSpec.parse("AES/GCM"), getTestKeyStore(), "vtcrypt", "vtcrypt", new RBGNonce(12));
+    final byte[] ciphertext = bean.encrypt(StreamUtil.readAll("src/test/resources/plaintexts/lorem-1200.txt"));
+    ciphertext[ciphertext.length - 1] ^= 1;
+    try (InputStream input = bean.newDecryptingStream(new ByteArrayInputStream(ciphertext))) {
+      Streams.pipeAll(input, new ByteArrayOutputStream());
+    }
+  }
+
+  @Test(expectedExceptions = CryptoException.class)
+  public void testSegmentedCiphertext()
+    throws Exception
+  {
+    final AEADBlockCipherBean bean = new AEADBlockCipherBean(
+      AEADBlockCipherSpec.parse("AES/GCM"), getTestKeyStore(), "vtcrypt", "vtcrypt", new RBGNonce(12), 1024);
+    final ByteArrayOutputStream bufOut = new ByteArrayOutputStream();
+    bean.encrypt(StreamUtil.makeStream(new File("src/test/resources/plaintexts/lorem-1200.txt")), bufOut);
+    bean.newDecryptingStream(new ByteArrayInputStream(bufOut.toByteArray())).read();
+  }
+
+  private static KeyStore getTestKeyStore()
+  {
+    final KeyStoreFactoryBean bean = new KeyStoreFactoryBean(
+      new FileResource(new File("src/test/resources/keystores/cipher-bean.jceks")), "JCEKS", "vtcrypt");
+    return bean.newInstance();
+  }
+}
@@ -3,9 +3,12 @@ package org.cryptacular.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import org.bouncycastle.util.io.Streams;
 import org.cryptacular.FailListener;
+import org.cryptacular.codec.Base64Encoder;
 import org.cryptacular.util.ByteUtil;
+import org.cryptacular.util.CodecUtil;
 import org.cryptacular.util.StreamUtil;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Listeners;
@@ -50,4 +53,35 @@ public class EncodingOutputStreamTest
     }
     assertThat(ByteUtil.toString(bufOut.toByteArray())).isEqualTo(expected);
   }
+
+
+  @Test
+  public void testSmallWrites()
+    throws Exception
+  {
+    final byte[] raw = new byte[1000];
+    for (int i = 0; i < raw.length; i++) {
+      raw[i] = (byte) (i * 73 + 11);
+    }
+    final byte[] twice = new byte[raw.length * 2];
+    System.arraycopy(raw, 0, twice, 0, raw.length);
+    System.arraycopy(raw, 0, twice, raw.length, raw.length);
+    final String expected = CodecUtil.encode(new Base64Encoder(64), twice);
+    final ByteArrayOutputStream bufOut = new ByteArrayOutputStream();
+    final EncodingOutputStream output = new EncodingOutputStream(bufOut, new Base64Encoder(64), 100);
+    for (byte b : raw) {
+      output.write(b);
+    }
+    for (int i = 0; i < raw.length; i += 7) {
+      output.write(raw, i, Math.min(7, raw.length - i));
+    }
+    // Output is only written in whole buffers until flush
+    assertThat(bufOut.size() % 100).isZero();
+    output.flush();
+    assertThat(bufOut.size()).isGreaterThan(0);
+    output.close();
+    output.close();
+    assertThat(ByteUtil.toString(bufOut.toByteArray())).isEqualTo(expected);
+    assertThatThrownBy(() -> output.write(0)).isInstanceOf(IOException.class);
+  }
 }
@@ -0,0 +1,83 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.security.KeyStore;
+import org.cryptacular.FailListener;
+import org.cryptacular.bean.AEADBlockCipherBean;
+import org.cryptacular.bean.AbstractBlockCipherBean;
+import org.cryptacular.bean.BufferedBlockCipherBean;
+import org.cryptacular.bean.KeyStoreFactoryBean;
+import org.cryptacular.generator.sp80038a.RBGNonce;
+import org.cryptacular.spec.AEADBlockCipherSpec;
+import org.cryptacular.spec.BufferedBlockCipherSpec;
+import org.cryptacular.util.StreamUtil;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link EncryptingOutputStream} class.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class EncryptingOutputStreamTest
+{
+  @DataProvider(name = "cipher-beans")
+  public Object[][] getCipherBeans()
+  {
+    final KeyStore keyStore = getTestKeyStore();
+    return
+      new Object[][] {
+        new Object[] {
+          new BufferedBlockCipherBean(
+            BufferedBlockCipherSpec.parse("AES/CBC/PKCS5"), keyStore, "vtcrypt", "vtcrypt", new RBGNonce(16)),
+          "src/test/resources/plaintexts/lorem-1200.txt",
+        },
+        new Object[] {
+          new AEADBlockCipherBean(
+            AEADBlockCipherSpec.parse("AES/GCM"), keyStore, "vtcrypt", "vtcrypt", new RBGNonce(12)),
+          "src/test/resources/plaintexts/lorem-5000.txt",
+        },
+      };
+  }
+
+  @Test(dataProvider = "cipher-beans")
+  public void testEncrypt(final AbstractBlockCipherBean bean, final String path)
+    throws Exception
+  {
+    final byte[] plaintext = StreamUtil.readAll(new File(path));
+    final ByteArrayOutputStream bufOut = new ByteArrayOutputStream();
+    try (EncryptingOutputStream output = bean.newEncryptingStream(bufOut)) {
+      // Mix single byte and odd-sized writes
+      output.write(plaintext[0]);
+      int off = 1;
+      while (off < plaintext.length) {
+        final int len = Math.min(333, plaintext.length - off);
+        output.write(plaintext, off, len);
+        off += len;
+      }
+    }
+    assertThat(bean.decrypt(bufOut.toByteArray())).isEqualTo(plaintext);
+  }
+
+  @Test(dataProvider = "cipher-beans")
+  public void testEncryptEmpty(final AbstractBlockCipherBean bean, final String path)
+    throws Exception
+  {
+    final ByteArrayOutputStream bufOut = new ByteArrayOutputStream();
+    bean.newEncryptingStream(bufOut).close();
+    assertThat(bufOut.size()).isGreaterThan(0);
+    assertThat(bean.decrypt(bufOut.toByteArray())).isEmpty();
+  }
+
+  private static KeyStore getTestKeyStore()
+  {
+    final KeyStoreFactoryBean bean = new KeyStoreFactoryBean(
+      new FileResource(new File("src/test/resources/keystores/cipher-bean.jceks")), "JCEKS", "vtcrypt");
+    return bean.newInstance();
+  }
+}
@@ -0,0 +1,100 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.spec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.cryptacular.EncodingException;
+import org.cryptacular.FailListener;
+import org.cryptacular.codec.Codec;
+import org.cryptacular.util.CodecUtil;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link CodecSpec}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class CodecSpecTest
+{
+  @DataProvider(name = "encodings")
+  public Object[][] getEncodings()
+  {
+    return
+      new Object[][] {
+        new Object[] {"hex", "00ff10"},
+        new Object[] {"Hex-Upper", "00FF10"},
+        new Object[] {"Base32", "AD7RA==="},
+        new Object[] {"Base-64", "AP8Q"},
+        new Object[] {"Base64-URLSafe", "AP8Q"},
+        new Object[] {"Base64-Unpadded", "AP8Q"},
+      };
+  }
+
+
+  @Test(dataProvider = "encodings")
+  public void testSharedInstance(final String encoding, final String expected)
+  {
+    final byte[] raw = {0, (byte) 0xff, 0x10};
+    final CodecSpec spec = new CodecSpec(encoding);
+    final Codec shared = spec.getSharedInstance();
+    assertThat(new CodecSpec(encoding.toUpperCase()).getSharedInstance()).isSameAs(shared);
+    assertThat(spec.newInstance()).isNotSameAs(shared);
+    assertThat(shared.encode(raw)).isEqualTo(expected);
+    assertThat(shared.decode(expected)).isEqualTo(raw);
+    assertThat(CodecUtil.encode(spec.newInstance().getEncoder(), raw)).isEqualTo(expected);
+  }
+
+
+  @Test
+  public void testConcurrentSharedInstance()
+    throws Exception
+  {
+    final Codec codec = CodecSpec.BASE64.getSharedInstance();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        final int seed = i;
+        results.add(executor.submit(() -> {
+          for (int n = 0; n < 500; n++) {
+            final byte[] raw = new byte[seed + n % 37];
+            for (int j = 0; j < raw.length; j++) {
+              raw[j] = (byte) (seed * 31 + j);
+            }
+            if (!Arrays.equals(codec.decode(codec.encode(raw)), raw)) {
+              return false;
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  public void testInvalid()
+  {
+    assertThatThrownBy(() -> new CodecSpec("Base16").newInstance()).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new CodecSpec("Base16").getSharedInstance())
+      .isInstanceOf(IllegalArgumentException.class);
+
+    // A failed decode must not corrupt the shared decoder of the thread
+    final Codec codec = CodecSpec.HEX.getSharedInstance();
+    assertThatThrownBy(() -> codec.decode("0g")).isInstanceOf(EncodingException.class);
+    assertThat(codec.decode("00ff10")).isEqualTo(new byte[] {0, (byte) 0xff, 0x10});
+  }
+}
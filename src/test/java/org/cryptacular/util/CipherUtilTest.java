@@ -4,6 +4,10 @@ package org.cryptacular.util;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import javax.crypto.SecretKey;
 import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.crypto.engines.AESEngine;
@@ -16,6 +20,7 @@ import org.bouncycastle.crypto.modes.CFBBlockCipher;
 import org.bouncycastle.crypto.modes.GCMBlockCipher;
 import org.bouncycastle.crypto.modes.OCBBlockCipher;
 import org.bouncycastle.crypto.modes.OFBBlockCipher;
+import org.cryptacular.CryptoException;
 import org.cryptacular.FailListener;
 import org.cryptacular.bean.KeyStoreBasedKeyFactoryBean;
 import org.cryptacular.bean.KeyStoreFactoryBean;
@@ -25,6 +30,7 @@ import org.cryptacular.generator.sp80038a.LongCounterNonce;
 import org.cryptacular.generator.sp80038a.RBGNonce;
 import org.cryptacular.generator.sp80038d.CounterNonce;
 import org.cryptacular.io.FileResource;
+import org.cryptacular.spec.AEADBlockCipherSpec;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
@@ -124,6 +130,21 @@ public class CipherUtilTest
   }
 
 
+  @DataProvider(name = "segmented-streams")
+  public Object[][] getSegmentedStreamData()
+  {
+    return
+      new Object[][] {
+        new Object[] {"src/test/resources/plaintexts/lorem-5000.txt", "AES/GCM", 64},
+        new Object[] {"src/test/resources/plaintexts/lorem-5000.txt", "Twofish/CCM", 1024},
+        new Object[] {"src/test/resources/plaintexts/lorem-1200.txt", "AES/EAX", 16},
+        // Plaintext is exact multiple of segment size
+        new Object[] {"src/test/resources/plaintexts/lorem-1200.txt", "AES/GCM", 1200},
+        new Object[] {"src/test/resources/plaintexts/lorem-1200.txt", "AES/OCB", 65536},
+      };
+  }
+
+
   @Test(dataProvider = "block-cipher")
   public void testBlockCipherEncryptDecrypt(final String plaintext, final BlockCipher cipher, final Nonce nonce)
   {
@@ -145,6 +166,54 @@ public class CipherUtilTest
   }
 
 
+  @Test(dataProvider = "block-cipher")
+  public void testBlockCipherEncryptDecryptByteBuffer(
+    final String plaintext, final BlockCipher cipher, final Nonce nonce)
+  {
+    final SecretKey key = SecretKeyGenerator.generate(cipher);
+    final ByteBuffer input = ByteBuffer.allocateDirect(plaintext.length());
+    input.put(plaintext.getBytes()).flip();
+    final ByteBuffer ciphertext = ByteBuffer.allocateDirect(1024);
+    CipherUtil.encrypt(cipher, key, nonce, input, ciphertext);
+    ciphertext.flip();
+    final ByteBuffer result = ByteBuffer.allocate(ciphertext.remaining());
+    CipherUtil.decrypt(cipher, key, ciphertext, result);
+    assertThat(new String(result.array(), 0, result.position())).isEqualTo(plaintext);
+  }
+
+
+  @Test(dataProvider = "aead-block-cipher")
+  public void testAeadBlockCipherEncryptDecryptByteBuffer(final String plaintext, final AEADBlockCipher cipher)
+  {
+    final BlockCipher under = cipher.getUnderlyingCipher();
+    final SecretKey key = SecretKeyGenerator.generate(under);
+    final ByteBuffer ciphertext = ByteBuffer.allocate(1024);
+    final int n = CipherUtil.encrypt(cipher, key, new RBGNonce(12), ByteBuffer.wrap(plaintext.getBytes()), ciphertext);
+    assertThat(n).isEqualTo(ciphertext.position());
+    final byte[] data = Arrays.copyOf(ciphertext.array(), n);
+    assertThat(new String(CipherUtil.decrypt(cipher, key, data))).isEqualTo(plaintext);
+
+    final ByteBuffer input = ByteBuffer.allocateDirect(n);
+    input.put(data).flip();
+    assertThatThrownBy(() -> CipherUtil.decrypt(cipher, key, input, ByteBuffer.allocate(1)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThat(input.position()).isEqualTo(0);
+    final ByteBuffer result = ByteBuffer.allocateDirect(n);
+    CipherUtil.decrypt(cipher, key, input, result);
+    result.flip();
+    assertThat(ByteUtil.toString(result)).isEqualTo(plaintext);
+
+    // Tampered ciphertext leaves no unauthenticated plaintext in the output buffer
+    data[n - 1] ^= 1;
+    final ByteBuffer tampered = ByteBuffer.allocate(n);
+    Arrays.fill(tampered.array(), (byte) 0x55);
+    assertThatThrownBy(() -> CipherUtil.decrypt(cipher, key, ByteBuffer.wrap(data), tampered))
+      .isInstanceOf(CryptoException.class);
+    assertThat(tampered.position()).isZero();
+    assertThat(Arrays.copyOf(tampered.array(), plaintext.length())).containsOnly(0);
+  }
+
+
   @Test(dataProvider = "plaintext-files")
   public void testBlockCipherEncryptDecryptStream(final String path)
     throws Exception
@@ -182,6 +251,124 @@ public class CipherUtilTest
   }
 
 
+  @Test(dataProvider = "segmented-streams")
+  public void testSegmentedEncryptDecryptStream(final String path, final String cipherSpec, final int segmentSize)
+    throws Exception
+  {
+    final AEADBlockCipherSpec spec = AEADBlockCipherSpec.parse(cipherSpec);
+    final SecretKey key = SecretKeyGenerator.generate(spec.newInstance().getUnderlyingCipher());
+    final byte[] expected = StreamUtil.readAll(path);
+    final ByteArrayOutputStream tempOut = new ByteArrayOutputStream();
+    CipherUtil.encrypt(spec, key, new RBGNonce(), segmentSize, new ByteArrayInputStream(expected), tempOut);
+
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    CipherUtil.decrypt(spec, key, new ByteArrayInputStream(tempOut.toByteArray()), actual);
+    assertThat(actual.toByteArray()).isEqualTo(expected);
+  }
+
+
+  @Test(dataProvider = "segmented-streams")
+  public void testSegmentedEncryptDecryptFile(final String path, final String cipherSpec, final int segmentSize)
+    throws Exception
+  {
+    final AEADBlockCipherSpec spec = AEADBlockCipherSpec.parse(cipherSpec);
+    final SecretKey key = SecretKeyGenerator.generate(spec.newInstance().getUnderlyingCipher());
+    final Path ciphertext = Files.createTempFile("cryptacular", ".enc");
+    final Path plaintext = Files.createTempFile("cryptacular", ".txt");
+    try {
+      CipherUtil.encrypt(spec, key, new RBGNonce(), segmentSize, new File(path).toPath(), ciphertext);
+
+      // File and stream formats are interchangeable
+      final ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+      CipherUtil.decrypt(spec, key, Files.newInputStream(ciphertext), streamOut);
+      assertThat(streamOut.toByteArray()).isEqualTo(StreamUtil.readAll(path));
+
+      CipherUtil.decrypt(spec, key, ciphertext, plaintext);
+      assertThat(Files.readAllBytes(plaintext)).isEqualTo(StreamUtil.readAll(path));
+    } finally {
+      Files.deleteIfExists(ciphertext);
+      Files.deleteIfExists(plaintext);
+    }
+  }
+
+
+  @DataProvider(name = "segment-sizes")
+  public Object[][] getSegmentSizes()
+  {
+    return
+      new Object[][] {
+        // Single-pass
+        new Object[] {0},
+        new Object[] {64},
+      };
+  }
+
+
+  @Test(dataProvider = "segment-sizes")
+  public void testDecryptTamperedFile(final int segmentSize)
+    throws Exception
+  {
+    final AEADBlockCipherSpec spec = new AEADBlockCipherSpec("AES", "GCM");
+    final SecretKey key = SecretKeyGenerator.generate(spec.newInstance().getUnderlyingCipher());
+    final ByteArrayOutputStream tempOut = new ByteArrayOutputStream();
+    if (segmentSize > 0) {
+      CipherUtil.encrypt(spec, key, new RBGNonce(), segmentSize, new ByteArrayInputStream(new byte[1000]), tempOut);
+    } else {
+      CipherUtil.encrypt(spec.newInstance(), key, new RBGNonce(), new ByteArrayInputStream(new byte[1000]), tempOut);
+    }
+    final byte[] tampered = tempOut.toByteArray();
+    tampered[tampered.length - 1] ^= 1;
+    final Path ciphertext = Files.write(Files.createTempFile("cryptacular", ".enc"), tampered);
+    final Path plaintext = ciphertext.resolveSibling(ciphertext.getFileName() + ".txt");
+    try {
+      assertThatThrownBy(() -> CipherUtil.decrypt(spec, key, ciphertext, plaintext))
+        .isInstanceOf(CryptoException.class);
+      assertThat(Files.exists(plaintext)).isFalse();
+    } finally {
+      Files.deleteIfExists(ciphertext);
+      Files.deleteIfExists(plaintext);
+    }
+  }
+
+
+  @Test
+  public void testSegmentedEncryptDecryptEmptyStream()
+  {
+    final AEADBlockCipherSpec spec = new AEADBlockCipherSpec("AES", "GCM");
+    final SecretKey key = SecretKeyGenerator.generate(spec.newInstance().getUnderlyingCipher());
+    final ByteArrayOutputStream tempOut = new ByteArrayOutputStream();
+    CipherUtil.encrypt(spec, key, new RBGNonce(), 1024, new ByteArrayInputStream(new byte[0]), tempOut);
+
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    CipherUtil.decrypt(spec, key, new ByteArrayInputStream(tempOut.toByteArray()), actual);
+    assertThat(actual.size()).isEqualTo(0);
+  }
+
+
+  @Test
+  public void testSegmentedDecryptTamperedAndTruncated()
+  {
+    final AEADBlockCipherSpec spec = new AEADBlockCipherSpec("AES", "GCM");
+    final SecretKey key = SecretKeyGenerator.generate(spec.newInstance().getUnderlyingCipher());
+    final ByteArrayOutputStream tempOut = new ByteArrayOutputStream();
+    CipherUtil.encrypt(spec, key, new RBGNonce(), 64, new ByteArrayInputStream(new byte[1000]), tempOut);
+    final byte[] ciphertext = tempOut.toByteArray();
+
+    final byte[] tampered = ciphertext.clone();
+    tampered[tampered.length / 2] ^= 1;
+    assertThatThrownBy(
+      () -> CipherUtil.decrypt(spec, key, new ByteArrayInputStream(tampered), new ByteArrayOutputStream()))
+      .isInstanceOf(CryptoException.class);
+
+    // Drop the final segment entirely so the truncation falls on a segment boundary
+    final byte[] truncated = new byte[ciphertext.length - (1000 % 64) - 16];
+    System.arraycopy(ciphertext, 0, truncated, 0, truncated.length);
+    assertThatThrownBy(
+      () -> CipherUtil.decrypt(spec, key, new ByteArrayInputStream(truncated), new ByteArrayOutputStream()))
+      .isInstanceOf(CryptoException.class);
+  }
+
+
   @Test(enabled = false)
   public void testDecryptArrayBackwardCompatibleHeader()
   {
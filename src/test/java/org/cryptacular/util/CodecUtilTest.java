@@ -0,0 +1,123 @@
+/* See LICENSE for licensing and NOTICE for copyright. */
+package org.cryptacular.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import org.cryptacular.EncodingException;
+import org.cryptacular.FailListener;
+import org.cryptacular.codec.Base32Decoder;
+import org.cryptacular.codec.Base32Encoder;
+import org.cryptacular.codec.Base64Decoder;
+import org.cryptacular.codec.Base64Encoder;
+import org.cryptacular.codec.Decoder;
+import org.cryptacular.codec.Encoder;
+import org.cryptacular.codec.HexDecoder;
+import org.cryptacular.codec.HexEncoder;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit test for {@link CodecUtil}.
+ *
+ * @author  Middleware Services
+ */
+@Listeners(FailListener.class)
+public class CodecUtilTest
+{
+  @DataProvider(name = "codecs")
+  public Object[][] getCodecs()
+  {
+    return
+      new Object[][] {
+        new Object[] {new Base64Encoder(), new Base64Decoder()},
+        new Object[] {new Base64Encoder(64), new Base64Decoder()},
+        new Object[] {new Base64Encoder(true, 10, false), new Base64Decoder(true, false)},
+        new Object[] {new Base32Encoder(), new Base32Decoder()},
+        new Object[] {new Base32Encoder(16, false), new Base32Decoder(false)},
+        new Object[] {new HexEncoder(), new HexDecoder()},
+        new Object[] {new HexEncoder(true), new HexDecoder()},
+      };
+  }
+
+
+  @Test(dataProvider = "codecs")
+  public void testExactSize(final Encoder encoder, final Decoder decoder)
+  {
+    for (int size = 1; size < 200; size++) {
+      final byte[] raw = payload(size);
+      final String encoded = CodecUtil.encode(encoder, raw);
+      assertThat(encoder.encodedSize(size)).isEqualTo(encoded.length());
+      assertThat(decoder.decodedSize(encoded)).isEqualTo(size);
+      assertThat(CodecUtil.decode(decoder, encoded)).isEqualTo(raw);
+    }
+  }
+
+
+  @Test(dataProvider = "codecs")
+  public void testEncodeInto(final Encoder encoder, final Decoder decoder)
+  {
+    final byte[] raw = payload(1000);
+    final String expected = CodecUtil.encode(encoder, raw);
+    final int size = encoder.encodedSize(raw.length);
+
+    final char[] chars = new char[size + 3];
+    assertThat(CodecUtil.encode(encoder, raw, chars, 3)).isEqualTo(size);
+    assertThat(new String(chars, 3, size)).isEqualTo(expected);
+
+    final byte[] bytes = new byte[size + 2];
+    assertThat(CodecUtil.encode(encoder, raw, bytes, 2)).isEqualTo(size);
+    assertThat(new String(bytes, 2, size, ByteUtil.ASCII_CHARSET)).isEqualTo(expected);
+
+    final ByteBuffer direct = ByteBuffer.allocateDirect(size + 1);
+    direct.put((byte) '>');
+    assertThat(CodecUtil.encode(encoder, raw, direct)).isEqualTo(size);
+    assertThat(direct.position()).isEqualTo(size + 1);
+
+    assertThatThrownBy(() -> CodecUtil.encode(encoder, raw, new byte[size], 1))
+      .isInstanceOf(EncodingException.class);
+    // Overflow leaves the encoder mid-block, so it must come last
+    assertThatThrownBy(() -> CodecUtil.encode(encoder, raw, new char[size - 1], 0))
+      .isInstanceOf(EncodingException.class);
+  }
+
+
+  @Test(dataProvider = "codecs")
+  public void testDecodeInto(final Encoder encoder, final Decoder decoder)
+  {
+    final byte[] raw = payload(1000);
+    final String encoded = CodecUtil.encode(encoder, raw);
+
+    final byte[] bytes = new byte[raw.length + 4];
+    assertThat(CodecUtil.decode(decoder, encoded, bytes, 4)).isEqualTo(raw.length);
+    assertThat(ByteUtil.toArray(ByteBuffer.wrap(bytes, 4, raw.length))).isEqualTo(raw);
+
+    final CharBuffer input = CharBuffer.wrap(("xx" + encoded).toCharArray());
+    input.position(2);
+    final ByteBuffer output = ByteBuffer.allocate(raw.length);
+    assertThat(CodecUtil.decode(decoder, input, output)).isEqualTo(raw.length);
+    assertThat(output.array()).isEqualTo(raw);
+    assertThat(input.position()).isEqualTo(2);
+
+    assertThatThrownBy(() -> CodecUtil.decode(decoder, encoded, new byte[raw.length - 1], 0))
+      .isInstanceOf(EncodingException.class);
+  }
+
+
+  /**
+   * Creates a deterministic payload.
+   *
+   * @param  size  Payload size in bytes.
+   *
+   * @return  Payload bytes.
+   */
+  private static byte[] payload(final int size)
+  {
+    final byte[] raw = new byte[size];
+    for (int i = 0; i < size; i++) {
+      raw[i] = (byte) (i * 73 + 11);
+    }
+    return raw;
+  }
+}
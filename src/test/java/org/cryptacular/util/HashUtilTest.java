@@ -1,14 +1,29 @@
 /* See LICENSE for licensing and NOTICE for copyright. */
 package org.cryptacular.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.SHA1Digest;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.util.encoders.Hex;
 import org.cryptacular.FailListener;
 import org.cryptacular.SaltedHash;
+import org.cryptacular.StreamException;
+import org.cryptacular.io.BufferPool;
+import org.cryptacular.io.FileResource;
+import org.cryptacular.spec.DigestSpec;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
@@ -146,4 +161,149 @@ public class HashUtilTest
       assertThat(Hex.toHexString(HashUtil.sha1(in))).isEqualTo(expected);
     }
   }
+
+
+  @Test(dataProvider = "file-hashes")
+  public void testHashAll(final String path, final String expected)
+    throws Exception
+  {
+    final DigestSpec sha1 = new DigestSpec("SHA1");
+    final DigestSpec sha256 = new DigestSpec("SHA256");
+    final DigestSpec sha512 = new DigestSpec("SHA512");
+    final byte[][] hashes;
+    try (InputStream in = StreamUtil.makeStream(new File(path))) {
+      hashes = HashUtil.hashAll(in, sha1, sha256, sha512);
+    }
+    assertThat(hashes.length).isEqualTo(3);
+    assertThat(Hex.toHexString(hashes[0])).isEqualTo(expected);
+    try (InputStream in = StreamUtil.makeStream(new File(path))) {
+      assertThat(hashes[1]).isEqualTo(HashUtil.sha256(in));
+    }
+    try (InputStream in = StreamUtil.makeStream(new File(path))) {
+      assertThat(hashes[2]).isEqualTo(HashUtil.sha512(in));
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try (InputStream in = StreamUtil.makeStream(new File(path))) {
+      assertThat(HashUtil.hashAll(in, executor, sha1, sha256, sha512)).isEqualTo(hashes);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  public void testHashAllParallelMultipleChunks()
+    throws Exception
+  {
+    final byte[] data = new byte[3 * 1024 * 1024 + 17];
+    new Random(1).nextBytes(data);
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final byte[][] hashes = HashUtil.hashAll(
+        new ByteArrayInputStream(data), executor, new DigestSpec("SHA256"), new DigestSpec("SHA3", 256));
+      assertThat(hashes[0]).isEqualTo(HashUtil.sha256(data));
+      assertThat(hashes[1]).isEqualTo(HashUtil.sha3(256, data));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+
+  @Test
+  public void testHashAllParallelWaitsOnStreamError()
+  {
+    final AtomicInteger started = new AtomicInteger();
+    final Executor slowExecutor = task -> new Thread(() -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      started.incrementAndGet();
+      task.run();
+    }).start();
+    // Fills the first chunk, then fails while that chunk is being digested
+    final InputStream in = new SequenceInputStream(
+      new ByteArrayInputStream(new byte[BufferPool.MAX_BUFFER_SIZE]),
+      new InputStream() {
+        @Override
+        public int read()
+          throws IOException
+        {
+          throw new IOException("Read failed");
+        }
+      });
+    assertThatThrownBy(() -> HashUtil.hashAll(in, slowExecutor, new DigestSpec("SHA256"), new DigestSpec("SHA1")))
+      .isInstanceOf(StreamException.class);
+    assertThat(started.get()).isEqualTo(2);
+  }
+
+
+  @Test
+  public void testHashFile()
+    throws Exception
+  {
+    // Spans the read path, its chunk boundary and the memory mapped path
+    for (int length : new int[] {0, 100, 64 * 1024 + 1, 1024 * 1024, 3 * 1024 * 1024 + 5}) {
+      final byte[] data = new byte[length];
+      new Random(length).nextBytes(data);
+      final Path file = Files.createTempFile("hashutil", ".bin");
+      try {
+        Files.write(file, data);
+        final byte[] expected = HashUtil.sha256(data);
+        assertThat(HashUtil.sha256(file)).isEqualTo(expected);
+        assertThat(HashUtil.sha256(new FileResource(file.toFile()))).isEqualTo(expected);
+        assertThat(HashUtil.sha256(file, "salt")).isEqualTo(HashUtil.sha256(data, "salt"));
+      } finally {
+        Files.delete(file);
+      }
+    }
+  }
+
+
+  @DataProvider(name = "resumable-specs")
+  public Object[][] getResumableSpecs()
+  {
+    return
+      new Object[][] {
+        new Object[] {new DigestSpec("MD5")},
+        new Object[] {new DigestSpec("SHA1")},
+        new Object[] {new DigestSpec("SHA256")},
+        new Object[] {new DigestSpec("SHA512")},
+        new Object[] {new DigestSpec("SHA3", 256)},
+      };
+  }
+
+
+  @Test(dataProvider = "resumable-specs")
+  public void testHashState(final DigestSpec spec)
+    throws Exception
+  {
+    final byte[] data = new byte[10000];
+    new Random(7).nextBytes(data);
+    byte[] state = null;
+    for (int offset = 0; offset < data.length; offset += 3001) {
+      final byte[] part = Arrays.copyOfRange(data, offset, Math.min(offset + 3001, data.length));
+      state = HashUtil.updateHashState(spec, state, part);
+    }
+    assertThat(HashUtil.finishHashState(spec, state)).isEqualTo(HashUtil.hash(spec.newInstance(), data));
+
+    // Export leaves the digest untouched
+    final Digest digest = HashUtil.importState(spec, state);
+    assertThat(HashUtil.exportState(digest)).isEqualTo(state);
+  }
+
+
+  @Test
+  public void testHashStateErrors()
+  {
+    final byte[] state = HashUtil.updateHashState(new DigestSpec("SHA256"), null, "part");
+    assertThatThrownBy(() -> HashUtil.importState(new DigestSpec("SHA512"), state))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> HashUtil.importState(new DigestSpec("SHA256"), new byte[] {1, 2}))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> HashUtil.updateHashState(new DigestSpec("Whirlpool"), null, "part"))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
 }